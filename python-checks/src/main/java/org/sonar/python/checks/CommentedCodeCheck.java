@@ -20,8 +20,13 @@
 package org.sonar.python.checks;
 
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 import org.sonar.check.Rule;
@@ -34,7 +39,9 @@ import org.sonar.plugins.python.api.tree.StringLiteral;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Trivia;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.parser.ThreadLocalParsers;
 import org.sonar.python.tree.PythonTreeMaker;
 
 @Rule(key = "S125")
@@ -43,10 +50,27 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
   public static final String MESSAGE = "Remove this commented out code.";
   // Regex coming from https://www.python.org/dev/peps/pep-0263/#defining-the-encoding
   private static final Pattern ENCODING_PATTERN = Pattern.compile(".*?coding[:=][ \\t]*([-_.a-zA-Z0-9]+)\n");
-  private static final PythonParser parser = PythonParser.create();
+  private static final Pattern ONE_WORD_PATTERN = Pattern.compile("\\s*[\\w/\\-]+\\s*#*\n*");
+  private static final Pattern EMPTY_PATTERN = Pattern.compile("\\s*");
+  // names which can be followed by an operand, as in "print x", "exec code", "async def" or "await x"
+  private static final Set<String> SOFT_KEYWORDS = new HashSet<>(Arrays.asList("print", "exec", "async", "await"));
+  private static final Set<String> ASSIGNMENT_OPERATORS = new HashSet<>(Arrays.asList(
+    "=", "+=", "-=", "*=", "/=", "//=", "%=", "**=", ">>=", "<<=", "&=", "^=", "|=", "@="));
+
+  private int fullParseCount = 0;
+
+  /**
+   * Number of comments and strings of the last analyzed file which went through a full parse,
+   * i.e. which were not rejected by looking at their tokens only. Summed over all files and logged in debug by the scanner.
+   */
+  public int fullParseCount() {
+    return fullParseCount;
+  }
 
   @Override
   public void initialize(Context context) {
+    context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> fullParseCount = 0);
+
     context.registerSyntaxNodeConsumer(Tree.Kind.TOKEN, ctx -> {
       Token token = (Token) ctx.syntaxNode();
       List<List<Trivia>> groupedTrivias = groupTrivias(token);
@@ -69,7 +93,7 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
     return firstElement.isTripleQuoted() && parent.is(Tree.Kind.EXPRESSION_STMT);
   }
 
-  private static void visitMultilineComment(StringLiteral stringLiteral, SubscriptionContext ctx) {
+  private void visitMultilineComment(StringLiteral stringLiteral, SubscriptionContext ctx) {
     String text = Expressions.unescape(stringLiteral);
     text = text.trim();
     if (!isEmpty(text) && isTextParsedAsCode(text)) {
@@ -77,7 +101,7 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
     }
   }
 
-  private static void checkTriviaGroup(List<Trivia> triviaGroup, SubscriptionContext ctx) {
+  private void checkTriviaGroup(List<Trivia> triviaGroup, SubscriptionContext ctx) {
     String text = getTextForParsing(triviaGroup);
     if (isEmpty(text)) {
       return;
@@ -109,11 +133,11 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
   }
 
   private static boolean isOneWord(String text) {
-    return text.matches("\\s*[\\w/\\-]+\\s*#*\n*");
+    return ONE_WORD_PATTERN.matcher(text).matches();
   }
 
   private static boolean isEmpty(String text) {
-    return text.matches("\\s*");
+    return EMPTY_PATTERN.matcher(text).matches();
   }
 
   // "source code encoding" comments (e.g. # coding=utf8) should be excluded (SONARPY-465)
@@ -122,9 +146,19 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
     return line < 3 && ENCODING_PATTERN.matcher(text).matches();
   }
 
-  private static boolean isTextParsedAsCode(String text) {
+  private boolean isTextParsedAsCode(String text) {
+    List<com.sonar.sslr.api.Token> tokens;
     try {
-      AstNode astNode = parser.parse(text);
+      tokens = ThreadLocalParsers.lex(text);
+    } catch (Exception e) {
+      return false;
+    }
+    if (!mayBeCode(tokens)) {
+      return false;
+    }
+    fullParseCount++;
+    try {
+      AstNode astNode = ThreadLocalParsers.parse(tokens);
       FileInput parse = new PythonTreeMaker().fileInput(astNode);
       return parse.statements() != null && !isSimpleExpression(parse);
     } catch (Exception e) {
@@ -132,6 +166,42 @@ public class CommentedCodeCheck extends PythonSubscriptionCheck {
     }
   }
 
+  /**
+   * Returns false when the tokens cannot be parsed into something else than a simple expression:
+   * prose has operands next to each other, like "Returns the value", which no Python statement allows.
+   */
+  private static boolean mayBeCode(List<com.sonar.sslr.api.Token> tokens) {
+    boolean singleStatementWithoutKeyword = !SOFT_KEYWORDS.contains(tokens.get(0).getValue());
+    int newLines = 0;
+    com.sonar.sslr.api.Token previous = null;
+    for (com.sonar.sslr.api.Token token : tokens) {
+      TokenType type = token.getType();
+      if (previous != null && areAdjacentOperands(previous, token)) {
+        return false;
+      }
+      if (type == PythonTokenType.NEWLINE) {
+        newLines++;
+      }
+      if (type instanceof PythonKeyword || type == PythonTokenType.INDENT || ";".equals(token.getValue()) || ASSIGNMENT_OPERATORS.contains(token.getValue())) {
+        singleStatementWithoutKeyword = false;
+      }
+      previous = token;
+    }
+    return newLines > 1 || !singleStatementWithoutKeyword;
+  }
+
+  private static boolean areAdjacentOperands(com.sonar.sslr.api.Token first, com.sonar.sslr.api.Token second) {
+    TokenType firstType = first.getType();
+    TokenType secondType = second.getType();
+    boolean secondIsName = secondType == GenericTokenType.IDENTIFIER || secondType == PythonTokenType.NUMBER;
+    if (firstType == PythonTokenType.STRING) {
+      // adjacent strings are concatenated
+      return secondIsName;
+    }
+    boolean firstIsName = (firstType == GenericTokenType.IDENTIFIER && !SOFT_KEYWORDS.contains(first.getValue())) || firstType == PythonTokenType.NUMBER;
+    return firstIsName && (secondIsName || secondType == PythonTokenType.STRING);
+  }
+
   private static boolean isSimpleExpression(FileInput fileInput) {
     if (fileInput.statements().statements().size() > 1) {
       return false;
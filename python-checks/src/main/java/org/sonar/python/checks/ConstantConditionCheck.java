@@ -42,6 +42,7 @@ import org.sonar.plugins.python.api.tree.SetLiteral;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tuple;
 import org.sonar.plugins.python.api.tree.UnaryExpression;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.cfg.fixpoint.ReachingDefinitionsAnalysis;
 import org.sonar.python.tree.TreeUtils;
 
@@ -66,7 +67,7 @@ public class ConstantConditionCheck extends PythonVisitorCheck {
 
   @Override
   public void visitFileInput(FileInput fileInput) {
-    reachingDefinitionsAnalysis = new ReachingDefinitionsAnalysis(getContext().pythonFile());
+    reachingDefinitionsAnalysis = CfgCache.of(getContext()).reachingDefinitions();
     super.visitFileInput(fileInput);
   }
 
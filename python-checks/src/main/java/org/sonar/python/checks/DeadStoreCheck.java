@@ -33,6 +33,7 @@ import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.NumericLiteral;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.UnaryExpression;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.cfg.fixpoint.LiveVariablesAnalysis;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.symbols.Usage;
@@ -52,11 +53,11 @@ public class DeadStoreCheck extends PythonSubscriptionCheck {
       if (TreeUtils.hasDescendant(functionDef, tree -> tree.is(Tree.Kind.TRY_STMT))) {
         return;
       }
-      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, ctx.pythonFile());
-      if (cfg == null) {
+      ControlFlowGraph cfg = CfgCache.of(ctx).cfg(functionDef);
+      LiveVariablesAnalysis lva = CfgCache.of(ctx).liveVariables(functionDef);
+      if (cfg == null || lva == null) {
         return;
       }
-      LiveVariablesAnalysis lva = LiveVariablesAnalysis.analyze(cfg);
       cfg.blocks().forEach(block -> verifyBlock(ctx, block, lva.getLiveVariables(block), lva.getReadSymbols(), functionDef));
     });
   }
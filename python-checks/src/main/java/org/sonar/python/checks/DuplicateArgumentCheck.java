@@ -46,9 +46,9 @@ import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.RegularArgument;
 import org.sonar.plugins.python.api.tree.StringLiteral;
+import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.UnpackingExpression;
-import org.sonar.python.TokenLocation;
 import org.sonar.python.api.PythonPunctuator;
 import org.sonar.python.semantic.FunctionSymbolImpl;
 import org.sonar.python.semantic.SymbolUtils;
@@ -208,8 +208,8 @@ public class DuplicateArgumentCheck extends PythonSubscriptionCheck {
     PythonFile pythonFile = ctx.pythonFile();
     Path path = pathOf(pythonFile);
     String fileId = path != null ? path.toString() : pythonFile.toString();
-    TokenLocation firstToken = new TokenLocation(tree.firstToken());
-    TokenLocation lastToken = new TokenLocation(tree.lastToken());
-    return new LocationInFile(fileId, firstToken.startLine(), firstToken.startLineOffset(), lastToken.endLine(), lastToken.endLineOffset());
+    Token firstToken = tree.firstToken();
+    Token lastToken = tree.lastToken();
+    return new LocationInFile(fileId, firstToken.line(), firstToken.column(), lastToken.endLine(), lastToken.endColumn());
   }
 }
@@ -58,15 +58,8 @@ public class EmptyFunctionCheck extends PythonSubscriptionCheck {
   }
 
   private static boolean hasCommentAbove(FunctionDef functionDef) {
-    Tree parent = functionDef.parent();
-    List<Token> tokens = TreeUtils.tokens(parent);
-    Token defKeyword = functionDef.defKeyword();
-    int index = tokens.indexOf(defKeyword);
-    if (index == 0) {
-      parent = parent.parent();
-      tokens = TreeUtils.tokens(parent);
-      index = tokens.indexOf(defKeyword);
-    }
-    return index > 0 && !tokens.get(index - 1).trivia().isEmpty();
+    Token previousToken = TreeUtils.previousToken(functionDef.defKeyword());
+    return previousToken != null && !previousToken.trivia().isEmpty();
   }
+
 }
@@ -27,6 +27,7 @@ import org.sonar.plugins.python.api.cfg.CfgBlock;
 import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.plugins.python.api.tree.FunctionDef;
 import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.cfg.CfgUtils;
 import org.sonar.python.cfg.fixpoint.LiveVariablesAnalysis;
 import org.sonar.plugins.python.api.symbols.Symbol;
@@ -44,11 +45,11 @@ public class IgnoredParameterCheck extends PythonSubscriptionCheck {
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> {
       FunctionDef functionDef = (FunctionDef) ctx.syntaxNode();
-      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, ctx.pythonFile());
-      if (cfg == null) {
+      ControlFlowGraph cfg = CfgCache.of(ctx).cfg(functionDef);
+      LiveVariablesAnalysis lva = CfgCache.of(ctx).liveVariables(functionDef);
+      if (cfg == null || lva == null) {
         return;
       }
-      LiveVariablesAnalysis lva = LiveVariablesAnalysis.analyze(cfg);
       Set<CfgBlock> unreachableBlocks = CfgUtils.unreachableBlocks(cfg);
       cfg.blocks().forEach(block -> {
         List<DeadStoreUtils.UnnecessaryAssignment> unnecessaryAssignments =
@@ -42,6 +42,7 @@ import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tree.Kind;
 import org.sonar.plugins.python.api.tree.TryStatement;
 import org.sonar.plugins.python.api.tree.UnaryExpression;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.cfg.PythonCfgBranchingBlock;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.python.tree.TreeUtils;
@@ -63,7 +64,7 @@ public class InvariantReturnCheck extends PythonSubscriptionCheck {
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Kind.FUNCDEF, ctx -> {
       FunctionDef functionDef = (FunctionDef) ctx.syntaxNode();
-      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, ctx.pythonFile());
+      ControlFlowGraph cfg = CfgCache.of(ctx).cfg(functionDef);
       if (cfg != null) {
         List<LatestExecutedBlock> latestExecutedBlocks = collectLatestExecutedBlocks(cfg);
         boolean allBlocksHaveReturnStatement = latestExecutedBlocks.stream().allMatch(LatestExecutedBlock::hasReturnStatement);
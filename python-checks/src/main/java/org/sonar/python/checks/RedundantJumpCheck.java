@@ -32,6 +32,7 @@ import org.sonar.plugins.python.api.tree.ReturnStatement;
 import org.sonar.plugins.python.api.tree.StatementList;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tree.Kind;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.cfg.PythonCfgBranchingBlock;
 import org.sonar.python.tree.TreeUtils;
 
@@ -41,10 +42,10 @@ public class RedundantJumpCheck extends PythonSubscriptionCheck {
   @Override
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Kind.FILE_INPUT, ctx ->
-      checkCfg(ControlFlowGraph.build((FileInput) ctx.syntaxNode(), ctx.pythonFile()), ctx)
+      checkCfg(CfgCache.of(ctx).cfg((FileInput) ctx.syntaxNode()), ctx)
     );
     context.registerSyntaxNodeConsumer(Kind.FUNCDEF, ctx ->
-      checkCfg(ControlFlowGraph.build((FunctionDef) ctx.syntaxNode(), ctx.pythonFile()), ctx)
+      checkCfg(CfgCache.of(ctx).cfg((FunctionDef) ctx.syntaxNode()), ctx)
     );
   }
 
@@ -45,14 +45,12 @@ public class UnverifiedHostnameCheck extends PythonSubscriptionCheck {
   private static final Set<String> SECURE_BY_DEFAULT = new HashSet<>(Arrays.asList("ssl.create_default_context", "ssl._create_default_https_context"));
   private static final Set<String> UNSECURE_BY_DEFAULT = new HashSet<>(Arrays.asList("ssl._create_unverified_context", "ssl._create_stdlib_context"));
 
-  private static Set<String> functionsToCheck;
+  private static final Set<String> FUNCTIONS_TO_CHECK = functionsToCheck();
 
   private static Set<String> functionsToCheck() {
-    if (functionsToCheck == null) {
-      functionsToCheck = new HashSet<>();
-      functionsToCheck.addAll(SECURE_BY_DEFAULT);
-      functionsToCheck.addAll(UNSECURE_BY_DEFAULT);
-    }
+    Set<String> functionsToCheck = new HashSet<>();
+    functionsToCheck.addAll(SECURE_BY_DEFAULT);
+    functionsToCheck.addAll(UNSECURE_BY_DEFAULT);
     return Collections.unmodifiableSet(functionsToCheck);
   }
 
@@ -109,7 +107,7 @@ public class UnverifiedHostnameCheck extends PythonSubscriptionCheck {
     if (calleeSymbol == null) {
       return;
     }
-    if (functionsToCheck().contains(calleeSymbol.fullyQualifiedName())) {
+    if (FUNCTIONS_TO_CHECK.contains(calleeSymbol.fullyQualifiedName())) {
       checkSuspiciousCall(callExpression, calleeSymbol, ctx);
     }
   }
@@ -22,6 +22,8 @@ package org.sonar.python.checks;
 import org.junit.Test;
 import org.sonar.python.checks.utils.PythonCheckVerifier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class CommentedCodeCheckTest {
 
   @Test
@@ -29,6 +31,13 @@ public class CommentedCodeCheckTest {
     PythonCheckVerifier.verify("src/test/resources/checks/commentedCode.py", new CommentedCodeCheck());
   }
 
+  @Test
+  public void prose_is_not_parsed() {
+    CommentedCodeCheck check = new CommentedCodeCheck();
+    PythonCheckVerifier.verify("src/test/resources/checks/commentedCodePreFilter.py", check);
+    assertThat(check.fullParseCount()).isEqualTo(2);
+  }
+
   @Test
   public void test_encoding() {
     PythonCheckVerifier.verify("src/test/resources/checks/commentedCodeEncoding.py", new CommentedCodeCheck());
@@ -0,0 +1,14 @@
+# Noncompliant@+2
+
+# x = compute(y)
+
+# Returns the value of the field
+# when it is set, and None otherwise.
+
+# compute(y)
+
+# Noncompliant@+2
+
+# print x
+
+'''This string explains what the module does'''
@@ -23,7 +23,6 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
-import org.sonar.python.TokenLocation;
 
 public abstract class IssueLocation {
 
@@ -89,9 +88,8 @@ public abstract class IssueLocation {
       super(message);
       startLine = firstToken.line();
       startLineOffset = firstToken.column();
-      TokenLocation tokenLocation = new TokenLocation(lastToken);
-      endLine = tokenLocation.endLine();
-      endLineOffset = tokenLocation.endLineOffset();
+      endLine = lastToken.endLine();
+      endLineOffset = lastToken.endColumn();
       fileId = null;
     }
 
@@ -21,7 +21,7 @@ package org.sonar.plugins.python.api;
 
 import com.sonar.sslr.api.AstNode;
 import org.sonar.plugins.python.api.tree.FileInput;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.parser.ThreadLocalParsers;
 import org.sonar.python.tree.PythonTreeMaker;
 
 /**
@@ -29,10 +29,8 @@ import org.sonar.python.tree.PythonTreeMaker;
  */
 public class Parser {
 
-  private PythonParser astParser = PythonParser.create();
-
   public FileInput parse(String code)  {
-    AstNode astNode = astParser.parse(code);
+    AstNode astNode = ThreadLocalParsers.parse(code);
     return new PythonTreeMaker().fileInput(astNode);
   }
 
@@ -49,10 +49,18 @@ public class PythonVisitorContext {
   }
 
   public PythonVisitorContext(FileInput rootTree, PythonFile pythonFile, @Nullable File workingDirectory, String packageName, ProjectLevelSymbolTable projectLevelSymbolTable) {
+    this(rootTree, pythonFile, workingDirectory, packageName, projectLevelSymbolTable, null);
+  }
+
+  /**
+   * Context of a file whose tree was built despite a syntax error, see {@link org.sonar.plugins.python.api.tree.ErrorStatement}.
+   */
+  public PythonVisitorContext(FileInput rootTree, PythonFile pythonFile, @Nullable File workingDirectory, String packageName,
+    ProjectLevelSymbolTable projectLevelSymbolTable, @Nullable RecognitionException parsingException) {
     this.rootTree = rootTree;
     this.pythonFile = pythonFile;
     this.workingDirectory = workingDirectory;
-    this.parsingException = null;
+    this.parsingException = parsingException;
     new SymbolTableBuilder(packageName, pythonFile, projectLevelSymbolTable).visitFileInput(rootTree);
   }
 
@@ -72,6 +72,11 @@ public class BaseTreeVisitor implements TreeVisitor {
     scan(pyExecStatementTree.localsExpression());
   }
 
+  @Override
+  public void visitErrorStatement(ErrorStatement pyErrorStatementTree) {
+    // nothing to visit for error statement
+  }
+
   @Override
   public void visitAssertStatement(AssertStatement pyAssertStatementTree) {
     scan(pyAssertStatementTree.condition());
@@ -30,6 +30,24 @@ public interface Token extends Tree {
 
   int column();
 
+  /**
+   * Line of the last character of the token, which differs from {@link #line()} for multiline string literals.
+   * Computed from the token value by default, tree tokens built by the parser override it.
+   */
+  default int endLine() {
+    String[] lines = value().split("\r\n|\n|\r", -1);
+    return line() + lines.length - 1;
+  }
+
+  /**
+   * Column right after the last character of the token, on {@link #endLine()}.
+   * Computed from the token value by default, tree tokens built by the parser override it.
+   */
+  default int endColumn() {
+    String[] lines = value().split("\r\n|\n|\r", -1);
+    return lines.length > 1 ? lines[lines.length - 1].length() : (column() + value().length());
+  }
+
   List<Trivia> trivia();
 
   TokenType type();
@@ -76,6 +76,8 @@ public interface Tree {
 
     ELSE_CLAUSE(ElseClause.class),
 
+    ERROR_STMT(ErrorStatement.class),
+
     EXCEPT_CLAUSE(ExceptClause.class),
 
     EXEC_STMT(ExecStatement.class),
@@ -33,6 +33,13 @@ public interface TreeVisitor {
 
   void visitExecStatement(ExecStatement execStatement);
 
+  /**
+   * Statements skipped by the recovering parser. Does nothing by default, so that existing visitors keep compiling.
+   */
+  default void visitErrorStatement(ErrorStatement errorStatement) {
+    // no-op
+  }
+
   void visitAssertStatement(AssertStatement assertStatement);
 
   void visitDelStatement(DelStatement delStatement);
@@ -42,6 +42,7 @@ import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tree.Kind;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.types.TypeShed;
 
 public class SubscriptionVisitor {
@@ -49,22 +50,43 @@ public class SubscriptionVisitor {
   private final EnumMap<Kind, List<SubscriptionContextImpl>> consumers = new EnumMap<>(Kind.class);
   private final PythonVisitorContext pythonVisitorContext;
   private Tree currentElement;
+  private RuntimeException checksFailure = null;
+  private CfgCache cfgCache = null;
 
   public static void analyze(Collection<PythonSubscriptionCheck> checks, PythonVisitorContext pythonVisitorContext) {
-    SubscriptionVisitor subscriptionVisitor = new SubscriptionVisitor(checks, pythonVisitorContext);
+    analyze(checks, Collections.emptyList(), pythonVisitorContext);
+  }
+
+  /**
+   * Runs the rule checks and the file collectors (metrics, highlighting, symbol reporting...) in a single traversal of the tree.
+   * When a check fails, no other check consumer is executed but the collectors still complete the traversal:
+   * the failure of the check is rethrown afterwards.
+   */
+  public static void analyze(Collection<PythonSubscriptionCheck> checks, Collection<? extends PythonSubscriptionCheck> collectors,
+    PythonVisitorContext pythonVisitorContext) {
+    SubscriptionVisitor subscriptionVisitor = new SubscriptionVisitor(pythonVisitorContext);
+    subscriptionVisitor.register(checks, true);
+    subscriptionVisitor.register(collectors, false);
     FileInput rootTree = pythonVisitorContext.rootTree();
     if (rootTree != null) {
       subscriptionVisitor.scan(rootTree);
+      collectors.forEach(PythonSubscriptionCheck::leaveFile);
+      if (subscriptionVisitor.checksFailure != null) {
+        throw subscriptionVisitor.checksFailure;
+      }
       checks.forEach(PythonSubscriptionCheck::leaveFile);
     }
   }
 
-  private SubscriptionVisitor(Collection<PythonSubscriptionCheck> checks, PythonVisitorContext pythonVisitorContext) {
+  private SubscriptionVisitor(PythonVisitorContext pythonVisitorContext) {
     this.pythonVisitorContext = pythonVisitorContext;
-    for (PythonSubscriptionCheck check : checks) {
-      check.initialize((elementType, consumer) -> {
+  }
+
+  private void register(Collection<? extends PythonSubscriptionCheck> subscribers, boolean isRuleCheck) {
+    for (PythonSubscriptionCheck subscriber : subscribers) {
+      subscriber.initialize((elementType, consumer) -> {
         List<SubscriptionContextImpl> elementConsumers = consumers.computeIfAbsent(elementType, c -> new ArrayList<>());
-        elementConsumers.add(new SubscriptionContextImpl(check, consumer));
+        elementConsumers.add(new SubscriptionContextImpl(subscriber, consumer, isRuleCheck));
       });
     }
   }
@@ -83,17 +105,30 @@ public class SubscriptionVisitor {
     }
   }
 
-  private class SubscriptionContextImpl implements SubscriptionContext {
+  private class SubscriptionContextImpl implements SubscriptionContext, CfgCache.Provider {
     private final PythonCheck check;
     private final Consumer<SubscriptionContext> consumer;
+    private final boolean isRuleCheck;
 
-    SubscriptionContextImpl(PythonCheck check, Consumer<SubscriptionContext> consumer) {
+    SubscriptionContextImpl(PythonCheck check, Consumer<SubscriptionContext> consumer, boolean isRuleCheck) {
       this.check = check;
       this.consumer = consumer;
+      this.isRuleCheck = isRuleCheck;
     }
 
     public void execute() {
-      consumer.accept(this);
+      if (!isRuleCheck) {
+        consumer.accept(this);
+        return;
+      }
+      if (checksFailure != null) {
+        return;
+      }
+      try {
+        consumer.accept(this);
+      } catch (RuntimeException e) {
+        checksFailure = e;
+      }
     }
 
     @Override
@@ -152,5 +187,13 @@ public class SubscriptionVisitor {
     public File workingDirectory() {
       return pythonVisitorContext.workingDirectory();
     }
+
+    @Override
+    public CfgCache cfgCache() {
+      if (cfgCache == null) {
+        cfgCache = CfgCache.of(pythonVisitorContext);
+      }
+      return cfgCache;
+    }
   }
 }
@@ -31,7 +31,7 @@ import org.sonar.plugins.python.api.PythonCheck;
 import org.sonar.plugins.python.api.PythonFile;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 import org.sonar.plugins.python.api.tree.FileInput;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.parser.ThreadLocalParsers;
 import org.sonar.python.semantic.ProjectLevelSymbolTable;
 import org.sonar.python.tree.PythonTreeMaker;
 
@@ -59,9 +59,8 @@ public class TestPythonVisitorRunner {
   }
 
   public static PythonVisitorContext createContext(File file, @Nullable File workingDirectory, String packageName, ProjectLevelSymbolTable projectLevelSymbolTable) {
-    PythonParser parser = PythonParser.create();
     TestPythonFile pythonFile = new TestPythonFile(file);
-    AstNode astNode = parser.parse(pythonFile.content());
+    AstNode astNode = ThreadLocalParsers.parse(pythonFile.content());
     FileInput rootTree = new PythonTreeMaker().fileInput(astNode);
     return new PythonVisitorContext(rootTree, pythonFile, workingDirectory, packageName, projectLevelSymbolTable);
   }
@@ -70,7 +69,7 @@ public class TestPythonVisitorRunner {
     ProjectLevelSymbolTable projectLevelSymbolTable = new ProjectLevelSymbolTable();
     for (File file : files) {
       TestPythonFile pythonFile = new TestPythonFile(file);
-      AstNode astNode = PythonParser.create().parse(pythonFile.content());
+      AstNode astNode = ThreadLocalParsers.parse(pythonFile.content());
       FileInput astRoot = new PythonTreeMaker().fileInput(astNode);
       String packageName = pythonPackageName(file, baseDir);
       projectLevelSymbolTable.addModule(astRoot, packageName, pythonFile);
@@ -31,18 +31,8 @@ public class TokenLocation {
   public TokenLocation(Token token) {
     this.startLine = token.line();
     this.startLineOffset = token.column();
-
-    String value = token.value();
-    String[] lines = value.split("\r\n|\n|\r", -1);
-
-    if (lines.length > 1) {
-      endLine = token.line() + lines.length - 1;
-      endLineOffset = lines[lines.length - 1].length();
-
-    } else {
-      this.endLine = this.startLine;
-      this.endLineOffset = this.startLineOffset + token.value().length();
-    }
+    this.endLine = token.endLine();
+    this.endLineOffset = token.endColumn();
   }
 
   public int startLine() {
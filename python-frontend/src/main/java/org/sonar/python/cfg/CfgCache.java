@@ -0,0 +1,152 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.SubscriptionContext;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.fixpoint.DefinedVariablesAnalysis;
+import org.sonar.python.cfg.fixpoint.LiveVariablesAnalysis;
+import org.sonar.python.cfg.fixpoint.ReachingDefinitionsAnalysis;
+import org.sonar.python.tree.FileInputImpl;
+
+/**
+ * Control flow graphs and data flow analyses of a single file, computed at most once and shared by type inference and checks.
+ * <p>
+ * The cache is kept by the tree of the file: checks get it with {@link #of(SubscriptionContext)} or {@link #of(PythonVisitorContext)},
+ * which are not part of the plugin API. It is released with {@link #release(PythonVisitorContext)} once the file is analyzed, as
+ * trees can be retained after their analysis.
+ */
+public class CfgCache {
+
+  private final PythonFile pythonFile;
+  // null value when the control flow graph cannot be built
+  private final Map<Tree, ControlFlowGraph> cfgs = new HashMap<>();
+  private final Map<FunctionDef, LiveVariablesAnalysis> liveVariablesAnalyses = new HashMap<>();
+  private final Map<FunctionDef, DefinedVariablesAnalysis> definedVariablesAnalyses = new HashMap<>();
+  private ReachingDefinitionsAnalysis reachingDefinitionsAnalysis = null;
+
+  public CfgCache(PythonFile pythonFile) {
+    this.pythonFile = pythonFile;
+  }
+
+  /**
+   * Implemented by the contexts which give the cache of their file, without looking up the root of the tree.
+   */
+  public interface Provider {
+    CfgCache cfgCache();
+  }
+
+  public static CfgCache of(SubscriptionContext context) {
+    if (context instanceof Provider) {
+      return ((Provider) context).cfgCache();
+    }
+    Tree tree = context.syntaxNode();
+    while (tree.parent() != null) {
+      tree = tree.parent();
+    }
+    return of(tree, context.pythonFile());
+  }
+
+  public static CfgCache of(PythonVisitorContext context) {
+    return of(context.rootTree(), context.pythonFile());
+  }
+
+  public static void release(PythonVisitorContext context) {
+    FileInput rootTree = context.rootTree();
+    if (rootTree instanceof FileInputImpl) {
+      ((FileInputImpl) rootTree).setCfgCache(null);
+    }
+  }
+
+  /**
+   * A tree whose symbol table was not built by {@link org.sonar.python.semantic.SymbolTableBuilder} gets a new cache.
+   */
+  private static CfgCache of(Tree rootTree, PythonFile pythonFile) {
+    if (!(rootTree instanceof FileInputImpl)) {
+      return new CfgCache(pythonFile);
+    }
+    FileInputImpl fileInput = (FileInputImpl) rootTree;
+    CfgCache cfgCache = fileInput.cfgCache();
+    if (cfgCache == null) {
+      cfgCache = new CfgCache(pythonFile);
+      fileInput.setCfgCache(cfgCache);
+    }
+    return cfgCache;
+  }
+
+  @CheckForNull
+  public ControlFlowGraph cfg(FunctionDef functionDef) {
+    if (!cfgs.containsKey(functionDef)) {
+      cfgs.put(functionDef, ControlFlowGraph.build(functionDef, pythonFile));
+    }
+    return cfgs.get(functionDef);
+  }
+
+  @CheckForNull
+  public ControlFlowGraph cfg(FileInput fileInput) {
+    if (!cfgs.containsKey(fileInput)) {
+      cfgs.put(fileInput, ControlFlowGraph.build(fileInput, pythonFile));
+    }
+    return cfgs.get(fileInput);
+  }
+
+  @CheckForNull
+  public LiveVariablesAnalysis liveVariables(FunctionDef functionDef) {
+    LiveVariablesAnalysis analysis = liveVariablesAnalyses.get(functionDef);
+    if (analysis == null) {
+      ControlFlowGraph cfg = cfg(functionDef);
+      if (cfg == null) {
+        return null;
+      }
+      analysis = LiveVariablesAnalysis.analyze(cfg);
+      liveVariablesAnalyses.put(functionDef, analysis);
+    }
+    return analysis;
+  }
+
+  @CheckForNull
+  public DefinedVariablesAnalysis definedVariables(FunctionDef functionDef) {
+    DefinedVariablesAnalysis analysis = definedVariablesAnalyses.get(functionDef);
+    if (analysis == null) {
+      ControlFlowGraph cfg = cfg(functionDef);
+      if (cfg == null) {
+        return null;
+      }
+      analysis = DefinedVariablesAnalysis.analyze(cfg, functionDef.localVariables());
+      definedVariablesAnalyses.put(functionDef, analysis);
+    }
+    return analysis;
+  }
+
+  public ReachingDefinitionsAnalysis reachingDefinitions() {
+    if (reachingDefinitionsAnalysis == null) {
+      reachingDefinitionsAnalysis = new ReachingDefinitionsAnalysis(this);
+    }
+    return reachingDefinitionsAnalysis;
+  }
+}
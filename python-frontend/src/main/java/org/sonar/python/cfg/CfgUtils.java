@@ -20,8 +20,12 @@
 package org.sonar.python.cfg;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import org.sonar.plugins.python.api.cfg.CfgBlock;
 import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
@@ -45,6 +49,48 @@ public class CfgUtils {
     return difference(cfg.blocks(), reachableBlocks);
   }
 
+  /**
+   * Returns all the blocks of the CFG in reverse postorder of a depth-first traversal starting at the start block: unless it
+   * belongs to a cycle, a block comes after all its predecessors. Unreachable blocks are appended at the end.
+   * Forward analyses converge faster when visiting blocks in this order, backward analyses when visiting them in reverse.
+   */
+  public static List<CfgBlock> reversePostOrder(ControlFlowGraph cfg) {
+    Set<CfgBlock> visited = new HashSet<>();
+    List<CfgBlock> reachableBlocks = new ArrayList<>(cfg.blocks().size());
+    postOrder(cfg.start(), visited, reachableBlocks);
+    List<CfgBlock> unreachableBlocks = new ArrayList<>();
+    for (CfgBlock block : cfg.blocks()) {
+      if (!visited.contains(block)) {
+        postOrder(block, visited, unreachableBlocks);
+      }
+    }
+    Collections.reverse(reachableBlocks);
+    Collections.reverse(unreachableBlocks);
+    reachableBlocks.addAll(unreachableBlocks);
+    return reachableBlocks;
+  }
+
+  private static void postOrder(CfgBlock root, Set<CfgBlock> visited, List<CfgBlock> postOrder) {
+    Deque<CfgBlock> blocks = new ArrayDeque<>();
+    Deque<Iterator<CfgBlock>> successors = new ArrayDeque<>();
+    visited.add(root);
+    blocks.push(root);
+    successors.push(root.successors().iterator());
+    while (!blocks.isEmpty()) {
+      Iterator<CfgBlock> iterator = successors.peek();
+      if (iterator.hasNext()) {
+        CfgBlock successor = iterator.next();
+        if (visited.add(successor)) {
+          blocks.push(successor);
+          successors.push(successor.successors().iterator());
+        }
+      } else {
+        postOrder.add(blocks.pop());
+        successors.pop();
+      }
+    }
+  }
+
   private static Set<CfgBlock> difference(Set<CfgBlock> a, Set<CfgBlock> b) {
     Set<CfgBlock> result = new HashSet<>(a);
     result.removeAll(b);
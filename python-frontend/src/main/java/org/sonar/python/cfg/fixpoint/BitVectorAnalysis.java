@@ -0,0 +1,148 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg.fixpoint;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sonar.plugins.python.api.cfg.CfgBlock;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.python.cfg.CfgUtils;
+
+/**
+ * Data flow analysis whose facts (symbols, definitions...) are numbered and whose program states are sets of facts,
+ * represented as bit vectors.
+ * The state entering a block is the union of the states leaving its predecessors (successors for a backward analysis)
+ * and of the boundary facts. The state leaving a block is gen + (entering - kill).
+ *
+ * States are updated in place, and blocks are processed in reverse postorder (postorder for a backward analysis), so
+ * that the states of the predecessors of a block are usually up to date when it is processed.
+ *
+ * See https://lara.epfl.ch/w/_media/sav08:schwartzbach.pdf (chapter "Forwards, Backwards, May, and Must")
+ */
+public abstract class BitVectorAnalysis {
+
+  public enum Direction {
+    FORWARD,
+    BACKWARD
+  }
+
+  private final Direction direction;
+  private final Map<CfgBlock, Integer> blockIndexes = new HashMap<>();
+  private BitSet[] in = new BitSet[0];
+  private BitSet[] out = new BitSet[0];
+
+  protected BitVectorAnalysis(Direction direction) {
+    this.direction = direction;
+  }
+
+  /**
+   * Facts generated by the block, whatever the state entering it.
+   */
+  protected abstract BitSet gen(CfgBlock block);
+
+  /**
+   * Facts removed by the block from the state entering it.
+   */
+  protected abstract BitSet kill(CfgBlock block);
+
+  /**
+   * Facts entering every block, whatever its predecessors (successors for a backward analysis).
+   */
+  protected BitSet boundary() {
+    return new BitSet();
+  }
+
+  public void compute(ControlFlowGraph cfg) {
+    List<CfgBlock> blocks = CfgUtils.reversePostOrder(cfg);
+    int size = blocks.size();
+    for (int i = 0; i < size; i++) {
+      int position = direction == Direction.FORWARD ? i : (size - 1 - i);
+      blockIndexes.put(blocks.get(position), i);
+    }
+    BitSet[] entering = new BitSet[size];
+    BitSet[] leaving = new BitSet[size];
+    BitSet[] gen = new BitSet[size];
+    BitSet[] kill = new BitSet[size];
+    CfgBlock[] blockAt = new CfgBlock[size];
+    blockIndexes.forEach((block, index) -> {
+      blockAt[index] = block;
+      entering[index] = new BitSet();
+      leaving[index] = new BitSet();
+      gen[index] = gen(block);
+      kill[index] = kill(block);
+    });
+    BitSet boundary = boundary();
+    BitSet pending = new BitSet(size);
+    pending.set(0, size);
+    BitSet newLeaving = new BitSet();
+    int index = pending.nextSetBit(0);
+    while (index >= 0) {
+      pending.clear(index);
+      CfgBlock block = blockAt[index];
+      BitSet blockEntering = entering[index];
+      blockEntering.clear();
+      blockEntering.or(boundary);
+      for (CfgBlock previous : previousBlocks(block)) {
+        blockEntering.or(leaving[blockIndexes.get(previous)]);
+      }
+      newLeaving.clear();
+      newLeaving.or(blockEntering);
+      newLeaving.andNot(kill[index]);
+      newLeaving.or(gen[index]);
+      if (!newLeaving.equals(leaving[index])) {
+        BitSet oldLeaving = leaving[index];
+        leaving[index] = newLeaving;
+        newLeaving = oldLeaving;
+        for (CfgBlock next : nextBlocks(block)) {
+          pending.set(blockIndexes.get(next));
+        }
+      }
+      // restart from the first pending block, so that a loop is stabilized before the blocks following it are processed
+      index = pending.nextSetBit(0);
+    }
+    in = direction == Direction.FORWARD ? entering : leaving;
+    out = direction == Direction.FORWARD ? leaving : entering;
+  }
+
+  private Set<CfgBlock> previousBlocks(CfgBlock block) {
+    return direction == Direction.FORWARD ? block.predecessors() : block.successors();
+  }
+
+  private Set<CfgBlock> nextBlocks(CfgBlock block) {
+    return direction == Direction.FORWARD ? block.successors() : block.predecessors();
+  }
+
+  /**
+   * Facts holding at the beginning of the block. The returned bit vector must not be modified.
+   */
+  public BitSet in(CfgBlock block) {
+    return in[blockIndexes.get(block)];
+  }
+
+  /**
+   * Facts holding at the end of the block. The returned bit vector must not be modified.
+   */
+  public BitSet out(CfgBlock block) {
+    return out[blockIndexes.get(block)];
+  }
+}
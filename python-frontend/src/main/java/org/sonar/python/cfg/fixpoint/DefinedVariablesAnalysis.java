@@ -19,10 +19,8 @@
  */
 package org.sonar.python.cfg.fixpoint;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import org.sonar.plugins.python.api.cfg.CfgBlock;
@@ -30,9 +28,17 @@ import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.symbols.Usage;
 
-public class DefinedVariablesAnalysis {
+public class DefinedVariablesAnalysis extends BitVectorAnalysis {
 
   private final Map<CfgBlock, DefinedVariables> definedVariablesPerBlock = new HashMap<>();
+  // local variables are numbered first, followed by the other symbols written in the blocks
+  private final FactIndex<Symbol> symbols = new FactIndex<>();
+  private final BitSet parameters = new BitSet();
+  private int localVariablesCount = 0;
+
+  private DefinedVariablesAnalysis() {
+    super(Direction.FORWARD);
+  }
 
   public static DefinedVariablesAnalysis analyze(ControlFlowGraph cfg, Set<Symbol> localVariables) {
     DefinedVariablesAnalysis instance = new DefinedVariablesAnalysis();
@@ -41,92 +47,88 @@ public class DefinedVariablesAnalysis {
   }
 
   private void compute(ControlFlowGraph cfg, Set<Symbol> localVariables) {
-    Map<Symbol, VariableDefinition> initialState = new HashMap<>();
     for (Symbol variable : localVariables) {
-      boolean isParameter = variable.usages().stream().anyMatch(u -> u.kind() == Usage.Kind.PARAMETER);
-      initialState.put(variable, isParameter ? VariableDefinition.DEFINED : VariableDefinition.UNDEFINED);
-    }
-    Set<CfgBlock> blocks = cfg.blocks();
-    blocks.forEach(block -> definedVariablesPerBlock.put(block, DefinedVariables.build(block, initialState)));
-    Deque<CfgBlock> workList = new ArrayDeque<>(blocks);
-    while (!workList.isEmpty()) {
-      CfgBlock currentBlock = workList.pop();
-      DefinedVariables definedVariables = this.definedVariablesPerBlock.get(currentBlock);
-      boolean outHasChanged = definedVariables.propagate(this.definedVariablesPerBlock);
-      if (outHasChanged) {
-        currentBlock.successors().forEach(workList::push);
+      int index = symbols.add(variable);
+      if (variable.usages().stream().anyMatch(u -> u.kind() == Usage.Kind.PARAMETER)) {
+        parameters.set(index);
       }
     }
+    localVariablesCount = symbols.size();
+    cfg.blocks().forEach(block -> definedVariablesPerBlock.put(block, DefinedVariables.build(block, this)));
+    compute(cfg);
+  }
+
+  @Override
+  protected BitSet gen(CfgBlock block) {
+    return symbols.bits(definedVariablesPerBlock.get(block).kill);
+  }
+
+  @Override
+  protected BitSet kill(CfgBlock block) {
+    return new BitSet();
+  }
+
+  @Override
+  protected BitSet boundary() {
+    return parameters;
   }
 
   public DefinedVariables getDefinedVariables(CfgBlock block) {
     return definedVariablesPerBlock.get(block);
   }
 
+  /**
+   * Local variables are either defined or undefined, other symbols are only present once defined.
+   */
+  private Map<Symbol, VariableDefinition> programState(BitSet definedSymbols) {
+    Map<Symbol, VariableDefinition> result = new HashMap<>();
+    for (int i = 0; i < localVariablesCount; i++) {
+      result.put(symbols.get(i), definedSymbols.get(i) ? VariableDefinition.DEFINED : VariableDefinition.UNDEFINED);
+    }
+    for (int i = definedSymbols.nextSetBit(localVariablesCount); i >= 0; i = definedSymbols.nextSetBit(i + 1)) {
+      result.put(symbols.get(i), VariableDefinition.DEFINED);
+    }
+    return result;
+  }
+
   public enum VariableDefinition {
     UNDEFINED,
-    DEFINED;
-
-    static VariableDefinition join(VariableDefinition v1, VariableDefinition v2) {
-      if (v1 == UNDEFINED && v2 == UNDEFINED) {
-        return UNDEFINED;
-      }
-      return DEFINED;
-    }
+    DEFINED
   }
 
   public static class DefinedVariables extends CfgBlockState {
 
-    private Map<Symbol, VariableDefinition> in = new HashMap<>();
+    private final DefinedVariablesAnalysis analysis;
+
+    private Map<Symbol, VariableDefinition> in = null;
 
-    private Map<Symbol, VariableDefinition> out = new HashMap<>();
+    private Map<Symbol, VariableDefinition> out = null;
 
-    private DefinedVariables(CfgBlock block) {
+    private DefinedVariables(CfgBlock block, DefinedVariablesAnalysis analysis) {
       super(block);
+      this.analysis = analysis;
     }
 
     /**
      * Builds a new DefinedVariables instance for the given block and initializes the 'kill' symbol sets.
      */
-    public static DefinedVariables build(CfgBlock block, Map<Symbol, VariableDefinition> initialState) {
-      DefinedVariables instance = new DefinedVariables(block);
-      instance.in = initialState;
+    private static DefinedVariables build(CfgBlock block, DefinedVariablesAnalysis analysis) {
+      DefinedVariables instance = new DefinedVariables(block, analysis);
       instance.init(block);
       return instance;
     }
 
-    /**
-     * Propagates forward: first computes the in set from all predecessors, then the out set.
-     */
-    private boolean propagate(Map<CfgBlock, DefinedVariables> definedVariablesPerBlock) {
-      block.predecessors().stream()
-        .map(definedVariablesPerBlock::get)
-        .map(DefinedVariables::getOut)
-        .forEach(predecessorOuts -> in = join(in, predecessorOuts));
-      Map<Symbol, VariableDefinition> newOut = new HashMap<>(in);
-      kill.forEach(symbol -> newOut.put(symbol, VariableDefinition.DEFINED));
-      boolean outHasChanged = !newOut.equals(out);
-      out = newOut;
-      return outHasChanged;
-    }
-
-    private static Map<Symbol, VariableDefinition> join(Map<Symbol, VariableDefinition> programState1, Map<Symbol, VariableDefinition> programState2) {
-      Map<Symbol, VariableDefinition> result = new HashMap<>();
-      Set<Symbol> allKeys = new HashSet<>(programState1.keySet());
-      allKeys.addAll(programState2.keySet());
-      for (Symbol key : allKeys) {
-        VariableDefinition varDef1 = programState1.getOrDefault(key, VariableDefinition.UNDEFINED);
-        VariableDefinition varDef2 = programState2.getOrDefault(key, VariableDefinition.UNDEFINED);
-        result.put(key, VariableDefinition.join(varDef1, varDef2));
-      }
-      return result;
-    }
-
     public Map<Symbol, VariableDefinition> getIn() {
+      if (in == null) {
+        in = analysis.programState(analysis.in(block));
+      }
       return in;
     }
 
     public Map<Symbol, VariableDefinition> getOut() {
+      if (out == null) {
+        out = analysis.programState(analysis.out(block));
+      }
       return out;
     }
   }
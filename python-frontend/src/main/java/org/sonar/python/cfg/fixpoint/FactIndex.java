@@ -0,0 +1,76 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg.fixpoint;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Numbers the facts tracked by a {@link BitVectorAnalysis} (symbols, definitions...), so that sets of facts can be
+ * represented as bit vectors.
+ */
+class FactIndex<T> {
+
+  private final Map<T, Integer> indexes = new HashMap<>();
+  private final List<T> facts = new ArrayList<>();
+
+  /**
+   * Returns the number of the fact, numbering it if it was not numbered yet.
+   */
+  int add(T fact) {
+    return indexes.computeIfAbsent(fact, f -> {
+      facts.add(f);
+      return facts.size() - 1;
+    });
+  }
+
+  /**
+   * Returns -1 when the fact is not numbered.
+   */
+  int indexOf(T fact) {
+    return indexes.getOrDefault(fact, -1);
+  }
+
+  T get(int index) {
+    return facts.get(index);
+  }
+
+  int size() {
+    return facts.size();
+  }
+
+  BitSet bits(Collection<T> facts) {
+    BitSet bits = new BitSet(size());
+    facts.forEach(fact -> bits.set(add(fact)));
+    return bits;
+  }
+
+  Set<T> facts(BitSet bits) {
+    Set<T> result = new HashSet<>();
+    bits.stream().forEach(index -> result.add(get(index)));
+    return result;
+  }
+}
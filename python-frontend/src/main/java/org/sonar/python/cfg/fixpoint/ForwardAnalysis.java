@@ -19,63 +19,119 @@
  */
 package org.sonar.python.cfg.fixpoint;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import org.sonar.plugins.python.api.cfg.CfgBlock;
 import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.CfgUtils;
 
 /**
  * Data flow analysis operating on the CFG.
  * The analysis starts at the entry node and moves forwards in the CFG.
+ * Blocks are processed in reverse postorder, a block being processed again only when the state entering it has changed.
+ * Once a block has been processed {@link #WIDENING_THRESHOLD} times, its output state is widened, so that the analysis converges.
  *
  * See https://en.wikipedia.org/wiki/Data-flow_analysis#Forward_analysis
  * See https://lara.epfl.ch/w/_media/sav08:schwartzbach.pdf (chapter "Forwards, Backwards, May, and Must")
  */
 public abstract class ForwardAnalysis {
 
+  public static final int WIDENING_THRESHOLD = 10;
+
   protected final Map<CfgBlock, ProgramStateAtBlock> programStateByBlock = new HashMap<>();
+  private int iterations = 0;
+  private int widenings = 0;
+  private long durationNanos = 0;
 
   public void compute(ControlFlowGraph cfg) {
+    long start = System.nanoTime();
+    iterations = 0;
+    widenings = 0;
     ProgramState initialState = initialState();
-    Set<CfgBlock> blocks = cfg.blocks();
-    blocks.forEach(block -> programStateByBlock.put(block, new ProgramStateAtBlock(block, initialState)));
-    Deque<CfgBlock> workList = new ArrayDeque<>(blocks);
-    while (!workList.isEmpty()) {
-      CfgBlock currentBlock = workList.pop();
+    List<CfgBlock> blocks = CfgUtils.reversePostOrder(cfg);
+    Map<CfgBlock, Integer> blockIndexes = new HashMap<>();
+    for (CfgBlock block : blocks) {
+      blockIndexes.put(block, blockIndexes.size());
+      programStateByBlock.put(block, new ProgramStateAtBlock(block, initialState));
+    }
+    BitSet workList = new BitSet(blocks.size());
+    workList.set(0, blocks.size());
+    int index = workList.nextSetBit(0);
+    while (index >= 0) {
+      workList.clear(index);
+      CfgBlock currentBlock = blocks.get(index);
       ProgramStateAtBlock programStateAtBlock = programStateByBlock.get(currentBlock);
       boolean outHasChanged = programStateAtBlock.propagate();
       if (outHasChanged) {
-        currentBlock.successors().forEach(workList::push);
+        currentBlock.successors().forEach(successor -> workList.set(blockIndexes.get(successor)));
       }
+      index = workList.nextSetBit(0);
     }
+    durationNanos = System.nanoTime() - start;
   }
 
   public abstract ProgramState initialState();
 
+  /**
+   * Number of times the elements of a block have been processed during the last computation.
+   */
+  public int iterations() {
+    return iterations;
+  }
+
+  /**
+   * Number of times the output state of a block has been widened during the last computation.
+   */
+  public int widenings() {
+    return widenings;
+  }
+
+  public long durationNanos() {
+    return durationNanos;
+  }
+
   protected class ProgramStateAtBlock {
 
     private final CfgBlock block;
     protected ProgramState in;
-    protected ProgramState out = initialState();
+    // null until the block is processed
+    protected ProgramState out = null;
+    private int visits = 0;
 
     private ProgramStateAtBlock(CfgBlock block, ProgramState initialState) {
       this.block = block;
       this.in = initialState;
-      this.block.elements().forEach(element -> updateProgramState(element, out));
     }
 
     /**
      * Propagates forward: first computes the in set from all predecessors, then the out set.
+     * Returns false without processing the elements of the block when the in set did not change.
      */
     private boolean propagate() {
-      block.predecessors().forEach(predecessor -> in = in.join(programStateByBlock.get(predecessor).out));
-      ProgramState newOut = in.copy();
-      block.elements().forEach(element -> updateProgramState(element, newOut));
-      boolean outHasChanged = !newOut.equals(out);
+      ProgramState newIn = in;
+      for (CfgBlock predecessor : block.predecessors()) {
+        ProgramState predecessorOut = programStateByBlock.get(predecessor).out;
+        if (predecessorOut != null) {
+          newIn = newIn.join(predecessorOut);
+        }
+      }
+      if (out != null && newIn.equals(in)) {
+        return false;
+      }
+      in = newIn;
+      ProgramState transferredOut = in.copy();
+      block.elements().forEach(element -> updateProgramState(element, transferredOut));
+      iterations++;
+      visits++;
+      ProgramState newOut = transferredOut;
+      if (out != null && visits > WIDENING_THRESHOLD) {
+        widenings++;
+        newOut = transferredOut.widen(out);
+      }
+      boolean outHasChanged = out == null || !newOut.equals(out);
       out = newOut;
       return outHasChanged;
     }
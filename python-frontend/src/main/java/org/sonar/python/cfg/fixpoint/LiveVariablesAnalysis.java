@@ -19,8 +19,7 @@
  */
 package org.sonar.python.cfg.fixpoint;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -30,9 +29,15 @@ import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.python.cfg.fixpoint.ReadWriteVisitor.SymbolReadWrite;
 import org.sonar.plugins.python.api.symbols.Symbol;
 
-public class LiveVariablesAnalysis {
+public class LiveVariablesAnalysis extends BitVectorAnalysis {
 
   private final Map<CfgBlock, LiveVariables> liveVariablesPerBlock = new HashMap<>();
+  private final FactIndex<Symbol> symbols = new FactIndex<>();
+  private Set<Symbol> readSymbols = null;
+
+  private LiveVariablesAnalysis() {
+    super(Direction.BACKWARD);
+  }
 
   public static LiveVariablesAnalysis analyze(ControlFlowGraph cfg) {
     LiveVariablesAnalysis instance = new LiveVariablesAnalysis();
@@ -44,17 +49,20 @@ public class LiveVariablesAnalysis {
    * See "worklist algorithm" in http://www.cs.cornell.edu/courses/cs4120/2013fa/lectures/lec26-fa13.pdf
    * An alternative terminology for "kill/gen" is "def/use"
    */
-  private void compute(ControlFlowGraph cfg) {
-    cfg.blocks().forEach(block -> liveVariablesPerBlock.put(block, LiveVariables.build(block)));
-    Deque<CfgBlock> workList = new ArrayDeque<>(cfg.blocks());
-    while (!workList.isEmpty()) {
-      CfgBlock currentBlock = workList.pop();
-      LiveVariables liveVariables = liveVariablesPerBlock.get(currentBlock);
-      boolean liveInHasChanged = liveVariables.propagate(liveVariablesPerBlock);
-      if (liveInHasChanged) {
-        currentBlock.predecessors().forEach(workList::push);
-      }
-    }
+  @Override
+  public void compute(ControlFlowGraph cfg) {
+    cfg.blocks().forEach(block -> liveVariablesPerBlock.put(block, LiveVariables.build(block, this)));
+    super.compute(cfg);
+  }
+
+  @Override
+  protected BitSet gen(CfgBlock block) {
+    return symbols.bits(liveVariablesPerBlock.get(block).gen);
+  }
+
+  @Override
+  protected BitSet kill(CfgBlock block) {
+    return symbols.bits(liveVariablesPerBlock.get(block).kill);
   }
 
   public LiveVariables getLiveVariables(CfgBlock block) {
@@ -62,6 +70,9 @@ public class LiveVariablesAnalysis {
   }
 
   public Set<Symbol> getReadSymbols() {
+    if (readSymbols != null) {
+      return readSymbols;
+    }
     Set<Symbol> readAtLeastOnce = new HashSet<>();
     for (LiveVariables liveVariables : liveVariablesPerBlock.values()) {
       for (Map<Symbol, SymbolReadWrite> symbolVariableUsageMap : liveVariables.variableReadWritesPerElement.values()) {
@@ -72,65 +83,52 @@ public class LiveVariablesAnalysis {
         }
       }
     }
+    readSymbols = readAtLeastOnce;
     return readAtLeastOnce;
   }
 
   public static class LiveVariables extends CfgBlockState {
+
+    private final LiveVariablesAnalysis analysis;
+
     /**
      * The Live-In variables are variables which has values that:
      * - are needed by this block
      * OR
      * - are needed by a successor block and are not killed in this block.
      */
-    private Set<Symbol> in = new HashSet<>();
+    private Set<Symbol> in = null;
 
     /**
      * The Live-Out variables are variables which are needed by successors.
      */
-    private Set<Symbol> out = new HashSet<>();
+    private Set<Symbol> out = null;
 
-    private LiveVariables(CfgBlock block) {
+    private LiveVariables(CfgBlock block, LiveVariablesAnalysis analysis) {
       super(block);
+      this.analysis = analysis;
     }
 
     /**
      * Builds a new LiveVariables instance for the given block and initializes the 'kill' and 'gen' symbol sets.
      */
-    public static LiveVariables build(CfgBlock block) {
-      LiveVariables instance = new LiveVariables(block);
+    private static LiveVariables build(CfgBlock block, LiveVariablesAnalysis analysis) {
+      LiveVariables instance = new LiveVariables(block, analysis);
       instance.init(block);
       return instance;
     }
 
-    /**
-     * Propagates backwards: first computes the 'out' set, then the 'in' set.
-     */
-    private boolean propagate(Map<CfgBlock, LiveVariables> liveVariablesPerBlock) {
-      out.clear();
-      block.successors().stream()
-        .map(liveVariablesPerBlock::get)
-        .map(LiveVariables::getIn)
-        .forEach(out::addAll);
-      // in = gen + (out - kill)
-      Set<Symbol> newIn = new HashSet<>(gen);
-      newIn.addAll(difference(out, kill));
-      boolean inHasChanged = !newIn.equals(in);
-      in = newIn;
-      return inHasChanged;
-    }
-
-    private static Set<Symbol> difference(Set<Symbol> out, Set<Symbol> kill) {
-      Set<Symbol> result = new HashSet<>(out);
-      result.removeIf(kill::contains);
-      return result;
-    }
-
-
     public Set<Symbol> getIn() {
+      if (in == null) {
+        in = analysis.symbols.facts(analysis.in(block));
+      }
       return in;
     }
 
     public Set<Symbol> getOut() {
+      if (out == null) {
+        out = analysis.symbols.facts(analysis.out(block));
+      }
       return out;
     }
   }
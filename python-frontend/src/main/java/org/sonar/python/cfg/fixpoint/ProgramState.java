@@ -23,4 +23,9 @@ public interface ProgramState {
   ProgramState join(ProgramState programState);
 
   ProgramState copy();
+
+  /**
+   * Returns a state including this state and the previous one, such that successively widened states eventually stabilize.
+   */
+  ProgramState widen(ProgramState previousState);
 }
@@ -19,13 +19,13 @@
  */
 package org.sonar.python.cfg.fixpoint;
 
-import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -40,6 +40,7 @@ import org.sonar.plugins.python.api.tree.Expression;
 import org.sonar.plugins.python.api.tree.FunctionDef;
 import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.tree.TreeUtils;
 
 import static org.sonar.plugins.python.api.tree.Tree.Kind.ASSIGNMENT_STMT;
@@ -49,18 +50,20 @@ import static org.sonar.plugins.python.api.tree.Tree.Kind.TRY_STMT;
 /**
  * https://en.wikipedia.org/wiki/Reaching_definition
  * Data flow analysis to determinate what definitions may reach a given point in the code.
- * Program state is represented by a map where:
- *  - key is symbol
- *  - value is set of possible expressions that symbol may have been assigned to
+ * Program state is represented by the set of definitions (assignments to a single name) which may reach a given point,
+ * as a bit vector.
  */
 public class ReachingDefinitionsAnalysis {
-  private final Map<CfgBlock, ProgramStateAtBlock> programStateByBlock = new HashMap<>();
   private final Map<Name, Set<Expression>> assignedExpressionByName = new HashMap<>();
-  private final PythonFile pythonFile;
+  private final CfgCache cfgCache;
   private final Map<Symbol, Set<Name>> assignedNamesBySymbol = new HashMap<>();
 
   public ReachingDefinitionsAnalysis(PythonFile pythonFile) {
-    this.pythonFile = pythonFile;
+    this(new CfgCache(pythonFile));
+  }
+
+  public ReachingDefinitionsAnalysis(CfgCache cfgCache) {
+    this.cfgCache = cfgCache;
   }
 
   public Set<Expression> valuesAtLocation(Name variable) {
@@ -77,15 +80,15 @@ public class ReachingDefinitionsAnalysis {
     if (enclosingFunction == null || TreeUtils.hasDescendant(enclosingFunction, t -> t.is(TRY_STMT))) {
       return Collections.emptySet();
     }
-    ControlFlowGraph cfg = ControlFlowGraph.build(enclosingFunction, pythonFile);
+    ControlFlowGraph cfg = cfgCache.cfg(enclosingFunction);
     if (cfg == null) {
       return Collections.emptySet();
     }
-    compute(cfg, enclosingFunction.localVariables());
+    compute(cfg);
     return assignedExpressionByName.getOrDefault(variable, Collections.emptySet());
   }
 
-  private Set<Expression> getAssignedExpressions(Name variable, ProgramStateAtElement programStateAtElement) {
+  private Set<Expression> getAssignedExpressions(Name variable, Definitions definitions, BitSet reachingDefinitions) {
     Symbol symbol = variable.symbol();
     if (symbol == null) {
       return Collections.emptySet();
@@ -96,34 +99,26 @@ public class ReachingDefinitionsAnalysis {
     if (hasMissingBindingUsage) {
       return Collections.emptySet();
     }
-    return Optional.ofNullable(programStateAtElement.out.get(symbol))
-      .orElse(Collections.emptySet());
-  }
-
-  private void compute(ControlFlowGraph cfg, Set<Symbol> localVariables) {
-    Map<Symbol, Set<Expression>> initialState = new HashMap<>();
-    for (Symbol variable : localVariables) {
-      initialState.put(variable, new HashSet<>());
-    }
-    Set<CfgBlock> blocks = cfg.blocks();
-    blocks.forEach(block -> programStateByBlock.put(block, new ProgramStateAtBlock(block, initialState)));
-    Deque<CfgBlock> workList = new ArrayDeque<>(blocks);
-    while (!workList.isEmpty()) {
-      CfgBlock currentBlock = workList.pop();
-      ProgramStateAtBlock programStateAtBlock = programStateByBlock.get(currentBlock);
-      boolean outHasChanged = programStateAtBlock.propagate();
-      if (outHasChanged) {
-        currentBlock.successors().forEach(workList::push);
+    BitSet symbolDefinitions = definitions.definitionsBySymbol.get(symbol);
+    if (symbolDefinitions == null) {
+      return Collections.emptySet();
+    }
+    Set<Expression> assignedExpressions = new HashSet<>();
+    for (int i = reachingDefinitions.nextSetBit(0); i >= 0; i = reachingDefinitions.nextSetBit(i + 1)) {
+      if (symbolDefinitions.get(i)) {
+        assignedExpressions.add(definitions.assignments.get(i).assignedValue());
       }
     }
-    updateProgramStateByElement(cfg);
+    return assignedExpressions;
   }
 
-  private void updateProgramStateByElement(ControlFlowGraph cfg) {
+  private void compute(ControlFlowGraph cfg) {
+    Definitions definitions = new Definitions(cfg);
+    definitions.compute(cfg);
     for (CfgBlock block : cfg.blocks()) {
-      Map<Symbol, Set<Expression>> inputState = programStateByBlock.get(block).in;
+      BitSet reachingDefinitions = (BitSet) definitions.in(block).clone();
       for (Tree element : block.elements()) {
-        ProgramStateAtElement programStateAtElement = new ProgramStateAtElement(inputState, element);
+        definitions.update(element, reachingDefinitions);
         element.accept(new BaseTreeVisitor() {
           @Override
           public void visitFunctionDef(FunctionDef pyFunctionDefTree) {
@@ -131,81 +126,80 @@ public class ReachingDefinitionsAnalysis {
           }
           @Override
           public void visitName(Name name) {
-            assignedExpressionByName.put(name, getAssignedExpressions(name, programStateAtElement));
+            assignedExpressionByName.put(name, getAssignedExpressions(name, definitions, reachingDefinitions));
           }
         });
-        inputState = programStateAtElement.out;
       }
     }
   }
 
-  private class ProgramStateAtBlock {
-
-    private final CfgBlock block;
-    private Map<Symbol, Set<Expression>> in;
-    private Map<Symbol, Set<Expression>> out = new HashMap<>();
-
-    private ProgramStateAtBlock(CfgBlock block, Map<Symbol, Set<Expression>> initialState) {
-      this.block = block;
-      this.in = initialState;
-      this.block.elements().forEach(element -> updateProgramState(element, out));
+  /**
+   * Definitions are the assignment statements with a single name as left hand side.
+   */
+  private class Definitions extends BitVectorAnalysis {
+    private final FactIndex<AssignmentStatement> assignments = new FactIndex<>();
+    private final Map<Symbol, BitSet> definitionsBySymbol = new HashMap<>();
+    private final Map<Tree, Symbol> definedSymbolByElement = new HashMap<>();
+
+    private Definitions(ControlFlowGraph cfg) {
+      super(Direction.FORWARD);
+      for (CfgBlock block : cfg.blocks()) {
+        for (Tree element : block.elements()) {
+          definedSymbol(element).ifPresent(symbol -> {
+            definedSymbolByElement.put(element, symbol);
+            int index = assignments.add((AssignmentStatement) element);
+            definitionsBySymbol.computeIfAbsent(symbol, s -> new BitSet()).set(index);
+          });
+        }
+      }
     }
 
     /**
-     * Propagates forward: first computes the in set from all predecessors, then the out set.
+     * Performs a strong update: the definition replaces all the definitions of the same symbol.
      */
-    private boolean propagate() {
-      block.predecessors().forEach(predecessor -> in = join(in, programStateByBlock.get(predecessor).out));
-      Map<Symbol, Set<Expression>> newOut = new HashMap<>(in);
-      block.elements().forEach(element -> updateProgramState(element, newOut));
-      boolean outHasChanged = !newOut.equals(out);
-      out = newOut;
-      return outHasChanged;
+    private void update(Tree element, BitSet reachingDefinitions) {
+      Symbol symbol = definedSymbolByElement.get(element);
+      if (symbol != null) {
+        reachingDefinitions.andNot(definitionsBySymbol.get(symbol));
+        reachingDefinitions.set(assignments.indexOf((AssignmentStatement) element));
+      }
     }
-  }
-
-  private class ProgramStateAtElement {
-    private final Map<Symbol, Set<Expression>> out;
 
-    public ProgramStateAtElement(Map<Symbol, Set<Expression>> in, Tree element) {
-      out = join(in, Collections.emptyMap());
-      updateProgramState(element, out);
+    @Override
+    protected BitSet gen(CfgBlock block) {
+      BitSet gen = new BitSet();
+      block.elements().forEach(element -> update(element, gen));
+      return gen;
     }
-  }
 
-  private static Map<Symbol, Set<Expression>> join(Map<Symbol, Set<Expression>> programState1, Map<Symbol, Set<Expression>> programState2) {
-    Map<Symbol, Set<Expression>> result = new HashMap<>();
-    Set<Symbol> allKeys = new HashSet<>(programState1.keySet());
-    allKeys.addAll(programState2.keySet());
-    for (Symbol key : allKeys) {
-      Set<Expression> union = new HashSet<>();
-      union.addAll(programState1.getOrDefault(key, Collections.emptySet()));
-      union.addAll(programState2.getOrDefault(key, Collections.emptySet()));
-      result.put(key, union);
-    }
-    return result;
+    @Override
+    protected BitSet kill(CfgBlock block) {
+      BitSet kill = new BitSet();
+      block.elements().stream()
+        .map(definedSymbolByElement::get)
+        .filter(Objects::nonNull)
+        .forEach(symbol -> kill.or(definitionsBySymbol.get(symbol)));
+      return kill;
+    }
   }
 
-  private void updateProgramState(Tree element, Map<Symbol, Set<Expression>> programState) {
-    if (element.is(ASSIGNMENT_STMT)) {
-      AssignmentStatement assignmentStatement = (AssignmentStatement) element;
-      List<Expression> lhsExpressions = assignmentStatement.lhsExpressions().stream()
-        .flatMap(exprList -> exprList.expressions().stream())
-        .collect(Collectors.toList());
-      if (lhsExpressions.size() != 1) {
-        return;
-      }
-      Expression lhsExpression = lhsExpressions.get(0);
-      if (!lhsExpression.is(Tree.Kind.NAME)) {
-        return;
-      }
-      TreeUtils.getSymbolFromTree(lhsExpression).ifPresent(symbol -> {
-        assignedNamesBySymbol.computeIfAbsent(symbol, s -> new HashSet<>()).add(((Name) lhsExpression));
-        Set<Expression> assignedValues = new HashSet<>();
-        assignedValues.add(assignmentStatement.assignedValue());
-        // performing a strong update
-        programState.put(symbol, assignedValues);
-      });
+  private Optional<Symbol> definedSymbol(Tree element) {
+    if (!element.is(ASSIGNMENT_STMT)) {
+      return Optional.empty();
+    }
+    AssignmentStatement assignmentStatement = (AssignmentStatement) element;
+    List<Expression> lhsExpressions = assignmentStatement.lhsExpressions().stream()
+      .flatMap(exprList -> exprList.expressions().stream())
+      .collect(Collectors.toList());
+    if (lhsExpressions.size() != 1) {
+      return Optional.empty();
+    }
+    Expression lhsExpression = lhsExpressions.get(0);
+    if (!lhsExpression.is(Tree.Kind.NAME)) {
+      return Optional.empty();
     }
+    Optional<Symbol> symbol = TreeUtils.getSymbolFromTree(lhsExpression);
+    symbol.ifPresent(s -> assignedNamesBySymbol.computeIfAbsent(s, k -> new HashSet<>()).add((Name) lhsExpression));
+    return symbol;
   }
 }
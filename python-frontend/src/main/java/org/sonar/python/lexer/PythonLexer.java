@@ -19,11 +19,14 @@
  */
 package org.sonar.python.lexer;
 
+import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.channel.BlackHoleChannel;
 import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
+import java.util.ArrayList;
+import java.util.List;
 import org.sonar.python.api.PythonKeyword;
 import org.sonar.python.api.PythonPunctuator;
 import org.sonar.python.api.PythonTokenType;
@@ -47,19 +50,62 @@ public final class PythonLexer {
   }
 
   public static Lexer create(LexerState lexerState) {
+    return create(lexerState, false);
+  }
+
+  /**
+   * @param handwritten selects {@link PythonTokenChannel} instead of the chain of regular expression channels
+   */
+  public static Lexer create(LexerState lexerState, boolean handwritten) {
     Lexer.Builder builder = Lexer.builder().withFailIfNoChannelToConsumeOneCharacter(true);
-    addCommonChannels(builder, lexerState);
+    addCommonChannels(builder, lexerState, handwritten);
     return builder.build();
   }
 
   public static Lexer fStringLexer(LexerState lexerState) {
+    return fStringLexer(lexerState, false);
+  }
+
+  public static Lexer fStringLexer(LexerState lexerState, boolean handwritten) {
     Lexer.Builder builder = Lexer.builder().withFailIfNoChannelToConsumeOneCharacter(true);
     builder.withChannel(new FStringChannel(lexerState));
-    addCommonChannels(builder, lexerState);
+    addCommonChannels(builder, lexerState, handwritten);
     return builder.build();
   }
 
-  private static void addCommonChannels(Lexer.Builder builder, LexerState lexerState) {
+  /**
+   * Closes the blocks still open at the end of the source: one DEDENT token per remaining indentation level
+   * is inserted before the EOF token.
+   */
+  public static List<Token> withClosedIndentation(List<Token> tokens, LexerState lexerState) {
+    if (lexerState.indentationStack.peek() == 0) {
+      return tokens;
+    }
+    Token eofToken = tokens.get(tokens.size() - 1);
+    List<Token> result = new ArrayList<>(tokens.subList(0, tokens.size() - 1));
+    while (lexerState.indentationStack.peek() > 0) {
+      lexerState.indentationStack.pop();
+      result.add(Token.builder()
+        .setURI(eofToken.getURI())
+        .setType(PythonTokenType.DEDENT)
+        .setLine(eofToken.getLine())
+        .setColumn(eofToken.getColumn())
+        .setValueAndOriginalValue("")
+        .build());
+    }
+    result.add(eofToken);
+    return result;
+  }
+
+  private static void addCommonChannels(Lexer.Builder builder, LexerState lexerState, boolean handwritten) {
+    if (handwritten) {
+      builder
+        .withChannel(new NewLineChannel(lexerState))
+        .withChannel(new IndentationChannel(lexerState))
+        .withChannel(new PythonTokenChannel())
+        .withChannel(new UnknownCharacterChannel());
+      return;
+    }
     builder
         .withChannel(new NewLineChannel(lexerState))
 
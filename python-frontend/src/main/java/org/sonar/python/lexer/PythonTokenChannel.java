@@ -0,0 +1,395 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Single channel reading comments, strings, numbers, identifiers, keywords and punctuators.
+ * The kind of token is selected from its first character and the token is read character by character, where
+ * {@link PythonLexer} otherwise tries a chain of channels, most of them based on regular expressions.
+ * Both produce the same tokens: quirks of the regular expressions (e.g. "1._5" is a number) are reproduced on purpose.
+ */
+public class PythonTokenChannel extends Channel<Lexer> {
+
+  private static final char EOF = (char) -1;
+  private static final String STRING_PREFIX_CHARS = "rRfFuUbB";
+
+  private final StringLiteralsChannel stringLiteralsChannel = new StringLiteralsChannel();
+  private final Map<String, TokenType> keywords = new HashMap<>();
+  private final TokenType[][] punctuatorsByFirstChar = new TokenType[128][];
+  private final StringBuilder sb = new StringBuilder();
+
+  public PythonTokenChannel() {
+    for (PythonKeyword keyword : PythonKeyword.values()) {
+      keywords.put(keyword.getValue(), keyword);
+    }
+    Map<Character, List<TokenType>> punctuators = new HashMap<>();
+    for (PythonPunctuator punctuator : PythonPunctuator.values()) {
+      punctuators.computeIfAbsent(punctuator.getValue().charAt(0), c -> new ArrayList<>()).add(punctuator);
+    }
+    punctuators.forEach((firstChar, types) -> {
+      types.sort(Comparator.comparing((TokenType type) -> type.getValue().length()).reversed());
+      punctuatorsByFirstChar[firstChar] = types.toArray(new TokenType[0]);
+    });
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    char ch = code.charAt(0);
+    if (isBlank(ch)) {
+      while (isBlank(code.charAt(0))) {
+        code.pop();
+      }
+      return true;
+    }
+    if (ch == '#') {
+      int length = 1;
+      while (code.charAt(length) != '\n' && code.charAt(length) != '\r' && code.charAt(length) != EOF) {
+        length++;
+      }
+      output.addTrivia(Trivia.createComment(token(code, output, GenericTokenType.COMMENT, length)));
+      return true;
+    }
+    if ((ch == '\'' || ch == '"' || STRING_PREFIX_CHARS.indexOf(ch) >= 0) && consumeString(code, output)) {
+      return true;
+    }
+    if (isDigit(ch) || ch == '.') {
+      int length = numberLength(code);
+      if (length > 0) {
+        output.addToken(token(code, output, PythonTokenType.NUMBER, length));
+        return true;
+      }
+    }
+    int length = identifierLength(code);
+    if (length > 0) {
+      int line = code.getLinePosition();
+      int column = code.getColumnPosition();
+      String value = pop(code, length);
+      output.addToken(token(output, keywords.getOrDefault(value, GenericTokenType.IDENTIFIER), value, line, column));
+      return true;
+    }
+    return consumePunctuator(code, output, ch);
+  }
+
+  private boolean consumeString(CodeReader code, Lexer output) {
+    if (stringLiteralsChannel.consume(code, output)) {
+      return true;
+    }
+    // the string literals channel rejects unterminated strings: a short string with a bytes or f-string prefix can still be read
+    // from the start of an unterminated long string, e.g. b'' in b'''abc
+    int length = prefixedShortStringLength(code);
+    if (length > 0) {
+      output.addToken(token(code, output, PythonTokenType.STRING, length));
+      return true;
+    }
+    return false;
+  }
+
+  private static int prefixedShortStringLength(CodeReader code) {
+    char first = code.charAt(0);
+    char second = code.charAt(1);
+    boolean bytesPrefix = first == 'b' || first == 'B' || first == 'r' || first == 'R';
+    boolean bytesLongPrefix = ((first == 'b' || first == 'B') && (second == 'r' || second == 'R')) || ((first == 'r' || first == 'R') && (second == 'b' || second == 'B'));
+    boolean fStringPrefix = first == 'f' || first == 'F' || first == 'r' || first == 'R';
+    boolean fStringLongPrefix = ((first == 'f' || first == 'F') && (second == 'r' || second == 'R')) || ((first == 'r' || first == 'R') && (second == 'f' || second == 'F'));
+    for (boolean[] prefix : new boolean[][] {{bytesPrefix, bytesLongPrefix}, {fStringPrefix, fStringLongPrefix}}) {
+      for (char quote : new char[] {'\'', '"'}) {
+        int length = prefix[1] ? shortStringLength(code, 2, quote) : -1;
+        if (length < 0 && prefix[0]) {
+          length = shortStringLength(code, 1, quote);
+        }
+        if (length > 0) {
+          return length;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static int shortStringLength(CodeReader code, int start, char quote) {
+    if (code.charAt(start) != quote) {
+      return -1;
+    }
+    int index = start + 1;
+    while (code.charAt(index) != quote) {
+      char ch = code.charAt(index);
+      if (ch == EOF || (ch == '\\' && code.charAt(index + 1) == EOF)) {
+        return -1;
+      }
+      index += ch == '\\' ? 2 : 1;
+    }
+    return index + 1;
+  }
+
+  /**
+   * Length of the number at the current position, following the order in which the former number channels were tried:
+   * floating point and imaginary numbers first, then integers.
+   */
+  private static int numberLength(CodeReader code) {
+    int digitsEnd = digitsEnd(code, 0);
+    if (digitsEnd > 0) {
+      if (code.charAt(digitsEnd) == '.') {
+        // 1.5, 1., 1.5e3, 1.5j
+        return imaginaryEnd(code, exponentEnd(code, optionalDigitsEnd(code, digitsEnd + 1)));
+      }
+      int exponentEnd = exponentEnd(code, digitsEnd);
+      if (exponentEnd > digitsEnd) {
+        // 1e3, 1e3j
+        return imaginaryEnd(code, exponentEnd);
+      }
+      if (isImaginarySuffix(code.charAt(digitsEnd))) {
+        // 1j
+        return digitsEnd + 1;
+      }
+    } else if (code.charAt(0) == '.') {
+      // .5, .5e3, .5j
+      int fractionEnd = digitsEnd(code, 1);
+      return fractionEnd < 0 ? -1 : imaginaryEnd(code, exponentEnd(code, fractionEnd));
+    }
+    return integerLength(code);
+  }
+
+  private static int integerLength(CodeReader code) {
+    char first = code.charAt(0);
+    if (first != '0') {
+      return isDigit(first) ? longSuffixEnd(code, optionalDigitsEnd(code, 1)) : -1;
+    }
+    char second = code.charAt(1);
+    int prefixEnd = (second == 'o' || second == 'O') ? 2 : 1;
+    int end = repeatedEnd(code, prefixEnd, PythonTokenChannel::isOctalDigit);
+    if (end > prefixEnd) {
+      return longSuffixEnd(code, end);
+    }
+    if (second == 'x' || second == 'X') {
+      end = repeatedEnd(code, 2, PythonTokenChannel::isHexDigit);
+    } else if (second == 'b' || second == 'B') {
+      end = repeatedEnd(code, 2, ch -> ch == '0' || ch == '1');
+    }
+    if (end > 2) {
+      return longSuffixEnd(code, end);
+    }
+    // zero, possibly followed by other zeros
+    return longSuffixEnd(code, repeatedEnd(code, 1, ch -> ch == '0'));
+  }
+
+  /**
+   * End of a sequence of digits starting at the given index, where single underscores can separate digits, or -1.
+   */
+  private static int digitsEnd(CodeReader code, int start) {
+    return isDigit(code.charAt(start)) ? optionalDigitsEnd(code, start + 1) : -1;
+  }
+
+  private static int optionalDigitsEnd(CodeReader code, int start) {
+    return repeatedEnd(code, start, PythonTokenChannel::isDigit);
+  }
+
+  private static int repeatedEnd(CodeReader code, int start, CharPredicate isDigit) {
+    int index = start;
+    while (true) {
+      if (isDigit.test(code.charAt(index))) {
+        index++;
+      } else if (code.charAt(index) == '_' && isDigit.test(code.charAt(index + 1))) {
+        index += 2;
+      } else {
+        return index;
+      }
+    }
+  }
+
+  private static int exponentEnd(CodeReader code, int start) {
+    char ch = code.charAt(start);
+    if (ch != 'e' && ch != 'E') {
+      return start;
+    }
+    int index = start + 1;
+    if (code.charAt(index) == '+' || code.charAt(index) == '-') {
+      index++;
+    }
+    if (!isDigitOrUnderscore(code.charAt(index))) {
+      return start;
+    }
+    while (isDigitOrUnderscore(code.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static int imaginaryEnd(CodeReader code, int start) {
+    return isImaginarySuffix(code.charAt(start)) ? (start + 1) : start;
+  }
+
+  private static int longSuffixEnd(CodeReader code, int start) {
+    char ch = code.charAt(start);
+    return (ch == 'l' || ch == 'L') ? (start + 1) : start;
+  }
+
+  private static int identifierLength(CodeReader code) {
+    int index = 0;
+    int codePoint = codePointAt(code, index);
+    if (!isIdentifierStart(codePoint)) {
+      return -1;
+    }
+    do {
+      index += Character.charCount(codePoint);
+      codePoint = codePointAt(code, index);
+    } while (isIdentifierPart(codePoint));
+    return index;
+  }
+
+  private static int codePointAt(CodeReader code, int index) {
+    char ch = code.charAt(index);
+    if (Character.isHighSurrogate(ch)) {
+      char next = code.charAt(index + 1);
+      if (Character.isLowSurrogate(next)) {
+        return Character.toCodePoint(ch, next);
+      }
+    }
+    return ch;
+  }
+
+  private static boolean isIdentifierStart(int codePoint) {
+    if (codePoint == '_') {
+      return true;
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.UPPERCASE_LETTER:
+      case Character.LOWERCASE_LETTER:
+      case Character.TITLECASE_LETTER:
+      case Character.MODIFIER_LETTER:
+      case Character.OTHER_LETTER:
+      case Character.LETTER_NUMBER:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isIdentifierPart(int codePoint) {
+    if (isIdentifierStart(codePoint)) {
+      return true;
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.NON_SPACING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+      case Character.DECIMAL_DIGIT_NUMBER:
+      case Character.CONNECTOR_PUNCTUATION:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private boolean consumePunctuator(CodeReader code, Lexer output, char ch) {
+    TokenType[] candidates = ch < punctuatorsByFirstChar.length ? punctuatorsByFirstChar[ch] : null;
+    if (candidates == null) {
+      return false;
+    }
+    for (TokenType punctuator : candidates) {
+      String value = punctuator.getValue();
+      if (startsWith(code, value)) {
+        output.addToken(token(output, punctuator, value, code.getLinePosition(), code.getColumnPosition()));
+        for (int i = 0; i < value.length(); i++) {
+          code.pop();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(CodeReader code, String value) {
+    for (int i = 1; i < value.length(); i++) {
+      if (code.charAt(i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Token token(CodeReader code, Lexer output, TokenType type, int length) {
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    return token(output, type, pop(code, length), line, column);
+  }
+
+  private static Token token(Lexer output, TokenType type, String value, int line, int column) {
+    return Token.builder()
+      .setType(type)
+      .setValueAndOriginalValue(value)
+      .setURI(output.getURI())
+      .setLine(line)
+      .setColumn(column)
+      .build();
+  }
+
+  private String pop(CodeReader code, int length) {
+    for (int i = 0; i < length; i++) {
+      sb.append((char) code.pop());
+    }
+    String value = sb.toString();
+    sb.setLength(0);
+    return value;
+  }
+
+  private static boolean isBlank(char ch) {
+    // same characters as the \s regular expression, except line terminators which are handled by NewLineChannel
+    return ch == ' ' || ch == '\t' || ch == '\u000B' || ch == '\f';
+  }
+
+  private static boolean isDigit(char ch) {
+    return ch >= '0' && ch <= '9';
+  }
+
+  private static boolean isDigitOrUnderscore(char ch) {
+    return isDigit(ch) || ch == '_';
+  }
+
+  private static boolean isOctalDigit(char ch) {
+    return ch >= '0' && ch <= '7';
+  }
+
+  private static boolean isHexDigit(char ch) {
+    return isDigit(ch) || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+  }
+
+  private static boolean isImaginarySuffix(char ch) {
+    return ch == 'j' || ch == 'J';
+  }
+
+  @FunctionalInterface
+  private interface CharPredicate {
+    boolean test(char ch);
+  }
+}
@@ -38,7 +38,6 @@ import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Trivia;
 import org.sonar.python.SubscriptionVisitor;
-import org.sonar.python.TokenLocation;
 import org.sonar.python.api.PythonTokenType;
 
 /**
@@ -103,8 +102,8 @@ public class FileLinesVisitor extends PythonSubscriptionCheck {
   private void handleDocString(@Nullable StringLiteral docstring) {
     if (docstring != null) {
       for (Tree stringElement : docstring.children()) {
-        TokenLocation location = new TokenLocation(stringElement.firstToken());
-        for (int line = location.startLine(); line <= location.endLine(); line++) {
+        Token token = stringElement.firstToken();
+        for (int line = token.line(); line <= token.endLine(); line++) {
           linesOfDocstring.add(line);
         }
       }
@@ -122,9 +121,7 @@ public class FileLinesVisitor extends PythonSubscriptionCheck {
 
     if (!token.type().equals(PythonTokenType.DEDENT) && !token.type().equals(PythonTokenType.INDENT) && !token.type().equals(PythonTokenType.NEWLINE)) {
       // Handle all the lines of the token
-      String[] tokenLines = token.value().split("\n", -1);
-      int tokenLine = token.line();
-      for (int line = tokenLine; line < tokenLine + tokenLines.length; line++) {
+      for (int line = token.line(); line <= token.endLine(); line++) {
         linesOfCode.add(line);
       }
     }
@@ -20,42 +20,83 @@
 package org.sonar.python.metrics;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
-import org.sonar.plugins.python.api.tree.FileInput;
-import org.sonar.plugins.python.api.tree.FunctionDef;
-import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.python.api.SubscriptionContext;
+import org.sonar.plugins.python.api.tree.IfStatement;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.Tree.Kind;
+import org.sonar.python.SubscriptionVisitor;
 
-public class FileMetrics {
+/**
+ * Collects the file metrics while the tree is traversed by {@link SubscriptionVisitor}, so that they can be computed
+ * in the same traversal as the rule checks.
+ * Cyclomatic complexity increments are attributed to the file and to their innermost enclosing function, which gives the
+ * complexity of every function without walking function bodies again.
+ */
+public class FileMetrics extends PythonSubscriptionCheck {
+
+  private static final Kind[] COMPLEXITY_KINDS = {Kind.FOR_STMT, Kind.WHILE_STMT, Kind.CONDITIONAL_EXPR, Kind.AND, Kind.OR, Kind.COMP_IF};
 
-  private int numberOfStatements;
-  private int numberOfClasses;
-  private final ComplexityVisitor complexityVisitor = new ComplexityVisitor();
+  private int complexity = 0;
   private final CognitiveComplexityVisitor cognitiveComplexityVisitor = new CognitiveComplexityVisitor(null);
-  private final FileLinesVisitor fileLinesVisitor;
-  private List<Integer> functionComplexities = new ArrayList<>();
+  private final FileLinesVisitor fileLinesVisitor = new FileLinesVisitor();
+  private final List<Integer> functionComplexities = new ArrayList<>();
+  private final Map<Tree, Integer> functionIndexes = new IdentityHashMap<>();
+
+  public FileMetrics() {
+    // metrics are collected when this instance is given to SubscriptionVisitor
+  }
 
   public FileMetrics(PythonVisitorContext context) {
-    FileInput fileInput = context.rootTree();
-    fileLinesVisitor = new FileLinesVisitor();
-    fileLinesVisitor.scanFile(context);
-    numberOfStatements = fileLinesVisitor.getStatements();
-    numberOfClasses = fileLinesVisitor.getClassDefs();
-    fileInput.accept(complexityVisitor);
-    fileInput.accept(cognitiveComplexityVisitor);
-    fileInput.accept(new FunctionVisitor());
+    scanFile(context);
+  }
+
+  @Override
+  public void scanFile(PythonVisitorContext visitorContext) {
+    SubscriptionVisitor.analyze(Collections.singleton(this), visitorContext);
   }
 
-  private class FunctionVisitor extends BaseTreeVisitor {
-    @Override
-    public void visitFunctionDef(FunctionDef pyFunctionDefTree) {
-      functionComplexities.add(ComplexityVisitor.complexity(pyFunctionDefTree));
-      super.visitFunctionDef(pyFunctionDefTree);
+  @Override
+  public void initialize(Context context) {
+    fileLinesVisitor.initialize(context);
+    // cognitive complexity depends on the nesting of the enclosing structures, which is tracked by its own tree visitor
+    context.registerSyntaxNodeConsumer(Kind.FILE_INPUT, ctx -> ctx.syntaxNode().accept(cognitiveComplexityVisitor));
+    context.registerSyntaxNodeConsumer(Kind.FUNCDEF, this::visitFunctionDef);
+    context.registerSyntaxNodeConsumer(Kind.IF_STMT, ctx -> {
+      if (!((IfStatement) ctx.syntaxNode()).isElif()) {
+        increment(ctx.syntaxNode());
+      }
+    });
+    for (Kind kind : COMPLEXITY_KINDS) {
+      context.registerSyntaxNodeConsumer(kind, ctx -> increment(ctx.syntaxNode()));
+    }
+  }
+
+  private void visitFunctionDef(SubscriptionContext ctx) {
+    functionIndexes.put(ctx.syntaxNode(), functionComplexities.size());
+    functionComplexities.add(1);
+    complexity++;
+  }
+
+  private void increment(Tree tree) {
+    complexity++;
+    Tree enclosingFunction = tree.parent();
+    while (enclosingFunction != null && !enclosingFunction.is(Kind.FUNCDEF)) {
+      enclosingFunction = enclosingFunction.parent();
+    }
+    if (enclosingFunction != null) {
+      int index = functionIndexes.get(enclosingFunction);
+      functionComplexities.set(index, functionComplexities.get(index) + 1);
     }
   }
 
   public int numberOfStatements() {
-    return numberOfStatements;
+    return fileLinesVisitor.getStatements();
   }
 
   public int numberOfFunctions() {
@@ -63,11 +104,11 @@ public class FileMetrics {
   }
 
   public int numberOfClasses() {
-    return numberOfClasses;
+    return fileLinesVisitor.getClassDefs();
   }
 
   public int complexity() {
-    return complexityVisitor.getComplexity();
+    return complexity;
   }
 
   public int cognitiveComplexity() {
@@ -26,10 +26,8 @@ import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
-import java.util.ArrayList;
 import java.util.List;
 import org.sonar.python.api.PythonGrammar;
-import org.sonar.python.api.PythonTokenType;
 import org.sonar.python.lexer.LexerState;
 import org.sonar.python.lexer.PythonLexer;
 
@@ -38,17 +36,31 @@ public final class PythonParser {
   private final Parser<Grammar> sslrParser;
 
   public static PythonParser create() {
-    return new PythonParser();
+    return create(false);
   }
 
-  private PythonParser() {
-    sslrParser = new SslrPythonParser();
+  /**
+   * @param handwrittenLexer see {@link PythonLexer#create(LexerState, boolean)}
+   */
+  public static PythonParser create(boolean handwrittenLexer) {
+    return new PythonParser(handwrittenLexer);
+  }
+
+  private PythonParser(boolean handwrittenLexer) {
+    sslrParser = new SslrPythonParser(handwrittenLexer);
   }
 
   public AstNode parse(String source) {
     return sslrParser.parse(source);
   }
 
+  /**
+   * Parses tokens lexed by {@link PythonLexer}, ended by the DEDENT tokens of {@link PythonLexer#withClosedIndentation}.
+   */
+  public AstNode parse(List<Token> tokens) {
+    return sslrParser.parse(tokens);
+  }
+
   public void setRootRule(Rule rule) {
     sslrParser.setRootRule(rule);
   }
@@ -69,11 +81,11 @@ public final class PythonParser {
     private final LexerState lexerState;
     private final Lexer lexer;
 
-    private SslrPythonParser() {
+    private SslrPythonParser(boolean handwrittenLexer) {
       super(PythonGrammar.create());
       super.setRootRule(super.getGrammar().getRootRule());
       this.lexerState = new LexerState();
-      this.lexer = PythonLexer.create(lexerState);
+      this.lexer = PythonLexer.create(lexerState, handwrittenLexer);
     }
 
     @Override
@@ -84,23 +96,7 @@ public final class PythonParser {
     }
 
     private List<Token> tokens() {
-      List<Token> tokens = lexer.getTokens();
-      if (lexerState.indentationStack.peek() > 0) {
-        Token eofToken = tokens.get(tokens.size() - 1);
-        tokens = new ArrayList<>(tokens.subList(0, tokens.size() - 1));
-        while (lexerState.indentationStack.peek() > 0) {
-          lexerState.indentationStack.pop();
-          tokens.add(Token.builder()
-            .setURI(eofToken.getURI())
-            .setType(PythonTokenType.DEDENT)
-            .setLine(eofToken.getLine())
-            .setColumn(eofToken.getColumn())
-            .setValueAndOriginalValue("")
-            .build());
-        }
-        tokens.add(eofToken);
-      }
-      return tokens;
+      return PythonLexer.withClosedIndentation(lexer.getTokens(), lexerState);
     }
   }
 
@@ -0,0 +1,69 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import java.util.List;
+import org.sonar.python.lexer.LexerState;
+import org.sonar.python.lexer.PythonLexer;
+
+/**
+ * Parsers, and a lexer, shared by all the callers running on a same thread.
+ * <p>
+ * Building a {@link PythonParser} or a {@link FStringParser}, and notably its grammar, costs more than parsing a stub or a comment:
+ * they are built once per thread instead of once per parsed source. A returned {@link AstNode} stays valid after the next call,
+ * as each call lexes its source into new tokens.
+ */
+public final class ThreadLocalParsers {
+
+  private static final ThreadLocal<PythonParser> PYTHON_PARSER = ThreadLocal.withInitial(PythonParser::create);
+  private static final ThreadLocal<FStringParser> F_STRING_PARSER = ThreadLocal.withInitial(FStringParser::new);
+  private static final ThreadLocal<LexerState> LEXER_STATE = ThreadLocal.withInitial(LexerState::new);
+  private static final ThreadLocal<Lexer> LEXER = ThreadLocal.withInitial(() -> PythonLexer.create(LEXER_STATE.get()));
+
+  private ThreadLocalParsers() {
+  }
+
+  public static AstNode parse(String source) {
+    return PYTHON_PARSER.get().parse(source);
+  }
+
+  /**
+   * Tokens of the given source, as they would be parsed by {@link #parse(String)}.
+   */
+  public static List<Token> lex(String source) {
+    LexerState lexerState = LEXER_STATE.get();
+    lexerState.reset();
+    return PythonLexer.withClosedIndentation(LEXER.get().lex(source), lexerState);
+  }
+
+  /**
+   * Parses tokens returned by {@link #lex(String)}, so that a source which is first looked at as tokens is not lexed twice.
+   */
+  public static AstNode parse(List<Token> tokens) {
+    return PYTHON_PARSER.get().parse(tokens);
+  }
+
+  public static List<AstNode> fStringExpressions(Token fStringToken) {
+    return F_STRING_PARSER.get().fStringExpressions(fStringToken);
+  }
+}
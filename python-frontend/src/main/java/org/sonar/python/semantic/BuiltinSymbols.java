@@ -23,6 +23,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class BuiltinSymbols {
 
@@ -328,14 +330,13 @@ public class BuiltinSymbols {
     "BytesWarning"
   )));
 
+  // declared after the sets it is made of, which must be initialized first
+  private static final Set<String> ALL = Collections.unmodifiableSet(Stream.of(
+    CONSTANTS, FUNCTIONS, FUNCTIONS_PYTHON2, EXCEPTIONS, EXCEPTIONS_PYTHON2, MODULE_ATTRIBUTES)
+    .flatMap(Set::stream)
+    .collect(Collectors.toSet()));
+
   public static Set<String> all() {
-    Set<String> all = new HashSet<>();
-    all.addAll(BuiltinSymbols.CONSTANTS);
-    all.addAll(BuiltinSymbols.FUNCTIONS);
-    all.addAll(BuiltinSymbols.FUNCTIONS_PYTHON2);
-    all.addAll(BuiltinSymbols.EXCEPTIONS);
-    all.addAll(BuiltinSymbols.EXCEPTIONS_PYTHON2);
-    all.addAll(BuiltinSymbols.MODULE_ATTRIBUTES);
-    return all;
+    return ALL;
   }
 }
@@ -25,12 +25,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -40,6 +42,7 @@ import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
 import org.sonar.plugins.python.api.symbols.ClassSymbol;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.tree.ClassDef;
+import org.sonar.plugins.python.api.types.InferredType;
 
 import static org.sonar.python.semantic.SymbolUtils.pathOf;
 import static org.sonar.python.tree.TreeUtils.locationInFile;
@@ -47,11 +50,14 @@ import static org.sonar.python.tree.TreeUtils.locationInFile;
 public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
   private final List<Symbol> superClasses = new ArrayList<>();
-  private Set<Symbol> allSuperClasses = null;
-  private Set<Symbol> allSuperClassesIncludingAmbiguousSymbols = null;
+  // lazily computed caches: class symbols from TypeShed are shared between analysis threads
+  private volatile Set<Symbol> allSuperClasses = null;
+  private volatile Set<Symbol> allSuperClassesIncludingAmbiguousSymbols = null;
   private boolean hasSuperClassWithoutSymbol = false;
   private final Set<Symbol> members = new HashSet<>();
-  private Map<String, Symbol> membersByName = null;
+  private volatile Map<String, Symbol> membersByName = null;
+  // the runtime type of the instances of this class is only created once, see InferredTypes#runtimeType(Symbol)
+  private volatile InferredType runtimeType = null;
   private boolean hasAlreadyReadSuperClasses = false;
   private boolean hasAlreadyReadMembers = false;
   private boolean hasDecorators = false;
@@ -88,12 +94,23 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
   @Override
   ClassSymbolImpl copyWithoutUsages() {
-    ClassSymbolImpl copiedClassSymbol = new ClassSymbolImpl(name(), fullyQualifiedName(), definitionLocation(), hasDecorators, hasMetaClass, metaclassFQN);
+    return copyWithoutUsages(new IdentityHashMap<>());
+  }
+
+  /**
+   * Copies this class and its super classes, reusing the copies of {@code copiedClasses}: a class which is the super class of
+   * several copied classes is only copied once.
+   */
+  ClassSymbolImpl copyWithoutUsages(Map<ClassSymbolImpl, ClassSymbolImpl> copiedClasses) {
+    ClassSymbolImpl copiedClassSymbol = copiedClasses.get(this);
+    if (copiedClassSymbol != null) {
+      return copiedClassSymbol;
+    }
+    copiedClassSymbol = new ClassSymbolImpl(name(), fullyQualifiedName(), definitionLocation(), hasDecorators, hasMetaClass, metaclassFQN);
+    copiedClasses.put(this, copiedClassSymbol);
     for (Symbol superClass : superClasses()) {
-      if (superClass == this) {
-        copiedClassSymbol.superClasses.add(copiedClassSymbol);
-      } else if (superClass.kind() == Symbol.Kind.CLASS) {
-        copiedClassSymbol.superClasses.add(((ClassSymbolImpl) superClass).copyWithoutUsages());
+      if (superClass.kind() == Symbol.Kind.CLASS) {
+        copiedClassSymbol.superClasses.add(((ClassSymbolImpl) superClass).copyWithoutUsages(copiedClasses));
       } else if (superClass.is(Kind.AMBIGUOUS)) {
         copiedClassSymbol.superClasses.add(((AmbiguousSymbolImpl) superClass).copyWithoutUsages());
       } else {
@@ -227,10 +244,12 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
   }
 
   private Map<String, Symbol> membersByName() {
-    if (membersByName == null) {
-      membersByName = declaredMembers().stream().collect(Collectors.toMap(Symbol::name, m -> m, (s1, s2) -> s1));
+    Map<String, Symbol> result = membersByName;
+    if (result == null) {
+      result = declaredMembers().stream().collect(Collectors.toMap(Symbol::name, m -> m, (s1, s2) -> s1));
+      membersByName = result;
     }
-    return membersByName;
+    return result;
   }
 
   public void addMembers(Collection<Symbol> members) {
@@ -243,6 +262,18 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
       .forEach(m -> ((FunctionSymbolImpl) m).setOwner(this));
   }
 
+  /**
+   * Returns the runtime type of the instances of this class, created by the given factory on the first call.
+   */
+  public InferredType runtimeType(Function<ClassSymbol, InferredType> factory) {
+    InferredType result = runtimeType;
+    if (result == null) {
+      result = factory.apply(this);
+      runtimeType = result;
+    }
+    return result;
+  }
+
   public void setHasSuperClassWithoutSymbol() {
     this.hasSuperClassWithoutSymbol = true;
   }
@@ -262,17 +293,21 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
   private Set<Symbol> allSuperClasses(boolean includeAmbiguousSymbols) {
     if (!includeAmbiguousSymbols) {
-      if (allSuperClasses == null) {
-        allSuperClasses = new LinkedHashSet<>();
-        exploreSuperClasses(this, allSuperClasses, false);
+      Set<Symbol> result = allSuperClasses;
+      if (result == null) {
+        result = new LinkedHashSet<>();
+        exploreSuperClasses(this, result, false);
+        allSuperClasses = result;
       }
-      return allSuperClasses;
+      return result;
     }
-    if (allSuperClassesIncludingAmbiguousSymbols == null) {
-      allSuperClassesIncludingAmbiguousSymbols = new LinkedHashSet<>();
-      exploreSuperClasses(this, allSuperClassesIncludingAmbiguousSymbols, true);
+    Set<Symbol> result = allSuperClassesIncludingAmbiguousSymbols;
+    if (result == null) {
+      result = new LinkedHashSet<>();
+      exploreSuperClasses(this, result, true);
+      allSuperClassesIncludingAmbiguousSymbols = result;
     }
-    return allSuperClassesIncludingAmbiguousSymbols;
+    return result;
   }
 
   private static void exploreSuperClasses(Symbol symbol, Set<Symbol> set, boolean includeAmbiguousSymbols) {
@@ -98,6 +98,21 @@ public class FunctionSymbolImpl extends SymbolImpl implements FunctionSymbol {
     isStub = functionSymbol.isStub();
   }
 
+  public FunctionSymbolImpl(String name, @Nullable String fullyQualifiedName, List<String> decorators, @Nullable LocationInFile definitionLocation,
+                            boolean hasVariadicParameter, boolean isInstanceMethod, boolean isAsynchronous, boolean hasDecorators,
+                            @Nullable String annotatedReturnTypeName, boolean isStub) {
+    super(name, fullyQualifiedName);
+    setKind(Kind.FUNCTION);
+    this.decorators = decorators;
+    this.functionDefinitionLocation = definitionLocation;
+    this.hasVariadicParameter = hasVariadicParameter;
+    this.isInstanceMethod = isInstanceMethod;
+    this.isAsynchronous = isAsynchronous;
+    this.hasDecorators = hasDecorators;
+    this.annotatedReturnTypeName = annotatedReturnTypeName;
+    this.isStub = isStub;
+  }
+
   @Override
   FunctionSymbolImpl copyWithoutUsages() {
     FunctionSymbolImpl copy = new FunctionSymbolImpl(name(), this);
@@ -199,6 +214,11 @@ public class FunctionSymbolImpl extends SymbolImpl implements FunctionSymbol {
     return parameters;
   }
 
+  public void addParameter(@Nullable String name, InferredType declaredType, boolean hasDefaultValue, boolean isVariadic,
+                           boolean isKeywordOnly, boolean isPositionalOnly, @Nullable LocationInFile location) {
+    parameters.add(new ParameterImpl(name, declaredType, hasDefaultValue, isVariadic, isKeywordOnly, isPositionalOnly, location));
+  }
+
   @Override
   public boolean isStub() {
     return isStub;
@@ -270,12 +290,17 @@ public class FunctionSymbolImpl extends SymbolImpl implements FunctionSymbol {
 
     ParameterImpl(@Nullable String name, InferredType declaredType, boolean hasDefaultValue,
                   boolean isVariadic, ParameterState parameterState, @Nullable LocationInFile location) {
+      this(name, declaredType, hasDefaultValue, isVariadic, parameterState.keywordOnly, parameterState.positionalOnly, location);
+    }
+
+    ParameterImpl(@Nullable String name, InferredType declaredType, boolean hasDefaultValue,
+                  boolean isVariadic, boolean isKeywordOnly, boolean isPositionalOnly, @Nullable LocationInFile location) {
       this.name = name;
       this.declaredType = declaredType;
       this.hasDefaultValue = hasDefaultValue;
       this.isVariadic = isVariadic;
-      this.isKeywordOnly = parameterState.keywordOnly;
-      this.isPositionalOnly = parameterState.positionalOnly;
+      this.isKeywordOnly = isKeywordOnly;
+      this.isPositionalOnly = isPositionalOnly;
       this.location = location;
     }
 
@@ -0,0 +1,260 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.semantic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.plugins.python.api.tree.AliasedName;
+import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.python.api.tree.DottedName;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.ImportFrom;
+import org.sonar.plugins.python.api.tree.ImportName;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Token;
+
+/**
+ * Graph of the imports between the modules of a project.
+ * <p>
+ * Its strongly connected components, i.e. the groups of modules which import each other directly or not, are sorted so that the
+ * modules imported by a component belong to the components before it: the symbols of a module can be computed once the ones of
+ * the modules it imports are known, except for the other modules of its component.
+ */
+public class ModuleDependencyGraph {
+
+  private final Map<String, Set<String>> importedNamesByModule = new LinkedHashMap<>();
+
+  /**
+   * Only the imported names which are modules of the graph are dependencies: the others are external or not modules at all.
+   */
+  public void addModule(String fullyQualifiedModuleName, Set<String> importedNames) {
+    importedNamesByModule.computeIfAbsent(fullyQualifiedModuleName, name -> new HashSet<>()).addAll(importedNames);
+  }
+
+  public Set<String> modules() {
+    return Collections.unmodifiableSet(importedNamesByModule.keySet());
+  }
+
+  /**
+   * Modules of the graph imported by the given module, sorted by name.
+   */
+  public Set<String> dependencies(String fullyQualifiedModuleName) {
+    return importedNamesByModule.getOrDefault(fullyQualifiedModuleName, Collections.emptySet()).stream()
+      .filter(name -> !name.equals(fullyQualifiedModuleName) && importedNamesByModule.containsKey(name))
+      .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  /**
+   * Strongly connected components, each component being after the ones of the modules it imports.
+   */
+  public List<List<String>> stronglyConnectedComponents() {
+    ComponentsBuilder builder = new ComponentsBuilder();
+    for (String module : importedNamesByModule.keySet()) {
+      if (!builder.indexes.containsKey(module)) {
+        builder.visit(module);
+      }
+    }
+    return builder.components;
+  }
+
+  /**
+   * Modules grouped by batches: the modules imported by a module of a batch are in the previous batches, or in the same batch when
+   * they belong to the same strongly connected component. The modules of a batch can therefore be processed concurrently.
+   */
+  public List<List<String>> batches() {
+    Map<String, Integer> batchByModule = new HashMap<>();
+    List<List<String>> batches = new ArrayList<>();
+    for (List<String> component : stronglyConnectedComponents()) {
+      int batch = 0;
+      for (String module : component) {
+        for (String dependency : dependencies(module)) {
+          Integer dependencyBatch = batchByModule.get(dependency);
+          if (dependencyBatch != null) {
+            batch = Math.max(batch, dependencyBatch + 1);
+          }
+        }
+      }
+      if (batch == batches.size()) {
+        batches.add(new ArrayList<>());
+      }
+      for (String module : component) {
+        batchByModule.put(module, batch);
+        batches.get(batch).add(module);
+      }
+    }
+    return batches;
+  }
+
+  /**
+   * Names of the modules which may be imported by a module: "import a.b" imports "a" and "a.b", "from a import b" imports "a"
+   * and "a.b" when "b" is a module. Relative imports are resolved like in {@link SymbolTableBuilder}.
+   */
+  public static Set<String> importedModuleNames(FileInput fileInput, String packageName, PythonFile pythonFile) {
+    String fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, pythonFile.fileName());
+    List<String> filePath = new ArrayList<>(Arrays.asList(fullyQualifiedModuleName.split("\\.")));
+    if (SymbolUtils.getModuleFileName(pythonFile.fileName()).equals("__init__")) {
+      filePath.add("");
+    }
+    ImportsVisitor visitor = new ImportsVisitor(filePath);
+    fileInput.accept(visitor);
+    return visitor.importedNames;
+  }
+
+  private static class ImportsVisitor extends BaseTreeVisitor {
+
+    private final List<String> filePath;
+    private final Set<String> importedNames = new HashSet<>();
+
+    private ImportsVisitor(List<String> filePath) {
+      this.filePath = filePath;
+    }
+
+    @Override
+    public void visitImportName(ImportName importName) {
+      importName.modules().forEach(module -> addWithPrefixes(dottedName(module.dottedName())));
+      super.visitImportName(importName);
+    }
+
+    @Override
+    public void visitImportFrom(ImportFrom importFrom) {
+      DottedName moduleTree = importFrom.module();
+      String moduleName = moduleTree != null ? dottedName(moduleTree) : null;
+      List<Token> dottedPrefix = importFrom.dottedPrefixForModule();
+      if (!dottedPrefix.isEmpty()) {
+        moduleName = resolveRelativeImport(dottedPrefix, moduleName);
+      }
+      if (moduleName != null) {
+        addWithPrefixes(moduleName);
+        for (AliasedName importedName : importFrom.importedNames()) {
+          String name = dottedName(importedName.dottedName());
+          importedNames.add(moduleName.isEmpty() ? name : (moduleName + "." + name));
+        }
+      }
+      super.visitImportFrom(importFrom);
+    }
+
+    private void addWithPrefixes(String moduleName) {
+      int end = moduleName.indexOf('.');
+      while (end >= 0) {
+        importedNames.add(moduleName.substring(0, end));
+        end = moduleName.indexOf('.', end + 1);
+      }
+      importedNames.add(moduleName);
+    }
+
+    @Nullable
+    private String resolveRelativeImport(List<Token> dottedPrefix, @Nullable String moduleName) {
+      if (dottedPrefix.size() > filePath.size()) {
+        return null;
+      }
+      String resolvedPackageName = String.join(".", filePath.subList(0, filePath.size() - dottedPrefix.size()));
+      if (moduleName == null) {
+        return resolvedPackageName;
+      }
+      return resolvedPackageName.isEmpty() ? moduleName : (resolvedPackageName + "." + moduleName);
+    }
+
+    private static String dottedName(DottedName dottedName) {
+      return dottedName.names().stream().map(Name::name).collect(Collectors.joining("."));
+    }
+  }
+
+  /**
+   * Tarjan's algorithm, without recursion as import chains can be longer than what the call stack allows.
+   */
+  private class ComponentsBuilder {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Map<String, Integer> lowLinks = new HashMap<>();
+    private final Deque<String> stack = new ArrayDeque<>();
+    private final Set<String> onStack = new HashSet<>();
+    private final List<List<String>> components = new ArrayList<>();
+
+    private void visit(String root) {
+      Deque<Visit> path = new ArrayDeque<>();
+      path.push(start(root));
+      while (!path.isEmpty()) {
+        Visit visit = path.peek();
+        if (visit.dependencies.hasNext()) {
+          String dependency = visit.dependencies.next();
+          if (!indexes.containsKey(dependency)) {
+            path.push(start(dependency));
+          } else if (onStack.contains(dependency)) {
+            lowLinks.put(visit.module, Math.min(lowLinks.get(visit.module), indexes.get(dependency)));
+          }
+        } else {
+          path.pop();
+          Visit caller = path.peek();
+          if (caller != null) {
+            lowLinks.put(caller.module, Math.min(lowLinks.get(caller.module), lowLinks.get(visit.module)));
+          }
+          if (lowLinks.get(visit.module).equals(indexes.get(visit.module))) {
+            addComponent(visit.module);
+          }
+        }
+      }
+    }
+
+    private Visit start(String module) {
+      int index = indexes.size();
+      indexes.put(module, index);
+      lowLinks.put(module, index);
+      stack.push(module);
+      onStack.add(module);
+      return new Visit(module, dependencies(module).iterator());
+    }
+
+    private void addComponent(String root) {
+      List<String> component = new ArrayList<>();
+      String module;
+      do {
+        module = stack.pop();
+        onStack.remove(module);
+        component.add(module);
+      } while (!module.equals(root));
+      Collections.sort(component);
+      components.add(component);
+    }
+  }
+
+  private static class Visit {
+    private final String module;
+    private final Iterator<String> dependencies;
+
+    private Visit(String module, Iterator<String> dependencies) {
+      this.module = module;
+      this.dependencies = dependencies;
+    }
+  }
+}
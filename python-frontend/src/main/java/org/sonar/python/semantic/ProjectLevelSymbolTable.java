@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
@@ -57,10 +58,30 @@ public class ProjectLevelSymbolTable {
   }
 
   public void addModule(FileInput fileInput, String packageName, PythonFile pythonFile) {
-    SymbolTableBuilder symbolTableBuilder = new SymbolTableBuilder(packageName, pythonFile);
+    String fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, pythonFile.fileName());
+    addModuleSymbols(fullyQualifiedModuleName, moduleGlobalSymbols(fileInput, packageName, pythonFile));
+  }
+
+  /**
+   * Computes the symbols exported by a module without reading or modifying any project level symbol table,
+   * so that modules can be processed concurrently and their symbols merged afterwards with {@link #addModuleSymbols(String, Set)}.
+   */
+  public static Set<Symbol> moduleGlobalSymbols(FileInput fileInput, String packageName, PythonFile pythonFile) {
+    return moduleGlobalSymbols(fileInput, packageName, pythonFile, empty());
+  }
+
+  /**
+   * Same as {@link #moduleGlobalSymbols(FileInput, String, PythonFile)}, resolving the names imported by the module with the given
+   * symbol table: for instance a class then extends the class of another module instead of an unresolved symbol.
+   * The given symbol table is only read, it must not be modified concurrently.
+   */
+  public static Set<Symbol> moduleGlobalSymbols(FileInput fileInput, String packageName, PythonFile pythonFile, ProjectLevelSymbolTable importedSymbols) {
+    SymbolTableBuilder symbolTableBuilder = new SymbolTableBuilder(packageName, pythonFile, importedSymbols);
     String fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, pythonFile.fileName());
     fileInput.accept(symbolTableBuilder);
     Set<Symbol> globalSymbols = new HashSet<>();
+    // classes of the module which extend the same classes share the copies of these classes
+    Map<ClassSymbolImpl, ClassSymbolImpl> copiedClasses = new IdentityHashMap<>();
     for (Symbol globalVariable : fileInput.globalVariables()) {
       String fullyQualifiedVariableName = globalVariable.fullyQualifiedName();
       if (((fullyQualifiedVariableName != null) && !fullyQualifiedVariableName.startsWith(fullyQualifiedModuleName)) ||
@@ -69,17 +90,22 @@ public class ProjectLevelSymbolTable {
         continue;
       }
       if (globalVariable.kind() == Symbol.Kind.CLASS) {
-        globalSymbols.add(((ClassSymbolImpl) globalVariable).copyWithoutUsages());
+        globalSymbols.add(((ClassSymbolImpl) globalVariable).copyWithoutUsages(copiedClasses));
       } else if (globalVariable.kind() == Symbol.Kind.FUNCTION) {
         globalSymbols.add(new FunctionSymbolImpl(globalVariable.name(), ((FunctionSymbol) globalVariable)));
       } else {
         globalSymbols.add(new SymbolImpl(globalVariable.name(), fullyQualifiedModuleName + "." + globalVariable.name(), globalVariable.annotatedTypeName()));
       }
     }
+    return globalSymbols;
+  }
+
+  public synchronized void addModuleSymbols(String fullyQualifiedModuleName, Set<Symbol> globalSymbols) {
     globalSymbolsByModuleName.put(fullyQualifiedModuleName, globalSymbols);
+    globalSymbolsByFQN = null;
   }
 
-  private Map<String, Symbol> globalSymbolsByFQN() {
+  private synchronized Map<String, Symbol> globalSymbolsByFQN() {
     if (globalSymbolsByFQN == null) {
       globalSymbolsByFQN = globalSymbolsByModuleName.values()
         .stream()
@@ -51,6 +51,8 @@ class Scope {
   final Map<String, Symbol> symbolsByName = new HashMap<>();
   private final Set<Symbol> symbols = new HashSet<>();
   final Set<Symbol> builtinSymbols = new HashSet<>();
+  // symbols of TypeShed builtins, shared by all files: a builtin is only copied into this scope once the file refers to its name
+  private Map<String, Symbol> typeShedBuiltins = null;
   private final Set<String> globalNames = new HashSet<>();
   private final Set<String> nonlocalNames = new HashSet<>();
   final Map<String, SymbolImpl> instanceAttributesByName = new HashMap<>();
@@ -67,9 +69,29 @@ class Scope {
     return Collections.unmodifiableSet(symbols);
   }
 
-  void createBuiltinSymbol(String name, Map<String, Symbol> typeShedSymbols) {
+  /**
+   * Makes the names of {@link BuiltinSymbols#all()} resolvable in this scope, without creating any symbol up front.
+   */
+  void addBuiltinSymbols(Map<String, Symbol> typeShedSymbols) {
+    typeShedBuiltins = typeShedSymbols;
+  }
+
+  private boolean isBuiltinName(String name) {
+    return typeShedBuiltins != null && BuiltinSymbols.all().contains(name);
+  }
+
+  @CheckForNull
+  private Symbol symbolByName(String name) {
+    Symbol symbol = symbolsByName.get(name);
+    if (symbol == null && isBuiltinName(name)) {
+      symbol = createBuiltinSymbol(name);
+    }
+    return symbol;
+  }
+
+  private SymbolImpl createBuiltinSymbol(String name) {
     SymbolImpl symbol;
-    Symbol typeShedSymbol = typeShedSymbols.get(name);
+    Symbol typeShedSymbol = typeShedBuiltins.get(name);
     if (typeShedSymbol != null) {
       symbol = ((SymbolImpl) typeShedSymbol).copyWithoutUsages();
     } else {
@@ -78,6 +100,7 @@ class Scope {
     symbols.add(symbol);
     builtinSymbols.add(symbol);
     symbolsByName.put(name, symbol);
+    return symbol;
   }
 
   void createSymbolsFromWildcardImport(Set<Symbol> importedSymbols, ImportFrom importFrom) {
@@ -167,14 +190,14 @@ class Scope {
     Set<Symbol> moduleExportedSymbols = projectLevelSymbolTable.getSymbolsFromModule(fullyQualifiedName);
     if (moduleExportedSymbols != null && !isExistingSymbol(symbolName)) {
       SymbolImpl moduleSymbol = new SymbolImpl(symbolName, fullyQualifiedName);
-      moduleExportedSymbols.forEach(symbol -> moduleSymbol.addChildSymbol(copySymbol(symbol.name(), symbol)));
+      moduleSymbol.addChildSymbolsToCopy(moduleExportedSymbols, symbol -> copySymbol(symbol.name(), symbol));
       this.symbols.add(moduleSymbol);
       symbolsByName.put(symbolName, moduleSymbol);
     } else if (!isExistingSymbol(symbolName) && fullyQualifiedName != null && !fullyQualifiedName.equals(fullyQualifiedModuleName)) {
       Set<Symbol> standardLibrarySymbols = TypeShed.symbolsForModule(fullyQualifiedName);
       if (!standardLibrarySymbols.isEmpty()) {
         SymbolImpl moduleSymbol = new SymbolImpl(symbolName, fullyQualifiedName);
-        standardLibrarySymbols.forEach(symbol -> moduleSymbol.addChildSymbol(copySymbol(symbol.name(), symbol)));
+        moduleSymbol.addChildSymbolsToCopy(standardLibrarySymbols, symbol -> copySymbol(symbol.name(), symbol));
         this.symbols.add(moduleSymbol);
         symbolsByName.put(symbolName, moduleSymbol);
       }
@@ -199,7 +222,7 @@ class Scope {
   }
 
   private boolean isExistingSymbol(String symbolName) {
-    return symbolsByName.containsKey(symbolName) || globalNames.contains(symbolName) || nonlocalNames.contains(symbolName);
+    return symbolsByName.containsKey(symbolName) || isBuiltinName(symbolName) || globalNames.contains(symbolName) || nonlocalNames.contains(symbolName);
   }
 
   void addBindingUsage(Name nameTree, Usage.Kind kind, @Nullable String fullyQualifiedName) {
@@ -230,7 +253,7 @@ class Scope {
 
   @CheckForNull
   SymbolImpl resolve(String symbolName) {
-    Symbol symbol = symbolsByName.get(symbolName);
+    Symbol symbol = symbolByName(symbolName);
     if (parent == null || symbol != null) {
       return (SymbolImpl) symbol;
     }
@@ -20,11 +20,13 @@
 package org.sonar.python.semantic;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.plugins.python.api.symbols.Symbol;
@@ -44,25 +46,39 @@ public class SymbolImpl implements Symbol {
   private final String name;
   @Nullable
   String fullyQualifiedName;
-  private final List<Usage> usages = new ArrayList<>();
-  private Map<String, Symbol> childrenSymbolByName = new HashMap<>();
+  // usages and children are only allocated when the first one is added: most symbols, e.g. the ones of TypeShed and of the
+  // project level symbol table, never get any
+  private List<Usage> usages = Collections.emptyList();
+  private Map<String, Symbol> childrenSymbolByName = Collections.emptyMap();
+  // shared symbols which are only copied into childrenSymbolByName once they are looked up
+  private Map<String, Symbol> childrenToCopy = Collections.emptyMap();
+  private UnaryOperator<Symbol> childCopier = null;
   private Kind kind;
   private InferredType inferredType = InferredTypes.anyType();
   private String annotatedTypeName = null;
 
   public SymbolImpl(String name, @Nullable String fullyQualifiedName) {
     this.name = name;
-    this.fullyQualifiedName = fullyQualifiedName;
+    this.fullyQualifiedName = intern(fullyQualifiedName);
     this.kind = Kind.OTHER;
   }
 
   public SymbolImpl(String name, @Nullable String fullyQualifiedName, @Nullable String annotatedTypeName) {
     this.name = name;
-    this.fullyQualifiedName = fullyQualifiedName;
+    this.fullyQualifiedName = intern(fullyQualifiedName);
     this.annotatedTypeName = annotatedTypeName;
     this.kind = Kind.OTHER;
   }
 
+  /**
+   * Symbols of the project level symbol table and of TypeShed are kept for the whole analysis, and their fully qualified names,
+   * such as the names of common super classes, are equal strings built separately for each module.
+   */
+  @CheckForNull
+  private static String intern(@Nullable String fullyQualifiedName) {
+    return fullyQualifiedName != null ? fullyQualifiedName.intern() : null;
+  }
+
   @Override
   public String name() {
     return name;
@@ -101,6 +117,9 @@ public class SymbolImpl implements Symbol {
 
   void addUsage(Tree tree, Usage.Kind kind) {
     UsageImpl usage = new UsageImpl(tree, kind);
+    if (usages.isEmpty()) {
+      usages = new ArrayList<>();
+    }
     usages.add(usage);
     if (tree.is(Tree.Kind.NAME)) {
       ((NameImpl) tree).setSymbol(this);
@@ -110,19 +129,51 @@ public class SymbolImpl implements Symbol {
 
   void addOrCreateChildUsage(Name name, Usage.Kind kind) {
     String childSymbolName = name.name();
-    if (!childrenSymbolByName.containsKey(childSymbolName)) {
+    Symbol symbol = childSymbol(childSymbolName);
+    if (symbol == null) {
       String childFullyQualifiedName = fullyQualifiedName != null
         ? (fullyQualifiedName + "." + childSymbolName)
         : null;
-      SymbolImpl symbol = new SymbolImpl(childSymbolName, childFullyQualifiedName);
-      childrenSymbolByName.put(childSymbolName, symbol);
+      symbol = new SymbolImpl(childSymbolName, childFullyQualifiedName);
+      putChildSymbol(childSymbolName, symbol);
     }
-    Symbol symbol = childrenSymbolByName.get(childSymbolName);
     ((SymbolImpl) symbol).addUsage(name, kind);
   }
 
+  @CheckForNull
+  private Symbol childSymbol(String childSymbolName) {
+    Symbol symbol = childrenSymbolByName.get(childSymbolName);
+    if (symbol == null) {
+      Symbol symbolToCopy = childrenToCopy.remove(childSymbolName);
+      if (symbolToCopy != null) {
+        symbol = childCopier.apply(symbolToCopy);
+        putChildSymbol(childSymbolName, symbol);
+      }
+    }
+    return symbol;
+  }
+
   void addChildSymbol(Symbol symbol) {
-    childrenSymbolByName.put(symbol.name(), symbol);
+    childrenToCopy.remove(symbol.name());
+    putChildSymbol(symbol.name(), symbol);
+  }
+
+  private void putChildSymbol(String childSymbolName, Symbol symbol) {
+    if (childrenSymbolByName.isEmpty()) {
+      childrenSymbolByName = new HashMap<>();
+    }
+    childrenSymbolByName.put(childSymbolName, symbol);
+  }
+
+  /**
+   * Adds the given symbols as children without copying them up front: a child is only created with {@code copier}
+   * when it is looked up, so that importing a module costs in proportion to the names used from it.
+   * The given symbols are never modified. Must be called before any other child is added.
+   */
+  void addChildSymbolsToCopy(Collection<Symbol> symbols, UnaryOperator<Symbol> copier) {
+    childrenToCopy = new HashMap<>();
+    symbols.forEach(symbol -> childrenToCopy.put(symbol.name(), symbol));
+    childCopier = copier;
   }
 
   public InferredType inferredType() {
@@ -147,11 +198,15 @@ public class SymbolImpl implements Symbol {
   }
 
   public void removeUsages() {
-    usages.clear();
+    usages = Collections.emptyList();
     childrenSymbolByName.values().forEach(symbol -> ((SymbolImpl) symbol).removeUsages());
   }
 
   Map<String, Symbol> getChildrenSymbolByName() {
+    if (!childrenToCopy.isEmpty()) {
+      childrenToCopy.forEach((childSymbolName, symbolToCopy) -> putChildSymbol(childSymbolName, childCopier.apply(symbolToCopy)));
+      childrenToCopy = Collections.emptyMap();
+    }
     return Collections.unmodifiableMap(childrenSymbolByName);
   }
 
@@ -0,0 +1,44 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.semantic;
+
+import java.util.Collection;
+import org.sonar.plugins.python.api.symbols.Symbol;
+
+/**
+ * Entry points of {@link org.sonar.python.types.SerializedSymbols} into the symbol internals, which are not part of the symbol API.
+ */
+public final class SymbolSerialization {
+
+  private SymbolSerialization() {
+  }
+
+  public static Collection<Symbol> childSymbols(SymbolImpl symbol) {
+    return symbol.getChildrenSymbolByName().values();
+  }
+
+  public static void addChildSymbol(SymbolImpl symbol, Symbol childSymbol) {
+    symbol.addChildSymbol(childSymbol);
+  }
+
+  public static boolean hasSuperClassWithoutSymbol(ClassSymbolImpl classSymbol) {
+    return classSymbol.hasSuperClassWithoutSymbol();
+  }
+}
@@ -74,6 +74,7 @@ import org.sonar.plugins.python.api.tree.Tree.Kind;
 import org.sonar.plugins.python.api.tree.TupleParameter;
 import org.sonar.plugins.python.api.tree.TypeAnnotation;
 import org.sonar.plugins.python.api.tree.WithItem;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.tree.ClassDefImpl;
 import org.sonar.python.tree.ComprehensionExpressionImpl;
 import org.sonar.python.tree.DictCompExpressionImpl;
@@ -99,6 +100,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
   private FileInput fileInput = null;
   private Set<Tree> assignmentLeftHandSides = new HashSet<>();
   private final PythonFile pythonFile;
+  private final CfgCache cfgCache;
   private static final List<String> BASE_MODULES = Arrays.asList("", "typing", "typing_extensions");
 
   public SymbolTableBuilder(PythonFile pythonFile) {
@@ -106,6 +108,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     filePath = null;
     projectLevelSymbolTable = ProjectLevelSymbolTable.empty();
     this.pythonFile = pythonFile;
+    this.cfgCache = new CfgCache(pythonFile);
   }
 
   public SymbolTableBuilder(String packageName, PythonFile pythonFile) {
@@ -114,6 +117,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
 
   public SymbolTableBuilder(String packageName, PythonFile pythonFile, ProjectLevelSymbolTable projectLevelSymbolTable) {
     this.pythonFile = pythonFile;
+    this.cfgCache = new CfgCache(pythonFile);
     String fileName = pythonFile.fileName();
     fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, fileName);
     filePath = new ArrayList<>(Arrays.asList(fullyQualifiedModuleName.split("\\.")));
@@ -131,9 +135,10 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     fileInput.accept(new SecondPhaseVisitor());
     createAmbiguousSymbols();
     addSymbolsToTree((FileInputImpl) fileInput);
+    ((FileInputImpl) fileInput).setCfgCache(cfgCache);
     fileInput.accept(new ThirdPhaseVisitor());
     if (!isTypeShedFile(pythonFile)) {
-      TypeInference.inferTypes(fileInput, pythonFile);
+      TypeInference.inferTypes(fileInput, cfgCache);
     }
   }
 
@@ -274,10 +279,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
       enterScope(tree);
       moduleScope = currentScope();
       if (!SymbolUtils.isTypeShedFile(pythonFile) || !BASE_MODULES.contains(pythonFile.fileName())) {
-        Map<String, Symbol> typeShedSymbols = TypeShed.builtinSymbols();
-        for (String name : BuiltinSymbols.all()) {
-          currentScope().createBuiltinSymbol(name, typeShedSymbols);
-        }
+        currentScope().addBuiltinSymbols(TypeShed.builtinSymbols());
       }
       super.visitFileInput(tree);
     }
@@ -0,0 +1,56 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.sonar.plugins.python.api.tree.ErrorStatement;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.TreeVisitor;
+
+public class ErrorStatementImpl extends PyTree implements ErrorStatement {
+  private final List<Token> tokens;
+
+  public ErrorStatementImpl(List<Token> tokens) {
+    this.tokens = Collections.unmodifiableList(tokens);
+  }
+
+  @Override
+  public List<Token> tokens() {
+    return tokens;
+  }
+
+  @Override
+  public Kind getKind() {
+    return Kind.ERROR_STMT;
+  }
+
+  @Override
+  public void accept(TreeVisitor visitor) {
+    visitor.visitErrorStatement(this);
+  }
+
+  @Override
+  public List<Tree> computeChildren() {
+    return new ArrayList<>(tokens);
+  }
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -34,6 +36,7 @@ import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TreeVisitor;
 import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.cfg.CfgCache;
 
 public class FileInputImpl extends PyTree implements FileInput {
 
@@ -41,6 +44,8 @@ public class FileInputImpl extends PyTree implements FileInput {
   private final Token endOfFile;
   private final StringLiteral docstring;
   private final Set<Symbol> globalVariables = new HashSet<>();
+  private List<Token> tokens = Collections.emptyList();
+  private CfgCache cfgCache = null;
 
   public FileInputImpl(@Nullable StatementList statements, Token endOfFile, @Nullable StringLiteral docstring) {
     this.statements = statements;
@@ -74,6 +79,80 @@ public class FileInputImpl extends PyTree implements FileInput {
     globalVariables.add(globalVariable);
   }
 
+  /**
+   * Builds the flat index of the tokens of the file. Each tree of the file records the range of its tokens in it,
+   * which turns the lookup of the tokens of a subtree, or of the neighbours of a token, into index computations.
+   */
+  void indexTokens() {
+    List<Token> indexedTokens = new ArrayList<>();
+    indexTokens(this, indexedTokens);
+    tokens = Collections.unmodifiableList(indexedTokens);
+    for (Token token : tokens) {
+      ((TokenImpl) token).setFileTokens(tokens);
+    }
+  }
+
+  private static void indexTokens(Tree tree, List<Token> indexedTokens) {
+    PyTree pyTree = (PyTree) tree;
+    int start = indexedTokens.size();
+    if (tree.is(Kind.TOKEN)) {
+      indexedTokens.add((Token) tree);
+    } else if (tree.is(Kind.STRING_ELEMENT)) {
+      // tokens of f-string expressions are not part of the token stream of the file
+      Token token = tree.firstToken();
+      ((PyTree) token).setTokensRange(start, start + 1);
+      indexedTokens.add(token);
+    } else {
+      for (Tree child : tree.children()) {
+        if (child != null) {
+          indexTokens(child, indexedTokens);
+        }
+      }
+    }
+    pyTree.setTokensRange(start, indexedTokens.size());
+  }
+
+  /**
+   * Tokens of the file, in source order. Empty when the file input was not built by {@link PythonTreeMaker#fileInput}.
+   */
+  public List<Token> tokens() {
+    return tokens;
+  }
+
+  /**
+   * Control flow graphs and data flow analyses of the file, see {@link CfgCache#of(org.sonar.plugins.python.api.SubscriptionContext)}.
+   * Null until the symbol table of the file is built.
+   */
+  @CheckForNull
+  public CfgCache cfgCache() {
+    return cfgCache;
+  }
+
+  public void setCfgCache(@Nullable CfgCache cfgCache) {
+    this.cfgCache = cfgCache;
+  }
+
+  /**
+   * Tokens starting on the given line.
+   */
+  public List<Token> tokensOnLine(int line) {
+    return tokens.subList(firstTokenIndexFromLine(line), firstTokenIndexFromLine(line + 1));
+  }
+
+  private int firstTokenIndexFromLine(int line) {
+    int low = 0;
+    int high = tokens.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (tokens.get(middle).line() < line) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
   @Override
   public void accept(TreeVisitor visitor) {
     visitor.visitFileInput(this);
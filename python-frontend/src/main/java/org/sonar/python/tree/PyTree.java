@@ -28,6 +28,9 @@ public abstract class PyTree implements Tree {
   protected Token lastToken;
   private List<Tree> childs;
   private Tree parent = null;
+  // range of the tokens of this tree in the token index of its file, see FileInputImpl#tokens()
+  private int tokensStart = -1;
+  private int tokensEnd = -1;
 
   protected PyTree() {
   }
@@ -81,6 +84,19 @@ public abstract class PyTree implements Tree {
     this.parent = parent;
   }
 
+  void setTokensRange(int start, int end) {
+    this.tokensStart = start;
+    this.tokensEnd = end;
+  }
+
+  int tokensStart() {
+    return tokensStart;
+  }
+
+  int tokensEnd() {
+    return tokensEnd;
+  }
+
   abstract List<Tree> computeChildren();
 
   public List<Tree> children() {
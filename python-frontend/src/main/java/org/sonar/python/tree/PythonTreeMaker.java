@@ -93,11 +93,10 @@ import org.sonar.python.api.PythonGrammar;
 import org.sonar.python.api.PythonKeyword;
 import org.sonar.python.api.PythonPunctuator;
 import org.sonar.python.api.PythonTokenType;
-import org.sonar.python.parser.FStringParser;
+import org.sonar.python.parser.ThreadLocalParsers;
 
 public class PythonTreeMaker {
 
-  private static final FStringParser F_STRING_PARSER = new FStringParser();
 
 
   public FileInput fileInput(AstNode astNode) {
@@ -106,6 +105,7 @@ public class PythonTreeMaker {
     Token endOfFile = toPyToken(astNode.getFirstChild(GenericTokenType.EOF).getToken());
     FileInputImpl pyFileInputTree = new FileInputImpl(statementList, endOfFile, DocstringExtractor.extractDocstring(statementList));
     setParents(pyFileInputTree);
+    pyFileInputTree.indexTokens();
     return pyFileInputTree;
   }
 
@@ -1284,7 +1284,7 @@ public class PythonTreeMaker {
       com.sonar.sslr.api.Token token = elementNode.getToken();
       StringElementImpl element = new StringElementImpl(toPyToken(token));
       if (element.isInterpolated()) {
-        F_STRING_PARSER.fStringExpressions(token).forEach(
+        ThreadLocalParsers.fStringExpressions(token).forEach(
           expressionNode -> element.addFormattedExpression(formattedExpression(expressionNode))
         );
       }
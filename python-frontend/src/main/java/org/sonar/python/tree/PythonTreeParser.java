@@ -0,0 +1,1673 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.tree.AliasedName;
+import org.sonar.plugins.python.api.tree.AnyParameter;
+import org.sonar.plugins.python.api.tree.ArgList;
+import org.sonar.plugins.python.api.tree.Argument;
+import org.sonar.plugins.python.api.tree.ComprehensionClause;
+import org.sonar.plugins.python.api.tree.ComprehensionFor;
+import org.sonar.plugins.python.api.tree.Decorator;
+import org.sonar.plugins.python.api.tree.DictionaryLiteralElement;
+import org.sonar.plugins.python.api.tree.DottedName;
+import org.sonar.plugins.python.api.tree.ElseClause;
+import org.sonar.plugins.python.api.tree.ErrorStatement;
+import org.sonar.plugins.python.api.tree.ExceptClause;
+import org.sonar.plugins.python.api.tree.Expression;
+import org.sonar.plugins.python.api.tree.ExpressionList;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FinallyClause;
+import org.sonar.plugins.python.api.tree.FormatSpecifier;
+import org.sonar.plugins.python.api.tree.FormattedExpression;
+import org.sonar.plugins.python.api.tree.IfStatement;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.ParameterList;
+import org.sonar.plugins.python.api.tree.RegularArgument;
+import org.sonar.plugins.python.api.tree.Statement;
+import org.sonar.plugins.python.api.tree.StatementList;
+import org.sonar.plugins.python.api.tree.StringElement;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.TypeAnnotation;
+import org.sonar.plugins.python.api.tree.WithItem;
+import org.sonar.plugins.python.api.tree.YieldExpression;
+import org.sonar.python.DocstringExtractor;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.lexer.LexerState;
+import org.sonar.python.lexer.PythonLexer;
+
+/**
+ * Recursive descent parser building the strongly typed tree directly from the tokens of {@link PythonLexer},
+ * without going through an SSLR {@link com.sonar.sslr.api.AstNode} tree.
+ * <p>
+ * Each method mirrors a rule of {@link org.sonar.python.api.PythonGrammar}, including the order of its choices,
+ * and builds the same nodes as {@link PythonTreeMaker} does for that rule.
+ * Choices which can only be told apart after consuming some tokens are tried speculatively, like the PEG parser does.
+ * <p>
+ * When parsing with {@link #parse(String, List)}, a statement which cannot be parsed is replaced by an {@link ErrorStatement}
+ * made of its tokens up to the next statement boundary, and parsing goes on from there.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class PythonTreeParser {
+
+  private static final ParseFailure FAILURE = new ParseFailure();
+
+  private static final String[][] BINARY_OPERATORS = {
+    {"|"},
+    {"^"},
+    {"&"},
+    {"<<", ">>"},
+    {"+", "-"},
+    {"*", "//", "/", "%", "@"}
+  };
+
+  private static final List<String> COMPARISON_OPERATORS = Arrays.asList("<", ">", "==", ">=", "<=", "!=", "<>");
+
+  private static final List<String> AUGMENTED_ASSIGNMENTS = Arrays.asList("+=", "-=", "*=", "/=", "//=", "%=", "**=", ">>=", "<<=", "&=", "^=", "|=", "@=");
+
+  private static final List<String> COMPOUND_STATEMENT_KEYWORDS = Arrays.asList("if", "while", "for", "try", "with", "def", "class", "@");
+
+  private final LexerState lexerState = new LexerState();
+  private final Lexer lexer;
+  private final LexerState fStringLexerState = new LexerState();
+  private final Lexer fStringLexer;
+
+  private List<com.sonar.sslr.api.Token> tokens;
+  private int pos;
+  private int furthest;
+  // true when the innermost enclosing class or function definition is a class
+  private boolean inClassBody;
+  // null when parsing stops at the first syntax error
+  private List<RecognitionException> syntaxErrors;
+
+  public PythonTreeParser() {
+    this(false);
+  }
+
+  /**
+   * @param handwrittenLexer see {@link PythonLexer#create(LexerState, boolean)}
+   */
+  public PythonTreeParser(boolean handwrittenLexer) {
+    this.lexer = PythonLexer.create(lexerState, handwrittenLexer);
+    this.fStringLexer = PythonLexer.fStringLexer(fStringLexerState, handwrittenLexer);
+  }
+
+  /**
+   * @throws RecognitionException on the first syntax error
+   */
+  public FileInput parse(String source) {
+    return parse(source, null);
+  }
+
+  /**
+   * Parses the given source, recovering from syntax errors which are added to {@code syntaxErrors} in the order of the file.
+   */
+  public FileInput parse(String source, @Nullable List<RecognitionException> syntaxErrors) {
+    lexerState.reset();
+    tokens = PythonLexer.withClosedIndentation(lexer.lex(source), lexerState);
+    pos = 0;
+    furthest = 0;
+    inClassBody = false;
+    this.syntaxErrors = syntaxErrors;
+    try {
+      return fileInput();
+    } catch (ParseFailure e) {
+      throw syntaxError();
+    } finally {
+      tokens = null;
+      this.syntaxErrors = null;
+    }
+  }
+
+  private RecognitionException syntaxError() {
+    com.sonar.sslr.api.Token token = tokens.get(furthest);
+    return new RecognitionException(token.getLine(), "Parse error at line " + token.getLine() + " column " + token.getColumn() + ".");
+  }
+
+  private FileInput fileInput() {
+    List<Statement> statements = new ArrayList<>();
+    while (!is(GenericTokenType.EOF)) {
+      if (is(PythonTokenType.NEWLINE)) {
+        pos++;
+      } else {
+        statementOrError(statements);
+      }
+    }
+    StatementListImpl statementList = statements.isEmpty() ? null : new StatementListImpl(statements);
+    FileInputImpl fileInput = new FileInputImpl(statementList, consume(), DocstringExtractor.extractDocstring(statementList));
+    setParents(fileInput);
+    fileInput.indexTokens();
+    return fileInput;
+  }
+
+  private static void setParents(Tree root) {
+    for (Tree child : root.children()) {
+      if (child != null) {
+        ((PyTree) child).setParent(root);
+        setParents(child);
+      }
+    }
+  }
+
+  // Statements
+
+  private void statementOrError(List<Statement> statements) {
+    if (syntaxErrors == null) {
+      statement(statements);
+      return;
+    }
+    int mark = pos;
+    int statementCount = statements.size();
+    int errorCount = syntaxErrors.size();
+    boolean enclosingInClassBody = inClassBody;
+    RecognitionException error;
+    try {
+      statement(statements);
+      return;
+    } catch (ParseFailure e) {
+      error = syntaxError();
+    } catch (RecognitionException e) {
+      error = e;
+    }
+    // errors recovered inside the statement are superseded by the one of the whole statement
+    syntaxErrors.subList(errorCount, syntaxErrors.size()).clear();
+    syntaxErrors.add(error);
+    statements.subList(statementCount, statements.size()).clear();
+    inClassBody = enclosingInClassBody;
+    pos = mark;
+    List<Token> skipped = skipStatement();
+    if (!skipped.isEmpty()) {
+      statements.add(new ErrorStatementImpl(skipped));
+    }
+    furthest = pos;
+  }
+
+  /**
+   * Consumes the tokens up to the end of the current logical line, along with the indented block which may follow it.
+   * Stops before the DEDENT closing the enclosing block.
+   */
+  private List<Token> skipStatement() {
+    List<Token> skipped = new ArrayList<>();
+    int depth = 0;
+    while (!is(GenericTokenType.EOF)) {
+      TokenType type = current().getType();
+      if (type == PythonTokenType.DEDENT && depth == 0 && !skipped.isEmpty()) {
+        break;
+      }
+      if (type == PythonTokenType.INDENT) {
+        depth++;
+      } else if (type == PythonTokenType.DEDENT) {
+        depth--;
+      }
+      skipped.add(consume());
+      if (depth <= 0 && ((type == PythonTokenType.NEWLINE && !is(PythonTokenType.INDENT)) || type == PythonTokenType.DEDENT)) {
+        break;
+      }
+    }
+    return skipped;
+  }
+
+  private void statement(List<Statement> statements) {
+    if (COMPOUND_STATEMENT_KEYWORDS.contains(value())) {
+      statements.add(compoundStatement());
+      return;
+    }
+    if (is("async")) {
+      // "async" is also a valid name: the statement list is tried first, as in the grammar
+      int mark = pos;
+      int size = statements.size();
+      try {
+        simpleStatements(statements);
+        return;
+      } catch (ParseFailure e) {
+        pos = mark;
+        statements.subList(size, statements.size()).clear();
+      }
+      statements.add(compoundStatement());
+      return;
+    }
+    simpleStatements(statements);
+  }
+
+  private void simpleStatements(List<Statement> statements) {
+    List<Function<Separators, Statement>> pending = new ArrayList<>();
+    List<Token> semicolons = new ArrayList<>();
+    pending.add(simpleStatement());
+    while (is(";")) {
+      semicolons.add(consume());
+      if (isEndOfStatementList()) {
+        break;
+      }
+      pending.add(simpleStatement());
+    }
+    Token newLine = null;
+    if (is(PythonTokenType.NEWLINE)) {
+      newLine = consume();
+    } else if (!isEndOfStatementList()) {
+      throw fail();
+    }
+    int last = pending.size() - 1;
+    for (int i = 0; i < last; i++) {
+      statements.add(pending.get(i).apply(new Separators(semicolons.get(i), null)));
+    }
+    Token lastSemicolon = semicolons.size() > last ? semicolons.get(last) : null;
+    statements.add(pending.get(last).apply(new Separators(lastSemicolon, newLine)));
+  }
+
+  private boolean isEndOfStatementList() {
+    return is(PythonTokenType.NEWLINE) || is(GenericTokenType.EOF) || is(PythonTokenType.DEDENT);
+  }
+
+  private Function<Separators, Statement> simpleStatement() {
+    String value = value();
+    if ("print".equals(value) && !next("=") && !next("(")) {
+      return printStatement();
+    }
+    if ("exec".equals(value) && !next("(")) {
+      int mark = pos;
+      try {
+        return execStatement();
+      } catch (ParseFailure e) {
+        pos = mark;
+      }
+    }
+    switch (value) {
+      case "assert":
+        return assertStatement();
+      case "pass":
+        Token passKeyword = consume();
+        return separators -> new PassStatementImpl(passKeyword, separators);
+      case "del":
+        Token delKeyword = consume();
+        List<Expression> deleted = exprList().expressions;
+        return separators -> new DelStatementImpl(delKeyword, deleted, separators);
+      case "return":
+        return returnStatement();
+      case "yield":
+        YieldExpression yieldExpression = yieldExpression();
+        return separators -> new YieldStatementImpl(yieldExpression, separators);
+      case "raise":
+        return raiseStatement();
+      case "break":
+        Token breakKeyword = consume();
+        return separators -> new BreakStatementImpl(breakKeyword, separators);
+      case "continue":
+        Token continueKeyword = consume();
+        return separators -> new ContinueStatementImpl(continueKeyword, separators);
+      case "import":
+        return importName();
+      case "from":
+        return importFrom();
+      case "global":
+        Token globalKeyword = consume();
+        List<Name> globals = variables();
+        return separators -> new GlobalStatementImpl(globalKeyword, globals, separators);
+      case "nonlocal":
+        Token nonlocalKeyword = consume();
+        List<Name> nonlocals = variables();
+        return separators -> new NonlocalStatementImpl(nonlocalKeyword, nonlocals, separators);
+      default:
+        return expressionStatement();
+    }
+  }
+
+  private Function<Separators, Statement> printStatement() {
+    Token printKeyword = consume();
+    List<Expression> expressions = new ArrayList<>();
+    if (is(">>")) {
+      pos++;
+      expressions.add(test());
+      if (is(",") && startsTest(lookahead(1))) {
+        while (is(",") && startsTest(lookahead(1))) {
+          pos++;
+          expressions.add(test());
+        }
+        skip(",");
+      }
+    } else if (startsTest(current())) {
+      expressions.add(test());
+      while (is(",") && startsTest(lookahead(1))) {
+        pos++;
+        expressions.add(test());
+      }
+      skip(",");
+    }
+    return separators -> new PrintStatementImpl(printKeyword, expressions, separators);
+  }
+
+  private Function<Separators, Statement> execStatement() {
+    Token execKeyword = consume();
+    Expression expression = expr();
+    if (!is("in")) {
+      return separators -> new ExecStatementImpl(execKeyword, expression, separators);
+    }
+    Token inKeyword = consume();
+    Expression globals = test();
+    Token comma = optional(",");
+    Expression locals = comma == null ? null : test();
+    return separators -> new ExecStatementImpl(execKeyword, expression, inKeyword, globals, comma, locals, separators);
+  }
+
+  private Function<Separators, Statement> assertStatement() {
+    Token assertKeyword = consume();
+    Expression condition = test();
+    Expression message = skip(",") ? test() : null;
+    return separators -> new AssertStatementImpl(assertKeyword, condition, message, separators);
+  }
+
+  private Function<Separators, Statement> returnStatement() {
+    Token returnKeyword = consume();
+    ExprList returned = startsTestOrStar(current()) ? testListStarExpr() : ExprList.EMPTY;
+    return separators -> new ReturnStatementImpl(returnKeyword, returned.expressions, returned.commas, separators);
+  }
+
+  private Function<Separators, Statement> raiseStatement() {
+    Token raiseKeyword = consume();
+    List<Expression> expressions = new ArrayList<>();
+    Token fromKeyword = null;
+    Expression fromExpression = null;
+    if (startsTest(current())) {
+      expressions.add(test());
+      if (is("from")) {
+        fromKeyword = consume();
+        fromExpression = test();
+      } else if (skip(",")) {
+        expressions.add(test());
+        if (skip(",")) {
+          expressions.add(test());
+        }
+      }
+    }
+    Token from = fromKeyword;
+    Expression fromValue = fromExpression;
+    return separators -> new RaiseStatementImpl(raiseKeyword, expressions, from, fromValue, separators);
+  }
+
+  private Function<Separators, Statement> importName() {
+    Token importKeyword = consume();
+    List<AliasedName> aliasedNames = new ArrayList<>();
+    do {
+      DottedName dottedName = dottedName();
+      aliasedNames.add(is("as") ? new AliasedNameImpl(consume(), dottedName, name(false)) : new AliasedNameImpl(dottedName));
+    } while (skip(","));
+    return separators -> new ImportNameImpl(importKeyword, aliasedNames, separators);
+  }
+
+  private Function<Separators, Statement> importFrom() {
+    Token fromKeyword = consume();
+    List<Token> dottedPrefixForModule = new ArrayList<>();
+    while (is(".")) {
+      dottedPrefixForModule.add(consume());
+    }
+    DottedName moduleName = null;
+    if (is(GenericTokenType.IDENTIFIER)) {
+      moduleName = dottedName();
+    } else if (dottedPrefixForModule.isEmpty()) {
+      throw fail();
+    }
+    Token importKeyword = expect("import");
+    Token wildcard = null;
+    List<AliasedName> aliasedNames = null;
+    if (is("*")) {
+      wildcard = consume();
+    } else if (skip("(")) {
+      aliasedNames = importAsNames();
+      expect(")");
+    } else {
+      aliasedNames = importAsNames();
+    }
+    DottedName module = moduleName;
+    Token wildcardToken = wildcard;
+    List<AliasedName> importedNames = aliasedNames;
+    return separators -> new ImportFromImpl(fromKeyword, dottedPrefixForModule, module, importKeyword, importedNames, wildcardToken, separators);
+  }
+
+  private List<AliasedName> importAsNames() {
+    List<AliasedName> aliasedNames = new ArrayList<>();
+    aliasedNames.add(importAsName());
+    while (is(",")) {
+      pos++;
+      if (!is(GenericTokenType.IDENTIFIER)) {
+        break;
+      }
+      aliasedNames.add(importAsName());
+    }
+    return aliasedNames;
+  }
+
+  private AliasedName importAsName() {
+    DottedName dottedName = new DottedNameImpl(Collections.singletonList(name(false)));
+    return is("as") ? new AliasedNameImpl(consume(), dottedName, name(false)) : new AliasedNameImpl(dottedName);
+  }
+
+  private DottedName dottedName() {
+    List<Name> names = new ArrayList<>();
+    names.add(name(false));
+    while (is(".") && lookahead(1).getType() == GenericTokenType.IDENTIFIER) {
+      pos++;
+      names.add(name(false));
+    }
+    return new DottedNameImpl(names);
+  }
+
+  private List<Name> variables() {
+    List<Name> variables = new ArrayList<>();
+    variables.add(name(true));
+    while (skip(",")) {
+      variables.add(name(true));
+    }
+    return variables;
+  }
+
+  private Function<Separators, Statement> expressionStatement() {
+    ExprList lhs = testListStarExpr();
+    if (is(":")) {
+      TypeAnnotation annotation = new TypeAnnotationImpl(consume(), test(), Tree.Kind.VARIABLE_TYPE_ANNOTATION);
+      Token equalToken = optional("=");
+      Expression assignedValue = equalToken == null ? null : yieldOrTestListStarExpr().toExpression();
+      return separators -> new AnnotatedAssignmentImpl(lhs.toExpression(), annotation, equalToken, assignedValue, separators);
+    }
+    if (AUGMENTED_ASSIGNMENTS.contains(value())) {
+      Token augAssign = consume();
+      Expression rhs = is("yield") ? yieldExpression() : testList().toExpression();
+      return separators -> new CompoundAssignmentStatementImpl(lhs.toExpression(), augAssign, rhs, separators);
+    }
+    if (is("=")) {
+      List<Token> assignTokens = new ArrayList<>();
+      List<ExpressionList> lhsExpressions = new ArrayList<>();
+      ExprList previous = lhs;
+      while (is("=")) {
+        assignTokens.add(consume());
+        lhsExpressions.add(previous.toExpressionList());
+        previous = yieldOrTestListStarExpr();
+      }
+      Expression assignedValue = previous.toExpression();
+      return separators -> new AssignmentStatementImpl(assignTokens, lhsExpressions, assignedValue, separators);
+    }
+    return separators -> new ExpressionStatementImpl(lhs.expressions, separators);
+  }
+
+  private ExprList yieldOrTestListStarExpr() {
+    return is("yield") ? ExprList.of(yieldExpression()) : testListStarExpr();
+  }
+
+  private Statement compoundStatement() {
+    switch (value()) {
+      case "if":
+        return ifStatement();
+      case "while":
+        return whileStatement();
+      case "for":
+        return forStatement(null);
+      case "try":
+        return tryStatement();
+      case "with":
+        return withStatement(null);
+      case "def":
+        return functionDef(Collections.emptyList(), null);
+      case "class":
+        return classDef(Collections.emptyList());
+      case "@":
+        return decorated();
+      default:
+        return asyncStatement();
+    }
+  }
+
+  private Statement asyncStatement() {
+    Token asyncKeyword = expect("async");
+    if (is("def")) {
+      return functionDef(Collections.emptyList(), asyncKeyword);
+    }
+    if (is("with")) {
+      return withStatement(asyncKeyword);
+    }
+    if (is("for")) {
+      return forStatement(asyncKeyword);
+    }
+    throw fail();
+  }
+
+  private Statement ifStatement() {
+    Token ifKeyword = consume();
+    Expression condition = namedExprTest();
+    Token colon = expect(":");
+    Suite suite = suite();
+    List<IfStatement> elifBranches = new ArrayList<>();
+    while (is("elif")) {
+      Token elifKeyword = consume();
+      Expression elifCondition = namedExprTest();
+      Token elifColon = expect(":");
+      Suite elifSuite = suite();
+      elifBranches.add(new IfStatementImpl(elifKeyword, elifCondition, elifColon, elifSuite.newLine, elifSuite.indent, elifSuite.body, elifSuite.dedent));
+    }
+    ElseClause elseClause = elseClause();
+    return new IfStatementImpl(ifKeyword, condition, colon, suite.newLine, suite.indent, suite.body, suite.dedent, elifBranches, elseClause);
+  }
+
+  @CheckForNull
+  private ElseClause elseClause() {
+    if (!is("else")) {
+      return null;
+    }
+    Token elseKeyword = consume();
+    Token colon = expect(":");
+    Suite suite = suite();
+    return new ElseClauseImpl(elseKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent);
+  }
+
+  private Statement whileStatement() {
+    Token whileKeyword = consume();
+    Expression condition = namedExprTest();
+    Token colon = expect(":");
+    Suite suite = suite();
+    return new WhileStatementImpl(whileKeyword, condition, colon, suite.newLine, suite.indent, suite.body, suite.dedent, elseClause());
+  }
+
+  private Statement forStatement(@Nullable Token asyncKeyword) {
+    Token forKeyword = expect("for");
+    List<Expression> expressions = exprList().expressions;
+    Token inKeyword = expect("in");
+    List<Expression> testExpressions = testList().expressions;
+    Token colon = expect(":");
+    Suite suite = suite();
+    return new ForStatementImpl(forKeyword, expressions, inKeyword, testExpressions, colon, suite.newLine, suite.indent, suite.body, suite.dedent,
+      elseClause(), asyncKeyword);
+  }
+
+  private Statement tryStatement() {
+    Token tryKeyword = consume();
+    Token colon = expect(":");
+    Suite suite = suite();
+    List<ExceptClause> exceptClauses = new ArrayList<>();
+    ElseClause elseClause = null;
+    FinallyClause finallyClause = null;
+    if (is("except")) {
+      while (is("except")) {
+        exceptClauses.add(exceptClause());
+      }
+      elseClause = elseClause();
+      finallyClause = finallyClause();
+    } else {
+      finallyClause = finallyClause();
+      if (finallyClause == null) {
+        throw fail();
+      }
+    }
+    return new TryStatementImpl(tryKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent, exceptClauses, finallyClause, elseClause);
+  }
+
+  private ExceptClause exceptClause() {
+    Token exceptKeyword = consume();
+    if (!startsTest(current())) {
+      Token colon = expect(":");
+      Suite suite = suite();
+      return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent);
+    }
+    Expression exception = test();
+    Token asKeyword = optional("as");
+    Token comma = asKeyword == null ? optional(",") : null;
+    Expression exceptionInstance = asKeyword != null || comma != null ? test() : null;
+    Token colon = expect(":");
+    Suite suite = suite();
+    if (exceptionInstance == null) {
+      return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent, exception);
+    }
+    return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent, exception, asKeyword, comma, exceptionInstance);
+  }
+
+  @CheckForNull
+  private FinallyClause finallyClause() {
+    if (!is("finally")) {
+      return null;
+    }
+    Token finallyKeyword = consume();
+    Token colon = expect(":");
+    Suite suite = suite();
+    return new FinallyClauseImpl(finallyKeyword, colon, suite.newLine, suite.indent, suite.body, suite.dedent);
+  }
+
+  private Statement withStatement(@Nullable Token asyncKeyword) {
+    Token withKeyword = expect("with");
+    List<WithItem> withItems = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    withItems.add(withItem());
+    while (is(",")) {
+      commas.add(consume());
+      withItems.add(withItem());
+    }
+    Token colon = expect(":");
+    Suite suite = suite();
+    return new WithStatementImpl(withKeyword, withItems, commas, colon, suite.newLine, suite.indent, suite.body, suite.dedent, asyncKeyword);
+  }
+
+  private WithItem withItem() {
+    Expression test = test();
+    Token asKeyword = optional("as");
+    Expression expr = asKeyword == null ? null : expr();
+    return new WithStatementImpl.WithItemImpl(test, asKeyword, expr);
+  }
+
+  private Statement decorated() {
+    List<Decorator> decorators = new ArrayList<>();
+    while (is("@")) {
+      decorators.add(decorator());
+    }
+    if (is("class")) {
+      return classDef(decorators);
+    }
+    Token asyncKeyword = optional("async");
+    return functionDef(decorators, asyncKeyword);
+  }
+
+  private Decorator decorator() {
+    Token atToken = consume();
+    DottedName dottedName = dottedName();
+    Token lPar = optional("(");
+    ArgList argList = null;
+    Token rPar = null;
+    if (lPar != null) {
+      argList = is(")") ? null : argList();
+      rPar = expect(")");
+    }
+    Token newLine = expect(PythonTokenType.NEWLINE);
+    return new DecoratorImpl(atToken, dottedName, lPar, argList, rPar, newLine);
+  }
+
+  private Statement functionDef(List<Decorator> decorators, @Nullable Token asyncKeyword) {
+    Token defKeyword = expect("def");
+    Name name = name(false);
+    Token lPar = expect("(");
+    ParameterList parameterList = is(")") ? null : parameterList(true);
+    Token rPar = expect(")");
+    TypeAnnotation returnType = null;
+    if (is("-")) {
+      Token dash = consume();
+      Token gt = expect(">");
+      returnType = new TypeAnnotationImpl(dash, gt, test());
+    }
+    Token colon = expect(":");
+    boolean isMethodDefinition = inClassBody;
+    inClassBody = false;
+    Suite suite = suite();
+    inClassBody = isMethodDefinition;
+    return new FunctionDefImpl(decorators, asyncKeyword, defKeyword, name, lPar, parameterList, rPar, returnType, colon,
+      suite.newLine, suite.indent, suite.body, suite.dedent, isMethodDefinition, DocstringExtractor.extractDocstring(suite.body));
+  }
+
+  private Statement classDef(List<Decorator> decorators) {
+    Token classKeyword = expect("class");
+    Name name = name(false);
+    Token lPar = optional("(");
+    ArgList args = null;
+    Token rPar = null;
+    if (lPar != null) {
+      args = is(")") ? null : argList();
+      rPar = expect(")");
+    }
+    Token colon = expect(":");
+    boolean enclosingInClassBody = inClassBody;
+    inClassBody = true;
+    Suite suite = suite();
+    inClassBody = enclosingInClassBody;
+    return new ClassDefImpl(decorators, classKeyword, name, lPar, args, rPar, colon,
+      suite.newLine, suite.indent, suite.body, suite.dedent, DocstringExtractor.extractDocstring(suite.body));
+  }
+
+  private Suite suite() {
+    List<Statement> statements = new ArrayList<>();
+    if (!is(PythonTokenType.NEWLINE)) {
+      simpleStatements(statements);
+      return new Suite(null, null, statements, null);
+    }
+    Token newLine = consume();
+    Token indent = expect(PythonTokenType.INDENT);
+    do {
+      statementOrError(statements);
+    } while (!is(PythonTokenType.DEDENT) && !is(GenericTokenType.EOF));
+    return new Suite(newLine, indent, statements, expect(PythonTokenType.DEDENT));
+  }
+
+  // Parameters
+
+  /**
+   * TYPEDARGSLIST when {@code typed}, VARARGSLIST otherwise. Both rules are followed by the same ordered alternatives
+   * as in the grammar, which is why a lambda always gets a (possibly empty) parameter list.
+   */
+  private ParameterList parameterList(boolean typed) {
+    Parameters parameters = new Parameters(typed);
+    if (is("**")) {
+      parameters.starParameter();
+      parameters.trailingComma();
+    } else if (is("*")) {
+      parameters.starParameters();
+      parameters.trailingComma();
+    } else if (parameters.startsParameter(0)) {
+      parameters.parameterWithDefault();
+      parameters.parametersWithDefault();
+      if (is(",") && next("/")) {
+        parameters.comma();
+        parameters.add(new ParameterImpl(consume()));
+        parameters.parametersWithDefault();
+      }
+      if (typed && is(",")) {
+        parameters.comma();
+        if (is("**")) {
+          parameters.starParameter();
+        } else if (is("*")) {
+          parameters.starParameters();
+        }
+        parameters.trailingComma();
+      } else if (!typed && is(",") && (next("**") || next("*"))) {
+        parameters.comma();
+        if (is("**")) {
+          parameters.starParameter();
+        } else {
+          parameters.starParameters();
+        }
+      }
+    } else if (!typed) {
+      parameters.trailingComma();
+    } else {
+      throw fail();
+    }
+    return new ParameterListImpl(parameters.parameters, parameters.commas);
+  }
+
+  private class Parameters {
+    private final boolean typed;
+    private final List<AnyParameter> parameters = new ArrayList<>();
+    private final List<Token> commas = new ArrayList<>();
+
+    Parameters(boolean typed) {
+      this.typed = typed;
+    }
+
+    void add(AnyParameter parameter) {
+      parameters.add(parameter);
+    }
+
+    void comma() {
+      commas.add(consume());
+    }
+
+    void trailingComma() {
+      if (is(",")) {
+        comma();
+      }
+    }
+
+    boolean startsParameter(int offset) {
+      com.sonar.sslr.api.Token token = lookahead(offset);
+      return token.getType() == GenericTokenType.IDENTIFIER || "(".equals(token.getValue());
+    }
+
+    // "**" TFPDEF or "**" NAME
+    void starParameter() {
+      Token starStar = consume();
+      parameters.add(typed ? parameter(starStar) : new ParameterImpl(starStar, name(false), null, null, null));
+    }
+
+    // "*" [TFPDEF] ("," TFPDEF ["=" TEST])* ["," "**" TFPDEF], or the same with NAME and FPDEF
+    void starParameters() {
+      Token star = consume();
+      boolean named = typed ? startsParameter(0) : is(GenericTokenType.IDENTIFIER);
+      if (!named) {
+        parameters.add(new ParameterImpl(star));
+      } else if (typed) {
+        parameters.add(parameter(star));
+      } else {
+        parameters.add(new ParameterImpl(star, name(false), null, null, null));
+      }
+      parametersWithDefault();
+      if (is(",") && next("**")) {
+        comma();
+        starParameter();
+      }
+    }
+
+    // ("," TFPDEF ["=" TEST])*
+    void parametersWithDefault() {
+      while (is(",") && startsParameter(1)) {
+        comma();
+        parameterWithDefault();
+      }
+    }
+
+    void parameterWithDefault() {
+      if (is("(")) {
+        parameters.add(tupleParameter());
+        if (skip("=")) {
+          // like PythonTreeMaker, the default value of a tuple parameter is not part of the tree
+          test();
+        }
+        return;
+      }
+      Name name = name(false);
+      TypeAnnotation annotation = annotation();
+      Token assign = optional("=");
+      Expression defaultValue = assign == null ? null : test();
+      parameters.add(new ParameterImpl(null, name, annotation, assign, defaultValue));
+    }
+
+    AnyParameter parameter(@Nullable Token star) {
+      if (is("(")) {
+        return tupleParameter();
+      }
+      return new ParameterImpl(star, name(false), annotation(), null, null);
+    }
+
+    @CheckForNull
+    TypeAnnotation annotation() {
+      if (typed && is(":")) {
+        return new TypeAnnotationImpl(consume(), test(), Tree.Kind.PARAMETER_TYPE_ANNOTATION);
+      }
+      return null;
+    }
+
+    // "(" TFPLIST ")" or "(" FPLIST ")"
+    AnyParameter tupleParameter() {
+      Token lPar = consume();
+      List<AnyParameter> nested = new ArrayList<>();
+      List<Token> nestedCommas = new ArrayList<>();
+      nested.add(parameter(null));
+      while (is(",")) {
+        nestedCommas.add(consume());
+        if (!startsParameter(0)) {
+          break;
+        }
+        nested.add(parameter(null));
+      }
+      return new TupleParameterImpl(lPar, nested, nestedCommas, expect(")"));
+    }
+  }
+
+  // Expressions
+
+  private Expression namedExprTest() {
+    Expression test = test();
+    if (is(":=")) {
+      Token walrus = consume();
+      return assignmentExpression(test, walrus, test());
+    }
+    return test;
+  }
+
+  private static Expression assignmentExpression(Expression nameExpression, Token walrus, Expression expression) {
+    if (!nameExpression.is(Tree.Kind.NAME)) {
+      int line = nameExpression.firstToken().line();
+      throw new RecognitionException(line, "Parse error at line " + line + ": The left-hand side of an assignment expression must be a name.");
+    }
+    return new AssignmentExpressionImpl((Name) nameExpression, walrus, expression);
+  }
+
+  private Expression test() {
+    if (is("lambda")) {
+      return lambda(false);
+    }
+    Expression orTest = orTest();
+    if (is("if")) {
+      // the conditional part is optional: "if" may as well start the condition of a comprehension
+      int mark = pos;
+      try {
+        Token ifKeyword = consume();
+        Expression condition = orTest();
+        Token elseKeyword = expect("else");
+        return new ConditionalExpressionImpl(orTest, ifKeyword, condition, elseKeyword, test());
+      } catch (ParseFailure e) {
+        pos = mark;
+      }
+    }
+    return orTest;
+  }
+
+  private Expression testNoCond() {
+    return is("lambda") ? lambda(true) : orTest();
+  }
+
+  private Expression lambda(boolean noCond) {
+    Token lambdaKeyword = consume();
+    ParameterList parameters = parameterList(false);
+    Token colon = expect(":");
+    Expression body = noCond ? testNoCond() : test();
+    return new LambdaExpressionImpl(lambdaKeyword, colon, body, parameters);
+  }
+
+  private Expression orTest() {
+    Expression result = andTest();
+    while (is("or")) {
+      Token operator = consume();
+      result = new BinaryExpressionImpl(result, operator, andTest());
+    }
+    return result;
+  }
+
+  private Expression andTest() {
+    Expression result = notTest();
+    while (is("and")) {
+      Token operator = consume();
+      result = new BinaryExpressionImpl(result, operator, notTest());
+    }
+    return result;
+  }
+
+  private Expression notTest() {
+    if (is("not")) {
+      Token operator = consume();
+      return new UnaryExpressionImpl(operator, notTest());
+    }
+    return comparison();
+  }
+
+  private Expression comparison() {
+    Expression result = expr();
+    while (true) {
+      if (COMPARISON_OPERATORS.contains(value())) {
+        Token operator = consume();
+        result = new BinaryExpressionImpl(result, operator, expr());
+      } else if (is("is")) {
+        Token operator = consume();
+        Token not = optional("not");
+        result = new IsExpressionImpl(result, operator, not, expr());
+      } else if (is("in")) {
+        Token operator = consume();
+        result = new InExpressionImpl(result, null, operator, expr());
+      } else if (is("not") && next("in")) {
+        Token not = consume();
+        Token operator = consume();
+        result = new InExpressionImpl(result, not, operator, expr());
+      } else {
+        return result;
+      }
+    }
+  }
+
+  // EXPR, which is also OR_EXPR
+  private Expression expr() {
+    return binaryExpression(0);
+  }
+
+  private Expression binaryExpression(int level) {
+    if (level == BINARY_OPERATORS.length) {
+      return factor();
+    }
+    Expression result = binaryExpression(level + 1);
+    while (isOneOf(BINARY_OPERATORS[level])) {
+      Token operator = consume();
+      result = new BinaryExpressionImpl(result, operator, binaryExpression(level + 1));
+    }
+    return result;
+  }
+
+  private Expression factor() {
+    if (is("+") || is("-") || is("~")) {
+      Token operator = consume();
+      return new UnaryExpressionImpl(operator, factor());
+    }
+    return power();
+  }
+
+  private Expression power() {
+    Token awaitKeyword = null;
+    if (is("await")) {
+      int line = current().getLine();
+      awaitKeyword = consume();
+      if (!startsAtom(current())) {
+        // matched by the grammar, but rejected by PythonTreeMaker
+        throw new RecognitionException(line, "Parse error at line " + line + ": \"await\" must be followed by an expression.");
+      }
+    }
+    Expression expression = atom();
+    while (true) {
+      if (is("(")) {
+        expression = call(expression);
+      } else if (is("[")) {
+        expression = subscription(expression);
+      } else if (is(".") && lookahead(1).getType() == GenericTokenType.IDENTIFIER) {
+        Token dot = consume();
+        expression = new QualifiedExpressionImpl(name(false), expression, dot);
+      } else {
+        break;
+      }
+    }
+    if (awaitKeyword != null) {
+      expression = new AwaitExpressionImpl(awaitKeyword, expression);
+    }
+    if (is("**")) {
+      Token operator = consume();
+      expression = new BinaryExpressionImpl(expression, operator, factor());
+    }
+    return expression;
+  }
+
+  private Expression call(Expression callee) {
+    Token lPar = consume();
+    ArgList argList = null;
+    if (!is(")")) {
+      argList = argList();
+      checkGeneratorExpressionInArgument(argList.arguments());
+    }
+    return new CallExpressionImpl(callee, argList, lPar, expect(")"));
+  }
+
+  /*
+   * Post Condition on Generator Expression: parentheses can be omitted on calls with only one argument.
+   * https://docs.python.org/3/reference/expressions.html#grammar-token-generator-expression
+   */
+  private static void checkGeneratorExpressionInArgument(List<Argument> arguments) {
+    if (arguments.size() < 2) {
+      return;
+    }
+    for (Argument argument : arguments) {
+      if (argument.is(Tree.Kind.REGULAR_ARGUMENT)) {
+        Expression expression = ((RegularArgument) argument).expression();
+        if (expression.is(Tree.Kind.GENERATOR_EXPR) && !expression.firstToken().value().equals("(")) {
+          int line = expression.firstToken().line();
+          throw new RecognitionException(line, "Parse error at line " + line + ": Generator expression must be parenthesized if not sole argument.");
+        }
+      }
+    }
+  }
+
+  private ArgList argList() {
+    List<Argument> arguments = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    arguments.add(argument());
+    while (is(",")) {
+      commas.add(consume());
+      if (!startsArgument(current())) {
+        break;
+      }
+      arguments.add(argument());
+    }
+    return new ArgListImpl(arguments, commas);
+  }
+
+  private Argument argument() {
+    if (is("*") || is("**")) {
+      Token star = consume();
+      return new UnpackingExpressionImpl(star, test());
+    }
+    Expression test = test();
+    if (is(":=")) {
+      Token walrus = consume();
+      return new RegularArgumentImpl((Expression) assignmentExpression(test, walrus, test()));
+    }
+    if (is("=")) {
+      if (!test.is(Tree.Kind.NAME)) {
+        int line = test.firstToken().line();
+        throw new RecognitionException(line, "Parse error at line " + line + ": Keyword in argument list must be an identifier.");
+      }
+      Token assign = consume();
+      return new RegularArgumentImpl((Name) test, assign, test());
+    }
+    if (startsCompFor()) {
+      return new RegularArgumentImpl(new ComprehensionExpressionImpl(Tree.Kind.GENERATOR_EXPR, null, test, compFor(), null));
+    }
+    return new RegularArgumentImpl(test);
+  }
+
+  private Expression subscription(Expression object) {
+    Token lBracket = consume();
+    List<Tree> slices = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    boolean hasSliceItem = false;
+    do {
+      Tree subscript = subscript();
+      hasSliceItem |= subscript.is(Tree.Kind.SLICE_ITEM);
+      slices.add(subscript);
+      if (!is(",")) {
+        break;
+      }
+      commas.add(consume());
+    } while (is(":") || startsTest(current()));
+    Token rBracket = expect("]");
+
+    // https://docs.python.org/3/reference/expressions.html#slicings
+    // "a subscription takes priority over the interpretation as a slicing (this is the case if the slice list contains no proper slice)"
+    if (hasSliceItem) {
+      return new SliceExpressionImpl(object, lBracket, new SliceListImpl(slices, commas), rBracket);
+    }
+    List<Expression> expressions = new ArrayList<>(slices.size());
+    for (Tree slice : slices) {
+      expressions.add((Expression) slice);
+    }
+    return new SubscriptionExpressionImpl(object, lBracket, new ExpressionListImpl(expressions, commas), rBracket);
+  }
+
+  private Tree subscript() {
+    Expression lowerBound = null;
+    if (!is(":")) {
+      lowerBound = test();
+      if (!is(":")) {
+        return lowerBound;
+      }
+    }
+    Token boundSeparator = consume();
+    Expression upperBound = startsTest(current()) ? test() : null;
+    Token strideSeparator = optional(":");
+    Expression stride = strideSeparator != null && startsTest(current()) ? test() : null;
+    return new SliceItemImpl(lowerBound, boundSeparator, upperBound, strideSeparator, stride);
+  }
+
+  private Expression atom() {
+    com.sonar.sslr.api.Token token = current();
+    TokenType type = token.getType();
+    if (type == GenericTokenType.IDENTIFIER) {
+      return name(true);
+    }
+    if (type == PythonTokenType.NUMBER) {
+      return new NumericLiteralImpl(consume());
+    }
+    if (type == PythonTokenType.STRING) {
+      return stringLiteral();
+    }
+    switch (token.getValue()) {
+      case "(":
+        return parenthesized();
+      case "[":
+        return listLiteral();
+      case "{":
+        return dictOrSetLiteral();
+      case "`":
+        return repr();
+      case "None":
+        return new NoneExpressionImpl(consume());
+      case ".":
+        if (next(".") && "...".equals(lookahead(0).getValue() + lookahead(1).getValue() + lookahead(2).getValue())) {
+          return new EllipsisExpressionImpl(Arrays.asList(consume(), consume(), consume()));
+        }
+        throw fail();
+      default:
+        throw fail();
+    }
+  }
+
+  private Expression parenthesized() {
+    Token lPar = consume();
+    if (is("yield")) {
+      YieldExpression yieldExpression = yieldExpression();
+      return new ParenthesizedExpressionImpl(lPar, yieldExpression, expect(")"));
+    }
+    if (is(")")) {
+      return new TupleImpl(lPar, Collections.emptyList(), Collections.emptyList(), consume());
+    }
+    Expression first = namedExprTestOrStar();
+    if (startsCompFor()) {
+      ComprehensionFor compFor = compFor();
+      return new ComprehensionExpressionImpl(Tree.Kind.GENERATOR_EXPR, lPar, first, compFor, expect(")"));
+    }
+    ExprList elements = elementsFrom(first);
+    Token rPar = expect(")");
+    if (elements.commas.isEmpty()) {
+      return new ParenthesizedExpressionImpl(lPar, first, rPar);
+    }
+    return new TupleImpl(lPar, elements.expressions, elements.commas, rPar);
+  }
+
+  private Expression listLiteral() {
+    Token lBracket = consume();
+    if (is("]")) {
+      return new ListLiteralImpl(lBracket, new ExpressionListImpl(Collections.emptyList(), Collections.emptyList()), consume());
+    }
+    Expression first = namedExprTestOrStar();
+    if (startsCompFor()) {
+      ComprehensionFor compFor = compFor();
+      return new ComprehensionExpressionImpl(Tree.Kind.LIST_COMPREHENSION, lBracket, first, compFor, expect("]"));
+    }
+    ExpressionList elements = elementsFrom(first).toExpressionList();
+    return new ListLiteralImpl(lBracket, elements, expect("]"));
+  }
+
+  // rest of TESTLIST_COMP once its first element has been parsed
+  private ExprList elementsFrom(Expression first) {
+    ExprList elements = new ExprList();
+    elements.expressions.add(first);
+    while (is(",")) {
+      elements.commas.add(consume());
+      if (!startsTestOrStar(current())) {
+        break;
+      }
+      elements.expressions.add(namedExprTestOrStar());
+    }
+    return elements;
+  }
+
+  private Expression namedExprTestOrStar() {
+    return is("*") ? starExpr() : namedExprTest();
+  }
+
+  private Expression dictOrSetLiteral() {
+    Token lCurlyBrace = consume();
+    if (is("}")) {
+      return new DictionaryLiteralImpl(lCurlyBrace, Collections.emptyList(), Collections.emptyList(), consume());
+    }
+    if (is("*")) {
+      return setLiteral(lCurlyBrace, starExpr());
+    }
+    if (is("**")) {
+      return dictionaryLiteral(lCurlyBrace, dictionaryElement());
+    }
+    Expression first = test();
+    if (!is(":")) {
+      return setLiteral(lCurlyBrace, first);
+    }
+    Token colon = consume();
+    Expression value = test();
+    if (startsCompFor()) {
+      ComprehensionFor compFor = compFor();
+      return new DictCompExpressionImpl(lCurlyBrace, first, colon, value, compFor, expect("}"));
+    }
+    return dictionaryLiteral(lCurlyBrace, new KeyValuePairImpl(first, colon, value));
+  }
+
+  private Expression dictionaryLiteral(Token lCurlyBrace, DictionaryLiteralElement first) {
+    List<DictionaryLiteralElement> elements = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    elements.add(first);
+    while (is(",")) {
+      commas.add(consume());
+      if (!is("**") && !startsTest(current())) {
+        break;
+      }
+      elements.add(dictionaryElement());
+    }
+    return new DictionaryLiteralImpl(lCurlyBrace, commas, elements, expect("}"));
+  }
+
+  private DictionaryLiteralElement dictionaryElement() {
+    if (is("**")) {
+      Token starStar = consume();
+      return new UnpackingExpressionImpl(starStar, expr());
+    }
+    Expression key = test();
+    Token colon = expect(":");
+    return new KeyValuePairImpl(key, colon, test());
+  }
+
+  private Expression setLiteral(Token lCurlyBrace, Expression first) {
+    if (startsCompFor()) {
+      ComprehensionFor compFor = compFor();
+      return new ComprehensionExpressionImpl(Tree.Kind.SET_COMPREHENSION, lCurlyBrace, first, compFor, expect("}"));
+    }
+    List<Expression> elements = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    elements.add(first);
+    while (is(",")) {
+      commas.add(consume());
+      if (!startsTestOrStar(current())) {
+        break;
+      }
+      elements.add(is("*") ? starExpr() : test());
+    }
+    return new SetLiteralImpl(lCurlyBrace, elements, commas, expect("}"));
+  }
+
+  private Expression repr() {
+    Token openingBacktick = consume();
+    List<Expression> expressions = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    expressions.add(test());
+    while (is(",")) {
+      commas.add(consume());
+      expressions.add(test());
+    }
+    return new ReprExpressionImpl(openingBacktick, new ExpressionListImpl(expressions, commas), expect("`"));
+  }
+
+  private Expression starExpr() {
+    Token star = consume();
+    return new UnpackingExpressionImpl(star, expr());
+  }
+
+  private YieldExpression yieldExpression() {
+    Token yieldKeyword = expect("yield");
+    if (is("from")) {
+      Token fromKeyword = consume();
+      return new YieldExpressionImpl(yieldKeyword, fromKeyword, Collections.singletonList(test()));
+    }
+    List<Expression> expressions = startsTestOrStar(current()) ? testListStarExpr().expressions : Collections.emptyList();
+    return new YieldExpressionImpl(yieldKeyword, null, expressions);
+  }
+
+  private boolean startsCompFor() {
+    return is("for") || (is("async") && next("for"));
+  }
+
+  private ComprehensionFor compFor() {
+    Token asyncToken = optional("async");
+    Token forToken = expect("for");
+    Expression loopExpression = exprList().toExpression();
+    Token inToken = expect("in");
+    Expression iterable = testList().toExpression();
+    return new ComprehensionForImpl(asyncToken, forToken, loopExpression, inToken, iterable, compIter());
+  }
+
+  @CheckForNull
+  private ComprehensionClause compIter() {
+    if (startsCompFor()) {
+      return compFor();
+    }
+    if (is("if")) {
+      Token ifToken = consume();
+      Expression condition = testNoCond();
+      return new ComprehensionIfImpl(ifToken, condition, compIter());
+    }
+    return null;
+  }
+
+  // TESTLIST_STAR_EXPR
+  private ExprList testListStarExpr() {
+    ExprList list = new ExprList();
+    list.expressions.add(is("*") ? starExpr() : test());
+    while (is(",")) {
+      list.commas.add(consume());
+      if (!startsTestOrStar(current())) {
+        break;
+      }
+      list.expressions.add(is("*") ? starExpr() : test());
+    }
+    return list;
+  }
+
+  // TESTLIST
+  private ExprList testList() {
+    ExprList list = new ExprList();
+    list.expressions.add(test());
+    while (is(",")) {
+      list.commas.add(consume());
+      if (!startsTest(current())) {
+        break;
+      }
+      list.expressions.add(test());
+    }
+    return list;
+  }
+
+  // EXPRLIST
+  private ExprList exprList() {
+    ExprList list = new ExprList();
+    list.expressions.add(is("*") ? starExpr() : expr());
+    while (is(",")) {
+      list.commas.add(consume());
+      if (!is("*") && !startsExpr(current())) {
+        break;
+      }
+      list.expressions.add(is("*") ? starExpr() : expr());
+    }
+    return list;
+  }
+
+  private Name name(boolean isVariable) {
+    return new NameImpl(expect(GenericTokenType.IDENTIFIER), isVariable);
+  }
+
+  // Strings
+
+  private Expression stringLiteral() {
+    List<StringElement> elements = new ArrayList<>();
+    while (is(PythonTokenType.STRING)) {
+      com.sonar.sslr.api.Token token = current();
+      StringElementImpl element = new StringElementImpl(consume());
+      if (element.isInterpolated()) {
+        addFormattedExpressions(element, token);
+      }
+      elements.add(element);
+    }
+    return new StringLiteralImpl(elements);
+  }
+
+  private void addFormattedExpressions(StringElementImpl element, com.sonar.sslr.api.Token token) {
+    fStringLexerState.reset(token.getLine(), token.getColumn() + element.contentStartIndex());
+    List<com.sonar.sslr.api.Token> enclosingTokens = tokens;
+    int enclosingPos = pos;
+    int enclosingFurthest = furthest;
+    tokens = fStringLexer.lex(element.trimmedQuotesValue());
+    pos = 0;
+    try {
+      // F_STRING_CONTENT: stops silently at the first part which cannot be parsed
+      while (true) {
+        if (is(GenericTokenType.UNKNOWN_CHAR)) {
+          pos++;
+        } else if (is("{")) {
+          int mark = pos;
+          try {
+            element.addFormattedExpression(formattedExpression());
+          } catch (ParseFailure e) {
+            pos = mark;
+            return;
+          }
+        } else {
+          return;
+        }
+      }
+    } finally {
+      tokens = enclosingTokens;
+      pos = enclosingPos;
+      furthest = enclosingFurthest;
+    }
+  }
+
+  private FormattedExpression formattedExpression() {
+    expect("{");
+    Expression expression = expr();
+    Token equalToken = optional("=");
+    if (is("!") && (next("s") || next("r") || next("a"))) {
+      pos += 2;
+    }
+    FormatSpecifier formatSpecifier = is(":") ? formatSpecifier() : null;
+    expect("}");
+    return new FormattedExpressionImpl(expression, equalToken, formatSpecifier);
+  }
+
+  private FormatSpecifier formatSpecifier() {
+    Token colon = consume();
+    List<FormattedExpression> nestedExpressions = new ArrayList<>();
+    int start = pos;
+    while (!is("}") && !is(GenericTokenType.EOF)) {
+      if (is("{")) {
+        int mark = pos;
+        try {
+          nestedExpressions.add(formattedExpression());
+          continue;
+        } catch (ParseFailure e) {
+          pos = mark;
+        }
+      }
+      pos++;
+    }
+    if (pos == start) {
+      throw fail();
+    }
+    return new FormatSpecifierImpl(colon, nestedExpressions);
+  }
+
+  // Tokens
+
+  private com.sonar.sslr.api.Token current() {
+    return tokens.get(pos);
+  }
+
+  private com.sonar.sslr.api.Token lookahead(int offset) {
+    return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+  }
+
+  private String value() {
+    return current().getValue();
+  }
+
+  private boolean is(String value) {
+    return value.equals(current().getValue());
+  }
+
+  private boolean is(TokenType type) {
+    return current().getType() == type;
+  }
+
+  private boolean isOneOf(String[] values) {
+    String value = value();
+    for (String candidate : values) {
+      if (candidate.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean next(String value) {
+    return value.equals(lookahead(1).getValue());
+  }
+
+  private Token consume() {
+    return new TokenImpl(tokens.get(pos++));
+  }
+
+  private Token expect(String value) {
+    if (!is(value)) {
+      throw fail();
+    }
+    return consume();
+  }
+
+  private Token expect(TokenType type) {
+    if (!is(type)) {
+      throw fail();
+    }
+    return consume();
+  }
+
+  @CheckForNull
+  private Token optional(String value) {
+    return is(value) ? consume() : null;
+  }
+
+  /**
+   * Consumes a token which has no counterpart in the strongly typed tree.
+   */
+  private boolean skip(String value) {
+    if (is(value)) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private ParseFailure fail() {
+    furthest = Math.max(furthest, pos);
+    return FAILURE;
+  }
+
+  private static boolean startsAtom(com.sonar.sslr.api.Token token) {
+    TokenType type = token.getType();
+    if (type == GenericTokenType.IDENTIFIER || type == PythonTokenType.NUMBER || type == PythonTokenType.STRING) {
+      return true;
+    }
+    switch (token.getValue()) {
+      case "(":
+      case "[":
+      case "{":
+      case "`":
+      case ".":
+      case "None":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean startsExpr(com.sonar.sslr.api.Token token) {
+    return startsAtom(token) || "+".equals(token.getValue()) || "-".equals(token.getValue()) || "~".equals(token.getValue());
+  }
+
+  private static boolean startsTest(com.sonar.sslr.api.Token token) {
+    return startsExpr(token) || "not".equals(token.getValue()) || "lambda".equals(token.getValue());
+  }
+
+  private static boolean startsTestOrStar(com.sonar.sslr.api.Token token) {
+    return startsTest(token) || "*".equals(token.getValue());
+  }
+
+  private static boolean startsArgument(com.sonar.sslr.api.Token token) {
+    return startsTestOrStar(token) || "**".equals(token.getValue());
+  }
+
+  /**
+   * Expressions separated by commas, as matched by TESTLIST, TESTLIST_STAR_EXPR, EXPRLIST or TESTLIST_COMP.
+   */
+  private static class ExprList {
+    private static final ExprList EMPTY = new ExprList();
+
+    private final List<Expression> expressions = new ArrayList<>();
+    private final List<Token> commas = new ArrayList<>();
+
+    static ExprList of(Expression expression) {
+      ExprList list = new ExprList();
+      list.expressions.add(expression);
+      return list;
+    }
+
+    Expression toExpression() {
+      if (commas.isEmpty()) {
+        return expressions.get(0);
+      }
+      return new TupleImpl(null, expressions, commas, null);
+    }
+
+    ExpressionList toExpressionList() {
+      return new ExpressionListImpl(expressions, commas);
+    }
+  }
+
+  private static class Suite {
+    private final Token newLine;
+    private final Token indent;
+    private final StatementList body;
+    private final Token dedent;
+
+    Suite(@Nullable Token newLine, @Nullable Token indent, List<Statement> statements, @Nullable Token dedent) {
+      this.newLine = newLine;
+      this.indent = indent;
+      this.body = new StatementListImpl(statements);
+      this.dedent = dedent;
+    }
+  }
+
+  /**
+   * Signals that the current alternative does not match. Thrown often during speculative parsing, hence shared and without stack trace.
+   */
+  private static class ParseFailure extends RuntimeException {
+    ParseFailure() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.sonar.sslr.api.TokenType;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TreeVisitor;
@@ -31,11 +32,37 @@ import org.sonar.plugins.python.api.tree.Trivia;
 public class TokenImpl extends PyTree implements Token {
 
   private com.sonar.sslr.api.Token token;
-  private List<Trivia> trivia;
+  // materialized on first access: most tokens have no trivia, and most consumers never read comments
+  private List<Trivia> trivia = null;
+  private final int endLine;
+  private final int endColumn;
+  private List<Token> fileTokens = null;
 
   public TokenImpl(com.sonar.sslr.api.Token token) {
     this.token = token;
-    this.trivia = token.getTrivia().stream().map(tr -> new TriviaImpl(new TokenImpl(tr.getToken()))).collect(Collectors.toList());
+    if (!token.hasTrivia()) {
+      this.trivia = Collections.emptyList();
+    }
+    String value = token.getValue();
+    int lineBreaks = 0;
+    int lastLineStart = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\r' || c == '\n') {
+        if (c == '\r' && i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineBreaks++;
+        lastLineStart = i + 1;
+      }
+    }
+    if (lineBreaks == 0) {
+      endLine = token.getLine();
+      endColumn = token.getColumn() + value.length();
+    } else {
+      endLine = token.getLine() + lineBreaks;
+      endColumn = value.length() - lastLineStart;
+    }
   }
 
   @Override
@@ -53,11 +80,36 @@ public class TokenImpl extends PyTree implements Token {
     return token.getColumn();
   }
 
+  @Override
+  public int endLine() {
+    return endLine;
+  }
+
+  @Override
+  public int endColumn() {
+    return endColumn;
+  }
+
   @Override
   public List<Trivia> trivia() {
+    if (trivia == null) {
+      trivia = token.getTrivia().stream().map(tr -> new TriviaImpl(new TokenImpl(tr.getToken()))).collect(Collectors.toList());
+    }
     return trivia;
   }
 
+  void setFileTokens(List<Token> fileTokens) {
+    this.fileTokens = fileTokens;
+  }
+
+  /**
+   * Token index of the file this token belongs to, null when the token is not part of it (e.g. tokens of f-string expressions).
+   */
+  @CheckForNull
+  List<Token> fileTokens() {
+    return fileTokens;
+  }
+
   public TokenType type() {
     return token.getType();
   }
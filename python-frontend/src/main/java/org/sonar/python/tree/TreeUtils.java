@@ -19,12 +19,15 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -49,7 +52,6 @@ import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tree.Kind;
 import org.sonar.plugins.python.api.tree.Tuple;
-import org.sonar.python.TokenLocation;
 import org.sonar.python.api.PythonTokenType;
 
 public class TreeUtils {
@@ -80,22 +82,85 @@ public class TreeUtils {
   }
 
   public static List<Token> tokens(Tree tree) {
-    if (tree.is(Kind.TOKEN)) {
-      return Collections.singletonList((Token) tree);
-    } else if (tree.is(Kind.STRING_ELEMENT)) {
-      return Collections.singletonList(tree.firstToken());
+    List<Token> indexedTokens = indexedTokens(tree);
+    if (indexedTokens != null) {
+      return indexedTokens;
     }
     List<Token> tokens = new ArrayList<>();
-    for (Tree child : tree.children()) {
-      if (child.is(Kind.TOKEN)) {
-        tokens.add(((Token) child));
+    forEachToken(tree, tokens::add);
+    return tokens;
+  }
+
+  @CheckForNull
+  private static List<Token> indexedTokens(Tree tree) {
+    if (!(tree instanceof PyTree) || ((PyTree) tree).tokensStart() < 0) {
+      return null;
+    }
+    PyTree pyTree = (PyTree) tree;
+    if (pyTree.tokensStart() == pyTree.tokensEnd()) {
+      return Collections.emptyList();
+    }
+    Token firstToken = tree.is(Kind.TOKEN) ? (Token) tree : tree.firstToken();
+    List<Token> fileTokens = firstToken instanceof TokenImpl ? ((TokenImpl) firstToken).fileTokens() : null;
+    if (fileTokens == null || fileTokens.get(pyTree.tokensStart()) != firstToken) {
+      return null;
+    }
+    return fileTokens.subList(pyTree.tokensStart(), pyTree.tokensEnd());
+  }
+
+  /**
+   * Token preceding the given one in its file, or null if there is none or if the token is not part of the token index of a file.
+   */
+  @CheckForNull
+  public static Token previousToken(Token token) {
+    return neighbourToken(token, -1);
+  }
+
+  /**
+   * Token following the given one in its file, or null if there is none or if the token is not part of the token index of a file.
+   */
+  @CheckForNull
+  public static Token nextToken(Token token) {
+    return neighbourToken(token, 1);
+  }
+
+  @CheckForNull
+  private static Token neighbourToken(Token token, int offset) {
+    List<Token> fileTokens = token instanceof TokenImpl ? ((TokenImpl) token).fileTokens() : null;
+    if (fileTokens == null) {
+      return null;
+    }
+    int index = ((TokenImpl) token).tokensStart() + offset;
+    return index >= 0 && index < fileTokens.size() ? fileTokens.get(index) : null;
+  }
+
+  /**
+   * Feeds the tokens of the given tree to the consumer, in source order, without building intermediate lists.
+   */
+  public static void forEachToken(Tree tree, Consumer<Token> consumer) {
+    List<Token> indexedTokens = indexedTokens(tree);
+    if (indexedTokens != null) {
+      indexedTokens.forEach(consumer);
+      return;
+    }
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(tree);
+    while (!stack.isEmpty()) {
+      Tree current = stack.pop();
+      if (current.is(Kind.TOKEN)) {
+        consumer.accept((Token) current);
+      } else if (current.is(Kind.STRING_ELEMENT)) {
+        consumer.accept(current.firstToken());
       } else {
-        tokens.addAll(tokens(child));
+        List<Tree> children = current.children();
+        for (int i = children.size() - 1; i >= 0; i--) {
+          stack.push(children.get(i));
+        }
       }
     }
-    return tokens;
   }
 
+
   public static List<Token> nonWhitespaceTokens(Tree tree) {
     return TreeUtils.tokens(tree).stream()
       .filter(t -> !WHITESPACE_TOKEN_TYPES.contains(t.type()))
@@ -278,8 +343,8 @@ public class TreeUtils {
     if (fileId == null) {
       return null;
     }
-    TokenLocation firstToken = new TokenLocation(tree.firstToken());
-    TokenLocation lastToken = new TokenLocation(tree.lastToken());
-    return new LocationInFile(fileId, firstToken.startLine(), firstToken.startLineOffset(), lastToken.endLine(), lastToken.endLineOffset());
+    Token firstToken = tree.firstToken();
+    Token lastToken = tree.lastToken();
+    return new LocationInFile(fileId, firstToken.line(), firstToken.column(), lastToken.endLine(), lastToken.endColumn());
   }
 }
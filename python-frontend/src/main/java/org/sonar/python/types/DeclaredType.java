@@ -152,6 +152,10 @@ public class DeclaredType implements InferredType {
     return typeClass;
   }
 
+  List<DeclaredType> typeArgs() {
+    return typeArgs;
+  }
+
   public Set<Symbol> alternativeTypeSymbols() {
     return alternativeTypeSymbols;
   }
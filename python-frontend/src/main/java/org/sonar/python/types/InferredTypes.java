@@ -19,6 +19,7 @@
  */
 package org.sonar.python.types;
 
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.CheckForNull;
@@ -43,6 +45,7 @@ import org.sonar.plugins.python.api.tree.Tree.Kind;
 import org.sonar.plugins.python.api.tree.TypeAnnotation;
 import org.sonar.plugins.python.api.types.BuiltinTypes;
 import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.semantic.ClassSymbolImpl;
 import org.sonar.python.tree.TreeUtils;
 
 import static org.sonar.plugins.python.api.symbols.Symbol.Kind.CLASS;
@@ -50,6 +53,8 @@ import static org.sonar.plugins.python.api.symbols.Symbol.Kind.CLASS;
 public class InferredTypes {
 
   private static final Map<String, String> ALIASED_ANNOTATIONS = new HashMap<>();
+  // runtime types of the classes which are not ClassSymbolImpl, kept while they are in use
+  private static final Map<ClassSymbol, WeakReference<InferredType>> OTHER_RUNTIME_TYPES = new WeakHashMap<>();
 
   static {
     ALIASED_ANNOTATIONS.put("typing.List", BuiltinTypes.LIST);
@@ -110,16 +115,24 @@ public class InferredTypes {
   }
 
   static InferredType runtimeBuiltinType(String fullyQualifiedName) {
-    return new RuntimeType(TypeShed.typeShedClass(fullyQualifiedName));
+    return runtimeType(TypeShed.typeShedClass(fullyQualifiedName));
   }
 
   private static InferredType declaredBuiltinType(String fullyQualifiedName) {
     return new DeclaredType(TypeShed.typeShedClass(fullyQualifiedName));
   }
 
+  /**
+   * The runtime type of a class is created once and shared: its hash code and equality with other types are then cheap to
+   * compute again, which matters as types are compared on each iteration of the type inference. Unions are shared too, see
+   * {@link UnionType}.
+   */
   public static InferredType runtimeType(@Nullable Symbol typeClass) {
+    if (typeClass instanceof ClassSymbolImpl) {
+      return ((ClassSymbolImpl) typeClass).runtimeType(RuntimeType::new);
+    }
     if (typeClass instanceof ClassSymbol) {
-      return new RuntimeType((ClassSymbol) typeClass);
+      return otherRuntimeType((ClassSymbol) typeClass);
     }
     if (typeClass instanceof AmbiguousSymbol) {
       return union(((AmbiguousSymbol) typeClass).alternatives().stream().map(InferredTypes::runtimeType));
@@ -127,6 +140,18 @@ public class InferredTypes {
     return anyType();
   }
 
+  private static InferredType otherRuntimeType(ClassSymbol typeClass) {
+    synchronized (OTHER_RUNTIME_TYPES) {
+      WeakReference<InferredType> existing = OTHER_RUNTIME_TYPES.get(typeClass);
+      InferredType type = existing != null ? existing.get() : null;
+      if (type == null) {
+        type = new RuntimeType(typeClass);
+        OTHER_RUNTIME_TYPES.put(typeClass, new WeakReference<>(type));
+      }
+      return type;
+    }
+  }
+
   static void setBuiltinSymbols(Map<String, Symbol> builtinSymbols) {
     InferredTypes.builtinSymbols = Collections.unmodifiableMap(builtinSymbols);
   }
@@ -136,7 +161,7 @@ public class InferredTypes {
   }
 
   public static InferredType union(Stream<InferredType> types) {
-    return types.reduce(InferredTypes::or).orElse(anyType());
+    return UnionType.union(types.collect(Collectors.toList()));
   }
 
   public static InferredType fromTypeAnnotation(TypeAnnotation typeAnnotation) {
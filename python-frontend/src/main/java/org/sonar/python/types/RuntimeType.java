@@ -31,8 +31,9 @@ import org.sonar.python.semantic.ClassSymbolImpl;
 class RuntimeType implements InferredType {
 
   private final ClassSymbol typeClass;
-  private Set<String> typeClassSuperClassesFQN = null;
-  private Set<String> typeClassMembersFQN = null;
+  // lazily computed: builtin runtime types are shared between analysis threads
+  private volatile Set<String> typeClassSuperClassesFQN = null;
+  private volatile Set<String> typeClassMembersFQN = null;
 
   RuntimeType(ClassSymbol typeClass) {
     this.typeClass = typeClass;
@@ -104,17 +105,21 @@ class RuntimeType implements InferredType {
   }
 
   private Set<String> typeClassSuperClassesFQN() {
-    if (typeClassSuperClassesFQN == null) {
-      typeClassSuperClassesFQN = typeClass.superClasses().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+    Set<String> result = typeClassSuperClassesFQN;
+    if (result == null) {
+      result = typeClass.superClasses().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+      typeClassSuperClassesFQN = result;
     }
-    return typeClassSuperClassesFQN;
+    return result;
   }
 
   private Set<String> typeClassMembersFQN() {
-    if (typeClassMembersFQN == null) {
-      typeClassMembersFQN = typeClass.declaredMembers().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+    Set<String> result = typeClassMembersFQN;
+    if (result == null) {
+      result = typeClass.declaredMembers().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+      typeClassMembersFQN = result;
     }
-    return typeClassMembersFQN;
+    return result;
   }
 
   boolean hasUnresolvedHierarchy() {
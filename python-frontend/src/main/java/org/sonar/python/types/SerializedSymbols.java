@@ -0,0 +1,382 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.types;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.LocationInFile;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.semantic.AmbiguousSymbolImpl;
+import org.sonar.python.semantic.ClassSymbolImpl;
+import org.sonar.python.semantic.FunctionSymbolImpl;
+import org.sonar.python.semantic.SymbolImpl;
+import org.sonar.python.semantic.SymbolSerialization;
+
+/**
+ * Binary form of the symbols resolved from TypeShed stubs, written by {@link SerializedSymbolsWriter}.
+ * <p>
+ * A graph contains symbols and types, and the named root symbols of a module. Symbols and types are identified by indexes which
+ * continue the indexes of the external graph it is read with: the graph of the symbols shared by several modules, whose external
+ * graph is the one of the builtin symbols.
+ * <p>
+ * Each symbol and type has a header holding its properties, and groups of references to other symbols and types. Symbols are
+ * created first, then linked together: class hierarchies and members must be complete before any {@link RuntimeType} is created,
+ * as the hash code of a runtime type depends on them.
+ */
+class SerializedSymbols {
+
+  static final int FORMAT_VERSION = 1;
+
+  static final byte SYMBOL = 0;
+  static final byte CLASS = 1;
+  static final byte FUNCTION = 2;
+  static final byte AMBIGUOUS = 3;
+
+  static final byte RUNTIME_TYPE = 0;
+  static final byte UNION_TYPE = 1;
+  static final byte DECLARED_TYPE = 2;
+
+  static final int NULL_REFERENCE = -1;
+  static final int ANY_TYPE_REFERENCE = -2;
+  // while writing modules, the builtin symbols and types are referenced by negative indexes, after the special references
+  static final int BUILTIN_REFERENCE_OFFSET = -3;
+
+  // kinds of groups of references
+  static final int SYMBOLS = 0;
+  static final int ORDERED_SYMBOLS = 1;
+  static final int TYPES = 2;
+  static final int ORDERED_TYPES = 3;
+
+  /**
+   * SYMBOL: children, inferred type.
+   * CLASS: children, super classes, members, inferred type.
+   * FUNCTION: children, inferred type, parameter types, declared return type, owner.
+   * AMBIGUOUS: children, alternatives, inferred type.
+   */
+  static final int[][] SYMBOL_LAYOUTS = {
+    {SYMBOLS, ORDERED_TYPES},
+    {SYMBOLS, ORDERED_SYMBOLS, SYMBOLS, ORDERED_TYPES},
+    {SYMBOLS, ORDERED_TYPES, ORDERED_TYPES, ORDERED_TYPES, ORDERED_SYMBOLS},
+    {SYMBOLS, SYMBOLS, ORDERED_TYPES}
+  };
+  // groups which are read before the types are created
+  static final int[] STRUCTURAL_GROUPS = {1, 3, 1, 2};
+
+  /**
+   * RUNTIME_TYPE: type class.
+   * UNION_TYPE: types.
+   * DECLARED_TYPE: type class, type arguments.
+   */
+  static final int[][] TYPE_LAYOUTS = {
+    {ORDERED_SYMBOLS},
+    {TYPES},
+    {ORDERED_SYMBOLS, ORDERED_TYPES}
+  };
+
+  private SerializedSymbols() {
+  }
+
+  static class Graph {
+    @Nullable
+    private final Graph external;
+    private final int symbolsOffset;
+    private final int typesOffset;
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final List<InferredType> types = new ArrayList<>();
+    private final Map<String, Symbol> roots = new LinkedHashMap<>();
+
+    private Graph(@Nullable Graph external) {
+      this.external = external;
+      this.symbolsOffset = external == null ? 0 : external.symbolsEnd();
+      this.typesOffset = external == null ? 0 : external.typesEnd();
+    }
+
+    Map<String, Symbol> roots() {
+      return roots;
+    }
+
+    private int symbolsEnd() {
+      return symbolsOffset + symbols.size();
+    }
+
+    private int typesEnd() {
+      return typesOffset + types.size();
+    }
+
+    @CheckForNull
+    private Symbol symbol(int reference) {
+      if (reference == NULL_REFERENCE) {
+        return null;
+      }
+      return reference < symbolsOffset ? external.symbol(reference) : symbols.get(reference - symbolsOffset);
+    }
+
+    @CheckForNull
+    private InferredType type(int reference) {
+      if (reference == NULL_REFERENCE) {
+        return null;
+      }
+      if (reference == ANY_TYPE_REFERENCE) {
+        return AnyType.ANY;
+      }
+      return reference < typesOffset ? external.type(reference) : types.get(reference - typesOffset);
+    }
+  }
+
+  /**
+   * Integers are mostly small: they are written on as few bytes as possible, 7 bits per byte.
+   */
+  static void writeUnsignedInt(DataOutputStream out, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      out.writeByte((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    out.writeByte(remaining);
+  }
+
+  private static int readUnsignedInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int current;
+    do {
+      current = in.readUnsignedByte();
+      value |= (current & 0x7F) << shift;
+      shift += 7;
+    } while ((current & 0x80) != 0);
+    return value;
+  }
+
+  static void writeReference(DataOutputStream out, int reference) throws IOException {
+    writeUnsignedInt(out, reference - ANY_TYPE_REFERENCE);
+  }
+
+  private static int readReference(DataInputStream in) throws IOException {
+    return readUnsignedInt(in) + ANY_TYPE_REFERENCE;
+  }
+
+  /**
+   * The listener is notified as soon as the root symbols are linked together, before any type is created: creating some types
+   * requires the builtin symbols to be available.
+   */
+  static Graph read(DataInputStream in, @Nullable Graph external, Consumer<Map<String, Symbol>> rootsListener) throws IOException {
+    return new Reader(in, external).read(rootsListener);
+  }
+
+  private static class Reader {
+    private final DataInputStream in;
+    private final Graph graph;
+    private final List<Byte> symbolTags = new ArrayList<>();
+    private final Map<FunctionSymbolImpl, List<ParameterHeader>> parameters = new IdentityHashMap<>();
+    private final Map<AmbiguousSymbolImpl, Set<Symbol>> alternatives = new IdentityHashMap<>();
+
+    private Reader(DataInputStream in, @Nullable Graph external) {
+      this.in = in;
+      this.graph = new Graph(external);
+    }
+
+    private Graph read(Consumer<Map<String, Symbol>> rootsListener) throws IOException {
+      if (in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Unsupported format of serialized symbols");
+      }
+      int symbolsCount = readUnsignedInt(in);
+      for (int i = 0; i < symbolsCount; i++) {
+        graph.symbols.add(readHeader());
+      }
+      for (int i = 0; i < symbolsCount; i++) {
+        byte tag = symbolTags.get(i);
+        readStructure(tag, graph.symbols.get(i), readGroups(STRUCTURAL_GROUPS[tag]));
+      }
+      int rootsCount = readUnsignedInt(in);
+      for (int i = 0; i < rootsCount; i++) {
+        graph.roots.put(readString(), graph.symbol(readReference(in)));
+      }
+      rootsListener.accept(graph.roots);
+      int typesCount = readUnsignedInt(in);
+      for (int i = 0; i < typesCount; i++) {
+        graph.types.add(readType());
+      }
+      for (int i = 0; i < symbolsCount; i++) {
+        byte tag = symbolTags.get(i);
+        readTypedProperties(tag, graph.symbols.get(i), readGroups(SYMBOL_LAYOUTS[tag].length - STRUCTURAL_GROUPS[tag]));
+      }
+      return graph;
+    }
+
+    private Symbol readHeader() throws IOException {
+      byte tag = in.readByte();
+      symbolTags.add(tag);
+      String name = readString();
+      String fullyQualifiedName = readString();
+      Symbol.Kind kind = Symbol.Kind.values()[in.readByte()];
+      SymbolImpl symbol;
+      if (tag == CLASS) {
+        LocationInFile location = readLocation();
+        boolean hasDecorators = in.readBoolean();
+        boolean hasMetaClass = in.readBoolean();
+        ClassSymbolImpl classSymbol = new ClassSymbolImpl(name, fullyQualifiedName, location, hasDecorators, hasMetaClass, readString());
+        if (in.readBoolean()) {
+          classSymbol.setHasSuperClassWithoutSymbol();
+        }
+        symbol = classSymbol;
+      } else if (tag == FUNCTION) {
+        symbol = readFunctionHeader(name, fullyQualifiedName);
+      } else if (tag == AMBIGUOUS) {
+        Set<Symbol> symbolAlternatives = new HashSet<>();
+        AmbiguousSymbolImpl ambiguousSymbol = new AmbiguousSymbolImpl(name, fullyQualifiedName, Collections.unmodifiableSet(symbolAlternatives));
+        alternatives.put(ambiguousSymbol, symbolAlternatives);
+        symbol = ambiguousSymbol;
+      } else {
+        symbol = new SymbolImpl(name, fullyQualifiedName, readString());
+      }
+      symbol.setKind(kind);
+      return symbol;
+    }
+
+    private FunctionSymbolImpl readFunctionHeader(String name, @Nullable String fullyQualifiedName) throws IOException {
+      int decoratorsCount = readUnsignedInt(in);
+      List<String> decorators = new ArrayList<>(decoratorsCount);
+      for (int i = 0; i < decoratorsCount; i++) {
+        decorators.add(readString());
+      }
+      FunctionSymbolImpl functionSymbol = new FunctionSymbolImpl(name, fullyQualifiedName, decorators, readLocation(), in.readBoolean(),
+        in.readBoolean(), in.readBoolean(), in.readBoolean(), readString(), in.readBoolean());
+      int parametersCount = readUnsignedInt(in);
+      List<ParameterHeader> parameterHeaders = new ArrayList<>(parametersCount);
+      for (int i = 0; i < parametersCount; i++) {
+        parameterHeaders.add(new ParameterHeader(readString(), in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readBoolean(), readLocation()));
+      }
+      parameters.put(functionSymbol, parameterHeaders);
+      return functionSymbol;
+    }
+
+    private void readStructure(byte tag, Symbol symbol, int[][] groups) {
+      for (int child : groups[0]) {
+        SymbolSerialization.addChildSymbol((SymbolImpl) symbol, graph.symbol(child));
+      }
+      if (tag == CLASS) {
+        ClassSymbolImpl classSymbol = (ClassSymbolImpl) symbol;
+        symbols(groups[1]).forEach(classSymbol::addSuperClass);
+        classSymbol.addMembers(symbols(groups[2]));
+      } else if (tag == AMBIGUOUS) {
+        alternatives.get(symbol).addAll(symbols(groups[1]));
+      }
+    }
+
+    private InferredType readType() throws IOException {
+      byte tag = in.readByte();
+      int[][] groups = readGroups(TYPE_LAYOUTS[tag].length);
+      if (tag == RUNTIME_TYPE) {
+        return InferredTypes.runtimeType(graph.symbol(groups[0][0]));
+      }
+      if (tag == UNION_TYPE) {
+        return InferredTypes.union(Arrays.stream(groups[0]).mapToObj(graph::type));
+      }
+      List<DeclaredType> typeArgs = new ArrayList<>(groups[1].length);
+      for (int typeArg : groups[1]) {
+        typeArgs.add((DeclaredType) graph.type(typeArg));
+      }
+      return new DeclaredType(graph.symbol(groups[0][0]), typeArgs);
+    }
+
+    private void readTypedProperties(byte tag, Symbol symbol, int[][] groups) {
+      ((SymbolImpl) symbol).setInferredType(graph.type(groups[0][0]));
+      if (tag == FUNCTION) {
+        FunctionSymbolImpl functionSymbol = (FunctionSymbolImpl) symbol;
+        List<ParameterHeader> parameterHeaders = parameters.get(functionSymbol);
+        for (int i = 0; i < parameterHeaders.size(); i++) {
+          ParameterHeader header = parameterHeaders.get(i);
+          functionSymbol.addParameter(header.name, graph.type(groups[1][i]), header.hasDefaultValue, header.isVariadic, header.isKeywordOnly,
+            header.isPositionalOnly, header.location);
+        }
+        functionSymbol.setDeclaredReturnType(graph.type(groups[2][0]));
+        functionSymbol.setOwner(graph.symbol(groups[3][0]));
+      }
+    }
+
+    private List<Symbol> symbols(int[] references) {
+      List<Symbol> result = new ArrayList<>(references.length);
+      for (int reference : references) {
+        result.add(graph.symbol(reference));
+      }
+      return result;
+    }
+
+    private int[][] readGroups(int count) throws IOException {
+      int[][] groups = new int[count][];
+      for (int i = 0; i < count; i++) {
+        int[] group = new int[readUnsignedInt(in)];
+        for (int j = 0; j < group.length; j++) {
+          group[j] = readReference(in);
+        }
+        groups[i] = group;
+      }
+      return groups;
+    }
+
+    @CheckForNull
+    private LocationInFile readLocation() throws IOException {
+      if (!in.readBoolean()) {
+        return null;
+      }
+      return new LocationInFile(readString(), readUnsignedInt(in), readUnsignedInt(in), readUnsignedInt(in), readUnsignedInt(in));
+    }
+
+    @CheckForNull
+    private String readString() throws IOException {
+      return in.readBoolean() ? in.readUTF() : null;
+    }
+  }
+
+  private static class ParameterHeader {
+    @Nullable
+    private final String name;
+    private final boolean hasDefaultValue;
+    private final boolean isVariadic;
+    private final boolean isKeywordOnly;
+    private final boolean isPositionalOnly;
+    @Nullable
+    private final LocationInFile location;
+
+    private ParameterHeader(@Nullable String name, boolean hasDefaultValue, boolean isVariadic, boolean isKeywordOnly, boolean isPositionalOnly,
+                            @Nullable LocationInFile location) {
+      this.name = name;
+      this.hasDefaultValue = hasDefaultValue;
+      this.isVariadic = isVariadic;
+      this.isKeywordOnly = isKeywordOnly;
+      this.isPositionalOnly = isPositionalOnly;
+      this.location = location;
+    }
+  }
+}
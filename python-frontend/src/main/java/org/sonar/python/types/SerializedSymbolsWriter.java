@@ -0,0 +1,752 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.types;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.LocationInFile;
+import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
+import org.sonar.plugins.python.api.symbols.ClassSymbol;
+import org.sonar.plugins.python.api.symbols.FunctionSymbol;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.semantic.AmbiguousSymbolImpl;
+import org.sonar.python.semantic.ClassSymbolImpl;
+import org.sonar.python.semantic.FunctionSymbolImpl;
+import org.sonar.python.semantic.SymbolImpl;
+import org.sonar.python.semantic.SymbolSerialization;
+
+import static org.sonar.python.types.SerializedSymbols.AMBIGUOUS;
+import static org.sonar.python.types.SerializedSymbols.ANY_TYPE_REFERENCE;
+import static org.sonar.python.types.SerializedSymbols.BUILTIN_REFERENCE_OFFSET;
+import static org.sonar.python.types.SerializedSymbols.CLASS;
+import static org.sonar.python.types.SerializedSymbols.DECLARED_TYPE;
+import static org.sonar.python.types.SerializedSymbols.FORMAT_VERSION;
+import static org.sonar.python.types.SerializedSymbols.FUNCTION;
+import static org.sonar.python.types.SerializedSymbols.NULL_REFERENCE;
+import static org.sonar.python.types.SerializedSymbols.ORDERED_SYMBOLS;
+import static org.sonar.python.types.SerializedSymbols.RUNTIME_TYPE;
+import static org.sonar.python.types.SerializedSymbols.STRUCTURAL_GROUPS;
+import static org.sonar.python.types.SerializedSymbols.SYMBOL;
+import static org.sonar.python.types.SerializedSymbols.SYMBOLS;
+import static org.sonar.python.types.SerializedSymbols.SYMBOL_LAYOUTS;
+import static org.sonar.python.types.SerializedSymbols.TYPES;
+import static org.sonar.python.types.SerializedSymbols.TYPE_LAYOUTS;
+import static org.sonar.python.types.SerializedSymbols.UNION_TYPE;
+import static org.sonar.python.types.SerializedSymbols.writeReference;
+import static org.sonar.python.types.SerializedSymbols.writeUnsignedInt;
+
+/**
+ * Collects the symbols and types of several modules, merges the equivalent ones and writes them: one resource per module for
+ * the symbols and types which are specific to it, and one resource for those used by several modules.
+ * <p>
+ * Stub files symbols contain many copies of the same imported symbols: they are merged by partition refinement, starting with
+ * partitions of nodes sharing the same header, then splitting the partitions until all the nodes of a partition reference the
+ * same partitions. Only the first node of each partition is kept, which keeps the types in post-order.
+ */
+class SerializedSymbolsWriter {
+
+  @FunctionalInterface
+  interface Output {
+    OutputStream open(String resourceName) throws IOException;
+  }
+  @Nullable
+  private final SerializedSymbolsWriter builtins;
+  private final List<byte[]> symbolHeaders = new ArrayList<>();
+  private final List<int[]> symbolLinks = new ArrayList<>();
+  private final List<byte[]> typeHeaders = new ArrayList<>();
+  private final List<int[]> typeLinks = new ArrayList<>();
+  private final List<Unit> units = new ArrayList<>();
+  // only kept for the builtin symbols, which are referenced by the other modules
+  private final Map<Symbol, Integer> symbolIds = new IdentityHashMap<>();
+  private final Map<InferredType, Integer> typeIds = new IdentityHashMap<>();
+
+  /**
+   * @param builtins writer of the builtin symbols, which must have been written already
+   */
+  SerializedSymbolsWriter(@Nullable SerializedSymbolsWriter builtins) {
+    this.builtins = builtins;
+  }
+
+  /**
+   * @param distinctRoots whether the roots must not be merged with other symbols: the symbols of the Python 2 and Python 3 versions
+   *                      of a module are combined into ambiguous symbols, which need distinct alternatives
+   */
+  void add(String resourceName, Map<String, Symbol> roots, boolean distinctRoots) throws IOException {
+    int symbolsStart = symbolHeaders.size();
+    int typesStart = typeHeaders.size();
+    new Collector().collect(resourceName, roots, distinctRoots);
+    mergeEquivalentNodes(symbolsStart, typesStart);
+  }
+
+  void write(Output output, @Nullable String sharedResourceName) throws IOException {
+    mergeEquivalentNodes(0, 0);
+    int[] symbolUnits = new int[symbolHeaders.size()];
+    int[] typeUnits = new int[typeHeaders.size()];
+    for (Unit unit : units) {
+      boolean[][] reachable = reachableNodes(unit);
+      count(reachable[0], symbolUnits);
+      count(reachable[1], typeUnits);
+    }
+    boolean[] sharedSymbols = new boolean[symbolUnits.length];
+    boolean[] sharedTypes = new boolean[typeUnits.length];
+    if (sharedResourceName != null) {
+      for (int i = 0; i < symbolUnits.length; i++) {
+        sharedSymbols[i] = symbolUnits[i] > 1;
+      }
+      for (int i = 0; i < typeUnits.length; i++) {
+        sharedTypes[i] = typeUnits[i] > 1;
+      }
+    }
+    int externalSymbols = builtins == null ? 0 : builtins.symbolHeaders.size();
+    int externalTypes = builtins == null ? 0 : builtins.typeHeaders.size();
+    int[] sharedSymbolIds = fileIds(sharedSymbols, externalSymbols);
+    int[] sharedTypeIds = fileIds(sharedTypes, externalTypes);
+    if (sharedResourceName != null) {
+      writeResource(output, sharedResourceName, new FileContent(sharedSymbols, sharedTypes, sharedSymbolIds, sharedTypeIds, Collections.emptyMap()));
+    }
+    int privateSymbolsOffset = externalSymbols + count(sharedSymbols);
+    int privateTypesOffset = externalTypes + count(sharedTypes);
+    for (Unit unit : units) {
+      boolean[][] reachable = reachableNodes(unit);
+      boolean[] privateSymbols = exclude(reachable[0], sharedSymbols);
+      boolean[] privateTypes = exclude(reachable[1], sharedTypes);
+      int[] symbolFileIds = fileIds(privateSymbols, privateSymbolsOffset);
+      int[] typeFileIds = fileIds(privateTypes, privateTypesOffset);
+      merge(symbolFileIds, sharedSymbolIds);
+      merge(typeFileIds, sharedTypeIds);
+      writeResource(output, unit.resourceName, new FileContent(privateSymbols, privateTypes, symbolFileIds, typeFileIds, unit.roots));
+    }
+  }
+
+  private void writeResource(Output output, String resourceName, FileContent content) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(output.open(resourceName))) {
+      out.writeInt(FORMAT_VERSION);
+      writeUnsignedInt(out, count(content.symbols));
+      for (int i = 0; i < content.symbols.length; i++) {
+        if (content.symbols[i]) {
+          out.write(symbolHeaders.get(i));
+        }
+      }
+      for (int i = 0; i < content.symbols.length; i++) {
+        if (content.symbols[i]) {
+          int[] layout = SYMBOL_LAYOUTS[symbolHeaders.get(i)[0]];
+          writeGroups(out, content, layout, symbolLinks.get(i), 0, STRUCTURAL_GROUPS[symbolHeaders.get(i)[0]]);
+        }
+      }
+      writeUnsignedInt(out, content.roots.size());
+      for (Map.Entry<String, Integer> root : content.roots.entrySet()) {
+        writeString(out, root.getKey());
+        writeReference(out, content.symbolReference(root.getValue()));
+      }
+      writeUnsignedInt(out, count(content.types));
+      for (int i = 0; i < content.types.length; i++) {
+        if (content.types[i]) {
+          byte[] header = typeHeaders.get(i);
+          out.write(header);
+          writeGroups(out, content, TYPE_LAYOUTS[header[0]], typeLinks.get(i), 0, TYPE_LAYOUTS[header[0]].length);
+        }
+      }
+      for (int i = 0; i < content.symbols.length; i++) {
+        if (content.symbols[i]) {
+          int[] layout = SYMBOL_LAYOUTS[symbolHeaders.get(i)[0]];
+          writeGroups(out, content, layout, symbolLinks.get(i), STRUCTURAL_GROUPS[symbolHeaders.get(i)[0]], layout.length);
+        }
+      }
+    }
+  }
+
+  private static void writeGroups(DataOutputStream out, FileContent content, int[] layout, int[] links, int fromGroup, int toGroup) throws IOException {
+    int position = 0;
+    for (int group = 0; group < toGroup; group++) {
+      int size = links[position];
+      if (group >= fromGroup) {
+        writeUnsignedInt(out, size);
+        for (int i = position + 1; i <= position + size; i++) {
+          writeReference(out, isSymbolGroup(layout[group]) ? content.symbolReference(links[i]) : content.typeReference(links[i]));
+        }
+      }
+      position += size + 1;
+    }
+  }
+
+  private boolean[][] reachableNodes(Unit unit) {
+    boolean[] symbols = new boolean[symbolHeaders.size()];
+    boolean[] types = new boolean[typeHeaders.size()];
+    Deque<Integer> workList = new ArrayDeque<>();
+    for (int root : unit.roots.values()) {
+      mark(root, symbols, workList, 0);
+    }
+    while (!workList.isEmpty()) {
+      int node = workList.pop();
+      boolean isSymbol = node >= 0;
+      int index = isSymbol ? node : (-1 - node);
+      int[] layout = isSymbol ? SYMBOL_LAYOUTS[symbolHeaders.get(index)[0]] : TYPE_LAYOUTS[typeHeaders.get(index)[0]];
+      int[] links = isSymbol ? symbolLinks.get(index) : typeLinks.get(index);
+      forEachReference(layout, links, (group, reference) -> {
+        if (isSymbolGroup(group)) {
+          mark(reference, symbols, workList, 0);
+        } else {
+          mark(reference, types, workList, 1);
+        }
+      });
+    }
+    return new boolean[][] {symbols, types};
+  }
+
+  /**
+   * Symbols are pushed on the work list as their index, types as (-1 - index).
+   */
+  private static void mark(int reference, boolean[] nodes, Deque<Integer> workList, int nodeKind) {
+    if (reference >= 0 && !nodes[reference]) {
+      nodes[reference] = true;
+      workList.push(nodeKind == 0 ? reference : (-1 - reference));
+    }
+  }
+
+  private static void count(boolean[] reachable, int[] counts) {
+    for (int i = 0; i < reachable.length; i++) {
+      if (reachable[i]) {
+        counts[i]++;
+      }
+    }
+  }
+
+  private static int count(boolean[] nodes) {
+    int count = 0;
+    for (boolean node : nodes) {
+      if (node) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static boolean[] exclude(boolean[] nodes, boolean[] excluded) {
+    boolean[] result = new boolean[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      result[i] = nodes[i] && !excluded[i];
+    }
+    return result;
+  }
+
+  private static int[] fileIds(boolean[] nodes, int offset) {
+    int[] ids = new int[nodes.length];
+    Arrays.fill(ids, NULL_REFERENCE);
+    int next = offset;
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i]) {
+        ids[i] = next;
+        next++;
+      }
+    }
+    return ids;
+  }
+
+  private static void merge(int[] ids, int[] otherIds) {
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i] == NULL_REFERENCE) {
+        ids[i] = otherIds[i];
+      }
+    }
+  }
+
+  private void mergeEquivalentNodes(int symbolsStart, int typesStart) {
+    Map<Integer, Integer> distinctRoots = new HashMap<>();
+    for (int unit = 0; unit < units.size(); unit++) {
+      if (units.get(unit).distinctRoots) {
+        for (int root : units.get(unit).roots.values()) {
+          distinctRoots.put(root, unit);
+        }
+      }
+    }
+    Map<List<Object>, Integer> symbolHeaderPartitions = new HashMap<>();
+    int[] symbolPartitions = new int[symbolHeaders.size() - symbolsStart];
+    for (int i = 0; i < symbolPartitions.length; i++) {
+      List<Object> key = Arrays.asList(ByteBuffer.wrap(symbolHeaders.get(symbolsStart + i)), distinctRoots.get(symbolsStart + i));
+      symbolPartitions[i] = symbolHeaderPartitions.computeIfAbsent(key, k -> symbolHeaderPartitions.size());
+    }
+    Map<Byte, Integer> typeHeaderPartitions = new HashMap<>();
+    int[] typePartitions = new int[typeHeaders.size() - typesStart];
+    for (int i = 0; i < typePartitions.length; i++) {
+      typePartitions[i] = typeHeaderPartitions.computeIfAbsent(typeHeaders.get(typesStart + i)[0], k -> typeHeaderPartitions.size());
+    }
+    int partitionsCount = -1;
+    int newPartitionsCount = symbolHeaderPartitions.size() + typeHeaderPartitions.size();
+    int symbolPartitionsCount = symbolHeaderPartitions.size();
+    do {
+      while (newPartitionsCount != partitionsCount) {
+        partitionsCount = newPartitionsCount;
+        Refinement refinement = new Refinement(symbolsStart, typesStart, symbolPartitions, typePartitions);
+        int[] newSymbolPartitions = refinement.refine(symbolPartitions, symbolsStart, symbolHeaders, symbolLinks, SYMBOL_LAYOUTS);
+        int[] newTypePartitions = refinement.refine(typePartitions, typesStart, typeHeaders, typeLinks, TYPE_LAYOUTS);
+        newPartitionsCount = refinement.symbolPartitionsCount + refinement.typePartitionsCount;
+        symbolPartitionsCount = refinement.symbolPartitionsCount;
+        symbolPartitions = newSymbolPartitions;
+        typePartitions = newTypePartitions;
+      }
+      int separated = separateAlternatives(symbolsStart, symbolPartitions, symbolPartitionsCount);
+      newPartitionsCount += separated;
+    } while (newPartitionsCount != partitionsCount);
+    int[] symbolsMapping = firstOfPartitions(symbolPartitions, symbolsStart, symbolHeaders.size());
+    int[] typesMapping = firstOfPartitions(typePartitions, typesStart, typeHeaders.size());
+    keepMappedNodes(symbolHeaders, symbolLinks, symbolsMapping, symbolsStart, SYMBOL_LAYOUTS, symbolsMapping, typesMapping);
+    keepMappedNodes(typeHeaders, typeLinks, typesMapping, typesStart, TYPE_LAYOUTS, symbolsMapping, typesMapping);
+    for (Unit unit : units) {
+      unit.roots.replaceAll((name, root) -> symbolsMapping[root]);
+    }
+    symbolIds.replaceAll((symbol, id) -> symbolsMapping[id]);
+    typeIds.replaceAll((type, id) -> typesMapping[id]);
+  }
+
+  /**
+   * An ambiguous symbol needs distinct alternatives: equivalent alternatives are moved to new partitions, which may in turn split
+   * other partitions. Equivalent ambiguous symbols get the same new partitions, so that they can still be merged.
+   * @return the number of new partitions
+   */
+  private int separateAlternatives(int symbolsStart, int[] symbolPartitions, int symbolPartitionsCount) {
+    Map<List<Integer>, Integer> newPartitions = new HashMap<>();
+    for (int i = symbolsStart; i < symbolHeaders.size(); i++) {
+      if (symbolHeaders.get(i)[0] == AMBIGUOUS) {
+        int[] links = symbolLinks.get(i);
+        // alternatives are the second group, after the children
+        int alternativesStart = links[0] + 1;
+        Map<Integer, Integer> occurrences = new HashMap<>();
+        for (int j = alternativesStart + 1; j <= alternativesStart + links[alternativesStart]; j++) {
+          int alternative = links[j];
+          if (alternative >= symbolsStart) {
+            int partition = symbolPartitions[alternative - symbolsStart];
+            int occurrence = occurrences.merge(partition, 1, Integer::sum);
+            if (occurrence > 1) {
+              List<Integer> key = Arrays.asList(symbolPartitions[i - symbolsStart], partition, occurrence);
+              symbolPartitions[alternative - symbolsStart] = newPartitions.computeIfAbsent(key, k -> symbolPartitionsCount + newPartitions.size());
+            }
+          }
+        }
+      }
+    }
+    return newPartitions.size();
+  }
+
+  /**
+   * @return the new index of each node: nodes before the start are kept, others are mapped to the first node of their partition
+   */
+  private static int[] firstOfPartitions(int[] partitions, int start, int size) {
+    int[] mapping = new int[size];
+    for (int i = 0; i < start; i++) {
+      mapping[i] = i;
+    }
+    Map<Integer, Integer> partitionIndexes = new HashMap<>();
+    for (int i = start; i < size; i++) {
+      mapping[i] = partitionIndexes.computeIfAbsent(partitions[i - start], k -> start + partitionIndexes.size());
+    }
+    return mapping;
+  }
+
+  private static void keepMappedNodes(List<byte[]> headers, List<int[]> links, int[] mapping, int start, int[][] layouts,
+                                      int[] symbolsMapping, int[] typesMapping) {
+    int kept = start;
+    for (int i = start; i < headers.size(); i++) {
+      if (mapping[i] == kept) {
+        int[] nodeLinks = links.get(i);
+        int[] layout = layouts[headers.get(i)[0]];
+        int position = 0;
+        for (int kind : layout) {
+          int size = nodeLinks[position];
+          for (int j = position + 1; j <= position + size; j++) {
+            if (nodeLinks[j] >= 0) {
+              nodeLinks[j] = isSymbolGroup(kind) ? symbolsMapping[nodeLinks[j]] : typesMapping[nodeLinks[j]];
+            }
+          }
+          position += size + 1;
+        }
+        headers.set(kept, headers.get(i));
+        links.set(kept, nodeLinks);
+        kept++;
+      }
+    }
+    headers.subList(kept, headers.size()).clear();
+    links.subList(kept, links.size()).clear();
+  }
+
+  private class Refinement {
+    private final int symbolsStart;
+    private final int typesStart;
+    private final int[] symbolPartitions;
+    private final int[] typePartitions;
+    private int symbolPartitionsCount;
+    private int typePartitionsCount;
+
+    private Refinement(int symbolsStart, int typesStart, int[] symbolPartitions, int[] typePartitions) {
+      this.symbolsStart = symbolsStart;
+      this.typesStart = typesStart;
+      this.symbolPartitions = symbolPartitions;
+      this.typePartitions = typePartitions;
+    }
+
+    private int[] refine(int[] partitions, int start, List<byte[]> headers, List<int[]> links, int[][] layouts) {
+      Map<IntBuffer, Integer> signatures = new HashMap<>();
+      int[] newPartitions = new int[partitions.length];
+      for (int i = 0; i < partitions.length; i++) {
+        int[] nodeLinks = links.get(start + i);
+        int[] signature = new int[nodeLinks.length + 1];
+        signature[0] = partitions[i];
+        int[] layout = layouts[headers.get(start + i)[0]];
+        int position = 0;
+        for (int kind : layout) {
+          int size = nodeLinks[position];
+          signature[position + 1] = size;
+          for (int j = position + 1; j <= position + size; j++) {
+            signature[j + 1] = isSymbolGroup(kind) ? partition(nodeLinks[j], symbolsStart, symbolPartitions) : partition(nodeLinks[j], typesStart, typePartitions);
+          }
+          if (kind == SYMBOLS || kind == TYPES) {
+            Arrays.sort(signature, position + 2, position + size + 2);
+          }
+          position += size + 1;
+        }
+        newPartitions[i] = signatures.computeIfAbsent(IntBuffer.wrap(signature), k -> signatures.size());
+      }
+      if (layouts == SYMBOL_LAYOUTS) {
+        symbolPartitionsCount = signatures.size();
+      } else {
+        typePartitionsCount = signatures.size();
+      }
+      return newPartitions;
+    }
+
+    /**
+     * Nodes before the start are distinct from all others, and keep their index.
+     */
+    private int partition(int reference, int start, int[] partitions) {
+      return reference < start ? reference : (start + partitions[reference - start]);
+    }
+  }
+
+  private static boolean isSymbolGroup(int kind) {
+    return kind == SYMBOLS || kind == ORDERED_SYMBOLS;
+  }
+
+  @FunctionalInterface
+  private interface ReferenceConsumer {
+    void accept(int groupKind, int reference);
+  }
+
+  private static void forEachReference(int[] layout, int[] links, ReferenceConsumer consumer) {
+    int position = 0;
+    for (int kind : layout) {
+      int size = links[position];
+      for (int j = position + 1; j <= position + size; j++) {
+        consumer.accept(kind, links[j]);
+      }
+      position += size + 1;
+    }
+  }
+
+  private static class Unit {
+    private final String resourceName;
+    private final Map<String, Integer> roots;
+    private final boolean distinctRoots;
+
+    private Unit(String resourceName, Map<String, Integer> roots, boolean distinctRoots) {
+      this.resourceName = resourceName;
+      this.roots = roots;
+      this.distinctRoots = distinctRoots;
+    }
+  }
+
+  private class FileContent {
+    private final boolean[] symbols;
+    private final boolean[] types;
+    private final int[] symbolIds;
+    private final int[] typeIds;
+    private final Map<String, Integer> roots;
+
+    private FileContent(boolean[] symbols, boolean[] types, int[] symbolIds, int[] typeIds, Map<String, Integer> roots) {
+      this.symbols = symbols;
+      this.types = types;
+      this.symbolIds = symbolIds;
+      this.typeIds = typeIds;
+      this.roots = roots;
+    }
+
+    private int symbolReference(int reference) {
+      return reference >= 0 ? symbolIds[reference] : externalReference(reference);
+    }
+
+    private int typeReference(int reference) {
+      return reference >= 0 ? typeIds[reference] : externalReference(reference);
+    }
+
+    private int externalReference(int reference) {
+      return reference <= BUILTIN_REFERENCE_OFFSET ? (BUILTIN_REFERENCE_OFFSET - reference) : reference;
+    }
+  }
+
+  /**
+   * Adds the symbols and types of a module to the nodes of the writer.
+   */
+  private class Collector {
+    private final Map<Symbol, Integer> unitSymbolIds = builtins == null ? symbolIds : new IdentityHashMap<>();
+    private final Map<InferredType, Integer> unitTypeIds = builtins == null ? typeIds : new IdentityHashMap<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final Deque<Symbol> workList = new ArrayDeque<>();
+
+    private void collect(String resourceName, Map<String, Symbol> roots, boolean distinctRoots) throws IOException {
+      roots.values().forEach(this::collect);
+      while (!workList.isEmpty()) {
+        collectReferences(workList.pop());
+      }
+      int symbolsStart = symbolHeaders.size();
+      for (Symbol symbol : symbols) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(header), symbol);
+        symbolHeaders.add(header.toByteArray());
+      }
+      for (Symbol symbol : symbols) {
+        symbolLinks.add(symbolLinks(symbol));
+      }
+      Map<String, Integer> rootIds = new LinkedHashMap<>();
+      roots.forEach((name, symbol) -> rootIds.put(name, symbolReference(symbol)));
+      units.add(new Unit(resourceName, rootIds, distinctRoots));
+      if (symbolHeaders.size() != symbolsStart + symbols.size()) {
+        throw new IllegalStateException("Inconsistent symbols of " + resourceName);
+      }
+    }
+
+    private boolean isBuiltin(Symbol symbol) {
+      return builtins != null && builtins.symbolIds.containsKey(symbol);
+    }
+
+    private boolean isBuiltin(InferredType type) {
+      return builtins != null && builtins.typeIds.containsKey(type);
+    }
+
+    private void collect(@Nullable Symbol symbol) {
+      if (symbol == null || isBuiltin(symbol) || unitSymbolIds.containsKey(symbol)) {
+        return;
+      }
+      unitSymbolIds.put(symbol, symbolHeaders.size() + symbols.size());
+      symbols.add(symbol);
+      workList.push(symbol);
+    }
+
+    private void collectReferences(Symbol symbol) {
+      SymbolImpl symbolImpl = (SymbolImpl) symbol;
+      SymbolSerialization.childSymbols(symbolImpl).forEach(this::collect);
+      collect(symbolImpl.inferredType());
+      if (symbol instanceof ClassSymbolImpl) {
+        ClassSymbolImpl classSymbol = (ClassSymbolImpl) symbol;
+        classSymbol.superClasses().forEach(this::collect);
+        classSymbol.declaredMembers().forEach(this::collect);
+      } else if (symbol instanceof FunctionSymbolImpl) {
+        FunctionSymbolImpl functionSymbol = (FunctionSymbolImpl) symbol;
+        functionSymbol.parameters().forEach(parameter -> collect(parameter.declaredType()));
+        collect(functionSymbol.declaredReturnType());
+        collect(functionSymbol.owner());
+      } else if (symbol instanceof AmbiguousSymbolImpl) {
+        ((AmbiguousSymbol) symbol).alternatives().forEach(this::collect);
+      }
+    }
+
+    /**
+     * Types are added after the types they contain, so that they can be created in order.
+     */
+    private void collect(@Nullable InferredType type) {
+      if (type == null || type == AnyType.ANY || isBuiltin(type) || unitTypeIds.containsKey(type)) {
+        return;
+      }
+      List<int[]> groups = new ArrayList<>();
+      byte tag;
+      if (type instanceof RuntimeType) {
+        ClassSymbol typeClass = ((RuntimeType) type).getTypeClass();
+        collect(typeClass);
+        tag = RUNTIME_TYPE;
+        groups.add(new int[] {symbolReference(typeClass)});
+      } else if (type instanceof UnionType) {
+        Set<InferredType> unionTypes = ((UnionType) type).types();
+        unionTypes.forEach(this::collect);
+        tag = UNION_TYPE;
+        groups.add(unionTypes.stream().mapToInt(this::typeReference).toArray());
+      } else if (type instanceof DeclaredType) {
+        DeclaredType declaredType = (DeclaredType) type;
+        collect(declaredType.getTypeClass());
+        declaredType.typeArgs().forEach(this::collect);
+        tag = DECLARED_TYPE;
+        groups.add(new int[] {symbolReference(declaredType.getTypeClass())});
+        groups.add(declaredType.typeArgs().stream().mapToInt(this::typeReference).toArray());
+      } else {
+        throw new IllegalStateException("Unsupported type: " + type);
+      }
+      unitTypeIds.put(type, typeHeaders.size());
+      typeHeaders.add(new byte[] {tag});
+      typeLinks.add(links(groups));
+    }
+
+    private int[] symbolLinks(Symbol symbol) {
+      List<int[]> groups = new ArrayList<>();
+      groups.add(symbolReferences(SymbolSerialization.childSymbols((SymbolImpl) symbol)));
+      InferredType inferredType = ((SymbolImpl) symbol).inferredType();
+      if (symbol instanceof ClassSymbolImpl) {
+        ClassSymbol classSymbol = (ClassSymbol) symbol;
+        groups.add(symbolReferences(classSymbol.superClasses()));
+        groups.add(symbolReferences(classSymbol.declaredMembers()));
+        groups.add(new int[] {typeReference(inferredType)});
+      } else if (symbol instanceof FunctionSymbolImpl) {
+        FunctionSymbolImpl functionSymbol = (FunctionSymbolImpl) symbol;
+        groups.add(new int[] {typeReference(inferredType)});
+        groups.add(functionSymbol.parameters().stream().mapToInt(parameter -> typeReference(parameter.declaredType())).toArray());
+        groups.add(new int[] {typeReference(functionSymbol.declaredReturnType())});
+        groups.add(new int[] {symbolReference(functionSymbol.owner())});
+      } else if (symbol instanceof AmbiguousSymbolImpl) {
+        groups.add(symbolReferences(((AmbiguousSymbol) symbol).alternatives()));
+        groups.add(new int[] {typeReference(inferredType)});
+      } else {
+        groups.add(new int[] {typeReference(inferredType)});
+      }
+      return links(groups);
+    }
+
+    private int[] symbolReferences(Collection<Symbol> references) {
+      return references.stream().mapToInt(this::symbolReference).toArray();
+    }
+
+    private int symbolReference(@Nullable Symbol symbol) {
+      if (symbol == null) {
+        return NULL_REFERENCE;
+      }
+      Integer id = unitSymbolIds.get(symbol);
+      return id != null ? id : (BUILTIN_REFERENCE_OFFSET - builtins.symbolIds.get(symbol));
+    }
+
+    private int typeReference(@Nullable InferredType type) {
+      if (type == null) {
+        return NULL_REFERENCE;
+      }
+      if (type == AnyType.ANY) {
+        return ANY_TYPE_REFERENCE;
+      }
+      Integer id = unitTypeIds.get(type);
+      return id != null ? id : (BUILTIN_REFERENCE_OFFSET - builtins.typeIds.get(type));
+    }
+  }
+
+  private static int[] links(List<int[]> groups) {
+    int[] links = new int[groups.stream().mapToInt(group -> group.length + 1).sum()];
+    int position = 0;
+    for (int[] group : groups) {
+      links[position] = group.length;
+      System.arraycopy(group, 0, links, position + 1, group.length);
+      position += group.length + 1;
+    }
+    return links;
+  }
+
+  private static void writeHeader(DataOutputStream out, Symbol symbol) throws IOException {
+    if (!(symbol instanceof SymbolImpl) || (!isPlainSymbol(symbol) && symbol.annotatedTypeName() != null)) {
+      throw new IllegalStateException("Unsupported symbol: " + symbol.fullyQualifiedName());
+    }
+    byte tag = tag(symbol);
+    out.writeByte(tag);
+    writeString(out, symbol.name());
+    writeString(out, symbol.fullyQualifiedName());
+    out.writeByte(symbol.kind().ordinal());
+    if (tag == CLASS) {
+      ClassSymbolImpl classSymbol = (ClassSymbolImpl) symbol;
+      writeLocation(out, classSymbol.definitionLocation());
+      out.writeBoolean(classSymbol.hasDecorators());
+      out.writeBoolean(classSymbol.hasMetaClass());
+      writeString(out, classSymbol.metaclassFQN());
+      out.writeBoolean(SymbolSerialization.hasSuperClassWithoutSymbol(classSymbol));
+    } else if (tag == FUNCTION) {
+      FunctionSymbolImpl functionSymbol = (FunctionSymbolImpl) symbol;
+      writeUnsignedInt(out, functionSymbol.decorators().size());
+      for (String decorator : functionSymbol.decorators()) {
+        writeString(out, decorator);
+      }
+      writeLocation(out, functionSymbol.definitionLocation());
+      out.writeBoolean(functionSymbol.hasVariadicParameter());
+      out.writeBoolean(functionSymbol.isInstanceMethod());
+      out.writeBoolean(functionSymbol.isAsynchronous());
+      out.writeBoolean(functionSymbol.hasDecorators());
+      writeString(out, functionSymbol.annotatedReturnTypeName());
+      out.writeBoolean(functionSymbol.isStub());
+      writeUnsignedInt(out, functionSymbol.parameters().size());
+      for (FunctionSymbol.Parameter parameter : functionSymbol.parameters()) {
+        writeString(out, parameter.name());
+        out.writeBoolean(parameter.hasDefaultValue());
+        out.writeBoolean(parameter.isVariadic());
+        out.writeBoolean(parameter.isKeywordOnly());
+        out.writeBoolean(parameter.isPositionalOnly());
+        writeLocation(out, parameter.location());
+      }
+    } else if (tag == SYMBOL) {
+      writeString(out, symbol.annotatedTypeName());
+    }
+  }
+
+  private static boolean isPlainSymbol(Symbol symbol) {
+    return !(symbol instanceof ClassSymbolImpl || symbol instanceof FunctionSymbolImpl || symbol instanceof AmbiguousSymbolImpl);
+  }
+
+  private static byte tag(Symbol symbol) {
+    if (symbol instanceof ClassSymbolImpl) {
+      return CLASS;
+    }
+    if (symbol instanceof FunctionSymbolImpl) {
+      return FUNCTION;
+    }
+    return symbol instanceof AmbiguousSymbolImpl ? AMBIGUOUS : SYMBOL;
+  }
+
+  private static void writeLocation(DataOutputStream out, @Nullable LocationInFile location) throws IOException {
+    out.writeBoolean(location != null);
+    if (location != null) {
+      writeString(out, location.fileId());
+      writeUnsignedInt(out, location.startLine());
+      writeUnsignedInt(out, location.startLineOffset());
+      writeUnsignedInt(out, location.endLine());
+      writeUnsignedInt(out, location.endLineOffset());
+    }
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String string) throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+}
@@ -29,8 +29,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.plugins.python.api.symbols.FunctionSymbol;
 import org.sonar.plugins.python.api.symbols.Symbol;
@@ -47,6 +49,7 @@ import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TryStatement;
 import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.cfg.CfgCache;
 import org.sonar.python.semantic.SymbolImpl;
 import org.sonar.python.tree.FunctionDefImpl;
 import org.sonar.python.tree.NameImpl;
@@ -57,6 +60,8 @@ public class TypeInference extends BaseTreeVisitor {
   // The super() builtin is not specified precisely in typeshed.
   // It should return a proxy object (temporary object of the superclass) that allows to access methods of the base class
   // https://docs.python.org/3/library/functions.html#super
+  private static final Logger LOG = Loggers.get(TypeInference.class);
+  private static final long SLOW_FLOW_SENSITIVE_INFERENCE_MILLIS = 100;
   private static final InferredType TYPE_OF_SUPER = InferredTypes.runtimeType(TypeShed.typeShedClass("super"));
 
   private final Map<Symbol, Set<Assignment>> assignmentsByLhs = new HashMap<>();
@@ -64,12 +69,12 @@ public class TypeInference extends BaseTreeVisitor {
   private final Map<AssignmentStatement, Assignment> assignmentsByAssignmentStatement = new HashMap<>();
   private Map<String, InferredType> parameterTypesByName = new HashMap<>();
 
-  public static void inferTypes(FileInput fileInput, PythonFile pythonFile) {
+  public static void inferTypes(FileInput fileInput, CfgCache cfgCache) {
     fileInput.accept(new BaseTreeVisitor() {
       @Override
       public void visitFunctionDef(FunctionDef funcDef) {
         super.visitFunctionDef(funcDef);
-        inferTypesAndMemberAccessSymbols(funcDef, pythonFile);
+        inferTypesAndMemberAccessSymbols(funcDef, cfgCache);
       }
     });
     fileInput.accept(new BaseTreeVisitor() {
@@ -99,7 +104,7 @@ public class TypeInference extends BaseTreeVisitor {
     return trackedVars;
   }
 
-  private static void inferTypesAndMemberAccessSymbols(FunctionDef functionDef, PythonFile pythonFile) {
+  private static void inferTypesAndMemberAccessSymbols(FunctionDef functionDef, CfgCache cfgCache) {
     TypeInference visitor = new TypeInference();
     functionDef.accept(visitor);
     Set<Name> assignedNames = visitor.assignmentsByLhs.values().stream()
@@ -126,7 +131,7 @@ public class TypeInference extends BaseTreeVisitor {
         }
       });
     } else {
-      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, pythonFile);
+      ControlFlowGraph cfg = cfgCache.cfg(functionDef);
       if (cfg == null) {
         return;
       }
@@ -222,7 +227,17 @@ public class TypeInference extends BaseTreeVisitor {
       new FlowSensitiveTypeInference(trackedVars, memberAccessesByQualifiedExpr, assignmentsByAssignmentStatement, parameterTypesByName);
 
     flowSensitiveTypeInference.compute(cfg);
+    int iterations = flowSensitiveTypeInference.iterations();
+    int widenings = flowSensitiveTypeInference.widenings();
+    long durationNanos = flowSensitiveTypeInference.durationNanos();
     flowSensitiveTypeInference.compute(cfg);
+    iterations += flowSensitiveTypeInference.iterations();
+    widenings += flowSensitiveTypeInference.widenings();
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos + flowSensitiveTypeInference.durationNanos());
+    if (widenings > 0 || durationMillis >= SLOW_FLOW_SENSITIVE_INFERENCE_MILLIS) {
+      LOG.debug("Flow sensitive type inference of function \"{}\" at line {}: {} block iterations, {} widenings, {} ms",
+        functionDef.name().name(), functionDef.firstToken().line(), iterations, widenings, durationMillis);
+    }
   }
 
   private void processPropagations(Set<Symbol> trackedVars) {
@@ -94,6 +94,18 @@ public class TypeInferenceProgramState implements ProgramState {
     return result;
   }
 
+  /**
+   * Types of the symbols which changed since the previous state fall back to ANY.
+   */
+  @Override
+  public ProgramState widen(ProgramState previousState) {
+    TypeInferenceProgramState previous = (TypeInferenceProgramState) previousState;
+    TypeInferenceProgramState result = (TypeInferenceProgramState) join(previous);
+    result.inferredTypesBySymbol.replaceAll((symbol, types) ->
+      types.equals(previous.getTypes(symbol)) ? types : Collections.singleton(InferredTypes.anyType()));
+    return result;
+  }
+
   @Override
   public ProgramState copy() {
     return join(new TypeInferenceProgramState());
@@ -20,15 +20,22 @@
 package org.sonar.python.types;
 
 import com.sonar.sslr.api.AstNode;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
@@ -45,7 +52,7 @@ import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.ParameterList;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TypeAnnotation;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.parser.ThreadLocalParsers;
 import org.sonar.python.semantic.AmbiguousSymbolImpl;
 import org.sonar.python.semantic.ClassSymbolImpl;
 import org.sonar.python.semantic.FunctionSymbolImpl;
@@ -61,10 +68,14 @@ public class TypeShed {
 
   private static final String TYPING = "typing";
   private static final String TYPING_EXTENSIONS = "typing_extensions";
+  private static final String BUILTINS_IN_PROGRESS = "";
   private static Map<String, Symbol> builtins;
-  private static final Map<String, Set<Symbol>> typeShedSymbols = new HashMap<>();
+  // set once builtins are completely resolved: they can then be read without locking
+  private static volatile boolean builtinsInitialized = false;
+  private static final Map<String, ModuleLoad> typeShedSymbols = new ConcurrentHashMap<>();
   private static final Map<String, Set<Symbol>> builtinGlobalSymbols = new HashMap<>();
-  private static final Set<String> modulesInProgress = new HashSet<>();
+  // modules being resolved by the current thread, to stop on stubs importing each other
+  private static final ThreadLocal<Set<String>> modulesInProgress = ThreadLocal.withInitial(HashSet::new);
 
   private static final String STDLIB_2AND3 = "typeshed/stdlib/2and3/";
   private static final String STDLIB_2 = "typeshed/stdlib/2/";
@@ -73,19 +84,52 @@ public class TypeShed {
   private static final String THIRD_PARTY_2 = "typeshed/third_party/2/";
   private static final String THIRD_PARTY_3 = "typeshed/third_party/3/";
   private static final String CUSTOM_THIRD_PARTY = "custom/";
+  static final List<String> PYTHON2_CATEGORY_PATHS = Arrays.asList(STDLIB_2, THIRD_PARTY_2);
+  static final List<String> CATEGORY_PATHS = Arrays.asList(STDLIB_2AND3, STDLIB_2, STDLIB_3, THIRD_PARTY_2AND3, THIRD_PARTY_2, THIRD_PARTY_3, CUSTOM_THIRD_PARTY);
+
+  static final String SERIALIZED_SYMBOLS = "symbols/";
+  static final String SERIALIZED_BUILTINS = SERIALIZED_SYMBOLS + "builtins.bin";
+  static final String SERIALIZED_SHARED = SERIALIZED_SYMBOLS + "shared.bin";
+  static final String SERIALIZED_EXTENSION = ".bin";
+  private static boolean useSerializedSymbols = true;
+  // graph of the builtin symbols, referenced by the serialized symbols of the other modules
+  private static SerializedSymbols.Graph builtinsGraph = null;
+  // graph of the symbols used by several modules, read along with the first serialized module
+  private static volatile SerializedSymbols.Graph sharedGraph = null;
+  private static final Object SHARED_GRAPH_LOCK = new Object();
 
   private TypeShed() {
   }
 
   public static Map<String, Symbol> builtinSymbols() {
+    if (builtinsInitialized) {
+      return builtins;
+    }
+    synchronized (TypeShed.class) {
+      Set<String> inProgress = modulesInProgress.get();
+      // the thread resolving builtins must never wait for a module resolved by another thread, which may itself wait for builtins
+      boolean initializing = inProgress.add(BUILTINS_IN_PROGRESS);
+      try {
+        initializeBuiltinSymbols();
+      } finally {
+        if (initializing) {
+          inProgress.remove(BUILTINS_IN_PROGRESS);
+          builtinsInitialized = builtins != null;
+        }
+      }
+      return builtins;
+    }
+  }
+
+  private static void initializeBuiltinSymbols() {
     // InferredTypes class initialization requires builtInSymbols to be computed. Calling dummy method
     // from it explicitly to overcome the issue of TypeShed.builtins being assigned twice
-    if (TypeShed.builtins == null && !InferredTypes.isInitialized()) {
+    if (TypeShed.builtins == null && !InferredTypes.isInitialized() && !readSerializedBuiltins()) {
       Map<String, Symbol> builtins = new HashMap<>();
       builtins.put(NONE_TYPE, new ClassSymbolImpl(NONE_TYPE, NONE_TYPE));
       InputStream resource = TypeShed.class.getResourceAsStream("typeshed/stdlib/2and3/builtins.pyi");
       PythonFile file = new TypeShedPythonFile(resource, "");
-      AstNode astNode = PythonParser.create().parse(file.content());
+      AstNode astNode = ThreadLocalParsers.parse(file.content());
       FileInput fileInput = new PythonTreeMaker().fileInput(astNode);
       Map<String, Set<Symbol>> globalSymbols = new HashMap<>();
       Set<Symbol> typingModuleSymbols = typingModuleSymbols();
@@ -102,7 +146,42 @@ public class TypeShed {
       fileInput.accept(new ReturnTypeVisitor());
       TypeShed.builtinGlobalSymbols.put("", new HashSet<>(builtins.values()));
     }
-    return builtins;
+  }
+
+  private static boolean readSerializedBuiltins() {
+    InputStream resource = useSerializedSymbols ? TypeShed.class.getResourceAsStream(SERIALIZED_BUILTINS) : null;
+    if (resource == null) {
+      return false;
+    }
+    builtinsGraph = readSerializedSymbols(resource, null, builtinSymbols -> {
+      TypeShed.builtins = Collections.unmodifiableMap(builtinSymbols);
+      InferredTypes.setBuiltinSymbols(builtinSymbols);
+    });
+    TypeShed.builtinGlobalSymbols.put("", new HashSet<>(builtins.values()));
+    return true;
+  }
+
+  private static SerializedSymbols.Graph readSerializedSymbols(InputStream resource, @Nullable SerializedSymbols.Graph external,
+                                                               Consumer<Map<String, Symbol>> rootsListener) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(resource))) {
+      return SerializedSymbols.read(in, external, rootsListener);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read serialized TypeShed symbols", e);
+    }
+  }
+
+  /**
+   * Names of the modules resolved so far, or being resolved.
+   */
+  static Set<String> resolvedModuleNames() {
+    return Collections.unmodifiableSet(typeShedSymbols.keySet());
+  }
+
+  /**
+   * Forces the symbols to be resolved from the stub files, ignoring the serialized symbols. Used to generate them.
+   */
+  static synchronized void disableSerializedSymbols() {
+    useSerializedSymbols = false;
   }
 
   private static void setDeclaredReturnType(Symbol symbol, FunctionDef functionDef) {
@@ -154,64 +233,105 @@ public class TypeShed {
     return new HashSet<>(typingExtensionSymbols.values());
   }
 
+  /**
+   * Each module is resolved once, by the first thread requesting it, while the other threads requesting it wait for the result.
+   * A thread which is itself resolving a module never waits: it resolves the requested module on its own, so that threads
+   * resolving stubs importing each other cannot deadlock.
+   */
   public static Set<Symbol> symbolsForModule(String moduleName) {
-    if (!TypeShed.typeShedSymbols.containsKey(moduleName)) {
-      Set<Symbol> symbols = searchTypeShedForModule(moduleName);
-      typeShedSymbols.put(moduleName, symbols);
-      return symbols;
+    Set<String> inProgress = modulesInProgress.get();
+    if (inProgress.contains(moduleName)) {
+      return new HashSet<>();
+    }
+    if (!inProgress.contains(BUILTINS_IN_PROGRESS)) {
+      // builtins determine how modules are resolved
+      builtinSymbols();
     }
-    return TypeShed.typeShedSymbols.get(moduleName);
+    ModuleLoad load = new ModuleLoad();
+    ModuleLoad existingLoad = typeShedSymbols.putIfAbsent(moduleName, load);
+    if (existingLoad == null) {
+      return load.run(moduleName);
+    }
+    if (existingLoad.isDone() || inProgress.isEmpty()) {
+      return existingLoad.await(moduleName);
+    }
+    return searchTypeShedForModule(moduleName);
   }
 
   @CheckForNull
   public static Symbol symbolWithFQN(String stdLibModuleName, String fullyQualifiedName) {
     Set<Symbol> symbols = symbolsForModule(stdLibModuleName);
-    Symbol symbolByFqn = symbols.stream().filter(s -> fullyQualifiedName.equals(s.fullyQualifiedName())).findFirst().orElse(null);
-    if (symbolByFqn != null || !fullyQualifiedName.contains(".")) {
-      return symbolByFqn;
-    }
-
-    // If FQN of the member does not match the pattern of "package_name.file_name.symbol_name"
-    // (e.g. it could be declared in package_name.file_name using import) or in case when
-    // we have import with an alias (from module import method as alias_method), we retrieve symbol_name out of
-    // FQN and try to look up by local symbol name, rather than FQN
-    String[] fqnSplittedByDot = fullyQualifiedName.split("\\.");
-    String symbolLocalNameFromFqn = fqnSplittedByDot[fqnSplittedByDot.length - 1];
-
-    Set<Symbol> matchByName = symbols.stream().filter(s -> symbolLocalNameFromFqn.equals(s.name())).collect(Collectors.toSet());
-    if (matchByName.size() == 1) {
-      return matchByName.iterator().next();
-    }
-
-    return null;
+    ModuleLoad load = typeShedSymbols.get(stdLibModuleName);
+    ModuleIndex index = load != null && load.isDone() && load.symbols == symbols ? load.index() : new ModuleIndex(symbols);
+    return index.symbolWithFQN(fullyQualifiedName);
   }
 
   private static Set<Symbol> searchTypeShedForModule(String moduleName) {
-    if (modulesInProgress.contains(moduleName)) {
-      return new HashSet<>();
+    Set<String> inProgress = modulesInProgress.get();
+    inProgress.add(moduleName);
+    try {
+      Set<Symbol> customSymbols = new HashSet<>(moduleSymbols(moduleName, CUSTOM_THIRD_PARTY).values());
+      if (!customSymbols.isEmpty()) {
+        return customSymbols;
+      }
+      Set<Symbol> standardLibrarySymbols = new HashSet<>(moduleSymbols(moduleName, STDLIB_2AND3).values());
+      if (standardLibrarySymbols.isEmpty()) {
+        standardLibrarySymbols = commonSymbols(moduleSymbols(moduleName, STDLIB_2),
+          moduleSymbols(moduleName, STDLIB_3), moduleName);
+      }
+      if (!standardLibrarySymbols.isEmpty()) {
+        return standardLibrarySymbols;
+      }
+      Set<Symbol> thirdPartySymbols = new HashSet<>(moduleSymbols(moduleName, THIRD_PARTY_2AND3).values());
+      if (thirdPartySymbols.isEmpty()) {
+        thirdPartySymbols = commonSymbols(moduleSymbols(moduleName, THIRD_PARTY_2),
+          moduleSymbols(moduleName, THIRD_PARTY_3), moduleName);
+      }
+      return thirdPartySymbols;
+    } finally {
+      inProgress.remove(moduleName);
     }
-    modulesInProgress.add(moduleName);
-    Set<Symbol> customSymbols = new HashSet<>(getModuleSymbols(moduleName, CUSTOM_THIRD_PARTY, builtinGlobalSymbols).values());
-    if (!customSymbols.isEmpty()) {
-      modulesInProgress.remove(moduleName);
-      return customSymbols;
+  }
+
+  private static Map<String, Symbol> moduleSymbols(String moduleName, String categoryPath) {
+    if (builtinsGraph == null) {
+      return getModuleSymbols(moduleName, categoryPath, builtinGlobalSymbols);
     }
-    Set<Symbol> standardLibrarySymbols = new HashSet<>(getModuleSymbols(moduleName, STDLIB_2AND3, builtinGlobalSymbols).values());
-    if (standardLibrarySymbols.isEmpty()) {
-      standardLibrarySymbols = commonSymbols(getModuleSymbols(moduleName, STDLIB_2, builtinGlobalSymbols),
-        getModuleSymbols(moduleName, STDLIB_3, builtinGlobalSymbols), moduleName);
+    InputStream resource = TypeShed.class.getResourceAsStream(SERIALIZED_SYMBOLS + categoryPath + moduleName + SERIALIZED_EXTENSION);
+    if (resource == null) {
+      // only the modules resolved by every analysis are serialized
+      return getModuleSymbols(moduleName, categoryPath, builtinGlobalSymbols);
     }
-    if (!standardLibrarySymbols.isEmpty()) {
-      modulesInProgress.remove(moduleName);
-      return standardLibrarySymbols;
+    return readSerializedSymbols(resource, sharedGraph(), roots -> {}).roots();
+  }
+
+  private static SerializedSymbols.Graph sharedGraph() {
+    SerializedSymbols.Graph graph = sharedGraph;
+    if (graph == null) {
+      synchronized (SHARED_GRAPH_LOCK) {
+        graph = sharedGraph;
+        if (graph == null) {
+          graph = readSerializedSymbols(TypeShed.class.getResourceAsStream(SERIALIZED_SHARED), builtinsGraph, roots -> {});
+          sharedGraph = graph;
+        }
+      }
     }
-    Set<Symbol> thirdPartySymbols = new HashSet<>(getModuleSymbols(moduleName, THIRD_PARTY_2AND3, builtinGlobalSymbols).values());
-    if (thirdPartySymbols.isEmpty()) {
-      thirdPartySymbols = commonSymbols(getModuleSymbols(moduleName, THIRD_PARTY_2, builtinGlobalSymbols),
-        getModuleSymbols(moduleName, THIRD_PARTY_3, builtinGlobalSymbols), moduleName);
+    return graph;
+  }
+
+  /**
+   * Resolves the symbols of a single stub file, as {@link #symbolsForModule(String)} would do when the module is not found in
+   * a category with higher priority.
+   */
+  static Map<String, Symbol> stubModuleSymbols(String moduleName, String categoryPath) {
+    builtinSymbols();
+    Set<String> inProgress = modulesInProgress.get();
+    inProgress.add(moduleName);
+    try {
+      return getModuleSymbols(moduleName, categoryPath, builtinGlobalSymbols);
+    } finally {
+      inProgress.remove(moduleName);
     }
-    modulesInProgress.remove(moduleName);
-    return thirdPartySymbols;
   }
 
   @Nullable
@@ -238,7 +358,7 @@ public class TypeShed {
       return Collections.emptyMap();
     }
     PythonFile file = new TypeShedPythonFile(moduleDescription.resource, moduleDescription.fileName);
-    AstNode astNode = PythonParser.create().parse(file.content());
+    AstNode astNode = ThreadLocalParsers.parse(file.content());
     FileInput fileInput = new PythonTreeMaker().fileInput(astNode);
     new SymbolTableBuilder(moduleDescription.packageName, file, ProjectLevelSymbolTable.from(initialSymbols)).visitFileInput(fileInput);
     fileInput.accept(new ReturnTypeVisitor());
@@ -264,7 +384,9 @@ public class TypeShed {
 
   public static Collection<Symbol> stubFilesSymbols() {
     Set<Symbol> symbols = new HashSet<>(TypeShed.builtinSymbols().values());
-    typeShedSymbols.values().forEach(symbols::addAll);
+    typeShedSymbols.values().stream()
+      .filter(ModuleLoad::isDone)
+      .forEach(load -> symbols.addAll(load.symbols));
     return symbols;
   }
 
@@ -324,6 +446,80 @@ public class TypeShed {
     }
   }
 
+  private static class ModuleLoad {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Set<Symbol> symbols = Collections.emptySet();
+    private volatile ModuleIndex index = null;
+
+    Set<Symbol> run(String moduleName) {
+      boolean resolved = false;
+      try {
+        symbols = Collections.unmodifiableSet(searchTypeShedForModule(moduleName));
+        resolved = true;
+        return symbols;
+      } finally {
+        if (!resolved) {
+          // let the next request resolve the module again
+          typeShedSymbols.remove(moduleName, this);
+        }
+        done.countDown();
+      }
+    }
+
+    boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    ModuleIndex index() {
+      ModuleIndex result = index;
+      if (result == null) {
+        result = new ModuleIndex(symbols);
+        index = result;
+      }
+      return result;
+    }
+
+    Set<Symbol> await(String moduleName) {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while resolving TypeShed module " + moduleName, e);
+      }
+      return typeShedSymbols.get(moduleName) == this ? symbols : symbolsForModule(moduleName);
+    }
+  }
+
+  private static class ModuleIndex {
+    private final Map<String, Symbol> symbolsByFqn = new HashMap<>();
+    // null value when several symbols have the same name
+    private final Map<String, Symbol> symbolsByName = new HashMap<>();
+
+    ModuleIndex(Set<Symbol> symbols) {
+      for (Symbol symbol : symbols) {
+        String fullyQualifiedName = symbol.fullyQualifiedName();
+        if (fullyQualifiedName != null) {
+          symbolsByFqn.putIfAbsent(fullyQualifiedName, symbol);
+        }
+        symbolsByName.put(symbol.name(), symbolsByName.containsKey(symbol.name()) ? null : symbol);
+      }
+    }
+
+    @CheckForNull
+    Symbol symbolWithFQN(String fullyQualifiedName) {
+      Symbol symbolByFqn = symbolsByFqn.get(fullyQualifiedName);
+      int lastDot = fullyQualifiedName.lastIndexOf('.');
+      if (symbolByFqn != null || lastDot < 0) {
+        return symbolByFqn;
+      }
+      // If FQN of the member does not match the pattern of "package_name.file_name.symbol_name"
+      // (e.g. it could be declared in package_name.file_name using import) or in case when
+      // we have import with an alias (from module import method as alias_method), we retrieve symbol_name out of
+      // FQN and try to look up by local symbol name, rather than FQN
+      return symbolsByName.get(fullyQualifiedName.substring(lastDot + 1));
+    }
+  }
+
   private static class ModuleDescription {
     InputStream resource;
     String fileName;
@@ -0,0 +1,130 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.types;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.python.api.symbols.Symbol;
+
+/**
+ * Resolves the symbols of the TypeShed stub files read by every analysis, the builtins and the modules they import, and stores them
+ * in binary form next to the stubs, so that analyses don't need to parse them. The other stubs are parsed when they are imported.
+ * Executed while building python-frontend, with the classes output directory as argument.
+ */
+public class TypeShedSerializer {
+
+  private static final Logger LOG = Loggers.get(TypeShedSerializer.class);
+  private static final String STUB_EXTENSION = ".pyi";
+  private static final String PACKAGE_STUB = "__init__" + STUB_EXTENSION;
+
+  private final Path typesDirectory;
+  private int skippedStubs = 0;
+
+  TypeShedSerializer(Path outputDirectory) {
+    this.typesDirectory = outputDirectory.resolve(TypeShed.class.getPackage().getName().replace('.', '/'));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("Usage: TypeShedSerializer <classes output directory>");
+    }
+    new TypeShedSerializer(Paths.get(args[0])).serialize();
+  }
+
+  void serialize() throws IOException {
+    TypeShed.disableSerializedSymbols();
+    long start = System.currentTimeMillis();
+    SerializedSymbolsWriter builtinsWriter = new SerializedSymbolsWriter(null);
+    builtinsWriter.add(TypeShed.SERIALIZED_BUILTINS, TypeShed.builtinSymbols(), false);
+    builtinsWriter.write(this::open, null);
+    // modules imported while resolving the builtins, taken before resolving other stubs imports more modules
+    SortedSet<String> moduleNames = new TreeSet<>(TypeShed.resolvedModuleNames());
+    SerializedSymbolsWriter modulesWriter = new SerializedSymbolsWriter(builtinsWriter);
+    int modules = 0;
+    for (String categoryPath : TypeShed.CATEGORY_PATHS) {
+      SortedSet<String> categoryModuleNames = moduleNames(typesDirectory.resolve(categoryPath));
+      for (String moduleName : moduleNames) {
+        Map<String, Symbol> symbols = categoryModuleNames.contains(moduleName) ? moduleSymbols(moduleName, categoryPath) : null;
+        if (symbols != null) {
+          String resourceName = TypeShed.SERIALIZED_SYMBOLS + categoryPath + moduleName + TypeShed.SERIALIZED_EXTENSION;
+          modulesWriter.add(resourceName, symbols, TypeShed.PYTHON2_CATEGORY_PATHS.contains(categoryPath));
+          modules++;
+        }
+      }
+    }
+    modulesWriter.write(this::open, TypeShed.SERIALIZED_SHARED);
+    LOG.info("Serialized symbols of builtins and {} TypeShed modules in {} ms, {} stubs skipped", modules, System.currentTimeMillis() - start, skippedStubs);
+  }
+
+  @CheckForNull
+  private Map<String, Symbol> moduleSymbols(String moduleName, String categoryPath) {
+    try {
+      return TypeShed.stubModuleSymbols(moduleName, categoryPath);
+    } catch (RuntimeException e) {
+      // the stub is left out: it won't provide any symbol
+      LOG.debug("Unable to resolve symbols of TypeShed stub {}{}: {}", categoryPath, moduleName, e.getMessage());
+      skippedStubs++;
+      return null;
+    }
+  }
+
+  private OutputStream open(String resourceName) throws IOException {
+    Path file = typesDirectory.resolve(resourceName);
+    Files.createDirectories(file.getParent());
+    return new BufferedOutputStream(Files.newOutputStream(file));
+  }
+
+  /**
+   * Module names are sorted so that the generated resources don't depend on the file system ordering.
+   */
+  static SortedSet<String> moduleNames(Path categoryDirectory) throws IOException {
+    if (!Files.isDirectory(categoryDirectory)) {
+      return new TreeSet<>();
+    }
+    try (Stream<Path> files = Files.walk(categoryDirectory)) {
+      return files
+        .filter(file -> file.getFileName().toString().endsWith(STUB_EXTENSION))
+        .map(file -> moduleName(categoryDirectory.relativize(file)))
+        .collect(Collectors.toCollection(TreeSet::new));
+    }
+  }
+
+  private static String moduleName(Path relativePath) {
+    String path = relativePath.toString().replace('\\', '/');
+    if (path.endsWith("/" + PACKAGE_STUB)) {
+      path = path.substring(0, path.length() - PACKAGE_STUB.length() - 1);
+    } else {
+      path = path.substring(0, path.length() - STUB_EXTENSION.length());
+    }
+    return path.replace('/', '.');
+  }
+}
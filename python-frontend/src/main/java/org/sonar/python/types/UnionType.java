@@ -19,11 +19,15 @@
  */
 package org.sonar.python.types;
 
+import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.types.InferredType;
@@ -32,23 +36,79 @@ import static org.sonar.python.types.InferredTypes.anyType;
 
 class UnionType implements InferredType {
 
+  // weak keys and values: a union is removed once it is not used anymore
+  private static final Map<Members, WeakReference<UnionType>> UNIONS = new WeakHashMap<>();
+
   private final Set<InferredType> types;
+  // lazily computed: the types of a union never change
+  private int hashCode = 0;
+  // interned while the union is in use, see #intern(Set)
+  private final Members members;
 
   private UnionType(Set<InferredType> types) {
     this.types = types;
+    this.members = new Members(this);
+  }
+
+  /**
+   * Unions of the same type instances are created once and shared while they are in use. Types are compared by identity: runtime
+   * types of different copies of a class are equal, but they resolve members to the symbols of their own copy.
+   */
+  private static InferredType intern(Set<InferredType> types) {
+    UnionType union = new UnionType(types);
+    synchronized (UNIONS) {
+      WeakReference<UnionType> existing = UNIONS.get(union.members);
+      UnionType existingUnion = existing != null ? existing.get() : null;
+      if (existingUnion != null) {
+        return existingUnion;
+      }
+      UNIONS.put(union.members, new WeakReference<>(union));
+      return union;
+    }
   }
 
   public static InferredType or(InferredType type1, InferredType type2) {
     if (type1.equals(anyType()) || type2.equals(anyType())) {
       return anyType();
     }
-    if (type1.equals(type2)) {
+    if (type1.equals(type2) || contains(type1, type2)) {
       return type1;
     }
+    if (contains(type2, type1)) {
+      return type2;
+    }
     Set<InferredType> types = new HashSet<>();
     addTypes(type1, types);
     addTypes(type2, types);
-    return new UnionType(types);
+    return intern(types);
+  }
+
+  /**
+   * Same as reducing the given types with {@link #or(InferredType, InferredType)}, without creating the intermediate unions.
+   */
+  static InferredType union(List<InferredType> types) {
+    if (types.isEmpty()) {
+      return anyType();
+    }
+    if (types.size() == 1) {
+      return types.get(0);
+    }
+    Set<InferredType> result = new HashSet<>();
+    for (InferredType type : types) {
+      if (type.equals(anyType())) {
+        return anyType();
+      }
+      addTypes(type, result);
+    }
+    return result.size() == 1 ? result.iterator().next() : intern(result);
+  }
+
+  private static boolean contains(InferredType union, InferredType type) {
+    if (!(union instanceof UnionType)) {
+      return false;
+    }
+    Set<InferredType> unionTypes = ((UnionType) union).types;
+    return type instanceof UnionType ? unionTypes.containsAll(((UnionType) type).types) : unionTypes.contains(type);
   }
 
   private static void addTypes(InferredType type, Set<InferredType> types) {
@@ -143,7 +203,12 @@ class UnionType implements InferredType {
 
   @Override
   public int hashCode() {
-    return Objects.hash(types);
+    int result = hashCode;
+    if (result == 0) {
+      result = Objects.hash(types);
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override
@@ -154,4 +219,45 @@ class UnionType implements InferredType {
   Set<InferredType> types() {
     return Collections.unmodifiableSet(types);
   }
+
+  private static final class Members {
+    private final UnionType union;
+    private final int hashCode;
+
+    private Members(UnionType union) {
+      this.union = union;
+      int identityHashCode = 0;
+      for (InferredType type : union.types) {
+        identityHashCode += System.identityHashCode(type);
+      }
+      this.hashCode = identityHashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Members)) {
+        return false;
+      }
+      Members other = (Members) o;
+      return hashCode == other.hashCode && union.types.size() == other.union.types.size()
+        && union.types.stream().allMatch(type -> containsInstance(other.union.types, type));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    private static boolean containsInstance(Set<InferredType> types, InferredType type) {
+      for (InferredType t : types) {
+        if (t == type) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.python;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Test;
@@ -35,6 +36,7 @@ import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Trivia;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class PythonSubscriptionCheckTest {
 
@@ -153,6 +155,31 @@ public class PythonSubscriptionCheckTest {
     assertThat(issues.get(0).primaryLocation().startLine()).isEqualTo(8);
   }
 
+  @Test
+  public void failing_check_does_not_stop_collectors() {
+    RuntimeException failure = new IllegalStateException("failure");
+    List<Tree> visitedFunctions = new ArrayList<>();
+    TestPythonCheck failingCheck = new TestPythonCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> {
+          throw failure;
+        });
+      }
+    };
+    TestPythonCheck collector = new TestPythonCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> visitedFunctions.add(ctx.syntaxNode()));
+      }
+    };
+
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(FILE);
+    assertThatThrownBy(() -> SubscriptionVisitor.analyze(Collections.singletonList(failingCheck), Collections.singletonList(collector), context))
+      .isSameAs(failure);
+    assertThat(visitedFunctions).hasSize(2);
+  }
+
   private abstract static class TestPythonCheck extends PythonSubscriptionCheck {
 
   }
@@ -19,11 +19,18 @@
  */
 package org.sonar.python;
 
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.junit.Test;
 import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.TreeVisitor;
+import org.sonar.plugins.python.api.tree.Trivia;
 import org.sonar.python.lexer.LexerState;
 import org.sonar.python.lexer.PythonLexer;
 import org.sonar.python.tree.TokenImpl;
@@ -44,6 +51,20 @@ public class TokenLocationTest {
     assertOffsets(tokenLocation, 1, 0, 2, 9);
   }
 
+  @Test
+  public void test_token_end_position() {
+    Token token = lex("x = '''a\r\n\nb\rcd'''").get(2);
+    assertThat(token.line()).isEqualTo(1);
+    assertThat(token.endLine()).isEqualTo(4);
+    assertThat(token.endColumn()).isEqualTo(5);
+  }
+
+  @Test
+  public void test_default_token_end_position() {
+    assertOffsets(new TokenLocation(new ValueToken(2, 4, "'''a\r\n\nb\rcd'''")), 2, 4, 5, 5);
+    assertOffsets(new TokenLocation(new ValueToken(2, 4, "foo")), 2, 4, 2, 7);
+  }
+
   @Test
   public void test_newline_token() {
     TokenLocation tokenLocation = new TokenLocation(lex("foo\n").get(1));
@@ -79,4 +100,79 @@ public class TokenLocationTest {
     return lexer.lex(toLex).stream().map(TokenImpl::new).collect(Collectors.toList());
   }
 
+  /**
+   * Token which does not override the end position computation of {@link Token}.
+   */
+  private static class ValueToken implements Token {
+    private final int line;
+    private final int column;
+    private final String value;
+
+    private ValueToken(int line, int column, String value) {
+      this.line = line;
+      this.column = column;
+      this.value = value;
+    }
+
+    @Override
+    public String value() {
+      return value;
+    }
+
+    @Override
+    public int line() {
+      return line;
+    }
+
+    @Override
+    public int column() {
+      return column;
+    }
+
+    @Override
+    public List<Trivia> trivia() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public TokenType type() {
+      return GenericTokenType.LITERAL;
+    }
+
+    @Override
+    public void accept(TreeVisitor visitor) {
+      // no children to visit
+    }
+
+    @Override
+    public boolean is(Kind... kinds) {
+      return Arrays.asList(kinds).contains(Kind.TOKEN);
+    }
+
+    @Override
+    public Token firstToken() {
+      return this;
+    }
+
+    @Override
+    public Token lastToken() {
+      return this;
+    }
+
+    @Override
+    public Tree parent() {
+      return null;
+    }
+
+    @Override
+    public List<Tree> children() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Kind getKind() {
+      return Kind.TOKEN;
+    }
+  }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg;
+
+import com.sonar.sslr.api.RecognitionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.SubscriptionContext;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.SubscriptionVisitor;
+import org.sonar.python.tree.FileInputImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.getFirstDescendant;
+import static org.sonar.python.PythonTestUtils.parse;
+import static org.sonar.python.PythonTestUtils.pythonFile;
+
+public class CfgCacheTest {
+
+  private final PythonFile file = Mockito.mock(PythonFile.class, "file1.py");
+  private final CfgCache cfgCache = new CfgCache(file);
+
+  @Test
+  public void cfg_is_built_once() {
+    FileInput fileInput = parse("def f(p):", "  x = p", "  return x");
+    FunctionDef functionDef = getFirstDescendant(fileInput, t -> t.is(Tree.Kind.FUNCDEF));
+    ControlFlowGraph cfg = cfgCache.cfg(functionDef);
+    assertThat(cfg).isNotNull();
+    assertThat(cfgCache.cfg(functionDef)).isSameAs(cfg);
+    assertThat(cfgCache.cfg(fileInput)).isNotNull().isSameAs(cfgCache.cfg(fileInput)).isNotSameAs(cfg);
+    assertThat(cfgCache.liveVariables(functionDef)).isNotNull().isSameAs(cfgCache.liveVariables(functionDef));
+    assertThat(cfgCache.definedVariables(functionDef)).isNotNull().isSameAs(cfgCache.definedVariables(functionDef));
+    assertThat(cfgCache.reachingDefinitions()).isSameAs(cfgCache.reachingDefinitions());
+  }
+
+  @Test
+  public void cache_of_context() {
+    FileInput fileInput = parse("def f(p):", "  return p");
+    PythonFile moduleFile = pythonFile("mod.py");
+    PythonVisitorContext visitorContext = new PythonVisitorContext(fileInput, moduleFile, null, "");
+    FunctionDef functionDef = getFirstDescendant(fileInput, t -> t.is(Tree.Kind.FUNCDEF));
+    SubscriptionContext subscriptionContext = Mockito.mock(SubscriptionContext.class);
+    Mockito.when(subscriptionContext.syntaxNode()).thenReturn(functionDef);
+    Mockito.when(subscriptionContext.pythonFile()).thenReturn(moduleFile);
+
+    CfgCache fileCfgCache = CfgCache.of(visitorContext);
+    assertThat(fileCfgCache).isNotSameAs(cfgCache).isSameAs(CfgCache.of(visitorContext)).isSameAs(CfgCache.of(subscriptionContext));
+    // built by type inference
+    assertThat(fileCfgCache.cfg(functionDef)).isNotNull();
+  }
+
+  @Test
+  public void cache_of_subscription_visitor_context() {
+    FileInput fileInput = parse("def f(p):", "  return p");
+    PythonVisitorContext visitorContext = new PythonVisitorContext(fileInput, pythonFile("mod.py"), null, "");
+    List<CfgCache> cfgCaches = new ArrayList<>();
+    PythonSubscriptionCheck check = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> cfgCaches.add(CfgCache.of(ctx)));
+        context.registerSyntaxNodeConsumer(Tree.Kind.RETURN_STMT, ctx -> cfgCaches.add(CfgCache.of(ctx)));
+      }
+    };
+    SubscriptionVisitor.analyze(Collections.singletonList(check), visitorContext);
+    assertThat(cfgCaches).hasSize(2).containsOnly(CfgCache.of(visitorContext));
+  }
+
+  @Test
+  public void release() {
+    FileInput fileInput = parse("def f(p):", "  return p");
+    PythonVisitorContext visitorContext = new PythonVisitorContext(fileInput, pythonFile("mod.py"), null, "");
+    assertThat(((FileInputImpl) fileInput).cfgCache()).isNotNull();
+    CfgCache.release(visitorContext);
+    assertThat(((FileInputImpl) fileInput).cfgCache()).isNull();
+    CfgCache.release(new PythonVisitorContext(pythonFile("mod.py"), new RecognitionException(1, "error")));
+  }
+
+  @Test
+  public void invalid_cfg() {
+    FileInput fileInput = parse("def f():", "  break");
+    FunctionDef functionDef = getFirstDescendant(fileInput, t -> t.is(Tree.Kind.FUNCDEF));
+    assertThat(cfgCache.cfg(functionDef)).isNull();
+    assertThat(cfgCache.liveVariables(functionDef)).isNull();
+    assertThat(cfgCache.definedVariables(functionDef)).isNull();
+  }
+}
@@ -20,8 +20,11 @@
 package org.sonar.python.cfg;
 
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.junit.Test;
@@ -74,6 +77,44 @@ public class CfgUtilsTest {
     assertThat(CfgUtils.unreachableBlocks(cfg)).isEqualTo(unreachableBlocks);
   }
 
+  @Test
+  public void reversePostOrder() {
+    ControlFlowGraph cfg = cfg(
+      "x = 10",
+      "while x > 0:",
+      "  if x > 5:",
+      "    x = x - 2",
+      "  x = x - 1",
+      "return x",
+      "y = 42"
+    );
+    List<CfgBlock> blocks = CfgUtils.reversePostOrder(cfg);
+    assertThat(blocks).hasSize(cfg.blocks().size()).containsOnlyElementsOf(cfg.blocks());
+    assertThat(blocks.get(0)).isSameAs(cfg.start());
+    Set<CfgBlock> unreachableBlocks = CfgUtils.unreachableBlocks(cfg);
+    assertThat(blocks.subList(blocks.size() - unreachableBlocks.size(), blocks.size())).containsOnlyElementsOf(unreachableBlocks);
+    for (CfgBlock block : blocks) {
+      // a predecessor comes after the block only when the edge closes a loop, i.e. when the block can reach its predecessor
+      block.predecessors().stream()
+        .filter(predecessor -> !unreachableBlocks.contains(predecessor))
+        .filter(predecessor -> blocks.indexOf(predecessor) > blocks.indexOf(block))
+        .forEach(predecessor -> assertThat(reachable(block)).contains(predecessor));
+    }
+  }
+
+  private static Set<CfgBlock> reachable(CfgBlock from) {
+    Set<CfgBlock> reachable = new HashSet<>();
+    Deque<CfgBlock> workList = new ArrayDeque<>();
+    workList.push(from);
+    while (!workList.isEmpty()) {
+      CfgBlock block = workList.pop();
+      if (reachable.add(block)) {
+        block.successors().forEach(workList::push);
+      }
+    }
+    return reachable;
+  }
+
 
 
   private ControlFlowGraph cfg(String... lines) {
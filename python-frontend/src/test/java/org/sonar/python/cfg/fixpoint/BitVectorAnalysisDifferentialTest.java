@@ -0,0 +1,355 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg.fixpoint;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.plugins.python.api.cfg.CfgBlock;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.symbols.Usage;
+import org.sonar.plugins.python.api.tree.AssignmentStatement;
+import org.sonar.plugins.python.api.tree.Expression;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.PythonTestUtils;
+import org.sonar.python.cfg.fixpoint.DefinedVariablesAnalysis.VariableDefinition;
+import org.sonar.python.tree.TreeUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.getAllDescendant;
+import static org.sonar.python.PythonTestUtils.parse;
+
+/**
+ * Compares the results of the bit vector analyses with the ones of set based reference implementations,
+ * computed with the worklist algorithm the analyses used before being based on {@link BitVectorAnalysis}.
+ */
+public class BitVectorAnalysisDifferentialTest {
+
+  private final PythonFile file = Mockito.mock(PythonFile.class, "file1.py");
+
+  private static final String[][] FUNCTIONS = {
+    {
+      "def while_loop(p):",
+      "  x = 0",
+      "  while x < p:",
+      "    if x == 3:",
+      "      break",
+      "    y = x",
+      "    x = x + 1",
+      "  else:",
+      "    z = 1",
+      "  return x, y, z"
+    },
+    {
+      "def nested_loops(items):",
+      "  total = 0",
+      "  for item in items:",
+      "    for part in item:",
+      "      if part:",
+      "        continue",
+      "      total += part",
+      "    last = item",
+      "  return total, last"
+    },
+    {
+      "def try_except(p):",
+      "  x = 1",
+      "  try:",
+      "    y = open(p)",
+      "    x = y.read()",
+      "  except IOError as e:",
+      "    x = e",
+      "    raise",
+      "  except ValueError:",
+      "    return None",
+      "  else:",
+      "    z = x",
+      "  finally:",
+      "    print(x)",
+      "  return z"
+    },
+    {
+      "def try_in_loop(items):",
+      "  result = None",
+      "  for item in items:",
+      "    try:",
+      "      result = item.value",
+      "    except AttributeError:",
+      "      continue",
+      "    finally:",
+      "      count = len(items)",
+      "  return result, count"
+    },
+    {
+      "def deletions(p):",
+      "  x = p",
+      "  y = x",
+      "  del x",
+      "  if p:",
+      "    x = 2",
+      "    del y",
+      "  else:",
+      "    y = 3",
+      "  while p:",
+      "    del p",
+      "    p = y",
+      "  return x, y"
+    },
+    {
+      "def redefinitions(p):",
+      "  x = 1",
+      "  if p:",
+      "    x = 2",
+      "  x = 3",
+      "  while p:",
+      "    p = x",
+      "  return x"
+    },
+    {
+      "def unreachable():",
+      "  x = 1",
+      "  return x",
+      "  y = x"
+    }
+  };
+
+  @Test
+  public void live_variables() {
+    for (String[] lines : FUNCTIONS) {
+      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef(lines), file);
+      LiveVariablesAnalysis analysis = LiveVariablesAnalysis.analyze(cfg);
+      Map<CfgBlock, ReferenceBlockState> reference = referenceLiveVariables(cfg);
+      for (CfgBlock block : cfg.blocks()) {
+        LiveVariablesAnalysis.LiveVariables liveVariables = analysis.getLiveVariables(block);
+        ReferenceBlockState expected = reference.get(block);
+        assertThat(liveVariables.getGen()).as(lines[0]).isEqualTo(expected.gen);
+        assertThat(liveVariables.getKill()).as(lines[0]).isEqualTo(expected.kill);
+        assertThat(liveVariables.getIn()).as(lines[0]).isEqualTo(expected.in);
+        assertThat(liveVariables.getOut()).as(lines[0]).isEqualTo(expected.out);
+      }
+    }
+  }
+
+  @Test
+  public void defined_variables() {
+    for (String[] lines : FUNCTIONS) {
+      FunctionDef functionDef = functionDef(lines);
+      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, file);
+      Set<Symbol> localVariables = functionDef.localVariables();
+      DefinedVariablesAnalysis analysis = DefinedVariablesAnalysis.analyze(cfg, localVariables);
+      Map<CfgBlock, ReferenceDefinedVariables> reference = referenceDefinedVariables(cfg, localVariables);
+      for (CfgBlock block : cfg.blocks()) {
+        DefinedVariablesAnalysis.DefinedVariables definedVariables = analysis.getDefinedVariables(block);
+        ReferenceDefinedVariables expected = reference.get(block);
+        assertThat(definedVariables.getKill()).as(lines[0]).isEqualTo(expected.state.kill);
+        assertThat(definedVariables.getIn()).as(lines[0]).isEqualTo(expected.in);
+        assertThat(definedVariables.getOut()).as(lines[0]).isEqualTo(expected.out);
+      }
+    }
+  }
+
+  @Test
+  public void reaching_definitions() {
+    for (String[] lines : FUNCTIONS) {
+      FunctionDef functionDef = functionDef(lines);
+      ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, file);
+      ReachingDefinitionsAnalysis analysis = new ReachingDefinitionsAnalysis(file);
+      Map<Name, Set<Expression>> reference = TreeUtils.hasDescendant(functionDef, t -> t.is(Tree.Kind.TRY_STMT))
+        ? Collections.emptyMap()
+        : referenceReachingDefinitions(cfg, functionDef);
+      List<Name> names = getAllDescendant(functionDef.body(), t -> t.is(Tree.Kind.NAME));
+      for (Name name : names) {
+        assertThat(analysis.valuesAtLocation(name)).as(lines[0] + " " + name.name() + " at line " + name.firstToken().line())
+          .isEqualTo(reference.getOrDefault(name, Collections.emptySet()));
+      }
+    }
+  }
+
+  private static FunctionDef functionDef(String... lines) {
+    FileInput fileInput = parse(lines);
+    return (FunctionDef) fileInput.statements().statements().get(0);
+  }
+
+  private static class ReferenceBlockState extends CfgBlockState {
+    private Set<Symbol> in = new HashSet<>();
+    private Set<Symbol> out = new HashSet<>();
+
+    private ReferenceBlockState(CfgBlock block) {
+      super(block);
+      init(block);
+    }
+  }
+
+  /**
+   * Backward propagation: out is the union of the in sets of the successors, in = gen + (out - kill).
+   */
+  private static Map<CfgBlock, ReferenceBlockState> referenceLiveVariables(ControlFlowGraph cfg) {
+    Map<CfgBlock, ReferenceBlockState> states = new HashMap<>();
+    cfg.blocks().forEach(block -> states.put(block, new ReferenceBlockState(block)));
+    Deque<CfgBlock> workList = new ArrayDeque<>(cfg.blocks());
+    while (!workList.isEmpty()) {
+      CfgBlock block = workList.pop();
+      ReferenceBlockState state = states.get(block);
+      state.out = new HashSet<>();
+      block.successors().forEach(successor -> state.out.addAll(states.get(successor).in));
+      Set<Symbol> newIn = new HashSet<>(state.out);
+      newIn.removeAll(state.kill);
+      newIn.addAll(state.gen);
+      if (!newIn.equals(state.in)) {
+        state.in = newIn;
+        block.predecessors().forEach(workList::push);
+      }
+    }
+    return states;
+  }
+
+  private static class ReferenceDefinedVariables {
+    private final ReferenceBlockState state;
+    private Map<Symbol, VariableDefinition> in;
+    private Map<Symbol, VariableDefinition> out = new HashMap<>();
+
+    private ReferenceDefinedVariables(CfgBlock block, Map<Symbol, VariableDefinition> initialState) {
+      this.state = new ReferenceBlockState(block);
+      this.in = initialState;
+    }
+  }
+
+  /**
+   * Forward propagation: a symbol is defined when it is defined on any path, parameters being defined at the start.
+   */
+  private static Map<CfgBlock, ReferenceDefinedVariables> referenceDefinedVariables(ControlFlowGraph cfg, Set<Symbol> localVariables) {
+    Map<Symbol, VariableDefinition> initialState = new HashMap<>();
+    for (Symbol variable : localVariables) {
+      boolean isParameter = variable.usages().stream().anyMatch(u -> u.kind() == Usage.Kind.PARAMETER);
+      initialState.put(variable, isParameter ? VariableDefinition.DEFINED : VariableDefinition.UNDEFINED);
+    }
+    Map<CfgBlock, ReferenceDefinedVariables> states = new HashMap<>();
+    cfg.blocks().forEach(block -> states.put(block, new ReferenceDefinedVariables(block, initialState)));
+    Deque<CfgBlock> workList = new ArrayDeque<>(cfg.blocks());
+    while (!workList.isEmpty()) {
+      CfgBlock block = workList.pop();
+      ReferenceDefinedVariables state = states.get(block);
+      for (CfgBlock predecessor : block.predecessors()) {
+        state.in = joinDefinitions(state.in, states.get(predecessor).out);
+      }
+      Map<Symbol, VariableDefinition> newOut = new HashMap<>(state.in);
+      state.state.kill.forEach(symbol -> newOut.put(symbol, VariableDefinition.DEFINED));
+      if (!newOut.equals(state.out)) {
+        state.out = newOut;
+        block.successors().forEach(workList::push);
+      }
+    }
+    return states;
+  }
+
+  private static Map<Symbol, VariableDefinition> joinDefinitions(Map<Symbol, VariableDefinition> state1, Map<Symbol, VariableDefinition> state2) {
+    Map<Symbol, VariableDefinition> result = new HashMap<>();
+    Set<Symbol> allKeys = new HashSet<>(state1.keySet());
+    allKeys.addAll(state2.keySet());
+    for (Symbol key : allKeys) {
+      boolean defined = state1.get(key) == VariableDefinition.DEFINED || state2.get(key) == VariableDefinition.DEFINED;
+      result.put(key, defined ? VariableDefinition.DEFINED : VariableDefinition.UNDEFINED);
+    }
+    return result;
+  }
+
+  /**
+   * Forward propagation of the expressions assigned to each symbol, with a strong update on each single name assignment.
+   */
+  private static Map<Name, Set<Expression>> referenceReachingDefinitions(ControlFlowGraph cfg, FunctionDef functionDef) {
+    Map<Symbol, Set<Name>> assignedNamesBySymbol = new HashMap<>();
+    Map<CfgBlock, Map<Symbol, Set<Expression>>> inByBlock = new HashMap<>();
+    Map<CfgBlock, Map<Symbol, Set<Expression>>> outByBlock = new HashMap<>();
+    cfg.blocks().forEach(block -> {
+      inByBlock.put(block, new HashMap<>());
+      outByBlock.put(block, new HashMap<>());
+    });
+    Deque<CfgBlock> workList = new ArrayDeque<>(cfg.blocks());
+    while (!workList.isEmpty()) {
+      CfgBlock block = workList.pop();
+      Map<Symbol, Set<Expression>> in = inByBlock.get(block);
+      block.predecessors().forEach(predecessor -> joinExpressions(in, outByBlock.get(predecessor)));
+      Map<Symbol, Set<Expression>> newOut = copy(in);
+      block.elements().forEach(element -> assign(element, newOut, assignedNamesBySymbol));
+      if (!newOut.equals(outByBlock.get(block))) {
+        outByBlock.put(block, newOut);
+        block.successors().forEach(workList::push);
+      }
+    }
+    Map<Name, Set<Expression>> result = new HashMap<>();
+    for (CfgBlock block : cfg.blocks()) {
+      Map<Symbol, Set<Expression>> state = copy(inByBlock.get(block));
+      for (Tree element : block.elements()) {
+        assign(element, state, assignedNamesBySymbol);
+        for (Name name : PythonTestUtils.<Name>getAllDescendant(element, t -> t.is(Tree.Kind.NAME))) {
+          Symbol symbol = name.symbol();
+          if (symbol != null && TreeUtils.firstAncestorOfKind(name, Tree.Kind.FUNCDEF) == functionDef) {
+            boolean hasMissingBindingUsage = symbol.usages().stream()
+              .filter(Usage::isBindingUsage)
+              .anyMatch(u -> !assignedNamesBySymbol.getOrDefault(symbol, Collections.emptySet()).contains(u.tree()));
+            result.put(name, hasMissingBindingUsage ? Collections.emptySet() : state.getOrDefault(symbol, Collections.emptySet()));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void assign(Tree element, Map<Symbol, Set<Expression>> state, Map<Symbol, Set<Name>> assignedNamesBySymbol) {
+    if (!element.is(Tree.Kind.ASSIGNMENT_STMT)) {
+      return;
+    }
+    AssignmentStatement assignment = (AssignmentStatement) element;
+    List<Expression> lhsExpressions = assignment.lhsExpressions().stream()
+      .flatMap(expressionList -> expressionList.expressions().stream())
+      .collect(Collectors.toList());
+    if (lhsExpressions.size() == 1 && lhsExpressions.get(0).is(Tree.Kind.NAME)) {
+      Name name = (Name) lhsExpressions.get(0);
+      Symbol symbol = name.symbol();
+      if (symbol != null) {
+        assignedNamesBySymbol.computeIfAbsent(symbol, s -> new HashSet<>()).add(name);
+        state.put(symbol, new HashSet<>(Collections.singleton(assignment.assignedValue())));
+      }
+    }
+  }
+
+  private static void joinExpressions(Map<Symbol, Set<Expression>> state, Map<Symbol, Set<Expression>> other) {
+    other.forEach((symbol, expressions) -> state.computeIfAbsent(symbol, s -> new HashSet<>()).addAll(expressions));
+  }
+
+  private static Map<Symbol, Set<Expression>> copy(Map<Symbol, Set<Expression>> state) {
+    Map<Symbol, Set<Expression>> result = new HashMap<>();
+    state.forEach((symbol, expressions) -> result.put(symbol, new HashSet<>(expressions)));
+    return result;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cfg.fixpoint;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonar.plugins.python.api.PythonFile;
+import org.sonar.plugins.python.api.cfg.CfgBlock;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.plugins.python.api.tree.AssignmentStatement;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.CfgUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.getFirstDescendant;
+import static org.sonar.python.PythonTestUtils.parse;
+
+public class ForwardAnalysisTest {
+
+  private final PythonFile file = Mockito.mock(PythonFile.class, "file1.py");
+
+  @Test
+  public void diamond() {
+    AssignedNamesAnalysis analysis = analyze(
+      "def f(p):",
+      "  a = 1",
+      "  if p:",
+      "    b = 2",
+      "  else:",
+      "    c = 3",
+      "  d = 4");
+    // reverse postorder: entry block (parameter, assignment and condition) first, join block last, each block processed once
+    assertThat(analysis.visitedLines).containsExactly(1, 2, 3, 6, 4, 7);
+    assertThat(analysis.iterations()).isEqualTo(analysis.blockCount);
+    assertThat(analysis.widenings()).isZero();
+    assertThat(analysis.outOfBlockAt(7).names).containsExactlyInAnyOrder("a", "b", "c", "d");
+  }
+
+  @Test
+  public void loop() {
+    AssignedNamesAnalysis analysis = analyze(
+      "def f():",
+      "  a = 1",
+      "  while cond():",
+      "    b = 2",
+      "  c = 3");
+    // reverse postorder visits the loop exit before the loop body,
+    // then "b" flowing back through the back edge changes the input of the condition, of the exit, of the body and of the end block
+    assertThat(analysis.visitedLines).containsExactly(2, 3, 5, 4, 3, 5, 4);
+    assertThat(analysis.iterations()).isEqualTo(analysis.blockCount + 4);
+    assertThat(analysis.widenings()).isZero();
+    assertThat(analysis.outOfBlockAt(5).names).containsExactlyInAnyOrder("a", "b", "c");
+  }
+
+  @Test
+  public void unchanged_input_is_not_processed_again() {
+    AssignedNamesAnalysis analysis = analyze(
+      "def f():",
+      "  a = 1",
+      "  while cond():",
+      "    a = 2",
+      "  c = 3");
+    // the back edge brings no new name: the condition block and its successors are not processed again
+    assertThat(analysis.visitedLines).containsExactly(2, 3, 5, 4);
+    assertThat(analysis.iterations()).isEqualTo(analysis.blockCount);
+  }
+
+  @Test
+  public void widening() {
+    CounterAnalysis analysis = new CounterAnalysis();
+    ControlFlowGraph cfg = cfg(
+      "def f():",
+      "  x = 0",
+      "  while cond():",
+      "    x += 1");
+    analysis.compute(cfg);
+    CfgBlock loopBody = blockAt(cfg, 4);
+    // without widening, each visit of the loop body would increase the counter and the analysis would never end
+    assertThat(analysis.widenings()).isPositive();
+    assertThat(analysis.iterations()).isGreaterThan(ForwardAnalysis.WIDENING_THRESHOLD);
+    assertThat(((CounterState) analysis.programStateByBlock.get(loopBody).out).value).isEqualTo(CounterState.UNBOUNDED);
+
+    // counters are reset by each computation
+    int iterations = analysis.iterations();
+    int widenings = analysis.widenings();
+    analysis.compute(cfg);
+    assertThat(analysis.iterations()).isLessThanOrEqualTo(iterations);
+    assertThat(analysis.widenings()).isLessThanOrEqualTo(widenings);
+  }
+
+  private AssignedNamesAnalysis analyze(String... lines) {
+    ControlFlowGraph cfg = cfg(lines);
+    AssignedNamesAnalysis analysis = new AssignedNamesAnalysis(cfg);
+    analysis.compute(cfg);
+    return analysis;
+  }
+
+  private ControlFlowGraph cfg(String... lines) {
+    FileInput fileInput = parse(lines);
+    FunctionDef functionDef = getFirstDescendant(fileInput, t -> t.is(Tree.Kind.FUNCDEF));
+    return ControlFlowGraph.build(functionDef, file);
+  }
+
+  private static CfgBlock blockAt(ControlFlowGraph cfg, int line) {
+    return cfg.blocks().stream()
+      .filter(block -> !block.elements().isEmpty() && block.elements().get(0).firstToken().line() == line)
+      .findFirst()
+      .orElseThrow(IllegalStateException::new);
+  }
+
+  private static class AssignedNamesAnalysis extends ForwardAnalysis {
+    private final ControlFlowGraph cfg;
+    private final int blockCount;
+    private final List<Integer> visitedLines = new ArrayList<>();
+
+    private AssignedNamesAnalysis(ControlFlowGraph cfg) {
+      this.cfg = cfg;
+      // blocks without elements, like the end block, are processed too
+      this.blockCount = CfgUtils.reversePostOrder(cfg).size();
+    }
+
+    @Override
+    public ProgramState initialState() {
+      return new NamesState(new HashSet<>());
+    }
+
+    @Override
+    public void updateProgramState(Tree element, ProgramState programState) {
+      visitedLines.add(element.firstToken().line());
+      if (element.is(Tree.Kind.ASSIGNMENT_STMT)) {
+        Name name = (Name) ((AssignmentStatement) element).lhsExpressions().get(0).expressions().get(0);
+        ((NamesState) programState).names.add(name.name());
+      }
+    }
+
+    private NamesState outOfBlockAt(int line) {
+      return (NamesState) programStateByBlock.get(blockAt(cfg, line)).out;
+    }
+  }
+
+  private static class NamesState implements ProgramState {
+    private final Set<String> names;
+
+    private NamesState(Set<String> names) {
+      this.names = names;
+    }
+
+    @Override
+    public ProgramState join(ProgramState programState) {
+      Set<String> union = new HashSet<>(names);
+      union.addAll(((NamesState) programState).names);
+      return new NamesState(union);
+    }
+
+    @Override
+    public ProgramState copy() {
+      return new NamesState(new HashSet<>(names));
+    }
+
+    @Override
+    public ProgramState widen(ProgramState previousState) {
+      return join(previousState);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof NamesState && names.equals(((NamesState) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+      return names.hashCode();
+    }
+  }
+
+  private static class CounterAnalysis extends ForwardAnalysis {
+    @Override
+    public ProgramState initialState() {
+      return new CounterState(0);
+    }
+
+    @Override
+    public void updateProgramState(Tree element, ProgramState programState) {
+      if (element.is(Tree.Kind.COMPOUND_ASSIGNMENT)) {
+        ((CounterState) programState).increment();
+      }
+    }
+  }
+
+  /**
+   * Upper bound of a counter: never stabilizes on a loop unless widened to {@link #UNBOUNDED}.
+   */
+  private static class CounterState implements ProgramState {
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+    private int value;
+
+    private CounterState(int value) {
+      this.value = value;
+    }
+
+    private void increment() {
+      if (value != UNBOUNDED) {
+        value++;
+      }
+    }
+
+    @Override
+    public ProgramState join(ProgramState programState) {
+      return new CounterState(Math.max(value, ((CounterState) programState).value));
+    }
+
+    @Override
+    public ProgramState copy() {
+      return new CounterState(value);
+    }
+
+    @Override
+    public ProgramState widen(ProgramState previousState) {
+      return new CounterState(value > ((CounterState) previousState).value ? UNBOUNDED : value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CounterState && value == ((CounterState) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(value);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PythonTokenChannelTest {
+
+  private final LexerState regexLexerState = new LexerState();
+  private final Lexer regexLexer = PythonLexer.create(regexLexerState, false);
+  private final LexerState handwrittenLexerState = new LexerState();
+  private final Lexer handwrittenLexer = PythonLexer.create(handwrittenLexerState, true);
+
+  @Test
+  public void numbers() {
+    assertSameTokens("1 1.5 1. .5 1.5e3 1e3 1e+3 1E-3j 1j 1.5J .5e3j 1_000 1_000.000_1 1__2 1_.5");
+    assertSameTokens("0 00 07 0_7 08 0o17 0O17 0o9 0x1F 0X_1f 0xg 0b101 0B_1 0b2 0L 17L 0x1l 1..2 1.e5 1._5 1e_ 1e+ 1e 0_b");
+  }
+
+  @Test
+  public void strings() {
+    assertSameTokens("'a' \"b\" '''c\nd''' \"\"\"e\"\"\" r'\\d' u'x' b'y' rb'z' Rb\"z\" f'{x}' rf'{x}' ub'x' 'a\\'b'");
+    assertSameTokens("b'''abc");
+    assertSameTokens("rb'''x'");
+    assertSameTokens("f'''a");
+    assertSameTokens("x = 'abc");
+    assertSameTokens("x = 'a\\");
+    assertSameTokens("br'''\"x\" ");
+  }
+
+  @Test
+  public void identifiers_and_keywords() {
+    assertSameTokens("def f(x, _y): return x if not _y else None\nprint exec async await lambda");
+    assertSameTokens("\u03b1\u03b2 = 1\n\ud835\udc65 = 2\nx\u0301 = 3\nx\u00b2 = 4\n\ud83d\ude00");
+  }
+
+  @Test
+  public void punctuators_and_unknown_characters() {
+    assertSameTokens("a //= b ** c <> d -> e := f @= g >>= h <<= i != j ` k ; l ~ m ^= n");
+    assertSameTokens("$ ? ! \\ x");
+  }
+
+  @Test
+  public void whitespaces_and_comments() {
+    assertSameTokens("if x:\n\t\u000B\fy = 1 # comment\r\n  # other\r\nz = (1,\n  2) \\\n  + 3\n#\n");
+    assertSameTokens("class A:\n  def f(self):\n    pass\n\n\n  x = [\n1]\n");
+  }
+
+  @Test
+  public void test_resources() throws IOException {
+    assertSameTokensForFiles(new File("src/test/resources"));
+    // test sources of the checks, when the whole project is available
+    assertSameTokensForFiles(new File("../python-checks/src/test/resources"));
+  }
+
+  private void assertSameTokensForFiles(File baseDir) throws IOException {
+    if (!baseDir.isDirectory()) {
+      return;
+    }
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(baseDir.toPath())) {
+      files = paths.filter(path -> path.toString().endsWith(".py")).collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      assertSameTokens(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+  }
+
+  private void assertSameTokens(String code) {
+    regexLexerState.reset();
+    List<String> expected = describe(regexLexer.lex(code));
+    handwrittenLexerState.reset();
+    List<String> actual = describe(handwrittenLexer.lex(code));
+    assertThat(actual).as(code).isEqualTo(expected);
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream().map(PythonTokenChannelTest::describe).collect(Collectors.toList());
+  }
+
+  private static String describe(Token token) {
+    String trivia = token.getTrivia().stream().map(Trivia::getToken).map(PythonTokenChannelTest::describe).collect(Collectors.joining(", "));
+    return Arrays.asList(token.getType(), token.getValue(), token.getLine(), token.getColumn(), token.isGeneratedCode(), "[" + trivia + "]").toString();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.sonar.python.api.PythonGrammar;
+import org.sonar.python.api.PythonTokenType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThreadLocalParsersTest {
+
+  @Test
+  public void parse_trees_stay_valid_after_next_parse() {
+    AstNode first = ThreadLocalParsers.parse("x = 1");
+    AstNode second = ThreadLocalParsers.parse("def f(): pass");
+    assertThat(first.is(PythonGrammar.FILE_INPUT)).isTrue();
+    assertThat(first.getTokens()).extracting(Token::getValue).containsExactly("x", "=", "1", "EOF");
+    assertThat(second.getTokens()).extracting(Token::getValue).startsWith("def", "f");
+  }
+
+  @Test
+  public void parse_lexed_tokens() {
+    List<Token> tokens = ThreadLocalParsers.lex("if x:\n  pass");
+    AstNode fileInput = ThreadLocalParsers.parse(tokens);
+    assertThat(fileInput.is(PythonGrammar.FILE_INPUT)).isTrue();
+    assertThat(fileInput.getTokens()).isEqualTo(tokens);
+  }
+
+  @Test
+  public void f_string_expressions() {
+    Token token = ThreadLocalParsers.parse("f'{a} {b}'").getFirstDescendant(PythonTokenType.STRING).getToken();
+    assertThat(ThreadLocalParsers.fStringExpressions(token)).hasSize(2);
+  }
+
+  @Test
+  public void concurrent_parsing() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String source = "x" + i + " = f'{y" + i + "}'\n" + "if x:\n  pass\n";
+        Callable<Integer> task = () -> {
+          AstNode fileInput = ThreadLocalParsers.parse(source);
+          Token string = fileInput.getFirstDescendant(PythonTokenType.STRING).getToken();
+          return fileInput.getTokens().size() + ThreadLocalParsers.fStringExpressions(string).get(0).getTokens().size();
+        };
+        results.add(executor.submit(task));
+      }
+      for (Future<Integer> result : results) {
+        assertThat(result.get()).isEqualTo(16);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
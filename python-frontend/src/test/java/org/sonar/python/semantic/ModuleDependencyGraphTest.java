@@ -0,0 +1,132 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.semantic;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.plugins.python.api.tree.FileInput;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.parseWithoutSymbols;
+import static org.sonar.python.PythonTestUtils.pythonFile;
+
+public class ModuleDependencyGraphTest {
+
+  @Test
+  public void imported_module_names() {
+    FileInput fileInput = parseWithoutSymbols(
+      "import a.b.c",
+      "import d as e",
+      "from f.g import h, i as j",
+      "from k import *",
+      "def fn():",
+      "  import l"
+    );
+    assertThat(ModuleDependencyGraph.importedModuleNames(fileInput, "pkg", pythonFile("mod.py")))
+      .containsExactlyInAnyOrder("a", "a.b", "a.b.c", "d", "f", "f.g", "f.g.h", "f.g.i", "k", "l");
+  }
+
+  @Test
+  public void imported_module_names_of_relative_imports() {
+    FileInput fileInput = parseWithoutSymbols(
+      "from . import a",
+      "from .b import c",
+      "from .. import d"
+    );
+    assertThat(ModuleDependencyGraph.importedModuleNames(fileInput, "pkg.sub", pythonFile("mod.py")))
+      .containsExactlyInAnyOrder("pkg", "pkg.sub", "pkg.sub.a", "pkg.sub.b", "pkg.sub.b.c", "pkg.d");
+    assertThat(ModuleDependencyGraph.importedModuleNames(fileInput, "pkg.sub", pythonFile("__init__.py")))
+      .containsExactlyInAnyOrder("pkg", "pkg.sub", "pkg.sub.a", "pkg.sub.b", "pkg.sub.b.c", "pkg.d");
+    assertThat(ModuleDependencyGraph.importedModuleNames(parseWithoutSymbols("from . import a"), "", pythonFile("mod.py")))
+      .containsExactlyInAnyOrder("", "a");
+    assertThat(ModuleDependencyGraph.importedModuleNames(parseWithoutSymbols("from .. import a"), "", pythonFile("mod.py"))).isEmpty();
+  }
+
+  @Test
+  public void dependencies() {
+    ModuleDependencyGraph graph = new ModuleDependencyGraph();
+    graph.addModule("a", names("a", "b", "os", "c.d"));
+    graph.addModule("b", names());
+    graph.addModule("c", names());
+    assertThat(graph.modules()).containsExactly("a", "b", "c");
+    assertThat(graph.dependencies("a")).containsExactly("b");
+    assertThat(graph.dependencies("unknown")).isEmpty();
+
+    graph.addModule("c.d", names());
+    graph.addModule("a", names("c"));
+    assertThat(graph.dependencies("a")).containsExactly("b", "c", "c.d");
+  }
+
+  @Test
+  public void strongly_connected_components() {
+    ModuleDependencyGraph graph = new ModuleDependencyGraph();
+    graph.addModule("main", names("x", "y"));
+    graph.addModule("x", names("y", "z"));
+    graph.addModule("y", names("x"));
+    graph.addModule("z", names("base"));
+    graph.addModule("base", names());
+    graph.addModule("other", names());
+
+    assertThat(graph.stronglyConnectedComponents()).containsExactly(
+      Collections.singletonList("base"),
+      Collections.singletonList("z"),
+      Arrays.asList("x", "y"),
+      Collections.singletonList("main"),
+      Collections.singletonList("other"));
+    assertThat(graph.batches()).containsExactly(
+      Arrays.asList("base", "other"),
+      Collections.singletonList("z"),
+      Arrays.asList("x", "y"),
+      Collections.singletonList("main"));
+  }
+
+  @Test
+  public void long_import_chains() {
+    int length = 50_000;
+    ModuleDependencyGraph cycle = importChain(length);
+    cycle.addModule("m" + length, names("m0"));
+    List<List<String>> components = cycle.stronglyConnectedComponents();
+    assertThat(components).hasSize(1);
+    assertThat(components.get(0)).hasSize(length + 1);
+    assertThat(cycle.batches()).hasSize(1);
+
+    ModuleDependencyGraph chain = importChain(length);
+    assertThat(chain.stronglyConnectedComponents()).hasSize(length + 1);
+    List<List<String>> batches = chain.batches();
+    assertThat(batches).hasSize(length + 1);
+    assertThat(batches.get(0)).containsExactly("m" + length);
+  }
+
+  private static ModuleDependencyGraph importChain(int length) {
+    ModuleDependencyGraph graph = new ModuleDependencyGraph();
+    for (int i = 0; i < length; i++) {
+      graph.addModule("m" + i, names("m" + (i + 1)));
+    }
+    graph.addModule("m" + length, names());
+    return graph;
+  }
+
+  private static HashSet<String> names(String... names) {
+    return new HashSet<>(Arrays.asList(names));
+  }
+}
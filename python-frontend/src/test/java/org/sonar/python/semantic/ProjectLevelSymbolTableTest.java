@@ -20,12 +20,17 @@
 package org.sonar.python.semantic;
 
 import com.google.common.base.Functions;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.junit.Test;
@@ -138,6 +143,31 @@ public class ProjectLevelSymbolTableTest {
     assertThat(importedFnSymbol.usages()).extracting(Usage::kind).containsExactlyInAnyOrder(Usage.Kind.OTHER);
   }
 
+  @Test
+  public void module_symbols_are_copied_on_first_use() {
+    FunctionDef functionDef = (FunctionDef) parse("def fn(p1, p2): pass").statements().statements().get(0);
+    FunctionSymbolImpl fnSymbol = new FunctionSymbolImpl(functionDef, "mod.fn", pythonFile("mod.py"));
+    ClassSymbolImpl classSymbol = new ClassSymbolImpl("C", "mod.C");
+    Map<String, Set<Symbol>> globalSymbols = Collections.singletonMap("mod", new HashSet<>(Arrays.asList(fnSymbol, classSymbol)));
+    FileInput tree = parse(
+      new SymbolTableBuilder("my_package", pythonFile("my_module.py"), from(globalSymbols)),
+      "import mod",
+      "mod.fn(1, 2)"
+    );
+    CallExpression callExpression = PythonTestUtils.getFirstChild(tree, t -> t.is(Tree.Kind.CALL_EXPR));
+    assertThat(callExpression.calleeSymbol()).isNotEqualTo(fnSymbol);
+    assertThat(callExpression.calleeSymbol().kind()).isEqualTo(Symbol.Kind.FUNCTION);
+    // "C" was not copied: its super classes were never read
+    classSymbol.addSuperClass(new SymbolImpl("B", "mod.B"));
+
+    SymbolImpl modSymbol = (SymbolImpl) tree.globalVariables().iterator().next();
+    assertThat(modSymbol.getChildrenSymbolByName().keySet()).containsExactlyInAnyOrder("fn", "C");
+    Symbol copiedClassSymbol = modSymbol.getChildrenSymbolByName().get("C");
+    assertThat(copiedClassSymbol).isNotEqualTo(classSymbol);
+    assertThat(((ClassSymbol) copiedClassSymbol).superClasses()).extracting(Symbol::fullyQualifiedName).containsExactly("mod.B");
+    assertThat(modSymbol.getChildrenSymbolByName().get("fn")).isSameAs(callExpression.calleeSymbol());
+  }
+
   @Test
   public void import_already_existing_symbol() {
     FunctionDef functionDef = (FunctionDef) parse("def fn(p1, p2): pass").statements().statements().get(0);
@@ -397,6 +427,47 @@ public class ProjectLevelSymbolTableTest {
     return projectLevelSymbolTable.getSymbolsFromModule(packageName.isEmpty() ? "mod" : packageName + ".mod");
   }
 
+  @Test
+  public void module_global_symbols_merged_afterwards() {
+    FileInput tree = parseWithoutSymbols(
+      "def fn(): pass",
+      "class A: pass"
+    );
+    Set<Symbol> moduleSymbols = ProjectLevelSymbolTable.moduleGlobalSymbols(tree, "my_package", pythonFile("mod.py"));
+    assertThat(moduleSymbols).extracting(Symbol::fullyQualifiedName).containsExactlyInAnyOrder("my_package.mod.fn", "my_package.mod.A");
+
+    ProjectLevelSymbolTable projectLevelSymbolTable = new ProjectLevelSymbolTable();
+    assertThat(projectLevelSymbolTable.getSymbol("my_package.mod.fn")).isNull();
+    projectLevelSymbolTable.addModuleSymbols("my_package.mod", moduleSymbols);
+    assertThat(projectLevelSymbolTable.getSymbolsFromModule("my_package.mod")).isSameAs(moduleSymbols);
+    assertThat(projectLevelSymbolTable.getSymbol("my_package.mod.fn")).isNotNull();
+  }
+
+  @Test
+  public void module_global_symbols_with_imported_symbols() {
+    FileInput baseTree = parseWithoutSymbols("class Base: pass");
+    ProjectLevelSymbolTable projectLevelSymbolTable = new ProjectLevelSymbolTable();
+    projectLevelSymbolTable.addModuleSymbols("base", ProjectLevelSymbolTable.moduleGlobalSymbols(baseTree, "", pythonFile("base.py")));
+
+    FileInput tree = parseWithoutSymbols(
+      "from base import Base",
+      "class A(Base): pass"
+    );
+    Set<Symbol> moduleSymbols = ProjectLevelSymbolTable.moduleGlobalSymbols(tree, "", pythonFile("mod.py"), projectLevelSymbolTable);
+    assertThat(moduleSymbols).extracting(Symbol::fullyQualifiedName).containsExactly("mod.A");
+    ClassSymbol classA = (ClassSymbol) moduleSymbols.iterator().next();
+    assertThat(classA.superClasses()).extracting(Symbol::kind).containsExactly(Symbol.Kind.CLASS);
+    assertThat(classA.hasUnresolvedTypeHierarchy()).isFalse();
+
+    tree = parseWithoutSymbols(
+      "from base import Base",
+      "class A(Base): pass"
+    );
+    classA = (ClassSymbol) ProjectLevelSymbolTable.moduleGlobalSymbols(tree, "", pythonFile("mod.py")).iterator().next();
+    assertThat(classA.superClasses()).extracting(Symbol::kind).containsExactly(Symbol.Kind.OTHER);
+    assertThat(classA.hasUnresolvedTypeHierarchy()).isTrue();
+  }
+
   @Test
   public void global_symbols() {
     FileInput tree = parseWithoutSymbols(
@@ -411,6 +482,63 @@ public class ProjectLevelSymbolTableTest {
     assertThat(globalSymbols).extracting(Symbol::usages).allSatisfy(usages -> assertThat(usages).isEmpty());
   }
 
+  @Test
+  public void global_symbols_share_super_class_copies() {
+    FileInput tree = parseWithoutSymbols(
+      "class A(Exception): pass",
+      "class B(A): pass",
+      "class C(A, Exception): pass"
+    );
+    Map<String, ClassSymbol> classes = globalSymbols(tree, "").stream()
+      .collect(Collectors.toMap(Symbol::name, ClassSymbol.class::cast));
+    ClassSymbol a = classes.get("A");
+    assertThat(classes.get("B").superClasses()).containsExactly(a);
+    assertThat(classes.get("C").superClasses()).containsExactly(a, a.superClasses().get(0));
+    assertThat(a.superClasses()).extracting(Symbol::fullyQualifiedName).containsExactly("Exception");
+    assertThat(a.superClasses().get(0).usages()).isEmpty();
+  }
+
+  @Test
+  public void global_symbols_retained_objects() {
+    FileInput tree = parseWithoutSymbols(
+      "class Base(Exception):",
+      "  def m1(self): pass",
+      "  def m2(self): pass",
+      "class A(Base): pass",
+      "class B(Base): pass",
+      "class C(Base): pass",
+      "class D(A, B): pass"
+    );
+    Set<Symbol> globalSymbols = globalSymbols(tree, "");
+    // each class copied with its whole hierarchy, as before super class copies were shared
+    List<Symbol> separateCopies = tree.globalVariables().stream()
+      .map(symbol -> ((ClassSymbolImpl) symbol).copyWithoutUsages())
+      .collect(Collectors.toList());
+    Set<Symbol> retainedBefore = retainedSymbols(separateCopies);
+    Set<Symbol> retainedAfter = retainedSymbols(globalSymbols);
+    // symbols of the classes, of their members and of the members of Exception and BaseException
+    assertThat(retainedBefore).hasSize(206);
+    assertThat(retainedAfter).hasSize(44);
+
+    // one string object per fully qualified name
+    Set<String> fullyQualifiedNames = Collections.newSetFromMap(new IdentityHashMap<>());
+    retainedAfter.stream().map(Symbol::fullyQualifiedName).filter(Objects::nonNull).forEach(fullyQualifiedNames::add);
+    assertThat(fullyQualifiedNames).hasSameSizeAs(new HashSet<>(fullyQualifiedNames)).allMatch(name -> name == name.intern());
+  }
+
+  private static Set<Symbol> retainedSymbols(Collection<Symbol> symbols) {
+    Set<Symbol> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<Symbol> workList = new ArrayDeque<>(symbols);
+    while (!workList.isEmpty()) {
+      Symbol symbol = workList.pop();
+      if (retained.add(symbol) && symbol.kind() == Symbol.Kind.CLASS) {
+        workList.addAll(((ClassSymbol) symbol).superClasses());
+        workList.addAll(((ClassSymbol) symbol).declaredMembers());
+      }
+    }
+    return retained;
+  }
+
   @Test
   public void global_symbols_private_by_convention() {
     // although being private by convention, it's considered as exported
@@ -65,6 +65,16 @@ public class SymbolImplTest {
     assertThat(qualifiedExpr.symbol().usages()).isEmpty();
   }
 
+  @Test
+  public void fully_qualified_name_is_interned() {
+    String literal = "mod.x";
+    String fullyQualifiedName = new StringBuilder("mod.").append("x").toString();
+    assertThat(fullyQualifiedName).isNotSameAs(literal);
+    assertThat(new SymbolImpl("x", fullyQualifiedName).fullyQualifiedName()).isSameAs(literal);
+    assertThat(new SymbolImpl("x", fullyQualifiedName, null).fullyQualifiedName()).isSameAs("mod.x");
+    assertThat(new SymbolImpl("x", null).fullyQualifiedName()).isNull();
+  }
+
   private Map<String, Symbol> symbols(String... code) {
     FileInput fileInput = parse(new SymbolTableBuilder("", PythonTestUtils.pythonFile("foo")), code);
     return fileInput.globalVariables().stream().collect(Collectors.toMap(Symbol::name, Function.identity()));
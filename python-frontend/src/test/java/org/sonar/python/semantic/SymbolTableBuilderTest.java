@@ -49,6 +49,7 @@ import org.sonar.plugins.python.api.tree.Tuple;
 import org.sonar.python.PythonTestUtils;
 import org.sonar.python.TestPythonVisitorRunner;
 import org.sonar.python.tree.TreeUtils;
+import org.sonar.python.types.TypeShed;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -387,6 +388,27 @@ public class SymbolTableBuilderTest {
     assertThat(print.symbol().fullyQualifiedName()).isEqualTo("print");
   }
 
+  @Test
+  public void builtin_symbols_are_copied_per_file() {
+    Name firstLen = firstCallee(PythonTestUtils.parse("len(x)"));
+    Name secondLen = firstCallee(PythonTestUtils.parse("len(y)", "len(z)"));
+    assertThat(firstLen.symbol()).isNotSameAs(secondLen.symbol()).isNotSameAs(TypeShed.builtinSymbols().get("len"));
+    assertThat(firstLen.symbol().usages()).hasSize(1);
+    assertThat(secondLen.symbol().usages()).hasSize(2);
+    assertThat(TypeShed.builtinSymbols().get("len").usages()).isEmpty();
+
+    FileInput fileInput = PythonTestUtils.parse("len = 42", "len(x)");
+    Name redefinedLen = firstCallee(fileInput);
+    assertThat(redefinedLen.symbol().kind()).isEqualTo(Symbol.Kind.OTHER);
+    assertThat(redefinedLen.symbol().usages()).extracting(Usage::kind).containsExactly(Usage.Kind.ASSIGNMENT_LHS, Usage.Kind.OTHER);
+    assertThat(fileInput.globalVariables()).isEmpty();
+  }
+
+  private static Name firstCallee(FileInput fileInput) {
+    CallExpression callExpression = PythonTestUtils.getFirstDescendant(fileInput, t -> t.is(Tree.Kind.CALL_EXPR));
+    return (Name) callExpression.callee();
+  }
+
   @Test
   public void keyword_usage() {
     FunctionDef functionTree = functionTreesByName.get("keyword_usage");
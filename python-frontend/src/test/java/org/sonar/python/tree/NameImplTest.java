@@ -28,12 +28,15 @@ import org.sonar.python.types.InferredTypes;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class NameImplTest {
 
   @Test
   public void type() {
-    Token token = new TokenImpl(mock(com.sonar.sslr.api.Token.class));
+    com.sonar.sslr.api.Token sslrToken = mock(com.sonar.sslr.api.Token.class);
+    when(sslrToken.getValue()).thenReturn("x");
+    Token token = new TokenImpl(sslrToken);
     NameImpl name = new NameImpl(token, true);
     assertThat(name.type()).isEqualTo(InferredTypes.anyType());
 
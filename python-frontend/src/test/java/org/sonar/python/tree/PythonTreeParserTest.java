@@ -0,0 +1,291 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.RecognitionException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.sonar.plugins.python.api.tree.ClassDef;
+import org.sonar.plugins.python.api.tree.ErrorStatement;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.IfStatement;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Statement;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.parser.PythonParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PythonTreeParserTest {
+
+  private final PythonParser sslrParser = PythonParser.create();
+  private final PythonTreeMaker treeMaker = new PythonTreeMaker();
+  private final PythonTreeParser parser = new PythonTreeParser();
+
+  @Test
+  public void statements() {
+    assertSameTree("");
+    assertSameTree("\n\n");
+    assertSameTree("pass");
+    assertSameTree("pass; pass;\nbreak\n");
+    assertSameTree("x = 1; y = 2;");
+    assertSameTree("a = b = c, d = yield x");
+    assertSameTree("a, *b = c");
+    assertSameTree("x += 1\nx //= yield");
+    assertSameTree("x: int\nx: int = 1, 2\nx: int = yield");
+    assertSameTree("del a, b,");
+    assertSameTree("return\nreturn x\nreturn x, *y,");
+    assertSameTree("raise\nraise x\nraise x from y\nraise a, b, c");
+    assertSameTree("assert x\nassert x, 'message'");
+    assertSameTree("global a, b\nnonlocal c");
+    assertSameTree("import a.b.c as d, e");
+    assertSameTree("from . import x\nfrom ..a.b import (x as y, z,)\nfrom a import *\nfrom .a import b, c");
+    assertSameTree("print\nprint x, y,\nprint >> f, x\nprint >> f\nprint(x)\nprint = 3");
+    assertSameTree("exec code\nexec code in g, l\nexec(code)\nexec = 3");
+    assertSameTree("yield\nyield x, y\nyield from x");
+  }
+
+  @Test
+  public void compound_statements() {
+    assertSameTree("if x: pass\nelif y: pass\nelse: pass");
+    assertSameTree("if x:\n  pass\n  pass\nelif y:\n  pass\nelse:\n  pass\n");
+    assertSameTree("while x := f(): pass\nelse:\n  pass");
+    assertSameTree("for a, b in c, d: pass\nelse: pass");
+    assertSameTree("async def f():\n  async for x in y: pass\n  async with a as b, c: pass\n  await x");
+    assertSameTree("async = 1\nasync.x = 2");
+    assertSameTree("try:\n  pass\nexcept:\n  pass");
+    assertSameTree("try: pass\nexcept E as e: pass\nexcept E, e: pass\nexcept E: pass\nelse: pass\nfinally: pass");
+    assertSameTree("try: pass\nfinally: pass");
+    assertSameTree("with a, b as (c, d): pass");
+    assertSameTree("@a.b\n@c(d, e=f)\n@g()\nclass A(B, metaclass=M):\n  '''doc'''\n  @property\n  def f(self): return 1\n  async def g(self): pass\n  def h(self):\n    def i(): pass");
+    assertSameTree("class A: pass\nclass B(): pass\n@d\nasync def f(): pass");
+    assertSameTree("def f() -> int: pass");
+  }
+
+  @Test
+  public void parameters() {
+    assertSameTree("def f(a, b: int = 1, *args, c, d=2, **kwargs): pass");
+    assertSameTree("def f(a, /, b, *, c): pass");
+    assertSameTree("def f(*, a,): pass");
+    assertSameTree("def f(**kwargs,): pass");
+    assertSameTree("def f(a, (b, c), (d, (e,)) = x): pass");
+    assertSameTree("def f(a,): pass");
+    assertSameTree("def f(*args: int, b=1, **kw: str): pass");
+    assertSameTree("lambda: x");
+    assertSameTree("lambda x, y=1, *z, **w: x");
+    assertSameTree("lambda *, x: x");
+    assertSameTree("lambda x, /, y: x");
+  }
+
+  @Test
+  public void expressions() {
+    assertSameTree("a if b else c if d else e");
+    assertSameTree("[x for x in y if x if not x]");
+    assertSameTree("a or b and not c");
+    assertSameTree("a < b == c is not d in e not in f is g <> h");
+    assertSameTree("a | b ^ c & d << e >> f + g - h * i / j // k % l @ m ** -n ** ~o");
+    assertSameTree("await a ** b\nawait a.b(c)[d]");
+    assertSameTree("a.b.c(d)(e)[f][g:h][i:j:k, l][::][m,]");
+    assertSameTree("f(*a, **b, c=d, e)\nf(x for x in y)\nf((x for x in y), z)\nf(a,)\nf(x := 1)");
+    assertSameTree("()\n(a)\n(a,)\n(a, *b)\n(yield)\n(x for x in y)\n(x := 1)");
+    assertSameTree("[]\n[a]\n[a, *b,]\n[x for x in y]\n[x async for x, in y, z]");
+    assertSameTree("{}\n{a}\n{a, *b,}\n{x for x in y}\n{*a}\n{**a, b: c,}\n{a: b for a, b in c}\n{a: b}");
+    assertSameTree("`a, b`");
+    assertSameTree("None\n...\n1\n1.5j\n'a' \"b\"\nb'c'");
+    assertSameTree("lambda x: lambda: x\n[x for x in y if lambda: x]");
+    assertSameTree("x = *a, *b");
+    assertSameTree("for x, in y: pass");
+  }
+
+  @Test
+  public void formatted_strings() {
+    assertSameTree("f'{a}'");
+    assertSameTree("f'a{b!r}c{d=}e{f:>{width}.{precision}}'");
+    assertSameTree("f'{a:{b}}' f\"{c + d}\" 'e'");
+    assertSameTree("f'{a[0]:x}{{not an expression}}'");
+    assertSameTree("f'{a}{'");
+    assertSameTree("f'''\n{a}\n{b}'''");
+  }
+
+  @Test
+  public void comments_and_indentation() {
+    assertSameTree("# comment\nif x:\n  # comment\n  pass # comment\n\n  pass\n# comment\n");
+    assertSameTree("if x:\n  if y:\n    pass");
+    assertSameTree("x = (1,\n  2)\ny = [\n]\n");
+    assertSameTree("x = 1 \\\n  + 2");
+  }
+
+  @Test
+  public void resource_files() throws IOException {
+    for (Path file : pythonFiles(Paths.get("src/test/resources"), Paths.get("../python-checks/src/test/resources"))) {
+      String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      FileInput expected;
+      try {
+        expected = treeMaker.fileInput(sslrParser.parse(source));
+      } catch (RuntimeException e) {
+        continue;
+      }
+      assertThat(dump(parser.parse(source))).as(file.toString()).isEqualTo(dump(expected));
+    }
+  }
+
+  @Test
+  public void syntax_errors() {
+    assertParseError("x = \n", "Parse error at line 1 column 4.");
+    assertParseError("if x:\npass", "Parse error at line 2 column 0.");
+    assertParseError("def f(:\n  pass", "Parse error at line 1 column 6.");
+    assertParseError("f(x, a for a in b)", "Parse error at line 1: Generator expression must be parenthesized if not sole argument.");
+    assertParseError("f(a.b=1)", "Parse error at line 1: Keyword in argument list must be an identifier.");
+    assertParseError("if a.b := 1: pass", "Parse error at line 1: The left-hand side of an assignment expression must be a name.");
+    assertParseError("try: pass\nx = 1", "Parse error at line 2 column 0.");
+  }
+
+  @Test
+  public void error_recovery() {
+    List<RecognitionException> errors = new ArrayList<>();
+    FileInput fileInput = parser.parse("x = 1\ny = (\nz = 2\n", errors);
+    assertThat(errors).extracting(RecognitionException::getLine).containsExactly(3);
+    assertThat(fileInput.statements().statements()).extracting(Tree::getKind).containsExactly(Tree.Kind.ASSIGNMENT_STMT, Tree.Kind.ERROR_STMT);
+
+    errors.clear();
+    fileInput = parser.parse("def f(x y):\n  return 1\ndef g(): pass\nclass A:\n  x = = 1\n  def h(self): pass\n", errors);
+    assertThat(errors).extracting(RecognitionException::getMessage).containsExactly("Parse error at line 1 column 8.", "Parse error at line 5 column 6.");
+    List<Statement> statements = fileInput.statements().statements();
+    assertThat(statements).extracting(Tree::getKind).containsExactly(Tree.Kind.ERROR_STMT, Tree.Kind.FUNCDEF, Tree.Kind.CLASSDEF);
+    ErrorStatement errorStatement = (ErrorStatement) statements.get(0);
+    assertThat(errorStatement.tokens()).extracting(Token::type).containsExactly(
+      PythonKeyword.DEF, GenericTokenType.IDENTIFIER, PythonPunctuator.LPARENTHESIS, GenericTokenType.IDENTIFIER, GenericTokenType.IDENTIFIER,
+      PythonPunctuator.RPARENTHESIS, PythonPunctuator.COLON, PythonTokenType.NEWLINE,
+      PythonTokenType.INDENT, PythonKeyword.RETURN, PythonTokenType.NUMBER, PythonTokenType.NEWLINE, PythonTokenType.DEDENT);
+    assertThat(errorStatement.tokens().get(0).parent()).isSameAs(errorStatement);
+    ClassDef classDef = (ClassDef) statements.get(2);
+    assertThat(classDef.body().statements()).extracting(Tree::getKind).containsExactly(Tree.Kind.ERROR_STMT, Tree.Kind.FUNCDEF);
+    assertThat(((FunctionDef) classDef.body().statements().get(1)).isMethodDefinition()).isTrue();
+    assertThat(fileInput.lastToken().type()).isEqualTo(GenericTokenType.EOF);
+  }
+
+  @Test
+  public void error_recovery_of_indentation() {
+    List<RecognitionException> errors = new ArrayList<>();
+    FileInput fileInput = parser.parse("x = 1\n  y = 2\nz = 3\nif x:\nw = 4", errors);
+    assertThat(errors).extracting(RecognitionException::getLine).containsExactly(2, 5);
+    assertThat(fileInput.statements().statements()).extracting(Tree::getKind)
+      .containsExactly(Tree.Kind.ASSIGNMENT_STMT, Tree.Kind.ERROR_STMT, Tree.Kind.ASSIGNMENT_STMT, Tree.Kind.ERROR_STMT, Tree.Kind.ASSIGNMENT_STMT);
+
+    errors.clear();
+    fileInput = parser.parse("if x:\n  a = (\nb = 1", errors);
+    assertThat(errors).hasSize(1);
+    assertThat(fileInput.statements().statements()).extracting(Tree::getKind).containsExactly(Tree.Kind.IF_STMT);
+    assertThat(((IfStatement) fileInput.statements().statements().get(0)).body().statements()).extracting(Tree::getKind).containsExactly(Tree.Kind.ERROR_STMT);
+  }
+
+  @Test
+  public void error_recovery_of_semantic_errors() {
+    List<RecognitionException> errors = new ArrayList<>();
+    FileInput fileInput = parser.parse("f(x, a for a in b)\ny = 1", errors);
+    assertThat(errors).extracting(RecognitionException::getMessage).containsExactly("Parse error at line 1: Generator expression must be parenthesized if not sole argument.");
+    assertThat(fileInput.statements().statements()).extracting(Tree::getKind).containsExactly(Tree.Kind.ERROR_STMT, Tree.Kind.ASSIGNMENT_STMT);
+  }
+
+  @Test
+  public void error_recovery_of_valid_code() {
+    List<RecognitionException> errors = new ArrayList<>();
+    String source = "if x:\n  pass\nelse:\n  y = [a for a in b]\n";
+    assertThat(dump(parser.parse(source, errors))).isEqualTo(dump(treeMaker.fileInput(sslrParser.parse(source))));
+    assertThat(errors).isEmpty();
+  }
+
+  @Test
+  public void parser_is_reusable() {
+    assertSameTree("if x:\n  pass");
+    assertParseError("if x:\n  pass\n)", "Parse error at line 3 column 0.");
+    assertSameTree("if x:\n  pass");
+  }
+
+  private void assertSameTree(String source) {
+    FileInput expected = treeMaker.fileInput(sslrParser.parse(source));
+    assertThat(dump(parser.parse(source))).isEqualTo(dump(expected));
+  }
+
+  private void assertParseError(String source, String message) {
+    try {
+      parser.parse(source);
+      fail("Expected a parse error for: " + source);
+    } catch (RecognitionException e) {
+      assertThat(e.getMessage()).isEqualTo(message);
+    }
+  }
+
+  private static List<Path> pythonFiles(Path... roots) throws IOException {
+    Stream<Path> files = Stream.empty();
+    for (Path root : roots) {
+      if (root.toFile().isDirectory()) {
+        files = Stream.concat(files, Files.walk(root).filter(path -> path.toString().endsWith(".py")));
+      }
+    }
+    return files.sorted().collect(Collectors.toList());
+  }
+
+  private static String dump(Tree tree) {
+    StringBuilder sb = new StringBuilder();
+    dump(tree, 0, sb);
+    return sb.toString();
+  }
+
+  private static void dump(Tree tree, int depth, StringBuilder sb) {
+    for (int i = 0; i < depth; i++) {
+      sb.append("  ");
+    }
+    sb.append(tree.getKind());
+    if (tree.is(Tree.Kind.TOKEN)) {
+      Token token = (Token) tree;
+      sb.append(' ').append(token.value()).append(' ').append(token.line()).append(':').append(token.column()).append(' ').append(token.type())
+        .append(" trivia=").append(token.trivia().stream().map(t -> t.value()).collect(Collectors.toList()));
+    } else if (tree.is(Tree.Kind.NAME)) {
+      sb.append(" isVariable=").append(((Name) tree).isVariable());
+    } else if (tree.is(Tree.Kind.FUNCDEF)) {
+      sb.append(" isMethodDefinition=").append(((FunctionDef) tree).isMethodDefinition());
+    }
+    if (tree.parent() != null) {
+      sb.append(" parent=").append(tree.parent().getKind());
+    }
+    sb.append('\n');
+    for (Tree child : tree.children()) {
+      if (child != null) {
+        dump(child, depth + 1, sb);
+      }
+    }
+  }
+}
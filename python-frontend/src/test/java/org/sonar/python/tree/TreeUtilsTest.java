@@ -112,6 +112,27 @@ public class TreeUtilsTest {
     assertThat(nonWhitespaceTokens.stream().map(Token::value)).containsExactly("if", "foo", ":", "pass");
   }
 
+  @Test
+  public void token_index() {
+    FileInputImpl parsed = (FileInputImpl) parse("x = 1\nif foo:\n  y = f'{x}'\n");
+    assertThat(TreeUtils.tokens(parsed)).isEqualTo(parsed.tokens());
+    assertThat(parsed.tokensOnLine(1).stream().map(Token::value)).containsExactly("x", "=", "1", "\n");
+    assertThat(parsed.tokensOnLine(3).stream().map(Token::value)).containsExactly("  ", "y", "=", "f'{x}'", "\n");
+    assertThat(parsed.tokensOnLine(10)).isEmpty();
+
+    IfStatement ifStmt = (IfStatement) parsed.statements().statements().get(1);
+    Token ifKeyword = ifStmt.keyword();
+    assertThat(TreeUtils.previousToken(ifKeyword).type()).isEqualTo(PythonTokenType.NEWLINE);
+    assertThat(TreeUtils.nextToken(ifKeyword).value()).isEqualTo("foo");
+    assertThat(TreeUtils.previousToken(parsed.firstToken())).isNull();
+    assertThat(TreeUtils.nextToken(parsed.lastToken())).isNull();
+
+    // tokens of f-string expressions are not part of the token index
+    Name fStringName = PythonTestUtils.getLastDescendant(ifStmt, t -> t.is(Kind.NAME));
+    assertThat(TreeUtils.tokens(fStringName)).extracting(Token::value).containsExactly("x");
+    assertThat(TreeUtils.previousToken(fStringName.firstToken())).isNull();
+  }
+
   @Test
   public void hasDescendants() {
     FileInput fileInput = parse("class A:\n  def foo(): pass");
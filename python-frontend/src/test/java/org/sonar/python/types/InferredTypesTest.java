@@ -22,6 +22,7 @@ package org.sonar.python.types;
 import java.util.Arrays;
 import java.util.HashSet;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.sonar.plugins.python.api.LocationInFile;
 import org.sonar.plugins.python.api.symbols.ClassSymbol;
 import org.sonar.plugins.python.api.symbols.Symbol;
@@ -59,6 +60,11 @@ public class InferredTypesTest {
     assertThat(runtimeType(new SymbolImpl("b", "a.b"))).isEqualTo(anyType());
     ClassSymbol typeClass = new ClassSymbolImpl("b", "a.b");
     assertThat(runtimeType(typeClass)).isEqualTo(new RuntimeType(typeClass));
+    assertThat(runtimeType(typeClass)).isSameAs(runtimeType(typeClass));
+
+    ClassSymbol otherClassSymbol = Mockito.mock(ClassSymbol.class);
+    Mockito.when(otherClassSymbol.fullyQualifiedName()).thenReturn("a.b");
+    assertThat(runtimeType(otherClassSymbol)).isEqualTo(new RuntimeType(otherClassSymbol)).isSameAs(runtimeType(otherClassSymbol));
   }
 
   @Test
@@ -0,0 +1,141 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.types;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonar.plugins.python.api.LocationInFile;
+import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
+import org.sonar.plugins.python.api.symbols.ClassSymbol;
+import org.sonar.plugins.python.api.symbols.FunctionSymbol;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.semantic.AmbiguousSymbolImpl;
+import org.sonar.python.semantic.ClassSymbolImpl;
+import org.sonar.python.semantic.FunctionSymbolImpl;
+import org.sonar.python.semantic.SymbolImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SerializedSymbolsTest {
+
+  private final Map<String, ByteArrayOutputStream> resources = new HashMap<>();
+
+  @Test
+  public void round_trip() throws IOException {
+    ClassSymbolImpl object = new ClassSymbolImpl("object", "object");
+    SerializedSymbolsWriter builtinsWriter = new SerializedSymbolsWriter(null);
+    builtinsWriter.add("builtins", Collections.singletonMap("object", object), false);
+    builtinsWriter.write(this::open, null);
+
+    ClassSymbolImpl classA = new ClassSymbolImpl("A", "mod.A", new LocationInFile(null, 1, 0, 1, 7), true, false, "abc.ABCMeta");
+    classA.addSuperClass(object);
+    FunctionSymbolImpl method = new FunctionSymbolImpl("foo", "mod.A.foo", Collections.singletonList("staticmethod"), null, true, false, true,
+      true, "object", true);
+    method.addParameter("x", new RuntimeType(object), true, false, true, false, null);
+    method.addParameter("args", InferredTypes.anyType(), false, true, false, false, null);
+    method.setDeclaredReturnType(new RuntimeType(classA));
+    classA.addMembers(Collections.singletonList(method));
+    SymbolImpl variable = new SymbolImpl("v", "mod.v", "object");
+
+    SerializedSymbolsWriter modulesWriter = new SerializedSymbolsWriter(builtinsWriter);
+    Map<String, Symbol> roots = new HashMap<>();
+    roots.put("A", classA);
+    roots.put("v", variable);
+    modulesWriter.add("mod", roots, false);
+    modulesWriter.write(this::open, "shared");
+
+    SerializedSymbols.Graph builtins = read("builtins", null);
+    Symbol readObject = builtins.roots().get("object");
+    Map<String, Symbol> module = read("mod", read("shared", builtins)).roots();
+    assertThat(module).containsOnlyKeys("A", "v");
+
+    ClassSymbol readClassA = (ClassSymbol) module.get("A");
+    assertThat(readClassA.fullyQualifiedName()).isEqualTo("mod.A");
+    assertThat(readClassA.definitionLocation()).isEqualToComparingFieldByField(new LocationInFile(null, 1, 0, 1, 7));
+    assertThat(readClassA.hasDecorators()).isTrue();
+    assertThat(((ClassSymbolImpl) readClassA).metaclassFQN()).isEqualTo("abc.ABCMeta");
+    assertThat(readClassA.superClasses()).containsExactly(readObject);
+
+    FunctionSymbolImpl readMethod = (FunctionSymbolImpl) readClassA.declaredMembers().iterator().next();
+    assertThat(readMethod.fullyQualifiedName()).isEqualTo("mod.A.foo");
+    assertThat(readMethod.decorators()).containsExactly("staticmethod");
+    assertThat(readMethod.hasVariadicParameter()).isTrue();
+    assertThat(readMethod.isInstanceMethod()).isFalse();
+    assertThat(readMethod.isAsynchronous()).isTrue();
+    assertThat(readMethod.annotatedReturnTypeName()).isEqualTo("object");
+    assertThat(readMethod.owner()).isSameAs(readClassA);
+    assertThat(readMethod.declaredReturnType()).isEqualTo(new RuntimeType(readClassA));
+    assertThat(readMethod.parameters()).extracting(FunctionSymbol.Parameter::name).containsExactly("x", "args");
+    FunctionSymbol.Parameter parameter = readMethod.parameters().get(0);
+    assertThat(parameter.declaredType()).isEqualTo(new RuntimeType((ClassSymbol) readObject));
+    assertThat(parameter.hasDefaultValue()).isTrue();
+    assertThat(parameter.isKeywordOnly()).isTrue();
+    assertThat(readMethod.parameters().get(1).declaredType()).isEqualTo(InferredTypes.anyType());
+    assertThat(readMethod.parameters().get(1).isVariadic()).isTrue();
+
+    assertThat(module.get("v").annotatedTypeName()).isEqualTo("object");
+  }
+
+  @Test
+  public void equivalent_symbols_are_shared() throws IOException {
+    SerializedSymbolsWriter builtinsWriter = new SerializedSymbolsWriter(null);
+    builtinsWriter.add("builtins", Collections.emptyMap(), false);
+    builtinsWriter.write(this::open, null);
+
+    SerializedSymbolsWriter modulesWriter = new SerializedSymbolsWriter(builtinsWriter);
+    modulesWriter.add("mod1", Collections.singletonMap("C", classWithMember()), false);
+    modulesWriter.add("mod2", Collections.singletonMap("C", classWithMember()), false);
+    AmbiguousSymbol ambiguous = new AmbiguousSymbolImpl("B", "mod3.B", new HashSet<>(Arrays.asList(classWithMember(), classWithMember())));
+    modulesWriter.add("mod3", Collections.singletonMap("B", ambiguous), false);
+    modulesWriter.add("mod3_python2", Collections.singletonMap("C", classWithMember()), true);
+    modulesWriter.write(this::open, "shared");
+
+    SerializedSymbols.Graph shared = read("shared", read("builtins", null));
+    Symbol c1 = read("mod1", shared).roots().get("C");
+    Symbol c2 = read("mod2", shared).roots().get("C");
+    assertThat(c1).isSameAs(c2);
+    assertThat(((AmbiguousSymbol) read("mod3", shared).roots().get("B")).alternatives()).hasSize(2);
+    assertThat(read("mod3_python2", shared).roots().get("C")).isNotSameAs(c1);
+  }
+
+  private static ClassSymbolImpl classWithMember() {
+    ClassSymbolImpl classSymbol = new ClassSymbolImpl("C", "mod.C");
+    classSymbol.addMembers(Collections.singletonList(new SymbolImpl("x", "mod.C.x")));
+    return classSymbol;
+  }
+
+  private ByteArrayOutputStream open(String resourceName) {
+    return resources.computeIfAbsent(resourceName, name -> new ByteArrayOutputStream());
+  }
+
+  private SerializedSymbols.Graph read(String resourceName, @Nullable SerializedSymbols.Graph external) throws IOException {
+    byte[] bytes = resources.get(resourceName).toByteArray();
+    return SerializedSymbols.read(new DataInputStream(new ByteArrayInputStream(bytes)), external, roots -> {});
+  }
+}
@@ -43,6 +43,11 @@ public class TypeInferenceProgramStateTest {
     public ProgramState copy() {
       return null;
     }
+
+    @Override
+    public ProgramState widen(ProgramState previousState) {
+      return null;
+    }
   };
 
   @Test
@@ -89,4 +94,19 @@ public class TypeInferenceProgramStateTest {
     assertThat(typeInferenceProgramState.toString()).contains("b = RuntimeType(bool), RuntimeType(str)");
     assertThat(typeInferenceProgramState.toString()).contains("a = RuntimeType(int)");
   }
+
+  @Test
+  public void test_widen() {
+    TypeInferenceProgramState previous = new TypeInferenceProgramState();
+    previous.setTypes(a, Collections.singleton(InferredTypes.INT));
+    previous.setTypes(b, Collections.singleton(InferredTypes.STR));
+    TypeInferenceProgramState current = new TypeInferenceProgramState();
+    current.setTypes(a, Collections.singleton(InferredTypes.INT));
+    current.setTypes(b, Collections.singleton(InferredTypes.BOOL));
+
+    TypeInferenceProgramState widened = (TypeInferenceProgramState) current.widen(previous);
+    assertThat(widened.getTypes(a)).containsExactly(InferredTypes.INT);
+    assertThat(widened.getTypes(b)).containsExactly(InferredTypes.anyType());
+    assertThat(current.widen(widened)).isEqualTo(widened);
+  }
 }
@@ -19,9 +19,15 @@
  */
 package org.sonar.python.types;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.junit.Test;
@@ -231,4 +237,35 @@ public class TypeShedTest {
       .containsAll(mathSymbols)
       .containsAll(djangoHttpSymbols);
   }
+
+  @Test
+  public void symbol_with_fqn() {
+    Symbol acosSymbol = TypeShed.symbolWithFQN("math", "math.acos");
+    assertThat(acosSymbol).isNotNull();
+    assertThat(TypeShed.symbolWithFQN("math", "other.module.acos")).isSameAs(acosSymbol);
+    assertThat(TypeShed.symbolWithFQN("math", "acos")).isNull();
+    assertThat(TypeShed.symbolWithFQN("math", "math.unknown")).isNull();
+    assertThat(TypeShed.symbolWithFQN("unknown_module", "unknown_module.acos")).isNull();
+  }
+
+  @Test
+  public void concurrent_module_resolution() throws Exception {
+    List<String> moduleNames = Arrays.asList("asyncio", "asyncio.events", "asyncio.futures", "concurrent.futures", "logging", "logging.handlers");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Set<Symbol>>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        for (String moduleName : moduleNames) {
+          futures.add(executor.submit(() -> TypeShed.symbolsForModule(moduleName)));
+        }
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Set<Symbol> symbols = futures.get(i).get();
+        assertThat(symbols).isNotEmpty();
+        assertThat(symbols).isSameAs(TypeShed.symbolsForModule(moduleNames.get(i % moduleNames.size())));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
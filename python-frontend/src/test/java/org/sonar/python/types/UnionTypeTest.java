@@ -50,6 +50,40 @@ public class UnionTypeTest {
     assertThat(or(or(a, b), c)).isEqualTo(or(a, or(b, c)));
   }
 
+  @Test
+  public void unions_are_interned() {
+    InferredType ab = or(a, b);
+    assertThat(or(b, a)).isSameAs(ab);
+    assertThat(UnionType.union(Arrays.asList(b, a, b))).isSameAs(ab);
+    assertThat(or(or(a, b), c)).isSameAs(or(a, or(b, c)));
+
+    // runtime types of different copies of a class are equal, but are not shared
+    InferredType otherA = new RuntimeType(new ClassSymbolImpl("a", "a"));
+    assertThat(otherA).isEqualTo(a);
+    assertThat(or(otherA, b)).isEqualTo(ab).isNotSameAs(ab);
+  }
+
+  @Test
+  public void existing_unions_are_reused() {
+    InferredType ab = or(a, b);
+    InferredType abc = or(ab, c);
+    assertThat(or(ab, a)).isSameAs(ab);
+    assertThat(or(b, ab)).isSameAs(ab);
+    assertThat(or(abc, ab)).isSameAs(abc);
+    assertThat(or(ab, abc)).isSameAs(abc);
+    assertThat(or(ab, or(c, d))).isEqualTo(or(abc, d));
+  }
+
+  @Test
+  public void union() {
+    assertThat(UnionType.union(Collections.emptyList())).isEqualTo(anyType());
+    assertThat(UnionType.union(Collections.singletonList(a))).isSameAs(a);
+    assertThat(UnionType.union(Arrays.asList(a, a))).isSameAs(a);
+    assertThat(UnionType.union(Arrays.asList(a, b, anyType()))).isEqualTo(anyType());
+    assertThat(UnionType.union(Arrays.asList(a, or(b, c), a, d))).isEqualTo(or(or(a, b), or(c, d)));
+    assertThat(UnionType.union(Arrays.asList(or(a, b), b))).isEqualTo(or(a, b));
+  }
+
   @Test
   public void isIdentityComparableWith() {
     assertThat(or(a, b).isIdentityComparableWith(anyType())).isTrue();
@@ -19,8 +19,10 @@
  */
 package org.sonar.plugins.python;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -33,16 +35,28 @@ import org.sonar.plugins.python.api.PythonCustomRuleRepository;
 public class PythonChecks {
   private final CheckFactory checkFactory;
   private List<Checks<PythonCheck>> checksByRepository = new ArrayList<>();
+  private final List<Map.Entry<String, Iterable<Class>>> checkClassesByRepository = new ArrayList<>();
 
   PythonChecks(CheckFactory checkFactory) {
     this.checkFactory = checkFactory;
   }
   public PythonChecks addChecks(String repositoryKey, Iterable<Class> checkClass) {
     checksByRepository.add(checkFactory.<PythonCheck>create(repositoryKey).addAnnotatedChecks(checkClass));
+    checkClassesByRepository.add(new AbstractMap.SimpleImmutableEntry<>(repositoryKey, checkClass));
 
     return this;
   }
 
+  /**
+   * Creates new instances of the same checks, with the same parameters. Checks can keep state while scanning a file,
+   * so each analysis thread needs its own instances.
+   */
+  public PythonChecks copy() {
+    PythonChecks copy = new PythonChecks(checkFactory);
+    checkClassesByRepository.forEach(entry -> copy.addChecks(entry.getKey(), entry.getValue()));
+    return copy;
+  }
+
   public PythonChecks addCustomChecks(@Nullable PythonCustomRuleRepository[] customRuleRepositories) {
     if (customRuleRepositories != null) {
       for (PythonCustomRuleRepository ruleRepository : customRuleRepositories) {
@@ -30,7 +30,6 @@ import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 import org.sonar.python.SubscriptionVisitor;
-import org.sonar.python.TokenLocation;
 import org.sonar.python.api.PythonKeyword;
 import org.sonar.python.api.PythonTokenType;
 import org.sonar.plugins.python.api.tree.ClassDef;
@@ -94,9 +93,12 @@ public class PythonHighlighter extends PythonSubscriptionCheck {
   private Set<Token> docStringTokens;
 
   public PythonHighlighter(SensorContext context, InputFile inputFile) {
+    this(context.newHighlighting().onFile(inputFile));
+  }
+
+  public PythonHighlighter(NewHighlighting newHighlighting) {
     docStringTokens = new HashSet<>();
-    newHighlighting = context.newHighlighting();
-    newHighlighting.onFile(inputFile);
+    this.newHighlighting = newHighlighting;
   }
 
   @Override
@@ -153,8 +155,7 @@ public class PythonHighlighter extends PythonSubscriptionCheck {
   }
 
   private void highlight(Token token, TypeOfText typeOfText) {
-    TokenLocation tokenLocation = new TokenLocation(token);
-    newHighlighting.highlight(tokenLocation.startLine(), tokenLocation.startLineOffset(), tokenLocation.endLine(), tokenLocation.endLineOffset(), typeOfText);
+    newHighlighting.highlight(token.line(), token.column(), token.endLine(), token.endColumn(), typeOfText);
   }
 
 }
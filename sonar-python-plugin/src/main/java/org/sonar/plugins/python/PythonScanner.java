@@ -23,14 +23,23 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.TextRange;
@@ -51,87 +60,362 @@ import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
 import org.sonar.plugins.python.api.PythonFile;
 import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.cache.AnalysisCache;
+import org.sonar.plugins.python.cache.DependencyRecordingSymbolTable;
+import org.sonar.plugins.python.cache.FileResult;
+import org.sonar.plugins.python.cache.FileResult.Location;
+import org.sonar.plugins.python.cache.FileResult.Measures;
+import org.sonar.plugins.python.cache.FileResult.ParsingError;
 import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.cpd.PythonCpdAnalyzer;
 import org.sonar.python.SubscriptionVisitor;
+import org.sonar.python.cfg.CfgCache;
+import org.sonar.python.checks.CommentedCodeCheck;
 import org.sonar.python.metrics.FileLinesVisitor;
 import org.sonar.python.metrics.FileMetrics;
 import org.sonar.python.parser.PythonParser;
+import org.sonar.python.parser.ThreadLocalParsers;
+import org.sonar.python.semantic.ModuleDependencyGraph;
 import org.sonar.python.semantic.ProjectLevelSymbolTable;
 import org.sonar.python.tree.PythonTreeMaker;
+import org.sonar.python.tree.PythonTreeParser;
+import org.sonar.python.types.TypeShed;
 
+import static org.sonar.python.semantic.SymbolUtils.fullyQualifiedModuleName;
 import static org.sonar.python.semantic.SymbolUtils.pythonPackageName;
 
 public class PythonScanner extends Scanner {
 
   private static final Logger LOG = Loggers.get(PythonScanner.class);
-
-  private final PythonParser parser;
+  static final String REUSE_PARSE_TREES_PROPERTY_NAME = "sonar.python.analysis.reuseParseTrees";
+  static final String DIRECT_TREE_PARSER_PROPERTY_NAME = "sonar.python.analysis.directTreeParser";
+  static final String DEPENDENCY_ORDER_PROPERTY_NAME = "sonar.python.analysis.dependencyOrder";
+  static final String HANDWRITTEN_LEXER_PROPERTY_NAME = "sonar.python.analysis.handwrittenLexer";
+
+  private final ThreadLocal<PythonTreeParser> treeParser;
+  // with the default lexer, files are parsed by the parsers of ThreadLocalParsers
+  private final ThreadLocal<PythonParser> handwrittenLexerParser = ThreadLocal.withInitial(() -> PythonParser.create(true));
   private final Map<InputFile, String> packageNames = new HashMap<>();
-  private final PythonChecks checks;
+  private final Map<InputFile, String> contentHashes = new HashMap<>();
+  private final Queue<PythonChecks> availableChecks = new ConcurrentLinkedQueue<>();
   private final FileLinesContextFactory fileLinesContextFactory;
   private final NoSonarFilter noSonarFilter;
-  private final PythonCpdAnalyzer cpdAnalyzer;
   private final ProjectLevelSymbolTable projectLevelSymbolTable = new ProjectLevelSymbolTable();
-
+  private final int threads;
+  private final boolean reuseParseTrees;
+  // builds the strongly typed tree without an intermediate AstNode, whose parse trees therefore cannot be reused
+  private final boolean directTreeParser;
+  // computes the symbols of each module once the symbols of the modules it imports are known
+  private final boolean dependencyOrder;
+  // lexes the files with a hand-written token channel instead of the chain of regular expression channels
+  private final boolean handwrittenLexer;
+  // parse trees computed while building the project level symbol table, softly referenced so that files are parsed again under memory pressure
+  private final Map<InputFile, SoftReference<AstNode>> parseTrees = new ConcurrentHashMap<>();
+  // in dependency order, trees computed while extracting imports, to compute the symbols of the modules without parsing them again
+  private final Map<InputFile, SoftReference<FileInput>> moduleTrees = new ConcurrentHashMap<>();
+  @Nullable
+  private final AnalysisCache analysisCache;
+  // comments and strings parsed by CommentedCodeCheck in all analyzed files, null when the rule is not active
+  @Nullable
+  private final AtomicInteger commentedCodeParses;
 
   public PythonScanner(
     SensorContext context, PythonChecks checks,
     FileLinesContextFactory fileLinesContextFactory, NoSonarFilter noSonarFilter, List<InputFile> files
   ) {
     super(context);
-    this.checks = checks;
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.noSonarFilter = noSonarFilter;
-    this.cpdAnalyzer = new PythonCpdAnalyzer(context);
-    this.parser = PythonParser.create();
+    this.threads = configuredThreads(context);
+    this.directTreeParser = context.config().getBoolean(DIRECT_TREE_PARSER_PROPERTY_NAME).orElse(false);
+    this.reuseParseTrees = !directTreeParser && context.config().getBoolean(REUSE_PARSE_TREES_PROPERTY_NAME).orElse(false);
+    this.dependencyOrder = context.config().getBoolean(DEPENDENCY_ORDER_PROPERTY_NAME).orElse(false);
+    this.handwrittenLexer = context.config().getBoolean(HANDWRITTEN_LEXER_PROPERTY_NAME).orElse(false);
+    this.treeParser = ThreadLocal.withInitial(() -> new PythonTreeParser(handwrittenLexer));
+    // each worker thread borrows its own instances of the checks, as checks can keep state while scanning a file
+    availableChecks.add(checks);
+    for (int i = 1; i < threads; i++) {
+      availableChecks.add(checks.copy());
+    }
+    this.analysisCache = AnalysisCache.create(context, getWorkingDirectory(context), checkClassesByRuleKey(checks));
+    this.commentedCodeParses = checks.all().stream().anyMatch(CommentedCodeCheck.class::isInstance) ? new AtomicInteger() : null;
+    if (threads > 1) {
+      LOG.debug("Using " + threads + " threads for " + name());
+      // builtin symbols are loaded on first use: make sure it happens before worker threads are started
+      TypeShed.builtinSymbols();
+    }
 
     // computes "globalSymbolsByModuleName"
     long startTime = System.currentTimeMillis();
     GlobalSymbolsScanner globalSymbolsStep = new GlobalSymbolsScanner(context);
-    globalSymbolsStep.execute(files, context);
+    if (dependencyOrder) {
+      ModuleImportsScanner importsStep = new ModuleImportsScanner(context);
+      importsStep.execute(files, context);
+      globalSymbolsStep.executeInBatches(importsStep.batches(files), context);
+    } else {
+      globalSymbolsStep.execute(files, context);
+    }
     long stopTime = System.currentTimeMillis() - startTime;
     LOG.debug("Time to build the project level symbol table: " + stopTime + "ms");
   }
 
+  private static Map<RuleKey, Class<?>> checkClassesByRuleKey(PythonChecks checks) {
+    Map<RuleKey, Class<?>> checkClassesByRuleKey = new HashMap<>();
+    for (PythonCheck check : checks.all()) {
+      RuleKey ruleKey = checks.ruleKey(check);
+      if (ruleKey != null) {
+        checkClassesByRuleKey.put(ruleKey, check.getClass());
+      }
+    }
+    return checkClassesByRuleKey;
+  }
+
   @Override
   protected String name() {
     return "rules execution";
   }
 
   @Override
-  protected void scanFile(InputFile inputFile) {
+  int threads() {
+    return threads;
+  }
+
+  @Override
+  protected void scanFile(InputFile inputFile) throws IOException {
+    analyzeFile(inputFile).save();
+  }
+
+  @Override
+  void endAnalysis() {
+    if (analysisCache != null) {
+      analysisCache.purge();
+    }
+    if (commentedCodeParses != null) {
+      LOG.debug("Comments and strings parsed as code candidates: " + commentedCodeParses.get());
+    }
+  }
+
+  @Override
+  FileAnalysis analyzeFile(InputFile inputFile) throws IOException {
+    String contentHash = null;
+    if (analysisCache != null) {
+      contentHash = contentHashes.get(inputFile);
+      if (contentHash == null) {
+        // files which could not be parsed are missing from the project level symbol table
+        contentHash = AnalysisCache.hash(inputFile.contents());
+      }
+      FileResult cachedResult = analysisCache.read(inputFile, contentHash, packageNames.get(inputFile));
+      if (cachedResult != null) {
+        parseTrees.remove(inputFile);
+        return new PythonFileAnalysis(inputFile, cachedResult, null);
+      }
+    }
+    PythonChecks checks = availableChecks.remove();
+    try {
+      return analyzeFile(inputFile, checks, contentHash);
+    } finally {
+      availableChecks.add(checks);
+    }
+  }
+
+  private FileAnalysis analyzeFile(InputFile inputFile, PythonChecks checks, @Nullable String contentHash) {
     PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
+    DependencyRecordingSymbolTable symbolTable = new DependencyRecordingSymbolTable(projectLevelSymbolTable);
+    FileResult result = new FileResult();
     PythonVisitorContext visitorContext;
     try {
-      AstNode astNode = parser.parse(pythonFile.content());
-      FileInput parse = new PythonTreeMaker().fileInput(astNode);
-      visitorContext = new PythonVisitorContext(parse, pythonFile, getWorkingDirectory(context), packageNames.get(inputFile), projectLevelSymbolTable);
-      saveMeasures(inputFile, visitorContext);
+      if (directTreeParser) {
+        visitorContext = parseWithRecovery(pythonFile, inputFile, symbolTable, result, null);
+      } else {
+        visitorContext = parseOrRecover(pythonFile, inputFile, symbolTable, result);
+      }
     } catch (RecognitionException e) {
       visitorContext = new PythonVisitorContext(pythonFile, e);
-      LOG.error("Unable to parse file: " + inputFile.toString());
-      LOG.error(e.getMessage());
-      context.newAnalysisError()
-        .onFile(inputFile)
-        .at(inputFile.newPointer(e.getLine(), 0))
-        .message(e.getMessage())
-        .save();
+      result.setParsingError(new ParsingError(e.getLine(), e.getMessage()));
+    }
+    FileMetrics fileMetrics = new FileMetrics();
+    List<PythonSubscriptionCheck> collectors = Arrays.asList(fileMetrics, new SymbolVisitor(result.newSymbolTable().onFile(inputFile)),
+      new PythonHighlighter(result.newHighlighting().onFile(inputFile)));
+    RuntimeException checksFailure = null;
+    try {
+      runChecks(checks, collectors, visitorContext);
+      countCommentedCodeParses(checks);
+      addIssues(result, checks, visitorContext.getIssues());
+    } catch (RuntimeException e) {
+      // measures are still saved when a check fails
+      checksFailure = e;
+    } finally {
+      CfgCache.release(visitorContext);
+    }
+    FileInput rootTree = visitorContext.rootTree();
+    if (rootTree != null) {
+      result.setMeasures(measures(fileMetrics));
+      PythonCpdAnalyzer.pushCpdTokens(result.newCpdTokens(), rootTree);
     }
+    if (analysisCache != null && contentHash != null && checksFailure == null) {
+      analysisCache.write(inputFile, contentHash, packageNames.get(inputFile), symbolTable.dependencies(), result);
+    }
+    return new PythonFileAnalysis(inputFile, result, checksFailure);
+  }
+
+  /**
+   * Files which cannot be parsed by the SSLR parser are parsed again by the recovering parser.
+   */
+  private PythonVisitorContext parseOrRecover(PythonFile pythonFile, InputFile inputFile, ProjectLevelSymbolTable symbolTable, FileResult result) {
+    try {
+      FileInput parse = parse(inputFile, pythonFile);
+      return new PythonVisitorContext(parse, pythonFile, getWorkingDirectory(context), packageNames.get(inputFile), symbolTable);
+    } catch (RecognitionException e) {
+      return parseWithRecovery(pythonFile, inputFile, symbolTable, result, e);
+    }
+  }
+
+  /**
+   * Statements which cannot be parsed are skipped: metrics, highlighting, CPD tokens and issues are computed on the rest of the file.
+   * The given parser failure is reported when the recovering parser finds no syntax error.
+   */
+  private PythonVisitorContext parseWithRecovery(PythonFile pythonFile, InputFile inputFile, ProjectLevelSymbolTable symbolTable, FileResult result,
+    @Nullable RecognitionException parserFailure) {
+    List<RecognitionException> syntaxErrors = new ArrayList<>();
+    FileInput parse = treeParser.get().parse(pythonFile.content(), syntaxErrors);
+    RecognitionException parsingException = syntaxErrors.isEmpty() ? parserFailure : syntaxErrors.get(0);
+    if (parsingException != null) {
+      result.setParsingError(new ParsingError(parsingException.getLine(), parsingException.getMessage()));
+    }
+    return new PythonVisitorContext(parse, pythonFile, getWorkingDirectory(context), packageNames.get(inputFile), symbolTable, parsingException);
+  }
+
+  private AstNode parseTree(String content) {
+    return handwrittenLexer ? handwrittenLexerParser.get().parse(content) : ThreadLocalParsers.parse(content);
+  }
+
+  /**
+   * Files which cannot be parsed by the SSLR parser are parsed by the recovering parser, so that their symbols are still computed.
+   */
+  private FileInput parseFileInput(String content) {
+    if (directTreeParser) {
+      return treeParser.get().parse(content, new ArrayList<>());
+    }
+    try {
+      return new PythonTreeMaker().fileInput(parseTree(content));
+    } catch (RecognitionException e) {
+      return treeParser.get().parse(content, new ArrayList<>());
+    }
+  }
+
+  /**
+   * Parses a file while building the project level symbol table. When parse trees are reused, the parse tree of the file is kept
+   * for the rules execution.
+   */
+  private FileInput parseFileInput(InputFile inputFile, String content) {
+    if (!reuseParseTrees) {
+      return parseFileInput(content);
+    }
+    AstNode astNode;
+    try {
+      astNode = parseTree(content);
+    } catch (RecognitionException e) {
+      return treeParser.get().parse(content, new ArrayList<>());
+    }
+    // PythonTreeMaker does not modify the AstNode, a new FileInput can be built from it during rules execution
+    parseTrees.put(inputFile, new SoftReference<>(astNode));
+    return new PythonTreeMaker().fileInput(astNode);
+  }
+
+  private FileInput parse(InputFile inputFile, PythonFile pythonFile) {
+    SoftReference<AstNode> parseTree = parseTrees.remove(inputFile);
+    AstNode astNode = parseTree != null ? parseTree.get() : null;
+    if (astNode == null) {
+      astNode = parseTree(pythonFile.content());
+    }
+    return new PythonTreeMaker().fileInput(astNode);
+  }
+
+  /**
+   * Subscription checks, metrics, symbols and highlighting are computed in a single traversal of the tree.
+   */
+  private static void runChecks(PythonChecks checks, List<PythonSubscriptionCheck> collectors, PythonVisitorContext visitorContext) {
     List<PythonSubscriptionCheck> checksBasedOnTree = new ArrayList<>();
+    List<PythonCheck> otherChecks = new ArrayList<>();
     for (PythonCheck check : checks.all()) {
       if (check instanceof PythonSubscriptionCheck) {
         checksBasedOnTree.add((PythonSubscriptionCheck) check);
       } else {
-        check.scanFile(visitorContext);
+        otherChecks.add(check);
+      }
+    }
+    SubscriptionVisitor.analyze(checksBasedOnTree, collectors, visitorContext);
+    otherChecks.forEach(check -> check.scanFile(visitorContext));
+  }
+
+  /**
+   * Comments and strings are parsed by {@link CommentedCodeCheck} only when their tokens may be code: the count of all files is
+   * logged at the end of the analysis.
+   */
+  private void countCommentedCodeParses(PythonChecks checks) {
+    if (commentedCodeParses == null) {
+      return;
+    }
+    checks.all().stream()
+      .filter(CommentedCodeCheck.class::isInstance)
+      .forEach(check -> commentedCodeParses.addAndGet(((CommentedCodeCheck) check).fullParseCount()));
+  }
+
+  private static void addIssues(FileResult result, PythonChecks checks, List<PreciseIssue> issues) {
+    for (PreciseIssue preciseIssue : issues) {
+      List<Location> secondaryLocations = new ArrayList<>();
+      for (IssueLocation secondaryLocation : preciseIssue.secondaryLocations()) {
+        secondaryLocations.add(Location.of(secondaryLocation));
       }
+      result.addIssue(new FileResult.Issue(checks.ruleKey(preciseIssue.check()), Location.of(preciseIssue.primaryLocation()), secondaryLocations, preciseIssue.cost()));
+    }
+  }
+
+  private static Measures measures(FileMetrics fileMetrics) {
+    FileLinesVisitor fileLinesVisitor = fileMetrics.fileLinesVisitor();
+    return new Measures(fileMetrics.numberOfStatements(), fileMetrics.numberOfFunctions(), fileMetrics.numberOfClasses(), fileMetrics.complexity(),
+      fileMetrics.cognitiveComplexity(), fileLinesVisitor.getCommentLineCount(), fileLinesVisitor.getLinesOfCode(), fileLinesVisitor.getExecutableLines(),
+      fileLinesVisitor.getLinesWithNoSonar());
+  }
+
+  private class PythonFileAnalysis implements FileAnalysis {
+    private final InputFile inputFile;
+    private final FileResult result;
+    @Nullable
+    private final RuntimeException checksFailure;
+
+    PythonFileAnalysis(InputFile inputFile, FileResult result, @Nullable RuntimeException checksFailure) {
+      this.inputFile = inputFile;
+      this.result = result;
+      this.checksFailure = checksFailure;
     }
-    SubscriptionVisitor.analyze(checksBasedOnTree, visitorContext);
-    saveIssues(inputFile, visitorContext.getIssues());
 
-    if (visitorContext.rootTree() != null) {
-      new SymbolVisitor(context.newSymbolTable().onFile(inputFile)).visitFileInput(visitorContext.rootTree());
-      new PythonHighlighter(context, inputFile).scanFile(visitorContext);
+    @Override
+    public void save() {
+      ParsingError parsingError = result.parsingError();
+      if (parsingError != null) {
+        LOG.error("Unable to parse file: " + inputFile.toString());
+        LOG.error(parsingError.message());
+        context.newAnalysisError()
+          .onFile(inputFile)
+          .at(inputFile.newPointer(parsingError.line(), 0))
+          .message(parsingError.message())
+          .save();
+      }
+      Measures measures = result.measures();
+      if (measures != null) {
+        saveMeasures(inputFile, result, measures);
+      }
+      if (checksFailure != null) {
+        throw checksFailure;
+      }
+      saveIssues(inputFile, result.issues());
+
+      if (measures != null) {
+        result.saveSymbols(context.newSymbolTable().onFile(inputFile));
+        result.saveHighlighting(context.newHighlighting().onFile(inputFile));
+      }
     }
   }
 
@@ -145,24 +429,23 @@ public class PythonScanner extends Scanner {
     LOG.warn("Unable to analyze file: " + file.toString(), e);
   }
 
-  private void saveIssues(InputFile inputFile, List<PreciseIssue> issues) {
-    for (PreciseIssue preciseIssue : issues) {
-      RuleKey ruleKey = checks.ruleKey(preciseIssue.check());
+  private void saveIssues(InputFile inputFile, List<FileResult.Issue> issues) {
+    for (FileResult.Issue issue : issues) {
       NewIssue newIssue = context
         .newIssue()
-        .forRule(ruleKey);
+        .forRule(issue.ruleKey());
 
-      Integer cost = preciseIssue.cost();
+      Integer cost = issue.cost();
       if (cost != null) {
         newIssue.gap(cost.doubleValue());
       }
 
-      NewIssueLocation primaryLocation = newLocation(inputFile, newIssue, preciseIssue.primaryLocation());
+      NewIssueLocation primaryLocation = newLocation(inputFile, newIssue, issue.primaryLocation());
       newIssue.at(primaryLocation);
 
       Deque<NewIssueLocation> secondaryLocationsFlow = new ArrayDeque<>();
 
-      for (IssueLocation secondaryLocation : preciseIssue.secondaryLocations()) {
+      for (Location secondaryLocation : issue.secondaryLocations()) {
         String fileId = secondaryLocation.fileId();
         if (fileId != null) {
           InputFile issueLocationFile = component(fileId, context);
@@ -192,7 +475,7 @@ public class PythonScanner extends Scanner {
     return inputFile;
   }
 
-  private static NewIssueLocation newLocation(InputFile inputFile, NewIssue issue, IssueLocation location) {
+  private static NewIssueLocation newLocation(InputFile inputFile, NewIssue issue, Location location) {
     NewIssueLocation newLocation = issue.newLocation()
       .on(inputFile);
     if (location.startLine() != IssueLocation.UNDEFINED_LINE) {
@@ -212,27 +495,24 @@ public class PythonScanner extends Scanner {
     return newLocation;
   }
 
-  private void saveMeasures(InputFile inputFile, PythonVisitorContext visitorContext) {
-    FileMetrics fileMetrics = new FileMetrics(visitorContext);
-    FileLinesVisitor fileLinesVisitor = fileMetrics.fileLinesVisitor();
+  private void saveMeasures(InputFile inputFile, FileResult result, Measures measures) {
+    result.saveCpdTokens(context.newCpdTokens().onFile(inputFile));
+    noSonarFilter.noSonarInFile(inputFile, measures.linesWithNoSonar());
 
-    cpdAnalyzer.pushCpdTokens(inputFile, visitorContext);
-    noSonarFilter.noSonarInFile(inputFile, fileLinesVisitor.getLinesWithNoSonar());
-
-    Set<Integer> linesOfCode = fileLinesVisitor.getLinesOfCode();
+    Set<Integer> linesOfCode = measures.linesOfCode();
     saveMetricOnFile(inputFile, CoreMetrics.NCLOC, linesOfCode.size());
-    saveMetricOnFile(inputFile, CoreMetrics.STATEMENTS, fileMetrics.numberOfStatements());
-    saveMetricOnFile(inputFile, CoreMetrics.FUNCTIONS, fileMetrics.numberOfFunctions());
-    saveMetricOnFile(inputFile, CoreMetrics.CLASSES, fileMetrics.numberOfClasses());
-    saveMetricOnFile(inputFile, CoreMetrics.COMPLEXITY, fileMetrics.complexity());
-    saveMetricOnFile(inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, fileMetrics.cognitiveComplexity());
-    saveMetricOnFile(inputFile, CoreMetrics.COMMENT_LINES, fileLinesVisitor.getCommentLineCount());
+    saveMetricOnFile(inputFile, CoreMetrics.STATEMENTS, measures.statements());
+    saveMetricOnFile(inputFile, CoreMetrics.FUNCTIONS, measures.functions());
+    saveMetricOnFile(inputFile, CoreMetrics.CLASSES, measures.classes());
+    saveMetricOnFile(inputFile, CoreMetrics.COMPLEXITY, measures.complexity());
+    saveMetricOnFile(inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, measures.cognitiveComplexity());
+    saveMetricOnFile(inputFile, CoreMetrics.COMMENT_LINES, measures.commentLines());
 
     FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
     for (int line : linesOfCode) {
       fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 1);
     }
-    for (int line : fileLinesVisitor.getExecutableLines()) {
+    for (int line : measures.executableLines()) {
       fileLinesContext.setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY, line, 1);
     }
     fileLinesContext.save();
@@ -246,8 +526,34 @@ public class PythonScanner extends Scanner {
       .save();
   }
 
+  /**
+   * Package, file and fully qualified name of the module of a file.
+   */
+  private class Module {
+    private final String packageName;
+    private final PythonFile pythonFile;
+    private final String fullyQualifiedName;
+
+    private Module(InputFile inputFile) {
+      this(inputFile, pythonPackageName(inputFile.file(), context.fileSystem().baseDir()));
+    }
+
+    private Module(InputFile inputFile, String packageName) {
+      this.packageName = packageName;
+      this.pythonFile = SonarQubePythonFile.create(inputFile);
+      this.fullyQualifiedName = fullyQualifiedModuleName(packageName, pythonFile.fileName());
+    }
+  }
+
+  /**
+   * Computes the symbols exported by each module. In dependency order, the files are scanned by batches computed by
+   * {@link ModuleImportsScanner}: the symbols of the modules of a batch are only added to the project level symbol table once
+   * the whole batch is scanned, so that they can be computed concurrently with the symbols of the previous batches.
+   */
   private class GlobalSymbolsScanner extends Scanner {
 
+    private final Map<String, Set<Symbol>> batchSymbolsByModuleName = new LinkedHashMap<>();
+
     private GlobalSymbolsScanner(SensorContext context) {
       super(context);
     }
@@ -257,14 +563,154 @@ public class PythonScanner extends Scanner {
       return "global symbols computation";
     }
 
+    @Override
+    int threads() {
+      return threads;
+    }
+
     @Override
     protected void scanFile(InputFile inputFile) throws IOException {
-      AstNode astNode = parser.parse(inputFile.contents());
-      FileInput astRoot = new PythonTreeMaker().fileInput(astNode);
-      String packageName = pythonPackageName(inputFile.file(), context.fileSystem().baseDir());
-      packageNames.put(inputFile, packageName);
-      PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
-      projectLevelSymbolTable.addModule(astRoot, packageName, pythonFile);
+      analyzeFile(inputFile).save();
+    }
+
+    @Override
+    FileAnalysis analyzeFile(InputFile inputFile) throws IOException {
+      if (dependencyOrder) {
+        return analyzeFileInDependencyOrder(inputFile);
+      }
+      String content = inputFile.contents();
+      FileInput astRoot = parseFileInput(inputFile, content);
+      Module module = new Module(inputFile);
+      Set<Symbol> moduleSymbols = ProjectLevelSymbolTable.moduleGlobalSymbols(astRoot, module.packageName, module.pythonFile);
+      String contentHash = analysisCache != null ? AnalysisCache.hash(content) : null;
+      return () -> {
+        packageNames.put(inputFile, module.packageName);
+        projectLevelSymbolTable.addModuleSymbols(module.fullyQualifiedName, moduleSymbols);
+        if (analysisCache != null && contentHash != null) {
+          contentHashes.put(inputFile, contentHash);
+          analysisCache.addModule(module.fullyQualifiedName, contentHash);
+        }
+      };
+    }
+
+    private FileAnalysis analyzeFileInDependencyOrder(InputFile inputFile) throws IOException {
+      SoftReference<FileInput> moduleTree = moduleTrees.remove(inputFile);
+      FileInput astRoot = moduleTree != null ? moduleTree.get() : null;
+      if (astRoot == null) {
+        astRoot = parseFileInput(inputFile.contents());
+      }
+      Module module = new Module(inputFile, packageNames.get(inputFile));
+      Set<Symbol> moduleSymbols = ProjectLevelSymbolTable.moduleGlobalSymbols(astRoot, module.packageName, module.pythonFile, projectLevelSymbolTable);
+      return () -> batchSymbolsByModuleName.put(module.fullyQualifiedName, moduleSymbols);
+    }
+
+    @Override
+    void endBatch() {
+      batchSymbolsByModuleName.forEach(projectLevelSymbolTable::addModuleSymbols);
+      batchSymbolsByModuleName.clear();
+    }
+
+    @Override
+    protected void processException(Exception e, InputFile file) {
+      LOG.debug("Unable to construct project-level symbol table for file: " + file.toString());
+      LOG.debug(e.getMessage());
+    }
+  }
+
+  /**
+   * Extracts the imports of each module, to compute the symbols of the modules in dependency order.
+   */
+  private class ModuleImportsScanner extends Scanner {
+
+    private final ModuleDependencyGraph dependencyGraph = new ModuleDependencyGraph();
+    private final Map<InputFile, String> moduleNames = new HashMap<>();
+    private final Map<String, String> contentHashesByModuleName = new HashMap<>();
+
+    private ModuleImportsScanner(SensorContext context) {
+      super(context);
+    }
+
+    @Override
+    protected String name() {
+      return "module imports computation";
+    }
+
+    @Override
+    int threads() {
+      return threads;
+    }
+
+    @Override
+    protected void scanFile(InputFile inputFile) throws IOException {
+      analyzeFile(inputFile).save();
+    }
+
+    @Override
+    FileAnalysis analyzeFile(InputFile inputFile) throws IOException {
+      String content = inputFile.contents();
+      FileInput astRoot = parseFileInput(inputFile, content);
+      Module module = new Module(inputFile);
+      Set<String> importedModuleNames = ModuleDependencyGraph.importedModuleNames(astRoot, module.packageName, module.pythonFile);
+      String contentHash = analysisCache != null ? AnalysisCache.hash(content) : null;
+      return () -> {
+        moduleTrees.put(inputFile, new SoftReference<>(astRoot));
+        packageNames.put(inputFile, module.packageName);
+        moduleNames.put(inputFile, module.fullyQualifiedName);
+        dependencyGraph.addModule(module.fullyQualifiedName, importedModuleNames);
+        if (contentHash != null) {
+          contentHashes.put(inputFile, contentHash);
+          contentHashesByModuleName.put(module.fullyQualifiedName, contentHash);
+        }
+      };
+    }
+
+    /**
+     * Files grouped by the batches of {@link ModuleDependencyGraph#batches()}, in the order of the given files within a batch.
+     * Files which could not be parsed are left out.
+     */
+    List<List<InputFile>> batches(List<InputFile> files) {
+      Map<String, Integer> batchByModuleName = new HashMap<>();
+      List<List<String>> moduleBatches = dependencyGraph.batches();
+      List<List<InputFile>> fileBatches = new ArrayList<>();
+      for (int i = 0; i < moduleBatches.size(); i++) {
+        int batch = i;
+        moduleBatches.get(i).forEach(moduleName -> batchByModuleName.put(moduleName, batch));
+        fileBatches.add(new ArrayList<>());
+      }
+      for (InputFile file : files) {
+        String moduleName = moduleNames.get(file);
+        if (moduleName != null) {
+          fileBatches.get(batchByModuleName.get(moduleName)).add(file);
+        }
+      }
+      if (analysisCache != null) {
+        addModulesToAnalysisCache();
+      }
+      LOG.debug("Modules sorted in " + moduleBatches.size() + " batches of dependencies");
+      return fileBatches;
+    }
+
+    /**
+     * The symbols of a module depend on the modules it imports, directly or not: its fingerprint in the analysis cache combines
+     * the content of the modules of its strongly connected component with the fingerprints of the modules they import.
+     */
+    private void addModulesToAnalysisCache() {
+      Map<String, String> fingerprints = new HashMap<>();
+      for (List<String> component : dependencyGraph.stronglyConnectedComponents()) {
+        StringBuilder fingerprint = new StringBuilder();
+        Set<String> dependencies = new TreeSet<>();
+        for (String moduleName : component) {
+          fingerprint.append(moduleName).append('=').append(contentHashesByModuleName.get(moduleName)).append(';');
+          dependencies.addAll(dependencyGraph.dependencies(moduleName));
+        }
+        dependencies.removeAll(component);
+        dependencies.forEach(dependency -> fingerprint.append(dependency).append('=').append(fingerprints.get(dependency)).append(';'));
+        String componentFingerprint = AnalysisCache.hash(fingerprint.toString());
+        for (String moduleName : component) {
+          fingerprints.put(moduleName, componentFingerprint);
+          analysisCache.addModule(moduleName, componentFingerprint);
+        }
+      }
     }
 
     @Override
@@ -42,7 +42,7 @@ import org.sonar.plugins.python.api.PythonFile;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.python.checks.CheckList;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.parser.ThreadLocalParsers;
 import org.sonar.python.semantic.ProjectLevelSymbolTable;
 import org.sonar.python.tree.PythonTreeMaker;
 
@@ -98,7 +98,6 @@ public final class PythonSensor implements Sensor {
   private static class TestHighlightingScanner extends Scanner {
 
     private static final Logger LOG = Loggers.get(TestHighlightingScanner.class);
-    private final PythonParser parser = PythonParser.create();
 
     TestHighlightingScanner(SensorContext context) {
       super(context);
@@ -113,7 +112,7 @@ public final class PythonSensor implements Sensor {
     protected void scanFile(InputFile inputFile) throws IOException {
       try {
         PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
-        AstNode astNode = parser.parse(pythonFile.content());
+        AstNode astNode = ThreadLocalParsers.parse(pythonFile.content());
         FileInput parse = new PythonTreeMaker().fileInput(astNode);
         // omitting package and symbols info as it's not required for highlighting
         PythonVisitorContext visitorContext = new PythonVisitorContext(parse, pythonFile, context.fileSystem().workDir(), "", ProjectLevelSymbolTable.empty());
@@ -20,7 +20,14 @@
 package org.sonar.plugins.python;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.sonar.api.batch.fs.InputFile;
@@ -32,6 +39,7 @@ import org.sonarsource.analyzer.commons.ProgressReport;
 abstract class Scanner {
   private static final Logger LOG = Loggers.get(Scanner.class);
   private static final String FAIL_FAST_PROPERTY_NAME = "sonar.internal.analysis.failFast";
+  static final String THREADS_PROPERTY_NAME = "sonar.python.analysis.threads";
   protected final SensorContext context;
 
   Scanner(SensorContext context) {
@@ -39,28 +47,116 @@ abstract class Scanner {
   }
 
   void execute(List<InputFile> files, SensorContext context) {
+    executeInBatches(Collections.singletonList(files), context);
+  }
+
+  /**
+   * Scans the batches one after the other: the files of a batch are only analyzed once the results of all the files of the
+   * previous batches are saved and {@link #endBatch()} was called.
+   */
+  void executeInBatches(List<List<InputFile>> batches, SensorContext context) {
     ProgressReport progressReport = new ProgressReport(this.name() + " progress", TimeUnit.SECONDS.toMillis(10));
     LOG.info("Starting " + this.name());
-    List<String> filenames = files.stream().map(InputFile::toString).collect(Collectors.toList());
+    List<String> filenames = batches.stream().flatMap(List::stream).map(InputFile::toString).collect(Collectors.toList());
     progressReport.start(filenames);
+    int threads = threads();
+    boolean completed;
+    if (threads > 1 && filenames.size() > 1) {
+      completed = executeInParallel(batches, context, progressReport, threads);
+    } else {
+      completed = executeSequentially(batches, context, progressReport);
+    }
+    if (completed) {
+      progressReport.stop();
+      endAnalysis();
+    }
+  }
+
+  private boolean executeSequentially(List<List<InputFile>> batches, SensorContext context, ProgressReport progressReport) {
+    for (List<InputFile> files : batches) {
+      for (InputFile file : files) {
+        if (context.isCancelled()) {
+          progressReport.cancel();
+          return false;
+        }
+        try {
+          this.scanFile(file);
+        } catch (Exception e) {
+          handleException(e, file, context);
+        } finally {
+          progressReport.nextFile();
+        }
+      }
+      endBatch();
+    }
+    return true;
+  }
+
+  /**
+   * Files are analyzed by a pool of worker threads calling {@link #analyzeFile(InputFile)}, while results are saved
+   * on the calling thread, in the order of the input files. The number of files analyzed ahead of the one being saved
+   * is bounded so that only a few syntax trees are kept in memory at the same time.
+   */
+  private boolean executeInParallel(List<List<InputFile>> batches, SensorContext context, ProgressReport progressReport, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (List<InputFile> files : batches) {
+        if (!executeInParallel(files, context, progressReport, executor, threads * 2)) {
+          return false;
+        }
+        endBatch();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return true;
+  }
+
+  private boolean executeInParallel(List<InputFile> files, SensorContext context, ProgressReport progressReport, ExecutorService executor, int maxPending) {
+    Deque<Future<FileAnalysis>> pending = new ArrayDeque<>();
+    int nextToSubmit = 0;
     for (InputFile file : files) {
+      while (nextToSubmit < files.size() && pending.size() < maxPending) {
+        InputFile fileToAnalyze = files.get(nextToSubmit);
+        pending.add(executor.submit(() -> analyzeFile(fileToAnalyze)));
+        nextToSubmit++;
+      }
+      Future<FileAnalysis> analysis = pending.remove();
       if (context.isCancelled()) {
         progressReport.cancel();
-        return;
+        return false;
       }
       try {
-        this.scanFile(file);
+        awaitResult(analysis).save();
       } catch (Exception e) {
-        this.processException(e, file);
-        if (context.config().getBoolean(FAIL_FAST_PROPERTY_NAME).orElse(false)) {
-          throw new IllegalStateException("Exception when analyzing " + file, e);
-        }
+        handleException(e, file, context);
       } finally {
         progressReport.nextFile();
       }
     }
+    return true;
+  }
 
-    progressReport.stop();
+  private static FileAnalysis awaitResult(Future<FileAnalysis> analysis) throws Exception {
+    try {
+      return analysis.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for file analysis", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  private void handleException(Exception e, InputFile file, SensorContext context) {
+    this.processException(e, file);
+    if (context.config().getBoolean(FAIL_FAST_PROPERTY_NAME).orElse(false)) {
+      throw new IllegalStateException("Exception when analyzing " + file, e);
+    }
   }
 
   abstract String name();
@@ -68,4 +164,46 @@ abstract class Scanner {
   abstract void scanFile(InputFile file) throws IOException;
 
   abstract void processException(Exception e, InputFile file);
+
+  /**
+   * Number of worker threads running {@link #analyzeFile(InputFile)}. Files are scanned sequentially on the calling
+   * thread when it is 1.
+   */
+  int threads() {
+    return 1;
+  }
+
+  /**
+   * Called once the results of all the files of a batch are saved, before the files of the next batch are analyzed.
+   */
+  void endBatch() {
+  }
+
+  /**
+   * Called once the results of all the files are saved, unless the analysis was cancelled.
+   */
+  void endAnalysis() {
+  }
+
+  /**
+   * Runs the part of the analysis of a file which does not report anything to the {@link SensorContext}.
+   * When {@link #threads()} is greater than 1, it is called concurrently from worker threads, so it should only
+   * rely on thread-confined or immutable state. Scanners which do not support parallel analysis can keep this default,
+   * which does all the work when saving the result.
+   */
+  FileAnalysis analyzeFile(InputFile file) throws IOException {
+    return () -> scanFile(file);
+  }
+
+  static int configuredThreads(SensorContext context) {
+    return Math.max(1, context.config().getInt(THREADS_PROPERTY_NAME).orElse(1));
+  }
+
+  @FunctionalInterface
+  interface FileAnalysis {
+    /**
+     * Reports the result of the analysis to the {@link SensorContext}. Always called from the thread which started the scanner.
+     */
+    void save() throws IOException;
+  }
 }
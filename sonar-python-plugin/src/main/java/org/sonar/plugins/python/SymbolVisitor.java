@@ -20,22 +20,27 @@
 package org.sonar.plugins.python;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import org.sonar.api.batch.sensor.symbol.NewSymbol;
 import org.sonar.api.batch.sensor.symbol.NewSymbolTable;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.symbols.Usage;
 import org.sonar.plugins.python.api.tree.ClassDef;
 import org.sonar.plugins.python.api.tree.ComprehensionExpression;
+import org.sonar.plugins.python.api.tree.DictCompExpression;
 import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.api.tree.FunctionDef;
 import org.sonar.plugins.python.api.tree.LambdaExpression;
 import org.sonar.plugins.python.api.tree.Tree;
-import org.sonar.plugins.python.api.symbols.Symbol;
-import org.sonar.plugins.python.api.symbols.Usage;
-import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
-import org.sonar.python.tree.DictCompExpressionImpl;
+import org.sonar.python.SubscriptionVisitor;
 
-public class SymbolVisitor extends BaseTreeVisitor {
+public class SymbolVisitor extends PythonSubscriptionCheck {
 
   private final NewSymbolTable newSymbolTable;
 
@@ -44,41 +49,33 @@ public class SymbolVisitor extends BaseTreeVisitor {
   }
 
   @Override
-  public void visitClassDef(ClassDef classDef) {
-    classDef.classFields().forEach(this::handleSymbol);
-    classDef.instanceFields().forEach(this::handleSymbol);
-    super.visitClassDef(classDef);
-  }
-
-  @Override
-  public void visitFunctionDef(FunctionDef functionDef) {
-    functionDef.localVariables().forEach(this::handleSymbol);
-    super.visitFunctionDef(functionDef);
+  public void scanFile(PythonVisitorContext visitorContext) {
+    SubscriptionVisitor.analyze(Collections.singletonList(this), visitorContext);
   }
 
   @Override
-  public void visitLambda(LambdaExpression lambdaExpression) {
-    lambdaExpression.localVariables().forEach(this::handleSymbol);
-    super.visitLambda(lambdaExpression);
-  }
-
-  @Override
-  public void visitPyListOrSetCompExpression(ComprehensionExpression tree) {
-    tree.localVariables().forEach(this::handleSymbol);
-    super.visitPyListOrSetCompExpression(tree);
+  public void initialize(Context context) {
+    context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> handleSymbols(((FileInput) ctx.syntaxNode()).globalVariables()));
+    context.registerSyntaxNodeConsumer(Tree.Kind.CLASSDEF, ctx -> {
+      ClassDef classDef = (ClassDef) ctx.syntaxNode();
+      handleSymbols(classDef.classFields());
+      handleSymbols(classDef.instanceFields());
+    });
+    context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> handleSymbols(((FunctionDef) ctx.syntaxNode()).localVariables()));
+    context.registerSyntaxNodeConsumer(Tree.Kind.LAMBDA, ctx -> handleSymbols(((LambdaExpression) ctx.syntaxNode()).localVariables()));
+    context.registerSyntaxNodeConsumer(Tree.Kind.DICT_COMPREHENSION, ctx -> handleSymbols(((DictCompExpression) ctx.syntaxNode()).localVariables()));
+    for (Tree.Kind kind : Arrays.asList(Tree.Kind.LIST_COMPREHENSION, Tree.Kind.SET_COMPREHENSION, Tree.Kind.GENERATOR_EXPR)) {
+      context.registerSyntaxNodeConsumer(kind, ctx -> handleSymbols(((ComprehensionExpression) ctx.syntaxNode()).localVariables()));
+    }
   }
 
   @Override
-  public void visitDictCompExpression(DictCompExpressionImpl tree) {
-    tree.localVariables().forEach(this::handleSymbol);
-    super.visitDictCompExpression(tree);
+  public void leaveFile() {
+    newSymbolTable.save();
   }
 
-  @Override
-  public void visitFileInput(FileInput fileInput) {
-    fileInput.globalVariables().forEach(this::handleSymbol);
-    super.visitFileInput(fileInput);
-    newSymbolTable.save();
+  private void handleSymbols(Collection<Symbol> symbols) {
+    symbols.forEach(this::handleSymbol);
   }
 
   private void handleSymbol(Symbol symbol) {
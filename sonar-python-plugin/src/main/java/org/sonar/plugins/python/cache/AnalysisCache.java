@@ -0,0 +1,248 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * On-disk cache of the {@link FileResult} of each analyzed file, so that unchanged files do not have to be analyzed again.
+ * An entry is used only when all of these are unchanged since it was written:
+ * <ul>
+ *   <li>the content of the file</li>
+ *   <li>the package of the file, which depends on the {@code __init__.py} files of its directories</li>
+ *   <li>the plugin, the active rules with their parameters and the plugins providing them</li>
+ *   <li>the content of the project modules providing the names looked up in the project level symbol table, see {@link DependencyRecordingSymbolTable}</li>
+ * </ul>
+ * Entries which are neither read nor written during an analysis, like the ones of deleted files, are removed by {@link #purge()}.
+ */
+public class AnalysisCache {
+
+  private static final Logger LOG = Loggers.get(AnalysisCache.class);
+  public static final String ENABLED_PROPERTY_NAME = "sonar.python.analysis.cache";
+  public static final String PATH_PROPERTY_NAME = "sonar.python.analysis.cache.path";
+  private static final String DEFAULT_DIRECTORY_NAME = "python-analysis-cache";
+  private static final int FORMAT_VERSION = 2;
+  private static final String MISSING_MODULE = "-";
+  private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{64}");
+
+  private final Path directory;
+  private final String analysisKey;
+  private final Map<String, String> contentHashesByModuleName = new HashMap<>();
+  private final Set<Path> usedEntries = ConcurrentHashMap.newKeySet();
+
+  AnalysisCache(Path directory, String analysisKey) {
+    this.directory = directory;
+    this.analysisKey = analysisKey;
+  }
+
+  /**
+   * Returns null when the cache is disabled, which is always the case without working directory (SonarLint).
+   * The cache is stored in the working directory, unless another directory is configured: note that the scanner can clean its
+   * working directory before each analysis.
+   */
+  @CheckForNull
+  public static AnalysisCache create(SensorContext context, @Nullable File workingDirectory, Map<RuleKey, Class<?>> checkClassesByRuleKey) {
+    if (workingDirectory == null || !context.config().getBoolean(ENABLED_PROPERTY_NAME).orElse(false)) {
+      return null;
+    }
+    Path directory = context.config().get(PATH_PROPERTY_NAME)
+      .map(path -> context.fileSystem().baseDir().toPath().resolve(path))
+      .orElse(workingDirectory.toPath().resolve(DEFAULT_DIRECTORY_NAME));
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      LOG.warn("Unable to create the analysis cache directory, the analysis cache is disabled: " + directory);
+      return null;
+    }
+    LOG.debug("Using analysis cache in " + directory);
+    return new AnalysisCache(directory, analysisKey(context, checkClassesByRuleKey));
+  }
+
+  /**
+   * Custom rules are provided by other plugins, which can be updated independently of this one: the version of the plugin
+   * providing each check is part of the key.
+   */
+  private static String analysisKey(SensorContext context, Map<RuleKey, Class<?>> checkClassesByRuleKey) {
+    StringBuilder key = new StringBuilder(pluginVersion(AnalysisCache.class));
+    Map<CodeSource, String> pluginVersions = new HashMap<>();
+    new TreeMap<>(checkClassesByRuleKey).forEach((ruleKey, checkClass) -> {
+      key.append('\n').append(ruleKey).append('=').append(checkClass.getName());
+      CodeSource codeSource = checkClass.getProtectionDomain().getCodeSource();
+      if (codeSource != null) {
+        key.append('@').append(pluginVersions.computeIfAbsent(codeSource, source -> pluginVersion(checkClass)));
+      }
+      ActiveRule activeRule = context.activeRules().find(ruleKey);
+      if (activeRule != null) {
+        key.append(new TreeMap<>(activeRule.params()));
+      }
+    });
+    return hash(key.toString());
+  }
+
+  /**
+   * Plugin jars are downloaded by the scanner to a location which depends on their hash: the location, size and modification
+   * time of the jar containing the given class change with each version of its plugin.
+   */
+  private static String pluginVersion(Class<?> pluginClass) {
+    try {
+      Path location = Paths.get(pluginClass.getProtectionDomain().getCodeSource().getLocation().toURI());
+      return location + ":" + Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis();
+    } catch (URISyntaxException | IOException | RuntimeException e) {
+      return "unknown";
+    }
+  }
+
+  public static String hash(String content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+      return String.format("%064x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Has to be called for all project modules before reading or writing entries.
+   */
+  public void addModule(String fullyQualifiedModuleName, String contentHash) {
+    contentHashesByModuleName.put(fullyQualifiedModuleName, contentHash);
+  }
+
+  /**
+   * The package name is the one given to the {@link org.sonar.plugins.python.api.PythonVisitorContext} of the file, null when
+   * the file was not part of the project level symbol table.
+   */
+  @CheckForNull
+  public FileResult read(InputFile inputFile, String contentHash, @Nullable String packageName) {
+    Path entry = entry(inputFile);
+    usedEntries.add(entry);
+    if (!Files.isRegularFile(entry)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      if (in.readInt() != FORMAT_VERSION || !analysisKey.equals(in.readUTF()) || !inputFile.key().equals(FileResult.readString(in))
+        || !contentHash.equals(in.readUTF()) || !Objects.equals(packageName, FileResult.readNullableString(in))) {
+        return null;
+      }
+      int dependenciesCount = in.readInt();
+      for (int i = 0; i < dependenciesCount; i++) {
+        String name = FileResult.readString(in);
+        if (!dependencyFingerprint(name).equals(FileResult.readString(in))) {
+          return null;
+        }
+      }
+      return FileResult.read(in);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Unable to read analysis cache entry of " + inputFile + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  public void write(InputFile inputFile, String contentHash, @Nullable String packageName, Set<String> dependencies, FileResult result) {
+    Path entry = entry(inputFile);
+    usedEntries.add(entry);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entry)))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(analysisKey);
+      FileResult.writeString(out, inputFile.key());
+      out.writeUTF(contentHash);
+      FileResult.writeNullableString(out, packageName);
+      out.writeInt(dependencies.size());
+      for (String name : dependencies) {
+        FileResult.writeString(out, name);
+        FileResult.writeString(out, dependencyFingerprint(name));
+      }
+      result.write(out);
+    } catch (IOException e) {
+      LOG.debug("Unable to write analysis cache entry of " + inputFile + ": " + e.getMessage());
+    }
+  }
+
+  private Path entry(InputFile inputFile) {
+    return directory.resolve(hash(inputFile.key()));
+  }
+
+  /**
+   * Removes the entries which were neither read nor written since the cache was created: the ones of files which were deleted,
+   * renamed or excluded from the analysis. Has to be called only once all files were analyzed. Files which are not cache
+   * entries are kept, as the cache directory can be configured.
+   */
+  public void purge() {
+    int removed = 0;
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        if (!usedEntries.contains(entry) && ENTRY_NAME.matcher(entry.getFileName().toString()).matches() && Files.isRegularFile(entry)) {
+          Files.delete(entry);
+          removed++;
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to remove unused analysis cache entries: " + e.getMessage());
+    }
+    LOG.debug("Removed unused analysis cache entries: " + removed);
+  }
+
+  /**
+   * A name like "a.b.c" can be provided by any of the modules "a", "a.b" and "a.b.c": the fingerprint changes when one
+   * of them is changed, added or removed.
+   */
+  private String dependencyFingerprint(String name) {
+    StringBuilder fingerprint = new StringBuilder();
+    int end = name.indexOf('.');
+    while (true) {
+      String prefix = end < 0 ? name : name.substring(0, end);
+      fingerprint.append(contentHashesByModuleName.getOrDefault(prefix, MISSING_MODULE)).append(';');
+      if (end < 0) {
+        return fingerprint.toString();
+      }
+      end = name.indexOf('.', end + 1);
+    }
+  }
+}
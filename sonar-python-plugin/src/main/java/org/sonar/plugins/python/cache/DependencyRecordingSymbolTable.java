@@ -0,0 +1,64 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.semantic.ProjectLevelSymbolTable;
+
+/**
+ * View of the project level symbol table for the analysis of one file, recording the names looked up by that analysis:
+ * its result can only be reused as long as the modules behind these names are unchanged.
+ */
+public class DependencyRecordingSymbolTable extends ProjectLevelSymbolTable {
+
+  private final ProjectLevelSymbolTable projectLevelSymbolTable;
+  private final Set<String> dependencies = new HashSet<>();
+
+  public DependencyRecordingSymbolTable(ProjectLevelSymbolTable projectLevelSymbolTable) {
+    this.projectLevelSymbolTable = projectLevelSymbolTable;
+  }
+
+  @CheckForNull
+  @Override
+  public Symbol getSymbol(@Nullable String fullyQualifiedName) {
+    if (fullyQualifiedName != null) {
+      dependencies.add(fullyQualifiedName);
+    }
+    return projectLevelSymbolTable.getSymbol(fullyQualifiedName);
+  }
+
+  @CheckForNull
+  @Override
+  public Set<Symbol> getSymbolsFromModule(@Nullable String moduleName) {
+    if (moduleName != null) {
+      dependencies.add(moduleName);
+    }
+    return projectLevelSymbolTable.getSymbolsFromModule(moduleName);
+  }
+
+  public Set<String> dependencies() {
+    return Collections.unmodifiableSet(dependencies);
+  }
+}
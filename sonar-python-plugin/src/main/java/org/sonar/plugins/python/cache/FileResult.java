@@ -0,0 +1,677 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.symbol.NewSymbol;
+import org.sonar.api.batch.sensor.symbol.NewSymbolTable;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.python.api.IssueLocation;
+
+/**
+ * Everything saved on the sensor context for one file: issues, measures, CPD tokens, highlighting and symbols.
+ * It is computed by the worker threads, then saved by the scanner thread, and it can be written to the {@link AnalysisCache}
+ * to be saved again by a later analysis without analyzing the file.
+ */
+public class FileResult {
+
+  private final List<Issue> issues = new ArrayList<>();
+  private final List<Highlighting> highlightings = new ArrayList<>();
+  private final List<List<Range>> symbols = new ArrayList<>();
+  private final List<CpdToken> cpdTokens = new ArrayList<>();
+  @Nullable
+  private Measures measures;
+  @Nullable
+  private ParsingError parsingError;
+
+  public List<Issue> issues() {
+    return Collections.unmodifiableList(issues);
+  }
+
+  public void addIssue(Issue issue) {
+    issues.add(issue);
+  }
+
+  /**
+   * Measures are only available for files which could be parsed: highlighting, symbols and CPD tokens are only saved for them.
+   */
+  @CheckForNull
+  public Measures measures() {
+    return measures;
+  }
+
+  public void setMeasures(Measures measures) {
+    this.measures = measures;
+  }
+
+  @CheckForNull
+  public ParsingError parsingError() {
+    return parsingError;
+  }
+
+  public void setParsingError(ParsingError parsingError) {
+    this.parsingError = parsingError;
+  }
+
+  /**
+   * Records highlighting instead of saving it, see {@link #saveHighlighting(NewHighlighting)}.
+   */
+  public NewHighlighting newHighlighting() {
+    return new RecordingHighlighting();
+  }
+
+  /**
+   * Records symbols instead of saving them, see {@link #saveSymbols(NewSymbolTable)}.
+   */
+  public NewSymbolTable newSymbolTable() {
+    return new RecordingSymbolTable();
+  }
+
+  /**
+   * Records CPD tokens instead of saving them, see {@link #saveCpdTokens(NewCpdTokens)}.
+   */
+  public NewCpdTokens newCpdTokens() {
+    return new RecordingCpdTokens();
+  }
+
+  public void saveHighlighting(NewHighlighting newHighlighting) {
+    for (Highlighting highlighting : highlightings) {
+      Range range = highlighting.range;
+      newHighlighting.highlight(range.startLine, range.startLineOffset, range.endLine, range.endLineOffset, highlighting.typeOfText);
+    }
+    newHighlighting.save();
+  }
+
+  public void saveSymbols(NewSymbolTable newSymbolTable) {
+    for (List<Range> usages : symbols) {
+      Range declaration = usages.get(0);
+      NewSymbol newSymbol = newSymbolTable.newSymbol(declaration.startLine, declaration.startLineOffset, declaration.endLine, declaration.endLineOffset);
+      for (Range reference : usages.subList(1, usages.size())) {
+        newSymbol.newReference(reference.startLine, reference.startLineOffset, reference.endLine, reference.endLineOffset);
+      }
+    }
+    newSymbolTable.save();
+  }
+
+  public void saveCpdTokens(NewCpdTokens newCpdTokens) {
+    for (CpdToken cpdToken : cpdTokens) {
+      Range range = cpdToken.range;
+      newCpdTokens.addToken(range.startLine, range.startLineOffset, range.endLine, range.endLineOffset, cpdToken.image);
+    }
+    newCpdTokens.save();
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(issues.size());
+    for (Issue issue : issues) {
+      issue.write(out);
+    }
+    out.writeInt(highlightings.size());
+    for (Highlighting highlighting : highlightings) {
+      highlighting.range.write(out);
+      out.writeUTF(highlighting.typeOfText.name());
+    }
+    out.writeInt(symbols.size());
+    for (List<Range> usages : symbols) {
+      out.writeInt(usages.size());
+      for (Range usage : usages) {
+        usage.write(out);
+      }
+    }
+    out.writeInt(cpdTokens.size());
+    for (CpdToken cpdToken : cpdTokens) {
+      cpdToken.range.write(out);
+      writeString(out, cpdToken.image);
+    }
+    out.writeBoolean(measures != null);
+    if (measures != null) {
+      measures.write(out);
+    }
+    out.writeBoolean(parsingError != null);
+    if (parsingError != null) {
+      out.writeInt(parsingError.line);
+      writeNullableString(out, parsingError.message);
+    }
+  }
+
+  static FileResult read(DataInputStream in) throws IOException {
+    FileResult result = new FileResult();
+    int issuesCount = in.readInt();
+    for (int i = 0; i < issuesCount; i++) {
+      result.issues.add(Issue.read(in));
+    }
+    int highlightingsCount = in.readInt();
+    for (int i = 0; i < highlightingsCount; i++) {
+      result.highlightings.add(new Highlighting(Range.read(in), TypeOfText.valueOf(in.readUTF())));
+    }
+    int symbolsCount = in.readInt();
+    for (int i = 0; i < symbolsCount; i++) {
+      int usagesCount = in.readInt();
+      List<Range> usages = new ArrayList<>(usagesCount);
+      for (int j = 0; j < usagesCount; j++) {
+        usages.add(Range.read(in));
+      }
+      result.symbols.add(usages);
+    }
+    int cpdTokensCount = in.readInt();
+    for (int i = 0; i < cpdTokensCount; i++) {
+      result.cpdTokens.add(new CpdToken(Range.read(in), readString(in)));
+    }
+    if (in.readBoolean()) {
+      result.measures = Measures.read(in);
+    }
+    if (in.readBoolean()) {
+      result.parsingError = new ParsingError(in.readInt(), readNullableString(in));
+    }
+    return result;
+  }
+
+  // unlike writeUTF, not limited to 64KB: string literals can be longer than that
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @CheckForNull
+  static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? readString(in) : null;
+  }
+
+  static void writeNullableString(DataOutputStream out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      writeString(out, value);
+    }
+  }
+
+  private static void writeLines(DataOutputStream out, Set<Integer> lines) throws IOException {
+    out.writeInt(lines.size());
+    for (int line : lines) {
+      out.writeInt(line);
+    }
+  }
+
+  private static Set<Integer> readLines(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    Set<Integer> lines = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      lines.add(in.readInt());
+    }
+    return lines;
+  }
+
+  public static class Issue {
+    private final RuleKey ruleKey;
+    private final Location primaryLocation;
+    private final List<Location> secondaryLocations;
+    @Nullable
+    private final Integer cost;
+
+    public Issue(RuleKey ruleKey, Location primaryLocation, List<Location> secondaryLocations, @Nullable Integer cost) {
+      this.ruleKey = ruleKey;
+      this.primaryLocation = primaryLocation;
+      this.secondaryLocations = secondaryLocations;
+      this.cost = cost;
+    }
+
+    public RuleKey ruleKey() {
+      return ruleKey;
+    }
+
+    public Location primaryLocation() {
+      return primaryLocation;
+    }
+
+    public List<Location> secondaryLocations() {
+      return secondaryLocations;
+    }
+
+    @CheckForNull
+    public Integer cost() {
+      return cost;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeUTF(ruleKey.toString());
+      primaryLocation.write(out);
+      out.writeInt(secondaryLocations.size());
+      for (Location secondaryLocation : secondaryLocations) {
+        secondaryLocation.write(out);
+      }
+      out.writeBoolean(cost != null);
+      if (cost != null) {
+        out.writeInt(cost);
+      }
+    }
+
+    private static Issue read(DataInputStream in) throws IOException {
+      RuleKey ruleKey = RuleKey.parse(in.readUTF());
+      Location primaryLocation = Location.read(in);
+      int secondaryLocationsCount = in.readInt();
+      List<Location> secondaryLocations = new ArrayList<>(secondaryLocationsCount);
+      for (int i = 0; i < secondaryLocationsCount; i++) {
+        secondaryLocations.add(Location.read(in));
+      }
+      Integer cost = in.readBoolean() ? in.readInt() : null;
+      return new Issue(ruleKey, primaryLocation, secondaryLocations, cost);
+    }
+  }
+
+  /**
+   * Same information as an {@link IssueLocation}, which can not be created back from its lines and offsets.
+   */
+  public static class Location {
+    @Nullable
+    private final String fileId;
+    private final Range range;
+    @Nullable
+    private final String message;
+
+    private Location(@Nullable String fileId, Range range, @Nullable String message) {
+      this.fileId = fileId;
+      this.range = range;
+      this.message = message;
+    }
+
+    public static Location of(IssueLocation location) {
+      Range range = new Range(location.startLine(), location.startLineOffset(), location.endLine(), location.endLineOffset());
+      return new Location(location.fileId(), range, location.message());
+    }
+
+    @CheckForNull
+    public String fileId() {
+      return fileId;
+    }
+
+    public int startLine() {
+      return range.startLine;
+    }
+
+    public int startLineOffset() {
+      return range.startLineOffset;
+    }
+
+    public int endLine() {
+      return range.endLine;
+    }
+
+    public int endLineOffset() {
+      return range.endLineOffset;
+    }
+
+    @CheckForNull
+    public String message() {
+      return message;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      writeNullableString(out, fileId);
+      range.write(out);
+      writeNullableString(out, message);
+    }
+
+    private static Location read(DataInputStream in) throws IOException {
+      return new Location(readNullableString(in), Range.read(in), readNullableString(in));
+    }
+  }
+
+  public static class Measures {
+    private final int statements;
+    private final int functions;
+    private final int classes;
+    private final int complexity;
+    private final int cognitiveComplexity;
+    private final int commentLines;
+    private final Set<Integer> linesOfCode;
+    private final Set<Integer> executableLines;
+    private final Set<Integer> linesWithNoSonar;
+
+    public Measures(int statements, int functions, int classes, int complexity, int cognitiveComplexity, int commentLines,
+                    Set<Integer> linesOfCode, Set<Integer> executableLines, Set<Integer> linesWithNoSonar) {
+      this.statements = statements;
+      this.functions = functions;
+      this.classes = classes;
+      this.complexity = complexity;
+      this.cognitiveComplexity = cognitiveComplexity;
+      this.commentLines = commentLines;
+      this.linesOfCode = linesOfCode;
+      this.executableLines = executableLines;
+      this.linesWithNoSonar = linesWithNoSonar;
+    }
+
+    public int statements() {
+      return statements;
+    }
+
+    public int functions() {
+      return functions;
+    }
+
+    public int classes() {
+      return classes;
+    }
+
+    public int complexity() {
+      return complexity;
+    }
+
+    public int cognitiveComplexity() {
+      return cognitiveComplexity;
+    }
+
+    public int commentLines() {
+      return commentLines;
+    }
+
+    public Set<Integer> linesOfCode() {
+      return linesOfCode;
+    }
+
+    public Set<Integer> executableLines() {
+      return executableLines;
+    }
+
+    public Set<Integer> linesWithNoSonar() {
+      return linesWithNoSonar;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(statements);
+      out.writeInt(functions);
+      out.writeInt(classes);
+      out.writeInt(complexity);
+      out.writeInt(cognitiveComplexity);
+      out.writeInt(commentLines);
+      writeLines(out, linesOfCode);
+      writeLines(out, executableLines);
+      writeLines(out, linesWithNoSonar);
+    }
+
+    private static Measures read(DataInputStream in) throws IOException {
+      return new Measures(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+        readLines(in), readLines(in), readLines(in));
+    }
+  }
+
+  public static class ParsingError {
+    private final int line;
+    @Nullable
+    private final String message;
+
+    public ParsingError(int line, @Nullable String message) {
+      this.line = line;
+      this.message = message;
+    }
+
+    public int line() {
+      return line;
+    }
+
+    @CheckForNull
+    public String message() {
+      return message;
+    }
+  }
+
+  private static class Range {
+    private final int startLine;
+    private final int startLineOffset;
+    private final int endLine;
+    private final int endLineOffset;
+
+    private Range(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      this.startLine = startLine;
+      this.startLineOffset = startLineOffset;
+      this.endLine = endLine;
+      this.endLineOffset = endLineOffset;
+    }
+
+    private static Range of(TextRange textRange) {
+      return new Range(textRange.start().line(), textRange.start().lineOffset(), textRange.end().line(), textRange.end().lineOffset());
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(startLine);
+      out.writeInt(startLineOffset);
+      out.writeInt(endLine);
+      out.writeInt(endLineOffset);
+    }
+
+    private static Range read(DataInputStream in) throws IOException {
+      return new Range(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+  }
+
+  private static class Highlighting {
+    private final Range range;
+    private final TypeOfText typeOfText;
+
+    private Highlighting(Range range, TypeOfText typeOfText) {
+      this.range = range;
+      this.typeOfText = typeOfText;
+    }
+  }
+
+  private static class CpdToken {
+    private final Range range;
+    private final String image;
+
+    private CpdToken(Range range, String image) {
+      this.range = range;
+      this.image = image;
+    }
+  }
+
+  /**
+   * Ranges are recorded with lines and line offsets: the ranges given with offsets are converted with the file given to
+   * {@code onFile}, whose line start offsets are computed on first use.
+   */
+  private static class OffsetConverter {
+
+    @Nullable
+    private InputFile inputFile;
+    @Nullable
+    private int[] lineStartOffsets;
+
+    private void onFile(InputFile inputFile) {
+      this.inputFile = inputFile;
+      this.lineStartOffsets = null;
+    }
+
+    private Range range(int startOffset, int endOffset) {
+      if (inputFile == null) {
+        throw new IllegalStateException("Call onFile() first");
+      }
+      if (lineStartOffsets == null) {
+        lineStartOffsets = lineStartOffsets(inputFile);
+      }
+      int startLine = line(lineStartOffsets, startOffset);
+      int endLine = line(lineStartOffsets, endOffset);
+      TextRange textRange = inputFile.newRange(startLine, startOffset - lineStartOffsets[startLine - 1], endLine, endOffset - lineStartOffsets[endLine - 1]);
+      return Range.of(textRange);
+    }
+
+    private static int line(int[] lineStartOffsets, int offset) {
+      int index = Arrays.binarySearch(lineStartOffsets, offset);
+      return index >= 0 ? (index + 1) : -index - 1;
+    }
+
+    private static int[] lineStartOffsets(InputFile inputFile) {
+      String contents;
+      try {
+        contents = inputFile.contents();
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read file " + inputFile, e);
+      }
+      List<Integer> offsets = new ArrayList<>();
+      offsets.add(0);
+      for (int i = 0; i < contents.length(); i++) {
+        char c = contents.charAt(i);
+        if (c == '\n' || (c == '\r' && (i + 1 == contents.length() || contents.charAt(i + 1) != '\n'))) {
+          offsets.add(i + 1);
+        }
+      }
+      return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  private class RecordingHighlighting implements NewHighlighting {
+
+    private final OffsetConverter offsetConverter = new OffsetConverter();
+
+    @Override
+    public NewHighlighting onFile(InputFile inputFile) {
+      offsetConverter.onFile(inputFile);
+      return this;
+    }
+
+    @Override
+    public NewHighlighting highlight(int startOffset, int endOffset, TypeOfText typeOfText) {
+      highlightings.add(new Highlighting(offsetConverter.range(startOffset, endOffset), typeOfText));
+      return this;
+    }
+
+    @Override
+    public NewHighlighting highlight(TextRange range, TypeOfText typeOfText) {
+      highlightings.add(new Highlighting(Range.of(range), typeOfText));
+      return this;
+    }
+
+    @Override
+    public NewHighlighting highlight(int startLine, int startLineOffset, int endLine, int endLineOffset, TypeOfText typeOfText) {
+      highlightings.add(new Highlighting(new Range(startLine, startLineOffset, endLine, endLineOffset), typeOfText));
+      return this;
+    }
+
+    @Override
+    public void save() {
+      // saved by FileResult#saveHighlighting
+    }
+  }
+
+  private class RecordingSymbolTable implements NewSymbolTable {
+
+    private final OffsetConverter offsetConverter = new OffsetConverter();
+
+    @Override
+    public NewSymbolTable onFile(InputFile inputFile) {
+      offsetConverter.onFile(inputFile);
+      return this;
+    }
+
+    @Override
+    public NewSymbol newSymbol(int startOffset, int endOffset) {
+      return new RecordingSymbol(offsetConverter, offsetConverter.range(startOffset, endOffset));
+    }
+
+    @Override
+    public NewSymbol newSymbol(TextRange range) {
+      return new RecordingSymbol(offsetConverter, Range.of(range));
+    }
+
+    @Override
+    public NewSymbol newSymbol(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      return new RecordingSymbol(offsetConverter, new Range(startLine, startLineOffset, endLine, endLineOffset));
+    }
+
+    @Override
+    public void save() {
+      // saved by FileResult#saveSymbols
+    }
+  }
+
+  private class RecordingSymbol implements NewSymbol {
+
+    private final OffsetConverter offsetConverter;
+    private final List<Range> usages = new ArrayList<>();
+
+    private RecordingSymbol(OffsetConverter offsetConverter, Range declaration) {
+      this.offsetConverter = offsetConverter;
+      usages.add(declaration);
+      symbols.add(usages);
+    }
+
+    @Override
+    public NewSymbol newReference(int startOffset, int endOffset) {
+      usages.add(offsetConverter.range(startOffset, endOffset));
+      return this;
+    }
+
+    @Override
+    public NewSymbol newReference(TextRange range) {
+      usages.add(Range.of(range));
+      return this;
+    }
+
+    @Override
+    public NewSymbol newReference(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      usages.add(new Range(startLine, startLineOffset, endLine, endLineOffset));
+      return this;
+    }
+  }
+
+  private class RecordingCpdTokens implements NewCpdTokens {
+
+    @Override
+    public NewCpdTokens onFile(InputFile inputFile) {
+      return this;
+    }
+
+    @Override
+    public NewCpdTokens addToken(TextRange range, String image) {
+      cpdTokens.add(new CpdToken(Range.of(range), image));
+      return this;
+    }
+
+    @Override
+    public NewCpdTokens addToken(int startLine, int startLineOffset, int endLine, int endLineOffset, String image) {
+      cpdTokens.add(new CpdToken(new Range(startLine, startLineOffset, endLine, endLineOffset), image));
+      return this;
+    }
+
+    @Override
+    public void save() {
+      // saved by FileResult#saveCpdTokens
+    }
+  }
+}
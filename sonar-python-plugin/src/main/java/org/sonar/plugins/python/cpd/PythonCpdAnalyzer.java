@@ -21,12 +21,11 @@ package org.sonar.plugins.python.cpd;
 
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.TokenType;
-import java.util.List;
+import java.util.function.Consumer;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
 import org.sonar.plugins.python.api.PythonVisitorContext;
-import org.sonar.python.TokenLocation;
 import org.sonar.python.api.PythonTokenType;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
@@ -43,21 +42,51 @@ public class PythonCpdAnalyzer {
   public void pushCpdTokens(InputFile inputFile, PythonVisitorContext visitorContext) {
     Tree root = visitorContext.rootTree();
     if (root != null) {
-      NewCpdTokens cpdTokens = context.newCpdTokens().onFile(inputFile);
-      List<Token> tokens = TreeUtils.tokens(root);
-      for (int i = 0; i < tokens.size(); i++) {
-        Token token = tokens.get(i);
-        TokenType currentTokenType = token.type();
-        TokenType nextTokenType = i + 1 < tokens.size() ? tokens.get(i + 1).type() : GenericTokenType.EOF;
-        // INDENT/DEDENT could not be completely ignored during CPD see https://docs.python.org/3/reference/lexical_analysis.html#indentation
-        // Just taking into account DEDENT is enough, but because the DEDENT token has an empty value, it's the
-        // preceding new line which is added in its place to create a difference
-        if (isNewLineWithIndentationChange(currentTokenType, nextTokenType) || !isIgnoredType(currentTokenType)) {
-          TokenLocation location = new TokenLocation(token);
-          cpdTokens.addToken(location.startLine(), location.startLineOffset(), location.endLine(), location.endLineOffset(), token.value());
-        }
+      pushCpdTokens(context.newCpdTokens().onFile(inputFile), root);
+    }
+  }
+
+  public static void pushCpdTokens(NewCpdTokens cpdTokens, Tree root) {
+    CpdTokenEmitter emitter = new CpdTokenEmitter(cpdTokens);
+    TreeUtils.forEachToken(root, emitter);
+    emitter.flush();
+    cpdTokens.save();
+  }
+
+  /**
+   * Tokens are streamed from the tree: each one is emitted when the next one is known.
+   */
+  private static class CpdTokenEmitter implements Consumer<Token> {
+
+    private final NewCpdTokens cpdTokens;
+    private Token previous = null;
+
+    CpdTokenEmitter(NewCpdTokens cpdTokens) {
+      this.cpdTokens = cpdTokens;
+    }
+
+    @Override
+    public void accept(Token token) {
+      if (previous != null) {
+        emit(previous, token.type());
+      }
+      previous = token;
+    }
+
+    void flush() {
+      if (previous != null) {
+        emit(previous, GenericTokenType.EOF);
+      }
+    }
+
+    private void emit(Token token, TokenType nextTokenType) {
+      TokenType currentTokenType = token.type();
+      // INDENT/DEDENT could not be completely ignored during CPD see https://docs.python.org/3/reference/lexical_analysis.html#indentation
+      // Just taking into account DEDENT is enough, but because the DEDENT token has an empty value, it's the
+      // preceding new line which is added in its place to create a difference
+      if (isNewLineWithIndentationChange(currentTokenType, nextTokenType) || !isIgnoredType(currentTokenType)) {
+        cpdTokens.addToken(token.line(), token.column(), token.endLine(), token.endColumn(), token.value());
       }
-      cpdTokens.save();
     }
   }
 
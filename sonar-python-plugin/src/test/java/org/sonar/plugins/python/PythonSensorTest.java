@@ -72,6 +72,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PythonSensorTest {
@@ -283,6 +285,339 @@ public class PythonSensorTest {
     assertThat(flow.locations().get(1).inputComponent()).isEqualTo(modFile);
   }
 
+  @Test
+  public void parallel_analysis() {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, ONE_STATEMENT_PER_LINE_RULE_KEY))
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S134"))
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "ParsingError"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.threads", "4"));
+
+    InputFile file1 = inputFile(FILE_1);
+    InputFile file2 = inputFile(FILE_2);
+    InputFile mainFile = inputFile("main.py");
+    inputFile("mod.py");
+    inputFile("symbolVisitor.py");
+    InputFile parseError = inputFile("parse_error.py");
+    sensor().execute(context);
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Using 4 threads for rules execution");
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent())
+      .containsExactlyInAnyOrder(file1, file1, file1, file2, file2, mainFile, parseError);
+    assertThat(context.measure("moduleKey:file1.py", CoreMetrics.NCLOC).value()).isEqualTo(22);
+    assertThat(context.measure("moduleKey:file2.py", CoreMetrics.COMPLEXITY).value()).isEqualTo(5);
+    assertThat(context.highlightingTypeAt("moduleKey:file1.py", 15, 2)).hasSize(1);
+    verifyUsages("moduleKey:file2.py", 5, 12, reference(6, 19, 6, 20));
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+    assertThat(logTester.logs()).contains("Unable to parse file: parse_error.py");
+  }
+
+  @Test
+  public void parallel_analysis_exception_does_not_fail_analysis() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, ONE_STATEMENT_PER_LINE_RULE_KEY))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.threads", "2"));
+
+    DefaultInputFile inputFile = spy(createInputFile(FILE_1));
+    when(inputFile.contents()).thenThrow(RuntimeException.class);
+    context.fileSystem().add(inputFile);
+    inputFile(FILE_2);
+
+    sensor().execute(context);
+
+    assertThat(context.allIssues()).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.WARN)).contains("Unable to analyze file: file1.py");
+  }
+
+  @Test
+  public void parallel_analysis_cancelled() {
+    InputFile inputFile = inputFile(FILE_1);
+    inputFile(FILE_2);
+    activeRules = (new ActiveRulesBuilder()).build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.threads", "2"));
+    context.setCancelled(true);
+    sensor(null).execute(context);
+    assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC)).isNull();
+  }
+
+  @Test
+  public void reuse_parse_trees_of_global_symbols_computation() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.reuseParseTrees", "true"));
+
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    inputFile("mod.py");
+    sensor().execute(context);
+
+    verify(mainFile, times(1)).contents();
+    assertThat(context.allIssues()).hasSize(1);
+    assertThat(context.measure(mainFile.key(), CoreMetrics.NCLOC)).isNotNull();
+    assertThat(context.cpdTokens(mainFile.key())).isNotEmpty();
+  }
+
+  @Test
+  public void parse_trees_not_reused_by_default() throws IOException {
+    activeRules = new ActiveRulesBuilder().build();
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    sensor().execute(context);
+
+    verify(mainFile, times(2)).contents();
+  }
+
+  @Test
+  public void direct_tree_parser() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "ParsingError"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings()
+      .setProperty("sonar.python.analysis.directTreeParser", "true")
+      .setProperty("sonar.python.analysis.reuseParseTrees", "true"));
+
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    inputFile("mod.py");
+    InputFile parseError = inputFile("parse_error.py");
+    sensor().execute(context);
+
+    verify(mainFile, times(2)).contents();
+    assertThat(context.allIssues()).hasSize(2);
+    assertThat(context.measure(mainFile.key(), CoreMetrics.NCLOC)).isNotNull();
+    assertThat(context.cpdTokens(mainFile.key())).isNotEmpty();
+    assertThat(String.join("\n", logTester.logs())).contains("Parse error at line 2");
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+    // the statements which cannot be parsed are skipped, the rest of the file is still analyzed
+    assertThat(context.measure(parseError.key(), CoreMetrics.NCLOC).value()).isEqualTo(1);
+    assertThat(context.cpdTokens(parseError.key())).isNotEmpty();
+  }
+
+  @Test
+  public void handwritten_lexer() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.handwrittenLexer", "true"));
+    InputFile mainFile = inputFile("main.py");
+    inputFile("mod.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+    assertThat(context.measure(mainFile.key(), CoreMetrics.NCLOC)).isNotNull();
+    assertThat(context.highlightingTypeAt(mainFile.key(), 1, 0)).isNotEmpty();
+
+    context = SensorContextTester.create(baseDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(new MapSettings()
+      .setProperty("sonar.python.analysis.handwrittenLexer", "true")
+      .setProperty("sonar.python.analysis.directTreeParser", "true"));
+    mainFile = inputFile("main.py");
+    inputFile("mod.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+    assertThat(context.measure(mainFile.key(), CoreMetrics.NCLOC)).isNotNull();
+  }
+
+  @Test
+  public void commented_code_parses_are_logged() {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S125"))
+        .build())
+      .build();
+    logTester.setLevel(LoggerLevel.DEBUG);
+    inputFile("main.py");
+    inputFile("mod.py");
+    inputFile("commented_code.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+    // one count for all the files
+    assertThat(logTester.logs(LoggerLevel.DEBUG))
+      .containsOnlyOnce("Comments and strings parsed as code candidates: 1")
+      .filteredOn(log -> log.contains("commented_code.py")).isEmpty();
+  }
+
+  @Test
+  public void dependency_order() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings()
+      .setProperty("sonar.python.analysis.dependencyOrder", "true")
+      .setProperty("sonar.python.analysis.reuseParseTrees", "true")
+      .setProperty("sonar.python.analysis.threads", "2"));
+
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    inputFile("mod.py");
+    inputFile("parse_error.py");
+    sensor().execute(context);
+
+    verify(mainFile, times(1)).contents();
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Modules sorted in 2 batches of dependencies");
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent()).containsExactly(mainFile);
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+  }
+
+  @Test
+  public void dependency_order_with_analysis_cache() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.python.analysis.cache", "true")
+      .setProperty("sonar.python.analysis.dependencyOrder", "true");
+    context.setSettings(settings);
+    inputFile("main.py");
+    inputFile("mod.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+
+    context = SensorContextTester.create(baseDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(settings);
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    inputFile("mod.py");
+    sensor().execute(context);
+
+    // only read to extract the imports
+    verify(mainFile, times(1)).contents();
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent()).containsExactly(mainFile);
+  }
+
+  @Test
+  public void analysis_cache_replays_unchanged_files() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    MapSettings settings = new MapSettings().setProperty("sonar.python.analysis.cache", "true");
+    context.setSettings(settings);
+    inputFile("main.py");
+    inputFile("mod.py");
+    inputFile("parse_error.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+
+    context = SensorContextTester.create(baseDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(settings);
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    inputFile("mod.py");
+    inputFile("parse_error.py");
+    sensor().execute(context);
+
+    // only read to compute the project level symbol table
+    verify(mainFile, times(1)).contents();
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent()).containsExactly(mainFile);
+    assertThat(context.measure(mainFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(2);
+    assertThat(context.cpdTokens(mainFile.key())).isNotEmpty();
+    assertThat(context.highlightingTypeAt(mainFile.key(), 1, 0)).hasSize(1);
+    verifyUsages(mainFile.key(), 1, 16, reference(3, 4, 3, 7));
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+  }
+
+  @Test
+  public void analysis_cache_invalidated_by_changed_dependency() throws IOException {
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "S930"))
+        .build())
+      .build();
+    MapSettings settings = new MapSettings().setProperty("sonar.python.analysis.cache", "true");
+    context.setSettings(settings);
+    inputFile("main.py");
+    inputFile("mod.py");
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+
+    context = SensorContextTester.create(baseDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(settings);
+    DefaultInputFile mainFile = spy(createInputFile("main.py"));
+    context.fileSystem().add(mainFile);
+    String modContent = "def add(p1, p2, p3):\n    return p1 + p2 + p3\n";
+    context.fileSystem().add(TestInputFileBuilder.create("moduleKey", "mod.py")
+      .setModuleBaseDir(baseDir.toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .setType(Type.MAIN)
+      .setLanguage(Python.KEY)
+      .setContents(modContent)
+      .initMetadata(modContent)
+      .build());
+    sensor().execute(context);
+
+    verify(mainFile, times(2)).contents();
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  public void analysis_cache_invalidated_by_added_init_file() throws IOException {
+    activeRules = new ActiveRulesBuilder().build();
+    Path projectDir = Files.createTempDirectory("project");
+    Path packageDir = Files.createDirectories(projectDir.resolve("pkg"));
+    String content = "def f(): pass\n";
+    Files.write(packageDir.resolve("mod.py"), content.getBytes(StandardCharsets.UTF_8));
+    MapSettings settings = new MapSettings().setProperty("sonar.python.analysis.cache", "true");
+    context = SensorContextTester.create(projectDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(settings);
+    context.fileSystem().add(spy(packageFile(projectDir, content)));
+    sensor().execute(context);
+
+    Files.createFile(packageDir.resolve("__init__.py"));
+    context = SensorContextTester.create(projectDir);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(settings);
+    DefaultInputFile modFile = spy(packageFile(projectDir, content));
+    context.fileSystem().add(modFile);
+    sensor().execute(context);
+
+    // module "mod" became "pkg.mod": the file is analyzed again
+    verify(modFile, times(2)).contents();
+  }
+
+  private static DefaultInputFile packageFile(Path projectDir, String content) {
+    return TestInputFileBuilder.create("moduleKey", "pkg/mod.py")
+      .setModuleBaseDir(projectDir)
+      .setCharset(StandardCharsets.UTF_8)
+      .setType(Type.MAIN)
+      .setLanguage(Python.KEY)
+      .setContents(content)
+      .initMetadata(content)
+      .build();
+  }
+
   @Test
   public void test_test_file_highlighting() throws IOException {
     activeRules = new ActiveRulesBuilder().build();
@@ -364,7 +699,7 @@ public class PythonSensorTest {
 
   @Test
   public void parse_error() {
-    inputFile("parse_error.py");
+    InputFile parseError = inputFile("parse_error.py");
     activeRules = new ActiveRulesBuilder()
       .addRule(new NewActiveRule.Builder()
         .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "ParsingError"))
@@ -382,6 +717,9 @@ public class PythonSensorTest {
     TextPointer location = analysisError.location();
     assertThat(location).isNotNull();
     assertThat(location.line()).isEqualTo(2);
+    // the file is parsed again by the recovering parser: the rest of the file is still analyzed
+    assertThat(context.measure(parseError.key(), CoreMetrics.NCLOC).value()).isEqualTo(1);
+    assertThat(context.cpdTokens(parseError.key())).isNotEmpty();
   }
 
   @Test
@@ -0,0 +1,264 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.python.api.IssueLocation;
+import org.sonar.plugins.python.api.LocationInFile;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.semantic.ProjectLevelSymbolTable;
+import org.sonar.python.semantic.SymbolImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisCacheTest {
+
+  private static final RuleKey RULE_KEY = RuleKey.of("python", "S1");
+  private static final String CONTENT = "import mod\nx = 'a'\nx = mod.f()\n";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File baseDir;
+  private File workDir;
+  private SensorContextTester context;
+  private InputFile inputFile;
+
+  @Before
+  public void init() throws IOException {
+    baseDir = temporaryFolder.newFolder("baseDir");
+    workDir = temporaryFolder.newFolder("workDir");
+    context = SensorContextTester.create(baseDir);
+    context.setSettings(new MapSettings().setProperty(AnalysisCache.ENABLED_PROPERTY_NAME, "true"));
+    inputFile = TestInputFileBuilder.create("moduleKey", "main.py")
+      .setModuleBaseDir(baseDir.toPath())
+      .setContents(CONTENT)
+      .initMetadata(CONTENT)
+      .build();
+    context.fileSystem().add(inputFile);
+  }
+
+  @Test
+  public void disabled() {
+    assertThat(AnalysisCache.create(context, null, checks())).isNull();
+    context.setSettings(new MapSettings());
+    assertThat(AnalysisCache.create(context, workDir, checks())).isNull();
+  }
+
+  @Test
+  public void configured_directory() {
+    context.setSettings(new MapSettings()
+      .setProperty(AnalysisCache.ENABLED_PROPERTY_NAME, "true")
+      .setProperty(AnalysisCache.PATH_PROPERTY_NAME, "cache"));
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    analysisCache.write(inputFile, "hash", "pkg", Collections.emptySet(), new FileResult());
+    assertThat(new File(baseDir, "cache").list()).hasSize(1);
+    assertThat(new File(workDir, "python-analysis-cache")).doesNotExist();
+  }
+
+  @Test
+  public void write_and_read() {
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    analysisCache.addModule("mod", "modHash");
+    analysisCache.write(inputFile, "hash", "pkg", Collections.singleton("mod.f"), fileResult());
+
+    FileResult result = analysisCache.read(inputFile, "hash", "pkg");
+    assertThat(result).isNotNull();
+    assertThat(result.parsingError()).isNull();
+    assertThat(result.measures().linesOfCode()).containsExactly(1, 2, 3);
+    assertThat(result.measures().complexity()).isEqualTo(4);
+    assertThat(result.issues()).hasSize(1);
+    FileResult.Issue issue = result.issues().get(0);
+    assertThat(issue.ruleKey()).isEqualTo(RULE_KEY);
+    assertThat(issue.cost()).isEqualTo(2);
+    assertThat(issue.primaryLocation().startLine()).isEqualTo(IssueLocation.UNDEFINED_LINE);
+    assertThat(issue.primaryLocation().message()).isEqualTo("message");
+    assertThat(issue.secondaryLocations()).extracting(FileResult.Location::fileId).containsExactly(null, "other.py");
+    assertThat(issue.secondaryLocations()).extracting(FileResult.Location::endLineOffset).containsExactly(IssueLocation.UNDEFINED_OFFSET, 5);
+
+    result.saveHighlighting(context.newHighlighting().onFile(inputFile));
+    result.saveSymbols(context.newSymbolTable().onFile(inputFile));
+    result.saveCpdTokens(context.newCpdTokens().onFile(inputFile));
+    assertThat(context.highlightingTypeAt(inputFile.key(), 2, 4)).containsExactly(TypeOfText.STRING);
+    assertThat(context.referencesForSymbolAt(inputFile.key(), 2, 0)).hasSize(1);
+    assertThat(context.cpdTokens(inputFile.key())).hasSize(1);
+  }
+
+  @Test
+  public void parsing_error() {
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    FileResult fileResult = new FileResult();
+    fileResult.setParsingError(new FileResult.ParsingError(3, null));
+    analysisCache.write(inputFile, "hash", "pkg", Collections.emptySet(), fileResult);
+
+    FileResult result = analysisCache.read(inputFile, "hash", "pkg");
+    assertThat(result.measures()).isNull();
+    assertThat(result.parsingError().line()).isEqualTo(3);
+    assertThat(result.parsingError().message()).isNull();
+  }
+
+  @Test
+  public void stale_entries() throws IOException {
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNull();
+
+    analysisCache.addModule("mod", "modHash");
+    analysisCache.write(inputFile, "hash", "pkg", Collections.singleton("mod.f"), fileResult());
+    assertThat(analysisCache.read(inputFile, "otherHash", "pkg")).isNull();
+    assertThat(analysisCache.read(inputFile, "hash", "")).isNull();
+    assertThat(analysisCache.read(inputFile, "hash", null)).isNull();
+
+    AnalysisCache otherRules = AnalysisCache.create(context, workDir, Collections.singletonMap(RuleKey.of("python", "S2"), AnalysisCacheTest.class));
+    otherRules.addModule("mod", "modHash");
+    assertThat(otherRules.read(inputFile, "hash", "pkg")).isNull();
+
+    analysisCache.addModule("mod", "otherModHash");
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNull();
+    analysisCache.addModule("mod", "modHash");
+    analysisCache.addModule("mod.f", "fHash");
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNull();
+  }
+
+  @Test
+  public void plugin_of_the_checks() throws IOException {
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    analysisCache.write(inputFile, "hash", "pkg", Collections.emptySet(), fileResult());
+
+    Map<RuleKey, Class<?>> otherPluginChecks = Collections.singletonMap(RULE_KEY, loadFromOtherPlugin(AnalysisCacheTest.class));
+    assertThat(AnalysisCache.create(context, workDir, otherPluginChecks).read(inputFile, "hash", "pkg")).isNull();
+    assertThat(AnalysisCache.create(context, workDir, checks()).read(inputFile, "hash", "pkg")).isNotNull();
+  }
+
+  @Test
+  public void purge() throws IOException {
+    File directory = new File(workDir, "python-analysis-cache");
+    InputFile deletedFile = TestInputFileBuilder.create("moduleKey", "deleted.py").setContents(CONTENT).build();
+    AnalysisCache previousAnalysis = AnalysisCache.create(context, workDir, checks());
+    previousAnalysis.write(inputFile, "hash", "pkg", Collections.emptySet(), fileResult());
+    previousAnalysis.write(deletedFile, "hash", "pkg", Collections.emptySet(), fileResult());
+    File otherFile = new File(directory, "other.txt");
+    assertThat(otherFile.createNewFile()).isTrue();
+
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNotNull();
+    analysisCache.purge();
+    assertThat(directory.list()).hasSize(2).contains("other.txt");
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNotNull();
+    assertThat(analysisCache.read(deletedFile, "hash", "pkg")).isNull();
+  }
+
+  @Test
+  public void ranges_with_offsets() {
+    FileResult result = new FileResult();
+    result.newHighlighting().onFile(inputFile).highlight(15, 18, TypeOfText.STRING).save();
+    result.newSymbolTable().onFile(inputFile).newSymbol(11, 12).newReference(19, 20);
+
+    result.saveHighlighting(context.newHighlighting().onFile(inputFile));
+    result.saveSymbols(context.newSymbolTable().onFile(inputFile));
+    assertThat(context.highlightingTypeAt(inputFile.key(), 2, 4)).containsExactly(TypeOfText.STRING);
+    assertThat(context.referencesForSymbolAt(inputFile.key(), 2, 0)).containsExactly(inputFile.newRange(3, 0, 3, 1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void ranges_with_offsets_without_file() {
+    new FileResult().newHighlighting().highlight(15, 18, TypeOfText.STRING);
+  }
+
+  @Test
+  public void corrupted_entry() throws IOException {
+    AnalysisCache analysisCache = AnalysisCache.create(context, workDir, checks());
+    analysisCache.write(inputFile, "hash", "pkg", Collections.emptySet(), fileResult());
+    File entry = new File(workDir, "python-analysis-cache").listFiles()[0];
+    byte[] bytes = Files.readAllBytes(entry.toPath());
+    Files.write(entry.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+
+    assertThat(analysisCache.read(inputFile, "hash", "pkg")).isNull();
+  }
+
+  @Test
+  public void dependency_recording_symbol_table() {
+    Map<String, Set<Symbol>> globalSymbols = new HashMap<>();
+    globalSymbols.put("mod", Collections.singleton(new SymbolImpl("f", "mod.f")));
+    DependencyRecordingSymbolTable symbolTable = new DependencyRecordingSymbolTable(ProjectLevelSymbolTable.from(globalSymbols));
+
+    assertThat(symbolTable.getSymbolsFromModule("mod")).hasSize(1);
+    assertThat(symbolTable.getSymbol("mod.f")).isNotNull();
+    assertThat(symbolTable.getSymbol("other.g")).isNull();
+    assertThat(symbolTable.getSymbolsFromModule(null)).isNull();
+    assertThat(symbolTable.dependencies()).containsExactlyInAnyOrder("mod", "mod.f", "other.g");
+  }
+
+  private static Map<RuleKey, Class<?>> checks() {
+    return Collections.singletonMap(RULE_KEY, AnalysisCacheTest.class);
+  }
+
+  /**
+   * Loads a class with the same name from another location, like a check provided by another version of a custom rules plugin.
+   */
+  private Class<?> loadFromOtherPlugin(Class<?> checkClass) throws IOException {
+    Path pluginDirectory = temporaryFolder.newFolder("plugin").toPath();
+    Path classFile = pluginDirectory.resolve(checkClass.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    try (InputStream in = checkClass.getResourceAsStream(checkClass.getSimpleName() + ".class");
+      URLClassLoader classLoader = new URLClassLoader(new URL[] {pluginDirectory.toUri().toURL()}, null)) {
+      Files.copy(in, classFile);
+      return Class.forName(checkClass.getName(), false, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static FileResult fileResult() {
+    FileResult result = new FileResult();
+    result.addIssue(new FileResult.Issue(RULE_KEY, FileResult.Location.of(IssueLocation.atFileLevel("message")),
+      Arrays.asList(
+        FileResult.Location.of(IssueLocation.atLineLevel("secondary", 2)),
+        FileResult.Location.of(IssueLocation.preciseLocation(new LocationInFile("other.py", 1, 0, 1, 5), null))),
+      2));
+    result.setMeasures(new FileResult.Measures(3, 0, 0, 4, 0, 0, new HashSet<>(Arrays.asList(1, 2, 3)),
+      Collections.singleton(1), Collections.emptySet()));
+    result.newHighlighting().highlight(2, 4, 2, 7, TypeOfText.STRING).save();
+    result.newSymbolTable().newSymbol(2, 0, 2, 1).newReference(3, 0, 3, 1);
+    result.newCpdTokens().addToken(1, 0, 1, 6, "import").save();
+    return result;
+  }
+}
@@ -0,0 +1,3 @@
+def f():
+  # return compute(1, 2)
+  return 0